@@ -0,0 +1,197 @@
+package com.buyogo.loadgen;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+/**
+ * Generates batch request bodies. Machines are picked by Zipf rank and keep a fixed line and
+ * factory, so per-line and per-factory stats see a consistent topology. Each event is new, an
+ * unchanged re-send (duplicate), a re-send with a changed payload (update) or invalid, in the
+ * configured ratios; a share of events is stamped in the past to model late arrivals.
+ */
+final class EventStream {
+
+    enum Kind { NEW, DUPLICATE, UPDATE, INVALID }
+
+    private static final int HISTORY_SIZE = 10_000;
+    // Server-side limits (see EventService): durations up to 6 hours, at most 15 minutes in the future
+    private static final long MAX_DURATION_MS = Duration.ofHours(6).toMillis();
+    private static final Duration FUTURE_LIMIT = Duration.ofMinutes(15);
+
+    private final LoadGeneratorOptions options;
+    private final Random random;
+    private final ZipfDistribution machines;
+    private final String runId;
+
+    private final SentEvent[] history = new SentEvent[HISTORY_SIZE];
+    private final long[] generated = new long[Kind.values().length];
+    private int historySize;
+    private int historyNext;
+    private long sequence;
+    private long lateEvents;
+
+    EventStream(LoadGeneratorOptions options, Random random) {
+        this.options = options;
+        this.random = random;
+        this.machines = new ZipfDistribution(options.machines, options.zipf);
+        // Keeps event ids unique across runs against the same database
+        this.runId = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    /**
+     * One JSON array of {@code batchSize} events.
+     */
+    String nextBatch(Instant now) {
+        StringBuilder json = new StringBuilder(options.batchSize * 200).append('[');
+        for (int i = 0; i < options.batchSize; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            nextEvent(now).appendJson(json);
+        }
+        return json.append(']').toString();
+    }
+
+    int sampleMachine() {
+        return machines.sample(random);
+    }
+
+    String machineId(int machine) {
+        return "machine-" + machine;
+    }
+
+    String lineId(int machine) {
+        return "line-" + (machine % options.lines);
+    }
+
+    String factoryId(int machine) {
+        return "factory-" + (machine % options.lines % options.factories);
+    }
+
+    long generated(Kind kind) {
+        return generated[kind.ordinal()];
+    }
+
+    long lateEvents() {
+        return lateEvents;
+    }
+
+    SentEvent nextEvent(Instant now) {
+        Kind kind = pickKind();
+        generated[kind.ordinal()]++;
+        switch (kind) {
+            case DUPLICATE:
+                return history[random.nextInt(historySize)];
+            case UPDATE: {
+                int slot = random.nextInt(historySize);
+                SentEvent previous = history[slot];
+                SentEvent updated = new SentEvent(previous.eventId, previous.eventTime, previous.machine,
+                    randomDuration(), previous.defectCount + 1 + random.nextInt(3));
+                history[slot] = updated;
+                return updated;
+            }
+            case INVALID:
+                return invalidEvent(now);
+            default: {
+                SentEvent event = new SentEvent(runId + "-" + sequence++, eventTime(now), sampleMachine(),
+                    randomDuration(), randomDefects());
+                remember(event);
+                return event;
+            }
+        }
+    }
+
+    private Kind pickKind() {
+        double u = random.nextDouble();
+        if (u < options.invalidRatio) {
+            return Kind.INVALID;
+        }
+        if (historySize > 0) {
+            u -= options.invalidRatio;
+            if (u < options.duplicateRatio) {
+                return Kind.DUPLICATE;
+            }
+            if (u < options.duplicateRatio + options.updateRatio) {
+                return Kind.UPDATE;
+            }
+        }
+        return Kind.NEW;
+    }
+
+    private SentEvent invalidEvent(Instant now) {
+        String eventId = runId + "-invalid-" + sequence++;
+        int machine = sampleMachine();
+        switch (random.nextInt(3)) {
+            case 0:
+                return new SentEvent(eventId, now, machine, -1 - random.nextInt(1000), randomDefects());
+            case 1:
+                return new SentEvent(eventId, now, machine, MAX_DURATION_MS + 1 + random.nextInt(1000), randomDefects());
+            default:
+                return new SentEvent(eventId, now.plus(FUTURE_LIMIT).plusSeconds(60 + random.nextInt(3600)),
+                    machine, randomDuration(), randomDefects());
+        }
+    }
+
+    /**
+     * Usually within a couple of seconds of now; late events lag by an exponentially
+     * distributed amount, capped at {@code late-max}.
+     */
+    private Instant eventTime(Instant now) {
+        if (random.nextDouble() < options.lateRatio) {
+            lateEvents++;
+            double lateMs = -Math.log(1 - random.nextDouble()) * options.lateMean.toMillis();
+            return now.minusMillis((long) Math.min(lateMs, options.lateMax.toMillis()));
+        }
+        return now.minusMillis(random.nextInt(2000));
+    }
+
+    private long randomDuration() {
+        return 1000 + random.nextInt(20_000);
+    }
+
+    /**
+     * Mostly 0-2 defects, with the occasional unknown (-1) reading.
+     */
+    private int randomDefects() {
+        double u = random.nextDouble();
+        if (u < 0.02) {
+            return -1;
+        }
+        return u < 0.7 ? 0 : 1 + random.nextInt(u < 0.95 ? 2 : 6);
+    }
+
+    private void remember(SentEvent event) {
+        history[historyNext] = event;
+        historyNext = (historyNext + 1) % HISTORY_SIZE;
+        historySize = Math.min(historySize + 1, HISTORY_SIZE);
+    }
+
+    final class SentEvent {
+        final String eventId;
+        final Instant eventTime;
+        final int machine;
+        final long durationMs;
+        final int defectCount;
+
+        SentEvent(String eventId, Instant eventTime, int machine, long durationMs, int defectCount) {
+            this.eventId = eventId;
+            this.eventTime = eventTime.truncatedTo(ChronoUnit.MILLIS);
+            this.machine = machine;
+            this.durationMs = durationMs;
+            this.defectCount = defectCount;
+        }
+
+        void appendJson(StringBuilder json) {
+            json.append("{\"eventId\":\"").append(eventId)
+                .append("\",\"eventTime\":\"").append(eventTime)
+                .append("\",\"machineId\":\"").append(machineId(machine))
+                .append("\",\"lineId\":\"").append(lineId(machine))
+                .append("\",\"factoryId\":\"").append(factoryId(machine))
+                .append("\",\"durationMs\":").append(durationMs)
+                .append(",\"defectCount\":").append(defectCount)
+                .append('}');
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.buyogo.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Drives {@code POST /events/batch} and the {@code /stats} endpoints at fixed target rates.
+ *
+ * <p>The load is open-model: request {@code i} of a stream is due at {@code start + i / rate}
+ * and is sent then whether or not earlier requests have completed, and its latency is measured
+ * from that due time. A server that stalls therefore shows the queueing delay its clients would
+ * really see, instead of the generator quietly slowing down with it.
+ */
+public final class LoadGenerator {
+
+    private final LoadGeneratorOptions options;
+    private final HttpClient client;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final OperationStats batch = new OperationStats("batch");
+    private final OperationStats stats = new OperationStats("stats");
+    private final OperationStats topDefectLines = new OperationStats("top-defect-lines");
+    private final OperationStats timeSeries = new OperationStats("timeseries");
+    private final List<OperationStats> operations = List.of(batch, stats, topDefectLines, timeSeries);
+
+    private long measureStartNanos;
+    private long endNanos;
+
+    LoadGenerator(LoadGeneratorOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(options.requestTimeout)
+            .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.println(LoadGeneratorOptions.USAGE);
+            return;
+        }
+        LoadGeneratorOptions options;
+        try {
+            options = LoadGeneratorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(LoadGeneratorOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    void run() throws Exception {
+        Files.createDirectories(options.output);
+        EventStream events = new EventStream(options, new Random(options.seed));
+        EventStream statsTargets = new EventStream(options, new Random(options.seed + 1));
+
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        measureStartNanos = startNanos + options.warmup.toNanos();
+        endNanos = measureStartNanos + options.duration.toNanos();
+        System.out.printf("Driving %s: %.1f batches/s of %d events, %.1f stats requests/s, %s warmup + %s%n",
+            options.baseUrl, options.batchRate, options.batchSize, options.statsRate, options.warmup, options.duration);
+
+        List<Thread> senders = new ArrayList<>();
+        if (options.batchRate > 0) {
+            senders.add(startSender("batch-sender", options.batchRate, startNanos, i -> {
+                String body = events.nextBatch(Instant.now());
+                return new Call(batch, HttpRequest.newBuilder(URI.create(options.baseUrl + "/events/batch"))
+                    .timeout(options.requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                    .build(), options.batchSize);
+            }));
+        }
+        if (options.statsRate > 0) {
+            senders.add(startSender("stats-sender", options.statsRate, startNanos, i -> statsCall(statsTargets, i)));
+        }
+
+        report();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        awaitOutstanding();
+        writeResults(events);
+    }
+
+    private Call statsCall(EventStream targets, long i) {
+        Instant now = Instant.now();
+        int machine = targets.sampleMachine();
+        OperationStats operation;
+        String path;
+        switch ((int) (i % 3)) {
+            case 0:
+                operation = stats;
+                path = "/stats?machineId=" + targets.machineId(machine)
+                    + "&start=" + now.minus(Duration.ofHours(1)) + "&end=" + now;
+                break;
+            case 1:
+                operation = topDefectLines;
+                path = "/stats/top-defect-lines?factoryId=" + targets.factoryId(machine)
+                    + "&from=" + now.minus(Duration.ofDays(1)) + "&to=" + now + "&limit=10";
+                break;
+            default:
+                operation = timeSeries;
+                path = "/stats/timeseries?machineId=" + targets.machineId(machine)
+                    + "&from=" + now.minus(Duration.ofHours(6)) + "&to=" + now + "&bucket=hour";
+        }
+        return new Call(operation, HttpRequest.newBuilder(URI.create(options.baseUrl + path))
+            .timeout(options.requestTimeout)
+            .GET()
+            .build(), 0);
+    }
+
+    private Thread startSender(String name, double rate, long startNanos, LongFunction<Call> nextCall) {
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        Thread thread = new Thread(() -> {
+            for (long i = 0; ; i++) {
+                long due = startNanos + i * periodNanos;
+                if (due >= endNanos) {
+                    return;
+                }
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                send(nextCall.apply(i), due);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private void send(Call call, long dueNanos) {
+        boolean measured = dueNanos >= measureStartNanos;
+        if (outstanding.get() >= options.maxOutstanding) {
+            if (measured) {
+                call.operation.recordBacklogged();
+            }
+            return;
+        }
+        outstanding.incrementAndGet();
+        client.sendAsync(call.request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                outstanding.decrementAndGet();
+                if (measured) {
+                    call.operation.record(System.nanoTime() - dueNanos, response != null ? response.statusCode() : 0,
+                        call.items);
+                }
+            });
+    }
+
+    /**
+     * Print one line per operation every report interval while measuring.
+     */
+    private void report() throws IOException, InterruptedException {
+        sleepUntil(measureStartNanos);
+        long startMillis = System.currentTimeMillis();
+        for (OperationStats operation : operations) {
+            operation.openLog(options.output, startMillis);
+        }
+        long intervalNanos = options.reportInterval.toNanos();
+        long tick = measureStartNanos;
+        while (tick < endNanos) {
+            long next = Math.min(tick + intervalNanos, endNanos);
+            sleepUntil(next);
+            double seconds = (next - tick) / 1e9;
+            System.out.printf("--- t=%.0fs%n", (next - measureStartNanos) / 1e9);
+            for (OperationStats operation : operations) {
+                operation.rollInterval();
+                System.out.println(operation.intervalLine(seconds));
+            }
+            tick = next;
+        }
+    }
+
+    private void awaitOutstanding() throws InterruptedException {
+        long deadline = System.nanoTime() + options.requestTimeout.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        for (OperationStats operation : operations) {
+            operation.rollInterval();
+        }
+    }
+
+    private void writeResults(EventStream events) throws IOException {
+        double seconds = options.duration.toNanos() / 1e9;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream summary = new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+            summary.printf("%nSummary over %s (latency from scheduled send time)%n%n", options.duration);
+            for (OperationStats operation : operations) {
+                operation.writeSummary(summary, seconds);
+                operation.writeHistogram(options.output);
+            }
+            summary.printf("%nEvents generated: %d new, %d duplicate, %d update, %d invalid (%d late)%n",
+                events.generated(EventStream.Kind.NEW), events.generated(EventStream.Kind.DUPLICATE),
+                events.generated(EventStream.Kind.UPDATE), events.generated(EventStream.Kind.INVALID),
+                events.lateEvents());
+            summary.printf("Histograms: %s/*.hgrm (percentiles, ms), %s/*.hlog (per interval)%n",
+                options.output, options.output);
+        }
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        System.out.print(text);
+        Files.writeString(options.output.resolve("summary.txt"), text);
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long wait;
+        while ((wait = nanos - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static final class Call {
+        final OperationStats operation;
+        final HttpRequest request;
+        final int items;
+
+        Call(OperationStats operation, HttpRequest request, int items) {
+            this.operation = operation;
+            this.request = request;
+            this.items = items;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.buyogo.loadgen;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --name=value}. Durations use ISO-8601 ({@code PT30S}).
+ */
+final class LoadGeneratorOptions {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: java -jar load-generator.jar [--name=value ...]",
+        "",
+        "Target",
+        "  --base-url=http://localhost:8080   API under test",
+        "  --duration=PT60S                   Measured run length",
+        "  --warmup=PT10S                     Run before measuring (results discarded)",
+        "  --request-timeout=PT30S            Per-request timeout",
+        "  --max-outstanding=2000             In-flight requests before new ones count as client backlog",
+        "",
+        "Rates (open model: requests are sent on schedule whether or not earlier ones finished)",
+        "  --batch-rate=10                    POST /events/batch per second",
+        "  --batch-size=100                   Events per batch",
+        "  --stats-rate=5                     GET /stats, /stats/top-defect-lines, /stats/timeseries per second",
+        "",
+        "Workload shape",
+        "  --machines=100 --lines=20 --factories=3",
+        "  --zipf=1.1                         Machine popularity skew (0 = uniform)",
+        "  --duplicate-ratio=0.05             Events re-sent unchanged",
+        "  --update-ratio=0.05                Events re-sent with a changed payload",
+        "  --invalid-ratio=0.01               Events failing validation",
+        "  --late-ratio=0.1                   Events arriving late",
+        "  --late-mean=PT5M                   Mean lateness (exponential), capped by --late-max",
+        "  --late-max=PT1H",
+        "  --seed=42",
+        "",
+        "Output",
+        "  --report-interval=PT5S             Interval line frequency",
+        "  --output=load-results              Directory for .hgrm, .hlog and summary.txt");
+
+    String baseUrl = "http://localhost:8080";
+    Duration duration = Duration.ofSeconds(60);
+    Duration warmup = Duration.ofSeconds(10);
+    Duration requestTimeout = Duration.ofSeconds(30);
+    int maxOutstanding = 2000;
+
+    double batchRate = 10;
+    int batchSize = 100;
+    double statsRate = 5;
+
+    int machines = 100;
+    int lines = 20;
+    int factories = 3;
+    double zipf = 1.1;
+    double duplicateRatio = 0.05;
+    double updateRatio = 0.05;
+    double invalidRatio = 0.01;
+    double lateRatio = 0.1;
+    Duration lateMean = Duration.ofMinutes(5);
+    Duration lateMax = Duration.ofHours(1);
+    long seed = 42;
+
+    Duration reportInterval = Duration.ofSeconds(5);
+    Path output = Path.of("load-results");
+
+    static LoadGeneratorOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "base-url" -> options.baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "duration" -> options.duration = Duration.parse(value);
+                case "warmup" -> options.warmup = Duration.parse(value);
+                case "request-timeout" -> options.requestTimeout = Duration.parse(value);
+                case "max-outstanding" -> options.maxOutstanding = Integer.parseInt(value);
+                case "batch-rate" -> options.batchRate = Double.parseDouble(value);
+                case "batch-size" -> options.batchSize = Integer.parseInt(value);
+                case "stats-rate" -> options.statsRate = Double.parseDouble(value);
+                case "machines" -> options.machines = Integer.parseInt(value);
+                case "lines" -> options.lines = Integer.parseInt(value);
+                case "factories" -> options.factories = Integer.parseInt(value);
+                case "zipf" -> options.zipf = Double.parseDouble(value);
+                case "duplicate-ratio" -> options.duplicateRatio = Double.parseDouble(value);
+                case "update-ratio" -> options.updateRatio = Double.parseDouble(value);
+                case "invalid-ratio" -> options.invalidRatio = Double.parseDouble(value);
+                case "late-ratio" -> options.lateRatio = Double.parseDouble(value);
+                case "late-mean" -> options.lateMean = Duration.parse(value);
+                case "late-max" -> options.lateMax = Duration.parse(value);
+                case "seed" -> options.seed = Long.parseLong(value);
+                case "report-interval" -> options.reportInterval = Duration.parse(value);
+                case "output" -> options.output = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option --" + entry.getKey());
+            }
+        }
+        options.validate();
+        return options;
+    }
+
+    private void validate() {
+        if (batchRate < 0 || statsRate < 0 || batchRate + statsRate == 0) {
+            throw new IllegalArgumentException("Rates must be non-negative and not both zero");
+        }
+        if (batchSize < 1 || machines < 1 || lines < 1 || factories < 1) {
+            throw new IllegalArgumentException("Batch size and cardinalities must be at least 1");
+        }
+        if (zipf < 0) {
+            throw new IllegalArgumentException("--zipf must be >= 0");
+        }
+        if (duplicateRatio < 0 || updateRatio < 0 || invalidRatio < 0
+                || duplicateRatio + updateRatio + invalidRatio > 1) {
+            throw new IllegalArgumentException("Duplicate, update and invalid ratios must sum to at most 1");
+        }
+        if (lateRatio < 0 || lateRatio > 1) {
+            throw new IllegalArgumentException("--late-ratio must be between 0 and 1");
+        }
+        if (duration.isNegative() || duration.isZero() || warmup.isNegative()) {
+            throw new IllegalArgumentException("--duration must be positive and --warmup non-negative");
+        }
+    }
+}
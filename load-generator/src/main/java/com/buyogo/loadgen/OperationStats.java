@@ -0,0 +1,114 @@
+package com.buyogo.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counts for one kind of request. Latencies are recorded in microseconds,
+ * measured from the request's scheduled send time, so a stalled server shows up as queueing
+ * delay instead of silently lowering the offered rate (coordinated omission).
+ */
+final class OperationStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    final String name;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder backlogged = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    private Histogram interval;
+    private HistogramLogWriter log;
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param status HTTP status, or 0 if the request failed without a response
+     * @param itemCount events carried by the request, for throughput in events per second
+     */
+    void record(long latencyNanos, int status, int itemCount) {
+        recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        if (status >= 200 && status < 300) {
+            succeeded.increment();
+            items.add(itemCount);
+        } else if (status == 429 || status == 503) {
+            shed.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * A request that was due but not sent because too many were already outstanding.
+     */
+    void recordBacklogged() {
+        backlogged.increment();
+    }
+
+    void openLog(Path directory, long startMillis) throws FileNotFoundException {
+        log = new HistogramLogWriter(directory.resolve(name + ".hlog").toFile());
+        log.outputLogFormatVersion();
+        log.outputStartTime(startMillis);
+        log.setBaseTime(startMillis);
+        log.outputLegend();
+    }
+
+    /**
+     * Close the current interval: fold it into the total and append it to the log.
+     */
+    void rollInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        if (log != null) {
+            log.outputIntervalHistogram(interval);
+        }
+    }
+
+    String intervalLine(double seconds) {
+        return String.format("%-17s %8.1f req/s  p50=%8.2f ms  p99=%8.2f ms  max=%8.2f ms",
+            name, interval.getTotalCount() / seconds, millis(interval, 50), millis(interval, 99),
+            interval.getMaxValue() / 1000.0);
+    }
+
+    void writeSummary(PrintStream out, double seconds) {
+        out.printf("%s%n", name);
+        out.printf("  requests   %d ok, %d shed (429/503), %d failed, %d not sent (client backlog)%n",
+            succeeded.sum(), shed.sum(), failed.sum(), backlogged.sum());
+        out.printf("  throughput %.1f req/s", total.getTotalCount() / seconds);
+        if (items.sum() > 0) {
+            out.printf(", %.1f events/s accepted for processing", items.sum() / seconds);
+        }
+        out.printf("%n  latency    p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f ms%n",
+            millis(total, 50), millis(total, 90), millis(total, 99), millis(total, 99.9),
+            total.getMaxValue() / 1000.0);
+    }
+
+    void writeHistogram(Path directory) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            total.outputPercentileDistribution(out, 1000.0);
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.buyogo.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start benchmark: launches the service once per run with each startup mode's command and
+ * measures the wall time from process start to the first {@code POST /events/batch} answered
+ * with 200, i.e. until the node can really take traffic, not just until the log says started.
+ * The process tree is stopped after each run, so every run is a cold start of the JVM (the
+ * database and OS page cache stay warm, as on a real scale-out).
+ *
+ * <pre>
+ * java -cp load-generator/target/load-generator.jar com.buyogo.loadgen.StartupBenchmark \
+ *   --mode=jar:'java -jar target/factory-events-1.0.0.jar' \
+ *   --mode=aot-cds:'scripts/fast-startup.sh run' --runs=5
+ * </pre>
+ */
+public final class StartupBenchmark {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: java -cp load-generator.jar com.buyogo.loadgen.StartupBenchmark --mode=name:command ... [--name=value ...]",
+        "",
+        "  --mode=name:command                Startup mode; repeat for each mode. The command runs under sh -c",
+        "  --runs=5                           Cold starts per mode",
+        "  --base-url=http://localhost:8080   Where each started service listens",
+        "  --timeout=PT120S                   Give up on a start after this long",
+        "  --poll-interval=PT0.02S            Delay between ingest attempts",
+        "  --output=load-results              Directory for startup-summary.txt and per-run logs");
+
+    private final Map<String, String> modes;
+    private final int runs;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final Duration pollInterval;
+    private final Path output;
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(1))
+        .build();
+
+    StartupBenchmark(Map<String, String> modes, int runs, String baseUrl, Duration timeout, Duration pollInterval,
+                     Path output) {
+        this.modes = modes;
+        this.runs = runs;
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+        this.pollInterval = pollInterval;
+        this.output = output;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.println(USAGE);
+            return;
+        }
+        StartupBenchmark benchmark;
+        try {
+            benchmark = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        benchmark.run();
+    }
+
+    static StartupBenchmark parse(String[] args) {
+        Map<String, String> modes = new LinkedHashMap<>();
+        int runs = 5;
+        String baseUrl = "http://localhost:8080";
+        Duration timeout = Duration.ofSeconds(120);
+        Duration pollInterval = Duration.ofMillis(20);
+        Path output = Path.of("load-results");
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            String value = arg.substring(equals + 1);
+            switch (arg.substring(2, equals)) {
+                case "mode" -> {
+                    int colon = value.indexOf(':');
+                    if (colon < 1 || colon == value.length() - 1) {
+                        throw new IllegalArgumentException("Expected --mode=name:command but got " + arg);
+                    }
+                    modes.put(value.substring(0, colon), value.substring(colon + 1));
+                }
+                case "runs" -> runs = Integer.parseInt(value);
+                case "base-url" -> baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "timeout" -> timeout = Duration.parse(value);
+                case "poll-interval" -> pollInterval = Duration.parse(value);
+                case "output" -> output = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option " + arg.substring(0, equals));
+            }
+        }
+        if (modes.isEmpty() || runs < 1) {
+            throw new IllegalArgumentException("At least one --mode and --runs >= 1 are required");
+        }
+        return new StartupBenchmark(modes, runs, baseUrl, timeout, pollInterval, output);
+    }
+
+    void run() throws Exception {
+        Files.createDirectories(output);
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, String> mode : modes.entrySet()) {
+            long[] millis = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                millis[run] = coldStart(mode.getKey(), mode.getValue(), run + 1);
+                System.out.printf("%s run %d: first ingest after %d ms%n", mode.getKey(), run + 1, millis[run]);
+            }
+            results.put(mode.getKey(), millis);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream summary = new PrintStream(buffer, true, StandardCharsets.UTF_8)) {
+            summary.printf("%nTime to first successful ingest, %d cold starts per mode (ms)%n%n", runs);
+            summary.printf("%-20s %8s %8s %8s%n", "mode", "min", "median", "max");
+            for (Map.Entry<String, long[]> result : results.entrySet()) {
+                long[] millis = result.getValue().clone();
+                Arrays.sort(millis);
+                summary.printf("%-20s %8d %8d %8d%n", result.getKey(), millis[0], millis[millis.length / 2],
+                    millis[millis.length - 1]);
+            }
+        }
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        System.out.print(text);
+        Files.writeString(output.resolve("startup-summary.txt"), text);
+    }
+
+    /**
+     * @return milliseconds from process start to the first accepted batch
+     */
+    private long coldStart(String mode, String command, int run) throws IOException, InterruptedException {
+        Path log = output.resolve("startup-" + mode + "-" + run + ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder("sh", "-c", command)
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        try {
+            long deadline = start + timeout.toNanos();
+            for (int attempt = 0; System.nanoTime() < deadline; attempt++) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode + " exited with " + process.exitValue() + " before ingesting; see " + log);
+                }
+                if (ingest(mode + "-" + run + "-" + attempt)) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+                Thread.sleep(pollInterval.toMillis());
+            }
+            throw new IllegalStateException(mode + " did not ingest within " + timeout + "; see " + log);
+        } finally {
+            stop(process);
+        }
+    }
+
+    private boolean ingest(String probe) throws InterruptedException {
+        String body = "[{\"eventId\":\"startup-" + probe + "\",\"eventTime\":\"" + Instant.now()
+            + "\",\"machineId\":\"startup-probe\",\"durationMs\":1,\"defectCount\":0}]";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/events/batch"))
+            .timeout(Duration.ofSeconds(5))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+            .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            // Not listening yet
+            return false;
+        }
+    }
+
+    /**
+     * Stop the shell and the JVM it started, waiting so the next run gets the port.
+     */
+    private static void stop(Process process) throws InterruptedException {
+        List<ProcessHandle> tree = new ArrayList<>(process.descendants().toList());
+        tree.add(process.toHandle());
+        tree.forEach(ProcessHandle::destroy);
+        for (ProcessHandle handle : tree) {
+            try {
+                handle.onExit().get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                handle.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.buyogo.loadgen;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class EventStreamTest {
+
+    private final Instant now = Instant.parse("2026-01-16T10:00:00Z");
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Duplicate, update and invalid events follow the configured ratios")
+    void testKindRatios() {
+        // Arrange
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(new String[] {
+            "--duplicate-ratio=0.1", "--update-ratio=0.2", "--invalid-ratio=0.05", "--late-ratio=0.3"});
+        EventStream stream = new EventStream(options, new Random(7));
+        Map<String, EventStream.SentEvent> latest = new HashMap<>();
+        int duplicates = 0;
+        int updates = 0;
+
+        // Act
+        for (int i = 0; i < 50_000; i++) {
+            EventStream.SentEvent event = stream.nextEvent(now);
+            EventStream.SentEvent previous = latest.put(event.eventId, event);
+            if (previous == event) {
+                duplicates++;
+            } else if (previous != null) {
+                updates++;
+                assertEquals(previous.eventTime, event.eventTime);
+                assertNotEquals(previous.defectCount, event.defectCount);
+            }
+        }
+
+        // Assert
+        assertEquals(0.1, duplicates / 50_000.0, 0.01);
+        assertEquals(0.2, updates / 50_000.0, 0.01);
+        assertEquals(0.05, stream.generated(EventStream.Kind.INVALID) / 50_000.0, 0.005);
+        assertEquals(duplicates, stream.generated(EventStream.Kind.DUPLICATE));
+        long fresh = stream.generated(EventStream.Kind.NEW);
+        assertEquals(0.3, stream.lateEvents() / (double) fresh, 0.02);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Machines keep a fixed line and factory, and late events stay within late-max")
+    void testTopologyAndLateness() {
+        // Arrange
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(new String[] {
+            "--machines=50", "--lines=10", "--factories=3", "--invalid-ratio=0", "--late-ratio=1",
+            "--late-mean=PT10M", "--late-max=PT30M"});
+        EventStream stream = new EventStream(options, new Random(11));
+        Map<Integer, String> lineOfMachine = new HashMap<>();
+        Set<String> lines = new HashSet<>();
+
+        // Act & Assert
+        for (int i = 0; i < 5_000; i++) {
+            EventStream.SentEvent event = stream.nextEvent(now);
+            String line = stream.lineId(event.machine);
+            assertEquals(line, lineOfMachine.computeIfAbsent(event.machine, m -> line));
+            lines.add(line);
+            assertFalse(event.eventTime.isAfter(now));
+            assertFalse(event.eventTime.isBefore(now.minus(Duration.ofMinutes(30))));
+        }
+        assertEquals(10, lines.size());
+        assertEquals("factory-2", stream.factoryId(12));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Batches are JSON arrays of the configured size and bad options are rejected")
+    void testBatchBodyAndOptions() {
+        // Arrange
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(new String[] {"--batch-size=3", "--invalid-ratio=0"});
+        EventStream stream = new EventStream(options, new Random(3));
+
+        // Act
+        String body = stream.nextBatch(now);
+
+        // Assert
+        assertTrue(body.startsWith("[{\"eventId\":\""));
+        assertTrue(body.endsWith("}]"));
+        assertEquals(3, body.split("\"machineId\"").length - 1);
+        assertThrows(IllegalArgumentException.class,
+            () -> LoadGeneratorOptions.parse(new String[] {"--duplicate-ratio=0.8", "--update-ratio=0.5"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[] {"--rate=5"}));
+    }
+}
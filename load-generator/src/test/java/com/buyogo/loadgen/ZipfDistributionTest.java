@@ -0,0 +1,55 @@
+package com.buyogo.loadgen;
+
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ZipfDistributionTest {
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Exponent 1 gives rank k a share proportional to 1/(k+1)")
+    void testSkewedShares() {
+        // Arrange
+        ZipfDistribution zipf = new ZipfDistribution(10, 1.0);
+        Random random = new Random(1);
+        int[] counts = new int[10];
+
+        // Act
+        for (int i = 0; i < 200_000; i++) {
+            counts[zipf.sample(random)]++;
+        }
+
+        // Assert - H(10) = 2.929, so rank 0 gets 34.1% and rank 9 gets 3.4%
+        assertEquals(0.341, zipf.probability(0), 0.001);
+        assertEquals(0.341, counts[0] / 200_000.0, 0.005);
+        assertEquals(0.034, counts[9] / 200_000.0, 0.003);
+        assertEquals(2.0, (double) counts[0] / counts[1], 0.1);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Exponent 0 is uniform and every sample is a valid rank")
+    void testUniform() {
+        // Arrange
+        ZipfDistribution zipf = new ZipfDistribution(4, 0.0);
+        Random random = new Random(2);
+        int[] counts = new int[4];
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            int rank = zipf.sample(random);
+            assertTrue(rank >= 0 && rank < 4);
+            counts[rank]++;
+        }
+
+        // Assert
+        for (int count : counts) {
+            assertEquals(0.25, count / 100_000.0, 0.01);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Fast-startup packaging: Spring AOT-processed context + AppCDS archive from a training run.
+#
+#   scripts/fast-startup.sh build             # mvn -Pfast-startup package, then extract to target/fast-startup
+#   scripts/fast-startup.sh train [args...]   # training run: start, refresh the context, exit; writes app.jsa
+#   scripts/fast-startup.sh run [args...]     # start with AOT and the CDS archive
+#
+# CDS only archives classes loaded from jars, and the archive is only used with the exact
+# classpath it was created with, so the fat jar is unpacked into plain jars and the classpath
+# is fixed in classpath.txt. Train against a reachable database with the same configuration
+# the service runs with; retrain after every build. Extra args are passed to the application
+# (e.g. --spring.datasource.url=...). JAVA_OPTS is added to the JVM options.
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+OUT="$ROOT/target/fast-startup"
+MAIN_CLASS=com.buyogo.factoryevents.FactoryEventsApplication
+
+build() {
+    (cd "$ROOT" && mvn -B -q -Pfast-startup -DskipTests package)
+    rm -rf "$OUT"
+    mkdir -p "$OUT/exploded" "$OUT/lib"
+    (cd "$OUT/exploded" && jar xf "$ROOT"/target/factory-events-*.jar)
+    # Application classes (including the AOT-generated ones) repacked as a jar so CDS can archive them
+    jar cf "$OUT/lib/application.jar" -C "$OUT/exploded/BOOT-INF/classes" .
+    cp "$OUT"/exploded/BOOT-INF/lib/*.jar "$OUT/lib/"
+    rm -rf "$OUT/exploded"
+    (cd "$OUT" && { echo lib/application.jar; ls lib/*.jar | grep -v '^lib/application.jar$' | sort; } | paste -sd: -) > "$OUT/classpath.txt"
+    echo "Extracted to $OUT; now run: $0 train"
+}
+
+launch() {
+    [[ -f "$OUT/classpath.txt" ]] || { echo "Run '$0 build' first" >&2; exit 2; }
+    cd "$OUT"
+    # shellcheck disable=SC2086
+    exec java ${JAVA_OPTS:-} -Dspring.aot.enabled=true "$@"
+}
+
+case "${1:-}" in
+    build)
+        build
+        ;;
+    train)
+        shift
+        rm -f "$OUT/app.jsa"
+        launch -XX:ArchiveClassesAtExit=app.jsa -Xlog:cds=error -Dspring.context.exit=onRefresh \
+            -cp "$(cat "$OUT/classpath.txt")" "$MAIN_CLASS" "$@"
+        ;;
+    run)
+        shift
+        [[ -f "$OUT/app.jsa" ]] || { echo "No CDS archive; run '$0 train' first" >&2; exit 2; }
+        launch -XX:SharedArchiveFile=app.jsa -cp "$(cat "$OUT/classpath.txt")" "$MAIN_CLASS" "$@"
+        ;;
+    *)
+        sed -n '2,12p' "$0" | sed 's/^# \{0,1\}//'
+        exit 2
+        ;;
+esac
@@ -1,12 +1,20 @@
 package com.buyogo.factoryevents;
 
+import com.buyogo.factoryevents.cli.BackfillCommand;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 public class FactoryEventsApplication {
 
     public static void main(String[] args) {
+        if (args.length > 0 && BackfillCommand.NAME.equals(args[0])) {
+            System.exit(BackfillCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         SpringApplication.run(FactoryEventsApplication.class, args);
     }
 }
@@ -0,0 +1,309 @@
+package com.buyogo.factoryevents.archive;
+
+import com.buyogo.factoryevents.archive.EventSegment.Column;
+import com.buyogo.factoryevents.dto.StatsWindow;
+import com.buyogo.factoryevents.entity.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier: {@link EventSegment} files under {@code events.archive.directory}, one directory per
+ * factory and UTC day ({@code <factory>/<yyyy-MM-dd>/<name>.seg}). Every segment's footer is kept
+ * in memory, so a query only opens the files whose factory, machines and event time range can
+ * match, and of those only the columns it aggregates.
+ *
+ * <p>The footer index is loaded at startup and refreshed every {@code rescan-interval-ms}, which
+ * picks up segments written by other nodes sharing the directory. A segment is written as
+ * {@code <name>.seg.tmp}, renamed to {@code <name>.seg.pending} once complete, and renamed to
+ * {@code <name>.seg} when published; only published segments are indexed. Files left staged
+ * by a crash are found with {@link #orphans} and published or discarded by the caller.
+ */
+@Component
+@Slf4j
+public class ArchiveStore {
+    
+    private static final String SUFFIX = ".seg";
+    private static final String PENDING = SUFFIX + ".pending";
+    private static final String TEMPORARY = SUFFIX + ".tmp";
+    private static final String NO_FACTORY = "_unassigned";
+    
+    private final Path directory;
+    private final boolean enabled;
+    private final Map<Path, SegmentFooter> footers = new ConcurrentHashMap<>();
+    private final Counter segmentsRead;
+    private final Counter segmentsSkipped;
+    
+    public ArchiveStore(@Value("${events.archive.enabled:false}") boolean enabled,
+                        @Value("${events.archive.directory:archive}") Path directory,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = directory.toAbsolutePath();
+        this.segmentsRead = Counter.builder("events.archive.segments")
+            .description("Archive segments opened or skipped by stats queries")
+            .tag("result", "read")
+            .register(meterRegistry);
+        this.segmentsSkipped = Counter.builder("events.archive.segments")
+            .description("Archive segments opened or skipped by stats queries")
+            .tag("result", "skipped")
+            .register(meterRegistry);
+        if (enabled) {
+            rescan();
+            log.info("Event archive at {} with {} segments", this.directory, footers.size());
+        }
+    }
+    
+    /**
+     * Exclusive upper bound of the archived event times, if anything is archived. Windows that
+     * start at or after it need no archive lookup.
+     */
+    public Optional<Instant> archivedUntil() {
+        return footers.values().stream()
+            .map(SegmentFooter::maxEventTime)
+            .filter(Objects::nonNull)
+            .max(Instant::compareTo)
+            .map(max -> max.plusNanos(1000));
+    }
+    
+    /**
+     * Write a segment next to its final place, under a pending name; it only becomes visible
+     * once {@link Staged#publish() published}.
+     */
+    public Staged stage(String factoryId, LocalDate day, String name, List<Event> events) throws IOException {
+        Path partition = directory.resolve(factoryId == null ? NO_FACTORY : URLEncoder.encode(factoryId, StandardCharsets.UTF_8))
+            .resolve(day.toString());
+        Files.createDirectories(partition);
+        Path temporary = partition.resolve(name + TEMPORARY);
+        Path pending = partition.resolve(name + PENDING);
+        SegmentFooter footer = EventSegment.write(temporary, factoryId, day, events);
+        Files.move(temporary, pending, StandardCopyOption.ATOMIC_MOVE);
+        return new Staged(pending, partition.resolve(name + SUFFIX), footer);
+    }
+    
+    /**
+     * Segments staged but neither published nor discarded, last modified before {@code before}
+     * so that other nodes' archive runs still in progress are left alone. Half-written
+     * {@code .tmp} files that old are deleted; they never belonged to a committed run.
+     */
+    public List<Staged> orphans(Instant before) {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Staged> orphans = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory, 3)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = file.getFileName().toString();
+                if (!(name.endsWith(PENDING) || name.endsWith(TEMPORARY))
+                        || !Files.getLastModifiedTime(file).toInstant().isBefore(before)) {
+                    continue;
+                }
+                if (name.endsWith(TEMPORARY)) {
+                    log.warn("Removing unfinished archive segment {}", file);
+                    Files.deleteIfExists(file);
+                } else {
+                    Path target = file.resolveSibling(name.substring(0, name.length() - PENDING.length()) + SUFFIX);
+                    orphans.add(new Staged(file, target, EventSegment.readFooter(file)));
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not scan event archive {} for staged segments", directory, e);
+        }
+        return orphans;
+    }
+    
+    /**
+     * {events, defects} of the machine in each window from archived rows, in window order;
+     * defectCount = -1 is excluded from defect sums, as in the hot queries.
+     */
+    public List<long[]> machineTotals(String machineId, List<StatsWindow> windows) {
+        long[][] totals = new long[windows.size()][2];
+        Instant from = windows.stream().map(StatsWindow::getStart).min(Instant::compareTo).orElseThrow();
+        Instant to = windows.stream().map(StatsWindow::getEnd).max(Instant::compareTo).orElseThrow();
+        long[] starts = windows.stream().mapToLong(window -> EventSegment.micros(window.getStart())).toArray();
+        long[] ends = windows.stream().mapToLong(window -> EventSegment.micros(window.getEnd())).toArray();
+        for (Map.Entry<Path, SegmentFooter> segment : footers.entrySet()) {
+            SegmentFooter footer = segment.getValue();
+            if (!footer.overlaps(from, to) || !footer.containsMachine(machineId)) {
+                segmentsSkipped.increment();
+                continue;
+            }
+            EventSegment.Rows rows = read(segment.getKey(), footer, EnumSet.of(Column.EVENT_TIME, Column.MACHINE, Column.DEFECTS));
+            int machine = footer.machines().indexOf(machineId);
+            for (int row = firstAtOrAfter(rows, EventSegment.micros(from)); row < rows.size(); row++) {
+                long time = rows.eventTime(row);
+                if (time >= EventSegment.micros(to)) {
+                    break;
+                }
+                if (rows.machineIndex(row) != machine) {
+                    continue;
+                }
+                for (int i = 0; i < totals.length; i++) {
+                    if (time >= starts[i] && time < ends[i]) {
+                        totals[i][0]++;
+                        if (rows.defects(row) >= 0) {
+                            totals[i][1] += rows.defects(row);
+                        }
+                    }
+                }
+            }
+        }
+        return Arrays.asList(totals);
+    }
+    
+    /**
+     * {defects, events} per line of the factory in [from, to) from archived rows, counting only
+     * rows with a line and a known defect count, as the hot top-defect-lines query does.
+     */
+    public Map<String, long[]> lineTotals(String factoryId, Instant from, Instant to) {
+        Map<String, long[]> totals = new HashMap<>();
+        long end = EventSegment.micros(to);
+        for (Map.Entry<Path, SegmentFooter> segment : footers.entrySet()) {
+            SegmentFooter footer = segment.getValue();
+            if (!Objects.equals(footer.factoryId(), factoryId) || !footer.overlaps(from, to)) {
+                segmentsSkipped.increment();
+                continue;
+            }
+            EventSegment.Rows rows = read(segment.getKey(), footer, EnumSet.of(Column.EVENT_TIME, Column.LINE, Column.DEFECTS));
+            for (int row = firstAtOrAfter(rows, EventSegment.micros(from)); row < rows.size() && rows.eventTime(row) < end; row++) {
+                String lineId = rows.lineId(row);
+                if (lineId != null && rows.defects(row) >= 0) {
+                    long[] line = totals.computeIfAbsent(lineId, id -> new long[2]);
+                    line[0] += rows.defects(row);
+                    line[1]++;
+                }
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Reload footers of segments added or removed on disk since the last scan. Staged files are
+     * not segments yet and are skipped.
+     */
+    @Scheduled(fixedDelayString = "${events.archive.rescan-interval-ms:60000}")
+    public void rescan() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        Set<Path> present = new HashSet<>();
+        try (Stream<Path> files = Files.walk(directory, 3)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(file -> {
+                present.add(file);
+                footers.computeIfAbsent(file, this::readFooter);
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not scan event archive {}", directory, e);
+            return;
+        }
+        footers.keySet().retainAll(present);
+    }
+    
+    private SegmentFooter readFooter(Path file) {
+        try {
+            return EventSegment.readFooter(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private EventSegment.Rows read(Path file, SegmentFooter footer, Set<Column> columns) {
+        segmentsRead.increment();
+        try {
+            return EventSegment.readColumns(file, footer, columns);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive segment " + file, e);
+        }
+    }
+    
+    /**
+     * Rows are sorted by event time; index of the first at or after {@code micros}.
+     */
+    private static int firstAtOrAfter(EventSegment.Rows rows, long micros) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows.eventTime(mid) < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * A written segment not yet visible to queries.
+     */
+    public final class Staged {
+        
+        private final Path pending;
+        private final Path target;
+        private final SegmentFooter footer;
+        
+        private Staged(Path pending, Path target, SegmentFooter footer) {
+            this.pending = pending;
+            this.target = target;
+            this.footer = footer;
+        }
+        
+        public SegmentFooter footer() {
+            return footer;
+        }
+        
+        /**
+         * Path of the published segment relative to the archive directory, the same on every
+         * node sharing it.
+         */
+        public String name() {
+            return directory.relativize(target).toString().replace(File.separatorChar, '/');
+        }
+        
+        /**
+         * Move the segment into place and make it visible to queries.
+         */
+        public void publish() throws IOException {
+            Files.move(pending, target, StandardCopyOption.ATOMIC_MOVE);
+            footers.put(target, footer);
+        }
+        
+        /**
+         * Remove the segment, published or not.
+         */
+        public void discard() {
+            footers.remove(target);
+            try {
+                Files.deleteIfExists(pending);
+                Files.deleteIfExists(target);
+            } catch (IOException e) {
+                log.error("Could not remove archive segment {}; its events may be counted twice", target, e);
+            }
+        }
+    }
+}
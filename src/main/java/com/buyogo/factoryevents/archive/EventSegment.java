@@ -0,0 +1,355 @@
+package com.buyogo.factoryevents.archive;
+
+import com.buyogo.factoryevents.entity.Event;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar file holding the archived events of one factory and UTC day, sorted by event time.
+ *
+ * <pre>
+ * [column 0] ... [column n-1]  each column deflated on its own
+ * [footer]                     {@link SegmentFooter}: partition, row count, min/max event time,
+ *                              machine and line dictionaries, column offsets and lengths
+ * int footer length, int MAGIC
+ * </pre>
+ *
+ * Column encodings, all with zig-zag varints: event time as deltas from the previous row
+ * (the first from 0), received time as the delay after event time, machine and line as
+ * dictionary indexes (line 0 is null), duration and defect count as plain values, event id
+ * and payload hash as length-prefixed UTF-8. Times are epoch microseconds, the database's
+ * precision. A reader inflates only the columns its query needs.
+ */
+public final class EventSegment {
+    
+    static final int MAGIC = 0x46455331; // "FES1"
+    
+    public enum Column {
+        EVENT_ID, EVENT_TIME, RECEIVED_TIME, MACHINE, LINE, DURATION, DEFECTS, PAYLOAD_HASH
+    }
+    
+    private EventSegment() {
+    }
+    
+    /**
+     * Write the events, which must all belong to the footer's partition, to {@code file}.
+     */
+    public static SegmentFooter write(Path file, String factoryId, LocalDate day, List<Event> events) throws IOException {
+        List<Event> rows = new ArrayList<>(events);
+        rows.sort(Comparator.comparing(Event::getEventTime).thenComparing(Event::getEventId));
+        Dictionary machines = new Dictionary();
+        Dictionary lines = new Dictionary();
+        Encoder[] columns = new Encoder[Column.values().length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Encoder();
+        }
+        long previousTime = 0;
+        for (Event event : rows) {
+            long eventTime = micros(event.getEventTime());
+            columns[Column.EVENT_ID.ordinal()].string(event.getEventId());
+            columns[Column.EVENT_TIME.ordinal()].varLong(eventTime - previousTime);
+            columns[Column.RECEIVED_TIME.ordinal()].varLong(micros(event.getReceivedTime()) - eventTime);
+            columns[Column.MACHINE.ordinal()].varLong(machines.index(event.getMachineId()));
+            columns[Column.LINE.ordinal()].varLong(event.getLineId() == null ? 0 : lines.index(event.getLineId()) + 1);
+            columns[Column.DURATION.ordinal()].varLong(event.getDurationMs());
+            columns[Column.DEFECTS.ordinal()].varLong(event.getDefectCount());
+            columns[Column.PAYLOAD_HASH.ordinal()].string(event.getPayloadHash());
+            previousTime = eventTime;
+        }
+        
+        long[] offsets = new long[columns.length];
+        int[] lengths = new int[columns.length];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            long offset = 0;
+            for (int i = 0; i < columns.length; i++) {
+                byte[] bytes = columns[i].deflate();
+                out.write(bytes);
+                offsets[i] = offset;
+                lengths[i] = bytes.length;
+                offset += bytes.length;
+            }
+            SegmentFooter footer = new SegmentFooter(factoryId, day, rows.size(),
+                rows.isEmpty() ? null : rows.get(0).getEventTime(),
+                rows.isEmpty() ? null : rows.get(rows.size() - 1).getEventTime(),
+                machines.values, lines.values, offsets, lengths);
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            footer.writeTo(new DataOutputStream(footerBytes));
+            DataOutputStream tail = new DataOutputStream(out);
+            footerBytes.writeTo(tail);
+            tail.writeInt(footerBytes.size());
+            tail.writeInt(MAGIC);
+            tail.flush();
+            return footer;
+        }
+    }
+    
+    /**
+     * Read only the footer: the last 8 bytes, then the footer itself.
+     */
+    public static SegmentFooter readFooter(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8) {
+                throw new IOException("Not an event segment: " + file);
+            }
+            ByteBuffer tail = read(channel, size - 8, 8);
+            int footerLength = tail.getInt();
+            if (tail.getInt() != MAGIC || footerLength < 0 || footerLength > size - 8) {
+                throw new IOException("Not an event segment: " + file);
+            }
+            ByteBuffer footer = read(channel, size - 8 - footerLength, footerLength);
+            return SegmentFooter.readFrom(new DataInputStream(new ByteArrayInputStream(
+                footer.array(), 0, footerLength)));
+        }
+    }
+    
+    /**
+     * Inflate and decode the requested columns; the others stay null in the result.
+     */
+    public static Rows readColumns(Path file, SegmentFooter footer, Set<Column> wanted) throws IOException {
+        Rows rows = new Rows(footer);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (Column column : EnumSet.copyOf(wanted)) {
+                Decoder decoder = new Decoder(inflate(read(channel, footer.columnOffset(column), footer.columnLength(column))));
+                int count = footer.rows();
+                switch (column) {
+                    case EVENT_ID -> rows.eventIds = decoder.strings(count);
+                    case PAYLOAD_HASH -> rows.payloadHashes = decoder.strings(count);
+                    case EVENT_TIME -> {
+                        long[] times = new long[count];
+                        long time = 0;
+                        for (int i = 0; i < count; i++) {
+                            time += decoder.varLong();
+                            times[i] = time;
+                        }
+                        rows.eventTimes = times;
+                    }
+                    case RECEIVED_TIME -> rows.receivedDelays = decoder.longs(count);
+                    case MACHINE -> rows.machines = decoder.ints(count);
+                    case LINE -> rows.lines = decoder.ints(count);
+                    case DURATION -> rows.durations = decoder.longs(count);
+                    case DEFECTS -> rows.defects = decoder.ints(count);
+                }
+            }
+        }
+        return rows;
+    }
+    
+    static long micros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+    
+    static Instant instant(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+    
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated event segment");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private static byte[] inflate(ByteBuffer compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, compressed.limit());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.limit() * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated event segment column");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt event segment column", e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    /**
+     * Decoded columns of one segment, row-aligned; times in epoch microseconds.
+     */
+    public static final class Rows {
+        
+        private final SegmentFooter footer;
+        String[] eventIds;
+        long[] eventTimes;
+        long[] receivedDelays;
+        int[] machines;
+        int[] lines;
+        long[] durations;
+        int[] defects;
+        String[] payloadHashes;
+        
+        Rows(SegmentFooter footer) {
+            this.footer = footer;
+        }
+        
+        public int size() {
+            return footer.rows();
+        }
+        
+        public long eventTime(int row) {
+            return eventTimes[row];
+        }
+        
+        public String machineId(int row) {
+            return footer.machines().get(machines[row]);
+        }
+        
+        /**
+         * @return the row's line id, or null
+         */
+        public String lineId(int row) {
+            return lines[row] == 0 ? null : footer.lines().get(lines[row] - 1);
+        }
+        
+        public int machineIndex(int row) {
+            return machines[row];
+        }
+        
+        public int defects(int row) {
+            return defects[row];
+        }
+        
+        /**
+         * The whole row as an event; needs every column.
+         */
+        public Event event(int row) {
+            return Event.builder()
+                .eventId(eventIds[row])
+                .eventTime(instant(eventTimes[row]))
+                .receivedTime(instant(eventTimes[row] + receivedDelays[row]))
+                .machineId(machineId(row))
+                .lineId(lineId(row))
+                .factoryId(footer.factoryId())
+                .durationMs(durations[row])
+                .defectCount(defects[row])
+                .payloadHash(payloadHashes[row])
+                .build();
+        }
+    }
+    
+    private static final class Dictionary {
+        final List<String> values = new ArrayList<>();
+        final Map<String, Integer> indexes = new HashMap<>();
+        
+        int index(String value) {
+            return indexes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+    
+    private static final class Encoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        void varLong(long value) {
+            long zigZag = (value << 1) ^ (value >> 63);
+            while ((zigZag & ~0x7FL) != 0) {
+                bytes.write((int) ((zigZag & 0x7F) | 0x80));
+                zigZag >>>= 7;
+            }
+            bytes.write((int) zigZag);
+        }
+        
+        void string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varLong(utf8.length);
+            bytes.write(utf8, 0, utf8.length);
+        }
+        
+        byte[] deflate() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.size() / 3));
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+                bytes.writeTo(deflating);
+            } finally {
+                deflater.end();
+            }
+            return out.toByteArray();
+        }
+    }
+    
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+        
+        Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+        
+        long varLong() {
+            long zigZag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                zigZag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+        
+        long[] longs(int count) {
+            long[] values = new long[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = varLong();
+            }
+            return values;
+        }
+        
+        int[] ints(int count) {
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = (int) varLong();
+            }
+            return values;
+        }
+        
+        String[] strings(int count) {
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                int length = (int) varLong();
+                values[i] = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+            return values;
+        }
+    }
+}
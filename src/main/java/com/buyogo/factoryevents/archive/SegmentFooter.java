@@ -0,0 +1,161 @@
+package com.buyogo.factoryevents.archive;
+
+import com.buyogo.factoryevents.archive.EventSegment.Column;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Metadata at the end of an {@link EventSegment}: enough to decide from the footer alone whether
+ * a query can skip the file (factory, day, event time range, machines present), and where each
+ * column starts.
+ */
+public final class SegmentFooter {
+    
+    private static final int VERSION = 1;
+    
+    private final String factoryId;
+    private final LocalDate day;
+    private final int rows;
+    private final Instant minEventTime;
+    private final Instant maxEventTime;
+    private final List<String> machines;
+    private final List<String> lines;
+    private final Set<String> machineSet;
+    private final long[] columnOffsets;
+    private final int[] columnLengths;
+    
+    SegmentFooter(String factoryId, LocalDate day, int rows, Instant minEventTime, Instant maxEventTime,
+                  List<String> machines, List<String> lines, long[] columnOffsets, int[] columnLengths) {
+        this.factoryId = factoryId;
+        this.day = day;
+        this.rows = rows;
+        this.minEventTime = minEventTime;
+        this.maxEventTime = maxEventTime;
+        this.machines = List.copyOf(machines);
+        this.lines = List.copyOf(lines);
+        this.machineSet = new HashSet<>(machines);
+        this.columnOffsets = columnOffsets;
+        this.columnLengths = columnLengths;
+    }
+    
+    /**
+     * @return the factory of every row, or null for events without one
+     */
+    public String factoryId() {
+        return factoryId;
+    }
+    
+    public LocalDate day() {
+        return day;
+    }
+    
+    public int rows() {
+        return rows;
+    }
+    
+    public Instant minEventTime() {
+        return minEventTime;
+    }
+    
+    public Instant maxEventTime() {
+        return maxEventTime;
+    }
+    
+    public List<String> machines() {
+        return machines;
+    }
+    
+    public List<String> lines() {
+        return lines;
+    }
+    
+    /**
+     * Whether any row can fall in [from, to).
+     */
+    public boolean overlaps(Instant from, Instant to) {
+        return rows > 0 && minEventTime.isBefore(to) && !maxEventTime.isBefore(from);
+    }
+    
+    public boolean containsMachine(String machineId) {
+        return machineSet.contains(machineId);
+    }
+    
+    long columnOffset(Column column) {
+        return columnOffsets[column.ordinal()];
+    }
+    
+    int columnLength(Column column) {
+        return columnLengths[column.ordinal()];
+    }
+    
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeBoolean(factoryId != null);
+        if (factoryId != null) {
+            out.writeUTF(factoryId);
+        }
+        out.writeLong(day.toEpochDay());
+        out.writeInt(rows);
+        if (rows > 0) {
+            out.writeLong(EventSegment.micros(minEventTime));
+            out.writeLong(EventSegment.micros(maxEventTime));
+        }
+        writeStrings(out, machines);
+        writeStrings(out, lines);
+        out.writeInt(columnOffsets.length);
+        for (int i = 0; i < columnOffsets.length; i++) {
+            out.writeLong(columnOffsets[i]);
+            out.writeInt(columnLengths[i]);
+        }
+        out.flush();
+    }
+    
+    static SegmentFooter readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported event segment version " + version);
+        }
+        String factoryId = in.readBoolean() ? in.readUTF() : null;
+        LocalDate day = LocalDate.ofEpochDay(in.readLong());
+        int rows = in.readInt();
+        Instant min = rows > 0 ? EventSegment.instant(in.readLong()) : null;
+        Instant max = rows > 0 ? EventSegment.instant(in.readLong()) : null;
+        List<String> machines = readStrings(in);
+        List<String> lines = readStrings(in);
+        int columns = in.readInt();
+        if (columns != Column.values().length) {
+            throw new IOException("Expected " + Column.values().length + " columns but the segment has " + columns);
+        }
+        long[] offsets = new long[columns];
+        int[] lengths = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            offsets[i] = in.readLong();
+            lengths[i] = in.readInt();
+        }
+        return new SegmentFooter(factoryId, day, rows, min, max, machines, lines, offsets, lengths);
+    }
+    
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,86 @@
+package com.buyogo.factoryevents.cli;
+
+import com.buyogo.factoryevents.FactoryEventsApplication;
+import com.buyogo.factoryevents.dto.BackfillResult;
+import com.buyogo.factoryevents.service.BackfillService;
+import com.buyogo.factoryevents.service.EventExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@code java -jar factory-events.jar backfill <file> [--format=ndjson|csv] [--checkpoint=<path>] [--defer-indexes]}
+ *
+ * <p>Starts the application without its web server, loads the file with {@link BackfillService}
+ * and exits: 0 when every range loaded, 1 when the load failed, 2 on bad arguments. The format
+ * defaults from the file extension and the checkpoint to {@code <file>.checkpoint}; rerunning
+ * the same command resumes after the last loaded range. Other {@code --name=value} arguments
+ * override application properties as usual, e.g. {@code --events.backfill.threads=8}.
+ */
+@Slf4j
+public final class BackfillCommand {
+    
+    public static final String NAME = "backfill";
+    
+    private static final String USAGE =
+        "Usage: backfill <file> [--format=ndjson|csv] [--checkpoint=<path>] [--defer-indexes]";
+    
+    private BackfillCommand() {
+    }
+    
+    /**
+     * Run the backfill for the arguments following the command name and return the exit code.
+     */
+    public static int run(String[] args) {
+        DefaultApplicationArguments arguments = new DefaultApplicationArguments(args);
+        List<String> files = arguments.getNonOptionArgs();
+        if (files.size() != 1 || !Files.isRegularFile(Path.of(files.get(0)))) {
+            System.err.println(files.size() == 1 ? "No such file: " + files.get(0) : USAGE);
+            return 2;
+        }
+        Path file = Path.of(files.get(0));
+        String formatName = option(arguments, "format",
+            file.toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? "csv" : "ndjson");
+        EventExportService.Format format;
+        try {
+            format = EventExportService.Format.parse(formatName);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unsupported format: " + formatName);
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path checkpoint = Path.of(option(arguments, "checkpoint", file + ".checkpoint"));
+        boolean deferIndexes = arguments.containsOption("defer-indexes");
+        
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FactoryEventsApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(args);
+        int exitCode;
+        try {
+            BackfillResult result = context.getBean(BackfillService.class).run(file, format, checkpoint, deferIndexes);
+            System.out.printf("Loaded %d lines from %d of %d ranges in %ds: accepted=%d deduped=%d updated=%d rejected=%d%n",
+                result.getLines(), result.getRanges() - result.getSkippedRanges(), result.getRanges(),
+                result.getElapsed().toSeconds(), result.getAccepted(), result.getDeduped(), result.getUpdated(),
+                result.getRejected());
+            exitCode = 0;
+        } catch (Exception e) {
+            log.error("Backfill of {} failed; rerun the same command to resume", file, e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        return SpringApplication.exit(context, () -> code);
+    }
+    
+    private static String option(DefaultApplicationArguments arguments, String name, String defaultValue) {
+        List<String> values = arguments.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(values.size() - 1);
+    }
+}
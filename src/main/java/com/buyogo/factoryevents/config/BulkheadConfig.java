@@ -0,0 +1,33 @@
+package com.buyogo.factoryevents.config;
+
+import com.buyogo.factoryevents.service.Bulkhead;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Request-thread bulkheads for the two workloads: ingestion (writes) and stats/export (reads).
+ * Each should allow a little more concurrency than its connection pool has connections.
+ */
+@Configuration
+public class BulkheadConfig {
+    
+    @Bean
+    public Bulkhead writeBulkhead(MeterRegistry meterRegistry,
+                                  @Value("${bulkhead.write.max-concurrent:20}") int maxConcurrent,
+                                  @Value("${bulkhead.write.max-queued:50}") int maxQueued,
+                                  @Value("${bulkhead.write.max-wait:PT2S}") Duration maxWait) {
+        return new Bulkhead("write", maxConcurrent, maxQueued, maxWait, meterRegistry);
+    }
+    
+    @Bean
+    public Bulkhead readBulkhead(MeterRegistry meterRegistry,
+                                 @Value("${bulkhead.read.max-concurrent:20}") int maxConcurrent,
+                                 @Value("${bulkhead.read.max-queued:50}") int maxQueued,
+                                 @Value("${bulkhead.read.max-wait:PT1S}") Duration maxWait) {
+        return new Bulkhead("read", maxConcurrent, maxQueued, maxWait, meterRegistry);
+    }
+}
@@ -0,0 +1,132 @@
+package com.buyogo.factoryevents.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Separate connection pools for ingestion and analytics, so a burst of heavy stats queries
+ * cannot take every connection ingestion needs, and vice versa.
+ *
+ * <p>Read-only transactions ({@code @Transactional(readOnly = true)} or a read-only
+ * TransactionTemplate) borrow from the read pool, everything else from the write pool. The
+ * lazy proxy defers the choice until the first statement, by which time the transaction's
+ * read-only flag is known.
+ *
+ * <p>Work bound to another shard through {@link ShardContext} goes to that shard's single pool
+ * instead; an unknown shard name fails rather than falling back to the default database.
+ *
+ * <p>With {@code events.query-profiling.enabled} (the default) connections are wrapped by
+ * {@link StatementCapturingDataSource}, so profiled repository calls can report their statements.
+ */
+@Configuration
+public class DataSourceConfig {
+    
+    private enum Pool { WRITE, READ }
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+    
+    /**
+     * Same database by default; set {@code spring.datasource.read.hikari.jdbc-url} to point
+     * reads at a replica.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.read.hikari")
+    public HikariDataSource readDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+    
+    @Bean
+    @ConfigurationProperties("events.sharding")
+    public ShardingProperties shardingProperties() {
+        return new ShardingProperties();
+    }
+    
+    /**
+     * One pool per extra shard, created with its schema when {@code events.sharding.init-schema}
+     * is set (skipped like the primary's while unchanged). Closed with the context.
+     */
+    @Bean
+    public ShardDataSources shardDataSources(ShardingProperties properties,
+                                             @Value("${events.schema.skip-unchanged:true}") boolean skipUnchanged) {
+        DatabaseInitializationSettings schema = new DatabaseInitializationSettings();
+        schema.setSchemaLocations(List.of("classpath:schema.sql"));
+        schema.setMode(DatabaseInitializationMode.ALWAYS);
+        Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+        properties.getShards().forEach((name, config) -> {
+            if (ShardingProperties.DEFAULT_SHARD.equals(name)) {
+                throw new IllegalStateException("events.sharding.shards." + name + " is reserved for the primary datasource");
+            }
+            if (config.getPoolName() == null) {
+                config.setPoolName("FactoryEventsShard-" + name);
+            }
+            HikariDataSource pool = new HikariDataSource(config);
+            pools.put(name, pool);
+            if (properties.isInitSchema()) {
+                new VersionedSchemaInitializer(pool, schema, skipUnchanged).initializeDatabase();
+            }
+        });
+        return new ShardDataSources(pools);
+    }
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+                                 @Qualifier("readDataSource") DataSource readDataSource,
+                                 ShardDataSources shardDataSources,
+                                 @Value("${events.query-profiling.enabled:true}") boolean queryProfiling) {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                String shard = ShardContext.current();
+                if (shard != null && !ShardingProperties.DEFAULT_SHARD.equals(shard)) {
+                    return shard;
+                }
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Pool.READ : Pool.WRITE;
+            }
+        };
+        Map<Object, Object> targets = new HashMap<>(shardDataSources.pools);
+        targets.put(Pool.WRITE, writeDataSource);
+        targets.put(Pool.READ, readDataSource);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(writeDataSource);
+        routing.setLenientFallback(false);
+        routing.afterPropertiesSet();
+        DataSource lazy = new LazyConnectionDataSourceProxy(routing);
+        return queryProfiling ? new StatementCapturingDataSource(lazy) : lazy;
+    }
+    
+    public static class ShardDataSources implements AutoCloseable {
+        
+        private final Map<String, HikariDataSource> pools;
+        
+        ShardDataSources(Map<String, HikariDataSource> pools) {
+            this.pools = pools;
+        }
+        
+        @Override
+        public void close() {
+            pools.values().forEach(HikariDataSource::close);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.buyogo.factoryevents.config;
+
+import com.buyogo.factoryevents.config.StatementCapturingDataSource.Captured;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.service.SlowQueryLog;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Profiles every {@link EventRepository} call: times it and captures the statements it runs
+ * (through {@link StatementCapturingDataSource}), then hands both to {@link SlowQueryLog}.
+ * Off with {@code events.query-profiling.enabled=false}, which also leaves the DataSource
+ * unwrapped.
+ */
+@Configuration
+@ConditionalOnProperty(name = "events.query-profiling.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryProfilingConfig {
+    
+    @Bean
+    public static BeanPostProcessor eventRepositoryProfiler(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean
+                        && EventRepository.class.equals(factoryBean.getObjectType())) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                        (proxyFactory, information) -> proxyFactory.addAdvice(
+                            profiler(information.getRepositoryInterface().getSimpleName(), slowQueryLog))));
+                }
+                return bean;
+            }
+        };
+    }
+    
+    private static MethodInterceptor profiler(String repository, ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return invocation -> {
+            List<Captured> statements = new ArrayList<>();
+            List<Captured> previous = StatementCapturingDataSource.startCapture(statements);
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                long nanos = System.nanoTime() - start;
+                StatementCapturingDataSource.endCapture(previous);
+                slowQueryLog.getObject().record(repository + "." + invocation.getMethod().getName(), nanos, statements);
+            }
+        };
+    }
+}
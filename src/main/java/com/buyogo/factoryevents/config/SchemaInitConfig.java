@@ -0,0 +1,28 @@
+package com.buyogo.factoryevents.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * {@code spring.sql.init.*} as usual, except that unchanged scripts are skipped on boot while
+ * {@code events.schema.skip-unchanged} is set; see {@link VersionedSchemaInitializer}.
+ */
+@Configuration
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+public class SchemaInitConfig {
+    
+    @Bean
+    public VersionedSchemaInitializer dataSourceScriptDatabaseInitializer(
+            DataSource dataSource,
+            SqlInitializationProperties properties,
+            @Value("${events.schema.skip-unchanged:true}") boolean skipUnchanged) {
+        return new VersionedSchemaInitializer(dataSource,
+            SqlDataSourceScriptDatabaseInitializer.getSettings(properties), skipUnchanged);
+    }
+}
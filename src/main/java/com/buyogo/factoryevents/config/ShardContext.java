@@ -0,0 +1,34 @@
+package com.buyogo.factoryevents.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard the current thread's database work goes to; unset means the default shard. The routing
+ * DataSource reads it when a transaction first touches the database, so bind it before the
+ * transaction starts and keep it bound until the transaction ends.
+ */
+public final class ShardContext {
+    
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+    
+    private ShardContext() {
+    }
+    
+    public static String current() {
+        return CURRENT.get();
+    }
+    
+    public static <T> T callIn(String shard, Supplier<T> work) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.buyogo.factoryevents.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Factory shard map ({@code events.sharding.*}). The primary datasource is the shard named
+ * {@value #DEFAULT_SHARD}; it also holds the tables shared by all shards (idempotency keys,
+ * duration sketches and the machine directory). With no extra shards configured, nothing is
+ * sharded.
+ */
+@Data
+public class ShardingProperties {
+    
+    public static final String DEFAULT_SHARD = "default";
+    
+    /**
+     * Extra shard databases by name, each bound like {@code spring.datasource.hikari}
+     * (jdbc-url, username, password, maximum-pool-size, ...)
+     */
+    private Map<String, HikariConfig> shards = new LinkedHashMap<>();
+    
+    /**
+     * Owning shard by factoryId; unmapped factories and events without one use the default shard
+     */
+    private Map<String, String> factories = new HashMap<>();
+    
+    /**
+     * Threads writing or querying shards in parallel
+     */
+    private int fanOutThreads = 8;
+    
+    /**
+     * Run schema.sql against every extra shard at startup
+     */
+    private boolean initSchema = true;
+}
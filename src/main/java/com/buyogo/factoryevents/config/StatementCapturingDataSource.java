@@ -0,0 +1,147 @@
+package com.buyogo.factoryevents.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the SQL and bind parameters of the prepared statements a thread runs while a capture
+ * is open, so a slow repository call can be reported (and explained) with the exact statement
+ * the database saw. Outside a capture connections only pay for one proxy hop per call.
+ */
+public class StatementCapturingDataSource extends DelegatingDataSource {
+    
+    // Statements kept per capture; the rest of a long-running call is not recorded
+    private static final int MAX_STATEMENTS = 10;
+    private static final int MAX_BIND_LENGTH = 200;
+    
+    private static final ThreadLocal<List<Captured>> CAPTURE = new ThreadLocal<>();
+    
+    public StatementCapturingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+    
+    /**
+     * Record this thread's prepared statements into {@code into} until {@link #endCapture} is
+     * called with the returned value.
+     */
+    public static List<Captured> startCapture(List<Captured> into) {
+        List<Captured> previous = CAPTURE.get();
+        CAPTURE.set(into);
+        return previous;
+    }
+    
+    public static void endCapture(List<Captured> previous) {
+        if (previous == null) {
+            CAPTURE.remove();
+        } else {
+            CAPTURE.set(previous);
+        }
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+    
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(StatementCapturingDataSource.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                List<Captured> capture = CAPTURE.get();
+                if (capture != null && capture.size() < MAX_STATEMENTS
+                        && method.getName().equals("prepareStatement") && result instanceof PreparedStatement statement) {
+                    Captured captured = new Captured((String) args[0]);
+                    capture.add(captured);
+                    return record(statement, captured);
+                }
+                return result;
+            });
+    }
+    
+    private static PreparedStatement record(PreparedStatement statement, Captured captured) {
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCapturingDataSource.class.getClassLoader(),
+            new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    captured.binds.put(index, new Bind(method, args.clone()));
+                } else if (method.getName().equals("clearParameters")) {
+                    captured.binds.clear();
+                }
+                return invoke(statement, method, args);
+            });
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * One prepared statement: its SQL and the last value bound to each parameter.
+     */
+    public static final class Captured {
+        
+        private final String sql;
+        private final Map<Integer, Bind> binds = new TreeMap<>();
+        
+        Captured(String sql) {
+            this.sql = sql;
+        }
+        
+        public String sql() {
+            return sql;
+        }
+        
+        /**
+         * @return bound values in parameter order, rendered for display and truncated
+         */
+        public List<String> bindValues() {
+            List<String> values = new ArrayList<>(binds.size());
+            for (Bind bind : binds.values()) {
+                String value = bind.method.getName().equals("setNull") ? "null" : String.valueOf(bind.args[1]);
+                values.add(value.length() > MAX_BIND_LENGTH ? value.substring(0, MAX_BIND_LENGTH) + "..." : value);
+            }
+            return values;
+        }
+        
+        /**
+         * Bind the same values, with the same setter calls, to another statement with the same
+         * parameters (e.g. the statement prefixed with EXPLAIN).
+         */
+        public void bindTo(PreparedStatement statement) throws SQLException {
+            for (Bind bind : binds.values()) {
+                try {
+                    bind.method.invoke(statement, bind.args);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof SQLException cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+    
+    private record Bind(Method method, Object[] args) {
+    }
+}
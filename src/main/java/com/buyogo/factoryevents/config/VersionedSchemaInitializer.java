@@ -0,0 +1,80 @@
+package com.buyogo.factoryevents.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * schema.sql initialization that runs the scripts only when they changed. The SHA-256 of the
+ * resolved scripts is recorded in {@code schema_version} after they run; while a later boot finds
+ * the same checksum there the scripts are skipped, saving a round of DDL statements on every
+ * start. Changed scripts (or a database without the table) run as before, and since schema.sql
+ * is idempotent, two nodes booting at once just both apply it.
+ *
+ * <p>Registered in place of Boot's initializer, so JPA is still ordered after it.
+ */
+@Slf4j
+public class VersionedSchemaInitializer extends SqlDataSourceScriptDatabaseInitializer {
+    
+    private final boolean skipUnchanged;
+    
+    public VersionedSchemaInitializer(DataSource dataSource, DatabaseInitializationSettings settings,
+                                      boolean skipUnchanged) {
+        super(dataSource, settings);
+        this.skipUnchanged = skipUnchanged;
+    }
+    
+    @Override
+    protected void runScripts(Scripts scripts) {
+        if (!skipUnchanged) {
+            super.runScripts(scripts);
+            return;
+        }
+        String checksum = checksum(scripts);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
+        if (isApplied(jdbcTemplate, checksum)) {
+            log.info("Schema scripts unchanged (checksum {}); skipping initialization", checksum.substring(0, 12));
+            return;
+        }
+        super.runScripts(scripts);
+        jdbcTemplate.update("INSERT INTO schema_version (checksum, applied_at) VALUES (?, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT DO NOTHING", checksum);
+        log.info("Applied schema scripts (checksum {})", checksum.substring(0, 12));
+    }
+    
+    private static boolean isApplied(JdbcTemplate jdbcTemplate, String checksum) {
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM schema_version WHERE checksum = ?", Integer.class, checksum);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            // First boot against this database: the table is created by the scripts
+            return false;
+        }
+    }
+    
+    private static String checksum(Scripts scripts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Resource script : scripts) {
+                digest.update(script.getContentAsByteArray());
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read schema script", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.buyogo.factoryevents.controller;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hashes the raw body of keyed batch requests while Jackson reads it, so a retry can be matched
+ * against the original request without a second pass over the payload.
+ */
+@ControllerAdvice(assignableTypes = EventController.class)
+public class BatchDigestAdvice extends RequestBodyAdviceAdapter {
+    
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String DIGEST_ATTRIBUTE = BatchDigestAdvice.class.getName() + ".body";
+    
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+    
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) throws IOException {
+        if (!inputMessage.getHeaders().containsKey(IDEMPOTENCY_KEY_HEADER)) {
+            return inputMessage;
+        }
+        DigestInputStream body = new DigestInputStream(inputMessage.getBody(), sha256());
+        RequestContextHolder.currentRequestAttributes()
+            .setAttribute(DIGEST_ATTRIBUTE, body, RequestAttributes.SCOPE_REQUEST);
+        return new HttpInputMessage() {
+            @Override
+            public InputStream getBody() {
+                return body;
+            }
+            
+            @Override
+            public HttpHeaders getHeaders() {
+                return inputMessage.getHeaders();
+            }
+        };
+    }
+    
+    /**
+     * Hex SHA-256 of the current request body. Jackson may stop reading right after the closing
+     * bracket, so whatever it left unread is drained first to make the digest independent of
+     * how the body arrived.
+     */
+    static String bodyDigest() throws IOException {
+        Object attribute = RequestContextHolder.currentRequestAttributes()
+            .getAttribute(DIGEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!(attribute instanceof DigestInputStream body)) {
+            throw new IllegalStateException("Request body was not digested");
+        }
+        body.transferTo(OutputStream.nullOutputStream());
+        return HexFormat.of().formatHex(body.getMessageDigest().digest());
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
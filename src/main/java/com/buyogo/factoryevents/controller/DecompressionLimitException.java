@@ -0,0 +1,13 @@
+package com.buyogo.factoryevents.controller;
+
+import java.io.IOException;
+
+/**
+ * Raised while reading a compressed request body that inflates past the configured limits.
+ */
+public class DecompressionLimitException extends IOException {
+    
+    public DecompressionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,35 @@
+package com.buyogo.factoryevents.controller;
+
+import com.buyogo.factoryevents.service.DurationSketchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code POST /actuator/durationsketches} with {@code {"from": ..., "to": ...}} (ISO-8601):
+ * rebuilds the duration sketches of the hours overlapping the window from the events table,
+ * e.g. after a crash lost deltas that had not been flushed yet.
+ */
+@Component
+@Endpoint(id = "durationsketches")
+@RequiredArgsConstructor
+public class DurationSketchesEndpoint {
+    
+    private final DurationSketchService durationSketchService;
+    
+    @WriteOperation
+    public Map<String, Object> rebuild(String from, String to) {
+        Instant start = Instant.parse(from);
+        Instant end = Instant.parse(to);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("from", start.toString());
+        body.put("to", end.toString());
+        body.put("sketches", durationSketchService.rebuild(start, end));
+        return body;
+    }
+}
@@ -1,14 +1,39 @@
 package com.buyogo.factoryevents.controller;
 
 import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventExportRow;
+import com.buyogo.factoryevents.dto.EventLookupResponse;
 import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.dto.KeysetCursor;
+import com.buyogo.factoryevents.service.AdmissionRejectedException;
+import com.buyogo.factoryevents.service.Bulkhead;
+import com.buyogo.factoryevents.service.BulkheadFullException;
+import com.buyogo.factoryevents.service.EventChangeService;
+import com.buyogo.factoryevents.service.EventExportService;
+import com.buyogo.factoryevents.service.EventLookupService;
 import com.buyogo.factoryevents.service.EventService;
+import com.buyogo.factoryevents.service.GroupCommitService;
+import com.buyogo.factoryevents.service.IdempotencyService;
+import com.buyogo.factoryevents.service.IngestionAdmission;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/events")
@@ -16,14 +41,217 @@ import java.util.List;
 @Slf4j
 public class EventController {
     
+    private static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String RESUMED_HEADER = "Idempotent-Resumed";
+    
     private final EventService eventService;
+    private final GroupCommitService groupCommitService;
+    private final EventExportService eventExportService;
+    private final EventChangeService eventChangeService;
+    private final EventLookupService eventLookupService;
+    private final IdempotencyService idempotencyService;
+    private final IngestionAdmission ingestionAdmission;
+    private final Bulkhead writeBulkhead;
+    private final Bulkhead readBulkhead;
     
     @PostMapping("/batch")
-    public ResponseEntity<BatchIngestionResponse> ingestBatch(@RequestBody List<EventRequest> events) {
+    public ResponseEntity<BatchIngestionResponse> ingestBatch(
+            @RequestBody List<EventRequest> events,
+            @RequestHeader(value = BatchDigestAdvice.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
+            throws IOException {
         log.info("Received batch ingestion request with {} events", events.size());
-        BatchIngestionResponse response = eventService.processBatch(events);
+        if (idempotencyKey != null) {
+            return ingestIdempotent(events, idempotencyKey);
+        }
+        BatchIngestionResponse response = writeBulkhead.execute(() ->
+            ingestionAdmission.admit(events.size(), () -> groupCommitService.submit(events)));
+        log.info("Batch processing complete: accepted={}, deduped={}, updated={}, rejected={}", 
+            response.getAccepted(), response.getDeduped(), response.getUpdated(), response.getRejected());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/{eventId}")
+    public ResponseEntity<EventExportRow> getEvent(@PathVariable String eventId) {
+        Optional<EventSnapshot> event = readBulkhead.execute(() -> eventLookupService.find(eventId));
+        return event.map(found -> ResponseEntity.ok(EventExportRow.of(found)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping
+    public ResponseEntity<EventLookupResponse> getEvents(@RequestParam List<String> ids) {
+        Map<String, EventSnapshot> found;
+        try {
+            found = readBulkhead.execute(() -> eventLookupService.findAll(ids));
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected lookup request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        List<EventExportRow> events = new ArrayList<>(found.size());
+        found.values().forEach(event -> events.add(EventExportRow.of(event)));
+        List<String> missing = ids.stream().distinct()
+            .filter(id -> !id.isBlank() && !found.containsKey(id))
+            .toList();
+        return ResponseEntity.ok(EventLookupResponse.builder()
+            .events(events)
+            .missing(missing)
+            .build());
+    }
+    
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Void> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .build();
+    }
+    
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<Void> handleBulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .build();
+    }
+    
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<Void> handleUnreadableBody(HttpMessageNotReadableException e) {
+        if (e.getMostSpecificCause() instanceof DecompressionLimitException limit) {
+            return handleDecompressionLimit(limit);
+        }
+        log.info("Rejected unreadable request body: {}", e.getMostSpecificCause().getMessage());
+        return ResponseEntity.badRequest().build();
+    }
+    
+    @ExceptionHandler(DecompressionLimitException.class)
+    public ResponseEntity<Void> handleDecompressionLimit(DecompressionLimitException e) {
+        log.warn("Rejected compressed request body: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+    
+    private ResponseEntity<BatchIngestionResponse> ingestIdempotent(List<EventRequest> events, String idempotencyKey)
+            throws IOException {
+        String bodyDigest = BatchDigestAdvice.bodyDigest();
+        IdempotencyService.Outcome outcome;
+        try {
+            // Admitted before the idempotency transaction opens, so a queued batch holds no connection
+            outcome = writeBulkhead.execute(() -> ingestionAdmission.admit(events.size(),
+                () -> idempotencyService.execute(idempotencyKey, bodyDigest, () -> eventService.processBatch(events))));
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.info("Rejected batch: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        BatchIngestionResponse response = outcome.getResponse();
+        if (outcome.isReplayed()) {
+            return ResponseEntity.ok().header(REPLAYED_HEADER, "true").body(response);
+        }
         log.info("Batch processing complete: accepted={}, deduped={}, updated={}, rejected={}", 
             response.getAccepted(), response.getDeduped(), response.getUpdated(), response.getRejected());
+        if (outcome.isResumed()) {
+            // Rows the failed attempt already committed on some shards are counted as deduped
+            return ResponseEntity.ok().header(RESUMED_HEADER, "true").body(response);
+        }
         return ResponseEntity.ok(response);
     }
+    
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportEvents(
+            @RequestParam(required = false) String machineId,
+            @RequestParam(required = false) String factoryId,
+            @RequestParam(required = false) String lineId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        
+        log.info("Exporting events for machine={}, factory={}, line={} from {} to {} as {}",
+            machineId, factoryId, lineId, from, to, format);
+        
+        EventExportFilter filter = EventExportFilter.builder()
+            .machineId(machineId)
+            .factoryId(factoryId)
+            .lineId(lineId)
+            .from(from)
+            .to(to)
+            .build();
+        
+        EventExportService.Format exportFormat;
+        KeysetCursor after;
+        try {
+            exportFormat = EventExportService.Format.parse(format);
+            after = cursor != null ? KeysetCursor.decode(cursor) : null;
+            eventExportService.validate(filter, limit);
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        // The slot is held until the body has been streamed, not just while the page end is found
+        Bulkhead.Permit permit = readBulkhead.enter();
+        Optional<KeysetCursor> pageEnd;
+        try {
+            pageEnd = eventExportService.pageEnd(filter, after, limit);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        KeysetCursor through = pageEnd.orElse(null);
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                eventExportService.export(filter, after, through, exportFormat, out);
+            }
+        };
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType()));
+        pageEnd.ifPresent(end -> response.header("X-Next-Cursor", end.encode()));
+        return response.body(body);
+    }
+    
+    /**
+     * Events inserted or updated after the cursor, in (receivedTime, eventId) order, at most
+     * {@code limit} per page. X-Next-Cursor resumes after the last row; it is the same cursor
+     * when nothing changed. Without a cursor the feed starts at the oldest event.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<StreamingResponseBody> getChanges(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "1000") int limit,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        
+        EventExportService.Format exportFormat;
+        KeysetCursor after;
+        try {
+            exportFormat = EventExportService.Format.parse(format);
+            after = cursor != null ? KeysetCursor.decode(cursor) : null;
+            eventChangeService.validate(limit);
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected change feed request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        Bulkhead.Permit permit = readBulkhead.enter();
+        Optional<KeysetCursor> pageEnd;
+        try {
+            pageEnd = eventChangeService.pageEnd(after, limit);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        KeysetCursor through = pageEnd.orElse(null);
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                eventChangeService.write(after, through, exportFormat, out);
+            }
+        };
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType()));
+        pageEnd.map(KeysetCursor::encode)
+            .or(() -> Optional.ofNullable(cursor))
+            .ifPresent(token -> response.header("X-Next-Cursor", token));
+        return response.body(body);
+    }
 }
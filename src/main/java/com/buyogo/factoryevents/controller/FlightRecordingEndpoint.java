@@ -0,0 +1,38 @@
+package com.buyogo.factoryevents.controller;
+
+import com.buyogo.factoryevents.jfr.FlightRecording;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code GET /actuator/flightrecording}: a .jfr snapshot of the running flight recording(s),
+ * for JDK Mission Control or {@code jfr print}. 404 when nothing is recording. The temporary
+ * file is deleted once the response has been streamed.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+@RequiredArgsConstructor
+public class FlightRecordingEndpoint {
+    
+    private final FlightRecording flightRecording;
+    
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> dump() throws IOException {
+        Path file = flightRecording.dump();
+        if (file == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        return new WebEndpointResponse<>(new InputStreamResource(
+            Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE)));
+    }
+}
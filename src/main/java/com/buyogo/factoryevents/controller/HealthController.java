@@ -0,0 +1,35 @@
+package com.buyogo.factoryevents.controller;
+
+import com.buyogo.factoryevents.dto.MachineHealthResponse;
+import com.buyogo.factoryevents.service.MachineHealthEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/health")
+@RequiredArgsConstructor
+@Slf4j
+public class HealthController {
+    
+    static final String REBUILDING_HEADER = "X-Health-Rebuilding";
+    
+    private final MachineHealthEngine machineHealthEngine;
+    
+    /**
+     * Machines in Warning. While the startup replay is still running the list may be incomplete,
+     * which is flagged with {@code X-Health-Rebuilding: true}.
+     */
+    @GetMapping("/machines")
+    public ResponseEntity<List<MachineHealthResponse>> getWarningMachines() {
+        boolean rebuilding = machineHealthEngine.isRebuilding();
+        List<MachineHealthResponse> warnings = machineHealthEngine.getWarningMachines();
+        log.debug("{} machines currently in Warning", warnings.size());
+        return ResponseEntity.ok()
+            .header(REBUILDING_HEADER, String.valueOf(rebuilding))
+            .body(warnings);
+    }
+}
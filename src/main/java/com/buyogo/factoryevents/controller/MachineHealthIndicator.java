@@ -0,0 +1,26 @@
+package com.buyogo.factoryevents.controller;
+
+import com.buyogo.factoryevents.service.MachineHealthEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code machineHealth} in {@code /actuator/health}: {@code REBUILDING} while the machine health
+ * engine is still replaying recent events at startup, so warnings may be missing, then {@code UP}.
+ */
+@Component
+@RequiredArgsConstructor
+public class MachineHealthIndicator implements HealthIndicator {
+    
+    static final Status REBUILDING = new Status("REBUILDING", "Replaying recent events into machine health");
+    
+    private final MachineHealthEngine machineHealthEngine;
+    
+    @Override
+    public Health health() {
+        return machineHealthEngine.isRebuilding() ? Health.status(REBUILDING).build() : Health.up().build();
+    }
+}
@@ -0,0 +1,301 @@
+package com.buyogo.factoryevents.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes {@code Content-Encoding: gzip} and {@code deflate} request bodies on the fly. The
+ * decompressed bytes are handed straight to whoever reads the body (Jackson for the ingestion
+ * endpoints), so a batch is never held in memory in decompressed form.
+ *
+ * <p>Decompression bombs are cut off while reading: once past a small grace size, the body may
+ * not inflate more than {@code events.ingest.max-decompression-ratio} times the compressed
+ * bytes consumed, nor past {@code events.ingest.max-decompressed-bytes} in total.
+ *
+ * <p>Decoded bodies can only be read blocking. A consumer that registers a {@link ReadListener}
+ * gets 415 Unsupported Media Type with {@code Accept-Encoding: identity}, asking for the body
+ * uncompressed, instead of a failure deep inside the servlet container.
+ */
+@Component
+@Slf4j
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+    
+    private static final long RATIO_GRACE_BYTES = 1 << 20;
+    private static final int BUFFER_SIZE = 8192;
+    
+    private final int maxRatio;
+    private final long maxDecompressedBytes;
+    
+    public RequestDecompressionFilter(@Value("${events.ingest.max-decompression-ratio:100}") int maxRatio,
+                                      @Value("${events.ingest.max-decompressed-bytes:67108864}") long maxDecompressedBytes) {
+        this.maxRatio = maxRatio;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        return encoding == null || encoding.isBlank() || encoding.trim().equalsIgnoreCase("identity");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        List<String> codings = new ArrayList<>();
+        for (String coding : request.getHeader(HttpHeaders.CONTENT_ENCODING).split(",")) {
+            String normalized = coding.trim().toLowerCase(Locale.ROOT);
+            if (normalized.equals("identity")) {
+                continue;
+            }
+            if (!normalized.equals("gzip") && !normalized.equals("x-gzip") && !normalized.equals("deflate")) {
+                log.info("Rejected request with unsupported Content-Encoding: {}", coding.trim());
+                response.setHeader("Accept-Encoding", "gzip, deflate");
+                response.sendError(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+                return;
+            }
+            codings.add(normalized);
+        }
+        try {
+            chain.doFilter(new DecompressedRequest(request, codings), response);
+        } catch (NonBlockingReadException e) {
+            // Reached only when the listener was registered outside Spring MVC, which resolves it itself
+            if (response.isCommitted()) {
+                throw e;
+            }
+            log.info("Rejected non-blocking read of a compressed request body");
+            response.setHeader("Accept-Encoding", "identity");
+            response.sendError(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+        }
+    }
+    
+    private InputStream decode(InputStream raw, List<String> codings) throws IOException {
+        CountingInputStream compressed = new CountingInputStream(raw);
+        InputStream decoded = compressed;
+        // Codings are listed in the order they were applied, so undo them from the last
+        for (int i = codings.size() - 1; i >= 0; i--) {
+            decoded = codings.get(i).equals("deflate")
+                ? new InflaterInputStream(decoded, new Inflater(), BUFFER_SIZE)
+                : new GZIPInputStream(decoded, BUFFER_SIZE);
+        }
+        return new LimitedInputStream(decoded, compressed);
+    }
+    
+    private class DecompressedRequest extends HttpServletRequestWrapper {
+        
+        private final List<String> codings;
+        private ServletInputStream inputStream;
+        
+        DecompressedRequest(HttpServletRequest request, List<String> codings) {
+            super(request);
+            this.codings = codings;
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new DecodedServletInputStream(decode(super.getInputStream(), codings));
+            }
+            return inputStream;
+        }
+        
+        @Override
+        public BufferedReader getReader() throws IOException {
+            Charset charset = getCharacterEncoding() != null
+                ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+        
+        // The decoded length is unknown up front
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+        
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            if (isStrippedHeader(name)) {
+                return null;
+            }
+            return super.getHeader(name);
+        }
+        
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (isStrippedHeader(name)) {
+                return Collections.emptyEnumeration();
+            }
+            return super.getHeaders(name);
+        }
+        
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(this::isStrippedHeader);
+            return Collections.enumeration(names);
+        }
+        
+        private boolean isStrippedHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+    
+    private static class DecodedServletInputStream extends ServletInputStream {
+        
+        private final InputStream delegate;
+        private boolean finished;
+        
+        DecodedServletInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int value = delegate.read();
+            finished = value < 0;
+            return value;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = delegate.read(buffer, offset, length);
+            finished = count < 0;
+            return count;
+        }
+        
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+        
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+        
+        @Override
+        public void setReadListener(ReadListener listener) {
+            throw new NonBlockingReadException();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+    
+    /**
+     * Resolved to 415 by Spring MVC through its status, and by the filter when thrown elsewhere.
+     */
+    static class NonBlockingReadException extends ResponseStatusException {
+        
+        NonBlockingReadException() {
+            super(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Compressed request bodies can only be read blocking");
+        }
+        
+        @Override
+        public HttpHeaders getHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("Accept-Encoding", "identity");
+            return headers;
+        }
+    }
+    
+    private static class CountingInputStream extends FilterInputStream {
+        
+        private long count;
+        
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+    
+    private class LimitedInputStream extends FilterInputStream {
+        
+        private final CountingInputStream compressed;
+        private long produced;
+        
+        LimitedInputStream(InputStream in, CountingInputStream compressed) {
+            super(in);
+            this.compressed = compressed;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                produced(1);
+            }
+            return value;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                produced(read);
+            }
+            return read;
+        }
+        
+        private void produced(int bytes) throws DecompressionLimitException {
+            produced += bytes;
+            if (produced > maxDecompressedBytes) {
+                throw new DecompressionLimitException("Decompressed body exceeds " + maxDecompressedBytes + " bytes");
+            }
+            if (produced > RATIO_GRACE_BYTES && produced > (long) maxRatio * compressed.count) {
+                throw new DecompressionLimitException("Decompression ratio exceeds " + maxRatio + ":1");
+            }
+        }
+    }
+}
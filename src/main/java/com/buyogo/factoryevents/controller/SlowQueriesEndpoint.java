@@ -0,0 +1,37 @@
+package com.buyogo.factoryevents.controller;
+
+import com.buyogo.factoryevents.service.SlowQueryLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/slowqueries}: the most recent slow repository queries, newest first, with
+ * SQL, bind parameters and (when sampled) the EXPLAIN plan. {@code DELETE} empties the ring.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueriesEndpoint {
+    
+    private final SlowQueryLog slowQueryLog;
+    
+    @ReadOperation
+    public Map<String, Object> slowQueries() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("thresholdMs", slowQueryLog.thresholdMs());
+        body.put("explainSampleRate", slowQueryLog.explainSampleRate());
+        body.put("queries", slowQueryLog.recent());
+        return body;
+    }
+    
+    @DeleteOperation
+    public void clear() {
+        slowQueryLog.clear();
+    }
+}
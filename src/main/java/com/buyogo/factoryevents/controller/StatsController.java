@@ -1,15 +1,31 @@
 package com.buyogo.factoryevents.controller;
 
+import com.buyogo.factoryevents.dto.DurationPercentilesResponse;
+import com.buyogo.factoryevents.dto.EventExportFilter;
 import com.buyogo.factoryevents.dto.StatsResponse;
+import com.buyogo.factoryevents.dto.StatsWindow;
+import com.buyogo.factoryevents.dto.TimeSeriesResponse;
 import com.buyogo.factoryevents.dto.TopDefectLineResponse;
+import com.buyogo.factoryevents.service.Bulkhead;
+import com.buyogo.factoryevents.service.BulkheadFullException;
+import com.buyogo.factoryevents.service.DurationSketchService;
 import com.buyogo.factoryevents.service.StatsService;
+import com.buyogo.factoryevents.service.StatsStreamService;
+import com.buyogo.factoryevents.service.TimeSeriesService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @RestController
@@ -19,6 +35,10 @@ import java.util.List;
 public class StatsController {
     
     private final StatsService statsService;
+    private final StatsStreamService statsStreamService;
+    private final TimeSeriesService timeSeriesService;
+    private final DurationSketchService durationSketchService;
+    private final Bulkhead readBulkhead;
     
     @GetMapping
     public ResponseEntity<StatsResponse> getStats(
@@ -27,10 +47,39 @@ public class StatsController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end) {
         
         log.info("Getting stats for machine {} from {} to {}", machineId, start, end);
-        StatsResponse stats = statsService.getMachineStats(machineId, start, end);
+        StatsResponse stats = readBulkhead.execute(() -> statsService.getMachineStats(machineId, start, end));
         return ResponseEntity.ok(stats);
     }
     
+    /**
+     * Stats for several trailing windows ending at {@code end} (default now), e.g. last hour,
+     * shift, day and week, computed in one scan. Windows are ISO-8601 durations.
+     */
+    @GetMapping("/windows")
+    public ResponseEntity<List<StatsResponse>> getStatsWindows(
+            @RequestParam String machineId,
+            @RequestParam(defaultValue = "PT1H,PT8H,P1D,P7D") List<String> windows,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end) {
+        
+        Instant windowEnd = end != null ? end : Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        log.info("Getting stats for machine {} over windows {} ending {}", machineId, windows, windowEnd);
+        try {
+            List<StatsWindow> requested = windows.stream()
+                .map(window -> {
+                    Duration length = Duration.parse(window.strip());
+                    if (length.isNegative() || length.isZero()) {
+                        throw new IllegalArgumentException("Window must be positive: " + window);
+                    }
+                    return new StatsWindow(windowEnd.minus(length), windowEnd);
+                })
+                .toList();
+            return ResponseEntity.ok(readBulkhead.execute(() -> statsService.getMachineStats(machineId, requested)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.info("Rejected stats windows request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @GetMapping("/top-defect-lines")
     public ResponseEntity<List<TopDefectLineResponse>> getTopDefectLines(
             @RequestParam String factoryId,
@@ -39,7 +88,73 @@ public class StatsController {
             @RequestParam(defaultValue = "10") int limit) {
         
         log.info("Getting top {} defect lines for factory {} from {} to {}", limit, factoryId, from, to);
-        List<TopDefectLineResponse> topLines = statsService.getTopDefectLines(factoryId, from, to, limit);
+        List<TopDefectLineResponse> topLines = readBulkhead.execute(() ->
+            statsService.getTopDefectLines(factoryId, from, to, limit));
         return ResponseEntity.ok(topLines);
     }
+    
+    @GetMapping("/timeseries")
+    public ResponseEntity<TimeSeriesResponse> getTimeSeries(
+            @RequestParam(required = false) String machineId,
+            @RequestParam(required = false) String lineId,
+            @RequestParam(required = false) String factoryId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String bucket) {
+        
+        log.info("Getting {} time series for machine={}, line={}, factory={} from {} to {}",
+            bucket, machineId, lineId, factoryId, from, to);
+        EventExportFilter filter = EventExportFilter.builder()
+            .machineId(machineId)
+            .lineId(lineId)
+            .factoryId(factoryId)
+            .from(from)
+            .to(to)
+            .build();
+        try {
+            TimeSeriesService.Bucket requested = bucket != null ? TimeSeriesService.Bucket.parse(bucket) : null;
+            return ResponseEntity.ok(readBulkhead.execute(() -> timeSeriesService.getTimeSeries(filter, requested)));
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected time series request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/durations")
+    public ResponseEntity<DurationPercentilesResponse> getDurationPercentiles(
+            @RequestParam(required = false) String machineId,
+            @RequestParam(required = false) String factoryId,
+            @RequestParam(required = false) String lineId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        
+        log.info("Getting duration percentiles for machine={}, factory={}, line={} from {} to {}",
+            machineId, factoryId, lineId, from, to);
+        try {
+            return ResponseEntity.ok(readBulkhead.execute(() ->
+                durationSketchService.getPercentiles(machineId, factoryId, lineId, from, to)));
+        } catch (IllegalArgumentException e) {
+            log.info("Rejected duration percentiles request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<Void> handleBulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .build();
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStats(
+            @RequestParam(required = false) String machineId,
+            @RequestParam(required = false) String factoryId) {
+        
+        if ((machineId == null) == (factoryId == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Opening stats stream for machine {} / factory {}", machineId, factoryId);
+        return ResponseEntity.ok(statsStreamService.subscribe(machineId, factoryId));
+    }
 }
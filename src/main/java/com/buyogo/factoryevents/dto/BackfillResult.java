@@ -0,0 +1,25 @@
+package com.buyogo.factoryevents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Duration;
+
+/**
+ * Outcome of one backfill run; counts cover only the ranges loaded by that run.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackfillResult {
+    private int ranges;
+    private int skippedRanges;
+    private long lines;
+    private long accepted;
+    private long deduped;
+    private long updated;
+    private long rejected;
+    private Duration elapsed;
+}
@@ -1,5 +1,7 @@
 package com.buyogo.factoryevents.dto;
 
+import com.buyogo.factoryevents.json.BatchIngestionResponseSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,6 +12,7 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonSerialize(using = BatchIngestionResponseSerializer.class)
 public class BatchIngestionResponse {
     private int accepted;
     private int deduped;
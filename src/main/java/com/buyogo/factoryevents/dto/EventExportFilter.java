@@ -0,0 +1,19 @@
+package com.buyogo.factoryevents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventExportFilter {
+    private String machineId;
+    private String factoryId;
+    private String lineId;
+    private Instant from;
+    private Instant to;
+}
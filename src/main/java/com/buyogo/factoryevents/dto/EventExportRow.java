@@ -0,0 +1,42 @@
+package com.buyogo.factoryevents.dto;
+
+import com.buyogo.factoryevents.json.IsoInstantSerializer;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventExportRow {
+    private String eventId;
+    
+    @JsonSerialize(using = IsoInstantSerializer.class)
+    private Instant eventTime;
+    
+    @JsonSerialize(using = IsoInstantSerializer.class)
+    private Instant receivedTime;
+    
+    private String machineId;
+    private String lineId;
+    private String factoryId;
+    private long durationMs;
+    private int defectCount;
+    
+    public static EventExportRow of(EventSnapshot event) {
+        return EventExportRow.builder()
+            .eventId(event.getEventId())
+            .eventTime(event.getEventTime())
+            .receivedTime(event.getReceivedTime())
+            .machineId(event.getMachineId())
+            .lineId(event.getLineId())
+            .factoryId(event.getFactoryId())
+            .durationMs(event.getDurationMs())
+            .defectCount(event.getDefectCount())
+            .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.buyogo.factoryevents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventLookupResponse {
+    private List<EventExportRow> events;
+    private List<String> missing;
+}
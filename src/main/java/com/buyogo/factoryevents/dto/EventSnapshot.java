@@ -0,0 +1,32 @@
+package com.buyogo.factoryevents.dto;
+
+import com.buyogo.factoryevents.entity.Event;
+import lombok.Value;
+import java.time.Instant;
+
+/**
+ * Immutable copy of an event row as it was written, safe to hand to other threads after commit.
+ */
+@Value
+public class EventSnapshot {
+    String eventId;
+    Instant eventTime;
+    Instant receivedTime;
+    String machineId;
+    String lineId;
+    String factoryId;
+    long durationMs;
+    int defectCount;
+    
+    public static EventSnapshot of(Event event) {
+        return new EventSnapshot(
+            event.getEventId(),
+            event.getEventTime(),
+            event.getReceivedTime(),
+            event.getMachineId(),
+            event.getLineId(),
+            event.getFactoryId(),
+            event.getDurationMs(),
+            event.getDefectCount());
+    }
+}
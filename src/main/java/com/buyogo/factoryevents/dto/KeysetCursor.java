@@ -0,0 +1,52 @@
+package com.buyogo.factoryevents.dto;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset-paginated reads ordered by (timestamp, event_id).
+ * Encoded as URL-safe base64 so it can be passed straight back as a query parameter.
+ */
+@Value
+public class KeysetCursor {
+    
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    Instant time;
+    String eventId;
+    
+    public String encode() {
+        String raw = time.getEpochSecond() + ":" + time.getNano() + ":" + eventId;
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a token produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static KeysetCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        int first = raw.indexOf(':');
+        int second = first < 0 ? -1 : raw.indexOf(':', first + 1);
+        if (first < 0 || second < 0 || second == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        try {
+            long seconds = Long.parseLong(raw.substring(0, first));
+            int nanos = Integer.parseInt(raw.substring(first + 1, second));
+            return new KeysetCursor(Instant.ofEpochSecond(seconds, nanos), raw.substring(second + 1));
+        } catch (NumberFormatException | java.time.DateTimeException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.buyogo.factoryevents.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MachineHealthResponse {
+    private String machineId;
+    private String status;
+    
+    // Exponentially weighted defects per hour: short half-life drives the status, long one is the baseline
+    private double defectRate;
+    private double baselineDefectRate;
+    private String trend;
+    
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'", timezone = "UTC")
+    private Instant lastEventTime;
+}
@@ -0,0 +1,35 @@
+package com.buyogo.factoryevents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A repository call that took at least the slow-query threshold, with the statements it ran.
+ * {@code plan} is filled in later if the call was sampled for EXPLAIN.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowQuery {
+    private Instant time;
+    private String query;
+    private String shard;
+    private double durationMs;
+    private List<Statement> statements;
+    private volatile String plan;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Statement {
+        private String sql;
+        private List<String> binds;
+    }
+}
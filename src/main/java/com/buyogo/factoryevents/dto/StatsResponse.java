@@ -1,6 +1,8 @@
 package com.buyogo.factoryevents.dto;
 
+import com.buyogo.factoryevents.json.StatsResponseSerializer;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,6 +13,7 @@ import java.time.Instant;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonSerialize(using = StatsResponseSerializer.class)
 public class StatsResponse {
     private String machineId;
     
@@ -0,0 +1,20 @@
+package com.buyogo.factoryevents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One window of a multi-window stats request (start inclusive, end exclusive).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsWindow {
+    private Instant start;
+    private Instant end;
+}
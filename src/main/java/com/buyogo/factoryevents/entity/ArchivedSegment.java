@@ -0,0 +1,28 @@
+package com.buyogo.factoryevents.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+/**
+ * Archive segment whose events were deleted from this shard, recorded in the same transaction.
+ * A segment file still pending after a crash is published if its row exists and discarded if
+ * not. Written and read with plain JDBC by {@code EventArchiveRepository}.
+ */
+@Entity
+@Table(name = "archive_segments")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedSegment {
+    @Id
+    @Column(name = "segment", length = 512)
+    private String segment;
+    
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+}
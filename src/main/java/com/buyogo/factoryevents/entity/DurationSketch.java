@@ -0,0 +1,38 @@
+package com.buyogo.factoryevents.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+/**
+ * Hourly duration histogram for one machine on one line, stored in HdrHistogram's compressed
+ * encoding so any set of buckets can be merged to answer percentile queries.
+ */
+@Entity
+@Table(name = "duration_sketches")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DurationSketch {
+    @EmbeddedId
+    private DurationSketchId id;
+    
+    @Column(name = "sample_count", nullable = false)
+    private long sampleCount;
+    
+    @Column(name = "histogram", nullable = false, length = 65536)
+    private byte[] histogram;
+    
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = Instant.now();
+    }
+}
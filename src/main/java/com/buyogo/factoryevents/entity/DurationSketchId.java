@@ -0,0 +1,29 @@
+package com.buyogo.factoryevents.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.time.Instant;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DurationSketchId implements Serializable {
+    @Column(name = "machine_id", nullable = false)
+    private String machineId;
+    
+    // Empty string when the events carried no factoryId; scopes line sketches to one factory
+    @Column(name = "factory_id", nullable = false)
+    private String factoryId;
+    
+    // Empty string when the events carried no lineId, so it can be part of the key
+    @Column(name = "line_id", nullable = false)
+    private String lineId;
+    
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+}
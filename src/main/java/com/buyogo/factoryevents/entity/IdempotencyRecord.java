@@ -0,0 +1,58 @@
+package com.buyogo.factoryevents.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+import java.time.Instant;
+
+/**
+ * Stored outcome of a batch sent with an Idempotency-Key. Always inserted, never merged, so a
+ * second writer racing on the same key fails on the primary key instead of overwriting; a
+ * reservation is moved on by conditional updates in the repository.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord implements Persistable<String> {
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+    
+    @Column(name = "body_digest", nullable = false, length = 64)
+    private String bodyDigest;
+    
+    // BatchIngestionResponse as JSON; null until the batch is DONE
+    @Column(name = "response", length = 1_000_000)
+    private String response;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false, length = 16)
+    private State state;
+    
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+    
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+    
+    /**
+     * PENDING while a sharded batch runs under a reservation, FAILED once that run threw (some
+     * shards may have committed), DONE with the stored response.
+     */
+    public enum State {
+        PENDING, FAILED, DONE
+    }
+}
@@ -0,0 +1,26 @@
+package com.buyogo.factoryevents.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.Instant;
+
+/**
+ * Directory entry saying a shard holds events of a machine. Kept on the default shard; a
+ * machine usually lives on one shard, but events without a factoryId land on the default one.
+ */
+@Entity
+@Table(name = "machine_shards")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MachineShard {
+    @EmbeddedId
+    private MachineShardId id;
+    
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
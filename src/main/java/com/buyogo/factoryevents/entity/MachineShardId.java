@@ -0,0 +1,20 @@
+package com.buyogo.factoryevents.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MachineShardId implements Serializable {
+    @Column(name = "machine_id", nullable = false)
+    private String machineId;
+    
+    @Column(name = "shard", nullable = false)
+    private String shard;
+}
@@ -0,0 +1,82 @@
+package com.buyogo.factoryevents.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Optional continuous Flight Recorder recording ({@code events.jfr.continuous.enabled}, off by
+ * default): a ring on disk bounded by {@code max-age} and {@code max-size-mb}, using one of the
+ * JDK's settings ({@code default}, about 1% overhead, or {@code profile}). The service's own
+ * events ({@link IngestBatchEvent}, {@link ShardWriteEvent}, {@link StatsQueryEvent}) are in
+ * every recording; with no recording running they cost a disabled-flag check.
+ *
+ * <p>{@link #dump()} snapshots whatever is being recorded, this recording or one started with
+ * {@code -XX:StartFlightRecording}.
+ */
+@Component
+@Slf4j
+public class FlightRecording {
+    
+    private final Recording recording;
+    
+    public FlightRecording(@Value("${events.jfr.continuous.enabled:false}") boolean enabled,
+                           @Value("${events.jfr.continuous.settings:default}") String settings,
+                           @Value("${events.jfr.continuous.max-age:PT30M}") Duration maxAge,
+                           @Value("${events.jfr.continuous.max-size-mb:250}") long maxSizeMb) throws IOException, ParseException {
+        if (!enabled) {
+            this.recording = null;
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("events.jfr.continuous.enabled is set but Flight Recorder is not available in this JVM");
+            this.recording = null;
+            return;
+        }
+        this.recording = new Recording(Configuration.getConfiguration(settings));
+        this.recording.setName("factory-events-continuous");
+        this.recording.setToDisk(true);
+        this.recording.setMaxAge(maxAge);
+        this.recording.setMaxSize(maxSizeMb * 1024 * 1024);
+        this.recording.start();
+        log.info("Started continuous flight recording ({} settings, last {} or {} MB)", settings, maxAge, maxSizeMb);
+    }
+    
+    /**
+     * Write everything currently recorded to a new temporary .jfr file, which the caller deletes.
+     *
+     * @return the file, or null if no recording is running
+     */
+    public Path dump() throws IOException {
+        if (!FlightRecorder.isAvailable() || FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .noneMatch(running -> running.getState() == RecordingState.RUNNING)) {
+            return null;
+        }
+        Path file = Files.createTempFile("factory-events-", ".jfr");
+        try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+            snapshot.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.buyogo.factoryevents.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One {@code EventService.processGroup} call (a single batch, or a group-committed set of
+ * batches), from validation until every shard has committed. Spans the caller's thread, so GC,
+ * lock and allocation samples on that thread during the event belong to this batch; the shard
+ * writes themselves are {@link ShardWriteEvent}s.
+ */
+@Name("com.buyogo.factoryevents.IngestBatch")
+@Label("Ingest Batch")
+@Category({"Factory Events", "Ingestion"})
+@Description("Validation and write of one ingestion batch or group-committed set of batches")
+@StackTrace(false)
+public class IngestBatchEvent extends jdk.jfr.Event {
+    
+    @Label("Batches")
+    @Description("Client batches processed together (more than 1 under group commit)")
+    public int batches;
+    
+    @Label("Events")
+    public int events;
+    
+    @Label("Shards")
+    public int shards;
+    
+    @Label("Accepted")
+    public int accepted;
+    
+    @Label("Deduped")
+    public int deduped;
+    
+    @Label("Updated")
+    public int updated;
+    
+    @Label("Rejected")
+    public int rejected;
+    
+    @Label("Validation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long validateTime;
+    
+    @Label("Write Time")
+    @Description("Time from the end of validation until every shard committed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long writeTime;
+}
@@ -0,0 +1,49 @@
+package com.buyogo.factoryevents.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The write of one shard's share of a batch, inside that shard's transaction, on the thread
+ * that runs it (a fan-out thread when sharded). Phase times are those of the JDBC round trips.
+ */
+@Name("com.buyogo.factoryevents.ShardWrite")
+@Label("Shard Write")
+@Category({"Factory Events", "Ingestion"})
+@Description("Stored-version lookup, inserts and updates of one shard's events in a batch")
+@StackTrace(false)
+public class ShardWriteEvent extends jdk.jfr.Event {
+    
+    @Label("Shard")
+    public String shard;
+    
+    @Label("Events")
+    public int events;
+    
+    @Label("Inserts")
+    public int inserts;
+    
+    @Label("Updates")
+    public int updates;
+    
+    @Label("Conflict Retries")
+    @Description("Inserts that found the id already stored and were re-read and classified again")
+    public int conflicts;
+    
+    @Label("Lookup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lookupTime;
+    
+    @Label("Insert Time")
+    @Description("Batched insert plus the re-read of conflicting ids")
+    @Timespan(Timespan.NANOSECONDS)
+    public long insertTime;
+    
+    @Label("Update Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long updateTime;
+}
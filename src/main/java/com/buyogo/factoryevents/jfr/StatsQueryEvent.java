@@ -0,0 +1,45 @@
+package com.buyogo.factoryevents.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One {@code StatsService} query, across every shard it reads.
+ */
+@Name("com.buyogo.factoryevents.StatsQuery")
+@Label("Stats Query")
+@Category({"Factory Events", "Stats"})
+@Description("A machine stats, multi-window stats or top defect lines query")
+@StackTrace(false)
+public class StatsQueryEvent extends jdk.jfr.Event {
+    
+    public static final String MACHINE_STATS = "machine-stats";
+    public static final String MACHINE_WINDOWS = "machine-windows";
+    public static final String TOP_DEFECT_LINES = "top-defect-lines";
+    
+    @Label("Kind")
+    public String kind;
+    
+    @Label("Key")
+    @Description("Machine id, or factory id for top defect lines")
+    public String key;
+    
+    @Label("Window Length")
+    @Description("Length of the queried range; for several windows, the range they span together")
+    @Timespan(Timespan.MILLISECONDS)
+    public long window;
+    
+    @Label("Windows")
+    public int windows;
+    
+    @Label("Shards")
+    public int shards;
+    
+    @Label("Rows Scanned")
+    @Description("Event rows in the queried range that the query aggregated")
+    public long rowsScanned;
+}
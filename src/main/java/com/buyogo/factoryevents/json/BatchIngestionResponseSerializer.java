@@ -0,0 +1,43 @@
+package com.buyogo.factoryevents.json;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.RejectionDetail;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link BatchIngestionResponse} field by field, with the same shape as reflective binding.
+ */
+public class BatchIngestionResponseSerializer extends StdSerializer<BatchIngestionResponse> {
+    
+    public BatchIngestionResponseSerializer() {
+        super(BatchIngestionResponse.class);
+    }
+    
+    @Override
+    public void serialize(BatchIngestionResponse response, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        gen.writeStartObject(response);
+        gen.writeNumberField("accepted", response.getAccepted());
+        gen.writeNumberField("deduped", response.getDeduped());
+        gen.writeNumberField("updated", response.getUpdated());
+        gen.writeNumberField("rejected", response.getRejected());
+        gen.writeFieldName("rejections");
+        if (response.getRejections() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeStartArray(response.getRejections(), response.getRejections().size());
+            for (RejectionDetail rejection : response.getRejections()) {
+                gen.writeStartObject(rejection);
+                gen.writeStringField("eventId", rejection.getEventId());
+                gen.writeStringField("reason", rejection.getReason());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+}
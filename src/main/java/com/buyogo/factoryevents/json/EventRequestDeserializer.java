@@ -0,0 +1,71 @@
+package com.buyogo.factoryevents.json;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Streaming deserializer for one element of an ingestion batch. Fields are matched on the
+ * parser's interned names without reflection, {@code eventTime} is parsed in place from the
+ * token's character buffer, and {@code receivedTime} (always set by the server) is skipped
+ * without being read, like any unknown field.
+ */
+public class EventRequestDeserializer extends StdDeserializer<EventRequest> {
+    
+    public EventRequestDeserializer() {
+        super(EventRequest.class);
+    }
+    
+    @Override
+    public EventRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            return (EventRequest) ctxt.handleUnexpectedToken(EventRequest.class, p);
+        }
+        EventRequest request = new EventRequest();
+        for (String field = p.nextFieldName(); field != null; field = p.nextFieldName()) {
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "eventId" -> request.setEventId(readString(p, ctxt, token));
+                case "eventTime" -> request.setEventTime(readInstant(p, ctxt, token));
+                case "machineId" -> request.setMachineId(readString(p, ctxt, token));
+                case "lineId" -> request.setLineId(readString(p, ctxt, token));
+                case "factoryId" -> request.setFactoryId(readString(p, ctxt, token));
+                case "durationMs" -> request.setDurationMs(token == JsonToken.VALUE_NUMBER_INT
+                    ? Long.valueOf(p.getLongValue()) : _parseLong(p, ctxt, Long.class));
+                case "defectCount" -> request.setDefectCount(token == JsonToken.VALUE_NUMBER_INT
+                    ? Integer.valueOf(p.getIntValue()) : _parseInteger(p, ctxt, Integer.class));
+                default -> p.skipChildren();
+            }
+        }
+        return request;
+    }
+    
+    private String readString(JsonParser p, DeserializationContext ctxt, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return _parseString(p, ctxt, this);
+    }
+    
+    private Instant readInstant(JsonParser p, DeserializationContext ctxt, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            return (Instant) ctxt.handleUnexpectedToken(Instant.class, p);
+        }
+        Instant instant = IsoInstants.parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        if (instant == null) {
+            throw ctxt.weirdStringException(p.getText(), Instant.class, "not an ISO-8601 instant");
+        }
+        return instant;
+    }
+}
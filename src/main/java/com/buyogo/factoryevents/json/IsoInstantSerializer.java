@@ -0,0 +1,25 @@
+package com.buyogo.factoryevents.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Writes an instant as {@link IsoInstants#format} does: milliseconds, or micro- or nanoseconds
+ * when present, so exported times keep the order the database stored them in.
+ */
+public class IsoInstantSerializer extends StdSerializer<Instant> {
+    
+    public IsoInstantSerializer() {
+        super(Instant.class);
+    }
+    
+    @Override
+    public void serialize(Instant instant, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        char[] buffer = new char[IsoInstants.MAX_LENGTH];
+        gen.writeString(buffer, 0, IsoInstants.format(instant, buffer, 0));
+    }
+}
@@ -0,0 +1,221 @@
+package com.buyogo.factoryevents.json;
+
+import java.time.Instant;
+
+/**
+ * Allocation-light ISO-8601 instant parsing and formatting for the hot JSON paths.
+ *
+ * <p>Parses {@code yyyy-MM-ddTHH:mm:ss[.f{1,9}]} followed by {@code Z} or a {@code ±HH:mm},
+ * {@code ±HHmm} or {@code ±HH} offset straight from the parser's character buffer, so the
+ * only object created is the resulting {@link Instant}. This accepts every timestamp the
+ * previous {@code yyyy-MM-dd'T'HH:mm:ss.SSS'Z'} pattern did, plus other precisions and offsets.
+ */
+public final class IsoInstants {
+    
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    
+    // Length of "yyyy-MM-ddTHH:mm:ssZ": the shortest parseable form, and what formatSeconds writes
+    static final int SECONDS_LENGTH = 20;
+    
+    // Length of "yyyy-MM-ddTHH:mm:ss.SSSSSSSSSZ", the longest form format writes
+    public static final int MAX_LENGTH = 30;
+    
+    private IsoInstants() {
+    }
+    
+    /**
+     * Parse an instant, or return null if the text is not a supported ISO-8601 timestamp.
+     */
+    public static Instant parse(char[] text, int offset, int length) {
+        if (length < SECONDS_LENGTH) {
+            return null;
+        }
+        int end = offset + length;
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        int hour = digits(text, offset + 11, 2);
+        int minute = digits(text, offset + 14, 2);
+        int second = digits(text, offset + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0
+                || text[offset + 4] != '-' || text[offset + 7] != '-'
+                || (text[offset + 10] != 'T' && text[offset + 10] != 't')
+                || text[offset + 13] != ':' || text[offset + 16] != ':') {
+            return null;
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        
+        int position = offset + 19;
+        int nanos = 0;
+        if (text[position] == '.') {
+            int fractionStart = ++position;
+            while (position < end && position - fractionStart < 9 && isDigit(text[position])) {
+                nanos = nanos * 10 + (text[position++] - '0');
+            }
+            int fractionDigits = position - fractionStart;
+            if (fractionDigits == 0 || (position < end && isDigit(text[position]))) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        
+        int offsetSeconds = parseOffset(text, position, end);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return null;
+        }
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY
+            + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return Instant.ofEpochSecond(epochSecond, nanos);
+    }
+    
+    /**
+     * Parse an instant from a string, or return null if it is not a supported timestamp.
+     */
+    public static Instant parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+    
+    /**
+     * Write {@code yyyy-MM-ddTHH:mm:ssZ} (sub-second digits truncated) into {@code buffer} at
+     * {@code offset}, returning the number of characters written. Years outside 0000-9999 are
+     * not supported.
+     */
+    public static int formatSeconds(Instant instant, char[] buffer, int offset) {
+        long epochSecond = instant.getEpochSecond();
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        
+        // Civil date from day count (H. Hinnant, "chrono-Compatible Low-Level Date Algorithms")
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Year out of range: " + year);
+        }
+        
+        write(buffer, offset, year, 4);
+        buffer[offset + 4] = '-';
+        write(buffer, offset + 5, month, 2);
+        buffer[offset + 7] = '-';
+        write(buffer, offset + 8, day, 2);
+        buffer[offset + 10] = 'T';
+        write(buffer, offset + 11, secondOfDay / 3600, 2);
+        buffer[offset + 13] = ':';
+        write(buffer, offset + 14, secondOfDay / 60 % 60, 2);
+        buffer[offset + 16] = ':';
+        write(buffer, offset + 17, secondOfDay % 60, 2);
+        buffer[offset + 19] = 'Z';
+        return SECONDS_LENGTH;
+    }
+    
+    /**
+     * Write {@code yyyy-MM-ddTHH:mm:ss.SSSZ} into {@code buffer} at {@code offset}, with six or
+     * nine fraction digits instead of three when the instant has sub-millisecond precision, so
+     * no precision is lost and millisecond instants read as before. Returns the number of
+     * characters written, at most {@link #MAX_LENGTH}.
+     */
+    public static int format(Instant instant, char[] buffer, int offset) {
+        formatSeconds(instant, buffer, offset);
+        int nanos = instant.getNano();
+        int position = offset + 19;
+        buffer[position++] = '.';
+        if (nanos % 1_000_000 == 0) {
+            write(buffer, position, nanos / 1_000_000, 3);
+            position += 3;
+        } else if (nanos % 1_000 == 0) {
+            write(buffer, position, nanos / 1_000, 6);
+            position += 6;
+        } else {
+            write(buffer, position, nanos, 9);
+            position += 9;
+        }
+        buffer[position++] = 'Z';
+        return position - offset;
+    }
+    
+    /**
+     * Offset in seconds east of UTC, or Integer.MIN_VALUE if malformed.
+     */
+    private static int parseOffset(char[] text, int position, int end) {
+        int remaining = end - position;
+        if (remaining == 1 && (text[position] == 'Z' || text[position] == 'z')) {
+            return 0;
+        }
+        if (remaining < 3 || (text[position] != '+' && text[position] != '-')) {
+            return Integer.MIN_VALUE;
+        }
+        int sign = text[position] == '-' ? -1 : 1;
+        int hours = digits(text, position + 1, 2);
+        int minutes;
+        if (remaining == 3) {
+            minutes = 0;
+        } else if (remaining == 5) {
+            minutes = digits(text, position + 3, 2);
+        } else if (remaining == 6 && text[position + 3] == ':') {
+            minutes = digits(text, position + 4, 2);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        if (hours < 0 || minutes < 0 || hours > 18 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        return sign * (hours * 3600 + minutes * 60);
+    }
+    
+    /**
+     * Days since 1970-01-01 (H. Hinnant's days_from_civil).
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+    
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+    
+    /**
+     * Value of {@code count} decimal digits, or -1 if any is not a digit.
+     */
+    private static int digits(char[] text, int position, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            char c = text[position + i];
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    private static void write(char[] buffer, int offset, int value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            buffer[offset + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
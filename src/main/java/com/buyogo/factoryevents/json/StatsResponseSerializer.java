@@ -0,0 +1,43 @@
+package com.buyogo.factoryevents.json;
+
+import com.buyogo.factoryevents.dto.StatsResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Writes {@link StatsResponse} field by field, with the same names, order and timestamp
+ * format as reflective binding, but without introspection or a DateTimeFormatter.
+ */
+public class StatsResponseSerializer extends StdSerializer<StatsResponse> {
+    
+    public StatsResponseSerializer() {
+        super(StatsResponse.class);
+    }
+    
+    @Override
+    public void serialize(StatsResponse stats, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(stats);
+        gen.writeStringField("machineId", stats.getMachineId());
+        writeInstantField(gen, "start", stats.getStart());
+        writeInstantField(gen, "end", stats.getEnd());
+        gen.writeNumberField("eventsCount", stats.getEventsCount());
+        gen.writeNumberField("defectsCount", stats.getDefectsCount());
+        gen.writeNumberField("avgDefectRate", stats.getAvgDefectRate());
+        gen.writeStringField("status", stats.getStatus());
+        gen.writeEndObject();
+    }
+    
+    static void writeInstantField(JsonGenerator gen, String name, Instant instant) throws IOException {
+        gen.writeFieldName(name);
+        if (instant == null) {
+            gen.writeNull();
+            return;
+        }
+        char[] buffer = new char[IsoInstants.SECONDS_LENGTH];
+        gen.writeString(buffer, 0, IsoInstants.formatSeconds(instant, buffer, 0));
+    }
+}
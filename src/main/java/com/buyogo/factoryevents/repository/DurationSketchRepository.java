@@ -0,0 +1,56 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.entity.DurationSketch;
+import com.buyogo.factoryevents.entity.DurationSketchId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DurationSketchRepository extends JpaRepository<DurationSketch, DurationSketchId> {
+    
+    /**
+     * Load a sketch for read-modify-write, locking the row until the flush transaction commits
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DurationSketch s WHERE s.id = :id")
+    Optional<DurationSketch> findForUpdate(@Param("id") DurationSketchId id);
+    
+    /**
+     * Find all hourly sketches of a machine with bucketStart in [from, to)
+     */
+    @Query("SELECT s FROM DurationSketch s WHERE s.id.machineId = :machineId " +
+           "AND s.id.bucketStart >= :from AND s.id.bucketStart < :to")
+    List<DurationSketch> findByMachineIdAndBucketStartBetween(
+        @Param("machineId") String machineId,
+        @Param("from") Instant from,
+        @Param("to") Instant to
+    );
+    
+    /**
+     * Find all hourly sketches of every machine on a factory's line with bucketStart in [from, to)
+     */
+    @Query("SELECT s FROM DurationSketch s WHERE s.id.factoryId = :factoryId AND s.id.lineId = :lineId " +
+           "AND s.id.bucketStart >= :from AND s.id.bucketStart < :to")
+    List<DurationSketch> findByFactoryIdAndLineIdAndBucketStartBetween(
+        @Param("factoryId") String factoryId,
+        @Param("lineId") String lineId,
+        @Param("from") Instant from,
+        @Param("to") Instant to
+    );
+    
+    /**
+     * Delete every sketch with bucketStart in [from, to), ahead of rebuilding them from events
+     */
+    @Modifying
+    @Query("DELETE FROM DurationSketch s WHERE s.id.bucketStart >= :from AND s.id.bucketStart < :to")
+    int deleteByBucketStartBetween(@Param("from") Instant from, @Param("to") Instant to);
+}
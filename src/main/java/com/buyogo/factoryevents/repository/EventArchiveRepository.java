@@ -0,0 +1,100 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.entity.Event;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static com.buyogo.factoryevents.repository.EventExportRepository.toInstant;
+import static com.buyogo.factoryevents.repository.EventExportRepository.toTimestamp;
+
+/**
+ * Plain JDBC reads and deletes for moving old events to the archive. Must run inside the
+ * caller's transaction, so the rows read stay locked until they are deleted.
+ */
+@Repository
+public class EventArchiveRepository {
+    
+    private static final String SELECT_RANGE =
+        "SELECT event_id, event_time, received_time, machine_id, line_id, factory_id, duration_ms, defect_count, "
+            + "payload_hash FROM events WHERE event_time >= ? AND event_time < ? AND ";
+    
+    private static final String DELETE = "DELETE FROM events WHERE event_id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    
+    public EventArchiveRepository(DataSource dataSource,
+                                  @Value("${events.write.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Event time of the oldest stored event before {@code before}, if any.
+     */
+    public Optional<Instant> findOldestEventTime(Instant before) {
+        OffsetDateTime oldest = jdbcTemplate.queryForObject(
+            "SELECT MIN(event_time) FROM events WHERE event_time < ?", OffsetDateTime.class, toTimestamp(before));
+        return Optional.ofNullable(oldest).map(OffsetDateTime::toInstant);
+    }
+    
+    /**
+     * The factories with events in [from, to), null standing for events without one.
+     */
+    public List<String> findFactories(Instant from, Instant to) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT factory_id FROM events WHERE event_time >= ? AND event_time < ?",
+            String.class, toTimestamp(from), toTimestamp(to));
+    }
+    
+    /**
+     * The first {@code limit} events of the factory (null for none) with event_time in [from, to),
+     * by event time and id, locked until the transaction ends.
+     */
+    public List<Event> findForArchive(String factoryId, Instant from, Instant to, int limit) {
+        String sql = SELECT_RANGE + (factoryId == null ? "factory_id IS NULL" : "factory_id = ?")
+            + " ORDER BY event_time, event_id LIMIT ? FOR UPDATE";
+        Object[] args = factoryId == null
+            ? new Object[] {toTimestamp(from), toTimestamp(to), limit}
+            : new Object[] {toTimestamp(from), toTimestamp(to), factoryId, limit};
+        return jdbcTemplate.query(sql, (rs, rowNum) -> Event.builder()
+            .eventId(rs.getString(1))
+            .eventTime(toInstant(rs, 2))
+            .receivedTime(toInstant(rs, 3))
+            .machineId(rs.getString(4))
+            .lineId(rs.getString(5))
+            .factoryId(rs.getString(6))
+            .durationMs(rs.getLong(7))
+            .defectCount(rs.getInt(8))
+            .payloadHash(rs.getString(9))
+            .build(), args);
+    }
+    
+    /**
+     * Delete the given events by id, {@code batch-size} rows per JDBC batch.
+     */
+    public void delete(List<Event> events) {
+        jdbcTemplate.batchUpdate(DELETE, events, batchSize, (ps, event) -> ps.setString(1, event.getEventId()));
+    }
+    
+    /**
+     * Record that the segment's events were deleted, committing with the delete.
+     */
+    public void recordSegment(String segment, Instant archivedAt) {
+        jdbcTemplate.update("INSERT INTO archive_segments (segment, archived_at) VALUES (?, ?)", segment, toTimestamp(archivedAt));
+    }
+    
+    /**
+     * Whether a transaction that deleted the segment's events committed on this shard.
+     */
+    public boolean isSegmentRecorded(String segment) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM archive_segments WHERE segment = ?", Integer.class, segment);
+        return count != null && count > 0;
+    }
+}
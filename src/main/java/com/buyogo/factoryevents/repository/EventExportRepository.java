@@ -0,0 +1,199 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventExportRow;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.dto.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Plain JDBC reads for bulk export and id lookups. Rows are pulled through a forward-only
+ * cursor and mapped to {@link EventExportRow} projections, so no entities are ever attached
+ * to a persistence context and memory stays flat regardless of the result size.
+ */
+@Repository
+public class EventExportRepository {
+    
+    private static final String COLUMNS =
+        "event_id, event_time, received_time, machine_id, line_id, factory_id, duration_ms, defect_count";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public EventExportRepository(DataSource dataSource,
+                                 @Value("${events.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+    
+    /**
+     * Stream events matching the filter, ordered by (event_time, event_id), strictly after
+     * {@code after} and up to and including {@code through} (either may be null). Bounding a
+     * page by the key its continuation token was made from, rather than by a row count, keeps
+     * rows written between the two queries from pushing the page's tail past the token.
+     * Must run inside a transaction: PostgreSQL only honours the fetch size when auto-commit is off.
+     */
+    public void streamEvents(EventExportFilter filter, KeysetCursor after, KeysetCursor through,
+                             Consumer<EventExportRow> sink) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM events");
+        appendWhere(sql, args, filter, after);
+        if (through != null) {
+            sql.append(" AND (event_time < ? OR (event_time = ? AND event_id <= ?))");
+            args.add(toTimestamp(through.getTime()));
+            args.add(toTimestamp(through.getTime()));
+            args.add(through.getEventId());
+        }
+        sql.append(" ORDER BY event_time, event_id");
+        
+        jdbcTemplate.query(sql.toString(), rs -> {
+            sink.accept(mapRow(rs));
+        }, args.toArray());
+    }
+    
+    /**
+     * Key of the last row of the page starting after {@code after}, or empty if the page is not full.
+     * Lets the caller hand out a continuation token before the page body has been streamed. Only
+     * the keys of the page are read, in one keyset range, instead of skipping rows with OFFSET.
+     */
+    public Optional<KeysetCursor> findPageEnd(EventExportFilter filter, KeysetCursor after, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT event_time, event_id FROM events");
+        appendWhere(sql, args, filter, after);
+        sql.append(" ORDER BY event_time, event_id LIMIT ?");
+        args.add(limit);
+        
+        KeysetCursor[] last = new KeysetCursor[1];
+        int[] rows = {0};
+        jdbcTemplate.query(sql.toString(), rs -> {
+            last[0] = new KeysetCursor(toInstant(rs, 1), rs.getString(2));
+            rows[0]++;
+        }, args.toArray());
+        return rows[0] == limit ? Optional.of(last[0]) : Optional.empty();
+    }
+    
+    /**
+     * Keys of up to {@code limit} events inserted or updated after the cursor, with a received
+     * time before {@code horizon}, in change-feed order (received_time, event_id). Served from
+     * {@code idx_received_time}.
+     */
+    public List<KeysetCursor> findChangeKeys(KeysetCursor after, Instant horizon, int limit) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT received_time, event_id FROM events WHERE received_time < ?");
+        args.add(toTimestamp(horizon));
+        appendChangesAfter(sql, args, after);
+        sql.append(" ORDER BY received_time, event_id LIMIT ?");
+        args.add(limit);
+        
+        return jdbcTemplate.query(sql.toString(),
+            (rs, rowNum) -> new KeysetCursor(toInstant(rs, 1), rs.getString(2)), args.toArray());
+    }
+    
+    /**
+     * Stream the events changed after {@code after} up to and including {@code through}, ordered
+     * by (received_time, event_id). Must run inside a transaction, as {@link #streamEvents}.
+     */
+    public void streamChanges(KeysetCursor after, KeysetCursor through, Consumer<EventExportRow> sink) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS)
+            .append(" FROM events WHERE (received_time < ? OR (received_time = ? AND event_id <= ?))");
+        args.add(toTimestamp(through.getTime()));
+        args.add(toTimestamp(through.getTime()));
+        args.add(through.getEventId());
+        appendChangesAfter(sql, args, after);
+        sql.append(" ORDER BY received_time, event_id");
+        
+        jdbcTemplate.query(sql.toString(), rs -> {
+            sink.accept(mapRow(rs));
+        }, args.toArray());
+    }
+    
+    /**
+     * Current version of each given event, in no particular order; ids without a row are absent.
+     */
+    public List<EventSnapshot> findSnapshots(Collection<String> eventIds) {
+        if (eventIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = "SELECT " + COLUMNS + " FROM events WHERE event_id IN ("
+            + String.join(", ", Collections.nCopies(eventIds.size(), "?")) + ")";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new EventSnapshot(
+            rs.getString(1),
+            toInstant(rs, 2),
+            toInstant(rs, 3),
+            rs.getString(4),
+            rs.getString(5),
+            rs.getString(6),
+            rs.getLong(7),
+            rs.getInt(8)), eventIds.toArray());
+    }
+    
+    private void appendWhere(StringBuilder sql, List<Object> args, EventExportFilter filter, KeysetCursor after) {
+        sql.append(" WHERE event_time >= ? AND event_time < ?");
+        args.add(toTimestamp(filter.getFrom()));
+        args.add(toTimestamp(filter.getTo()));
+        if (filter.getMachineId() != null) {
+            sql.append(" AND machine_id = ?");
+            args.add(filter.getMachineId());
+        }
+        if (filter.getFactoryId() != null) {
+            sql.append(" AND factory_id = ?");
+            args.add(filter.getFactoryId());
+        }
+        if (filter.getLineId() != null) {
+            sql.append(" AND line_id = ?");
+            args.add(filter.getLineId());
+        }
+        if (after != null) {
+            sql.append(" AND (event_time > ? OR (event_time = ? AND event_id > ?))");
+            args.add(toTimestamp(after.getTime()));
+            args.add(toTimestamp(after.getTime()));
+            args.add(after.getEventId());
+        }
+    }
+    
+    private void appendChangesAfter(StringBuilder sql, List<Object> args, KeysetCursor after) {
+        if (after != null) {
+            sql.append(" AND (received_time > ? OR (received_time = ? AND event_id > ?))");
+            args.add(toTimestamp(after.getTime()));
+            args.add(toTimestamp(after.getTime()));
+            args.add(after.getEventId());
+        }
+    }
+    
+    private static EventExportRow mapRow(ResultSet rs) throws SQLException {
+        return EventExportRow.builder()
+            .eventId(rs.getString(1))
+            .eventTime(toInstant(rs, 2))
+            .receivedTime(toInstant(rs, 3))
+            .machineId(rs.getString(4))
+            .lineId(rs.getString(5))
+            .factoryId(rs.getString(6))
+            .durationMs(rs.getLong(7))
+            .defectCount(rs.getInt(8))
+            .build();
+    }
+    
+    static OffsetDateTime toTimestamp(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+    
+    static Instant toInstant(ResultSet rs, int column) throws SQLException {
+        OffsetDateTime value = rs.getObject(column, OffsetDateTime.class);
+        return value != null ? value.toInstant() : null;
+    }
+}
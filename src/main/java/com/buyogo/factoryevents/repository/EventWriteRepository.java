@@ -0,0 +1,184 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.entity.Event;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.buyogo.factoryevents.repository.EventExportRepository.toInstant;
+import static com.buyogo.factoryevents.repository.EventExportRepository.toTimestamp;
+
+/**
+ * Plain JDBC writes for batch ingestion. Each call prepares its statement once and runs it in
+ * JDBC batches of {@code events.write.batch-size} rows, so there are no managed entities, no
+ * dirty checking and no persistence context growing with the batch. {@link Event} is used only
+ * as a value; timestamps, including created_at and updated_at, are written exactly as given.
+ *
+ * <p>Must run inside the caller's transaction. Conflicts are detected from per-row update
+ * counts, so the PostgreSQL driver must not run with {@code reWriteBatchedInserts}.
+ */
+@Repository
+public class EventWriteRepository {
+    
+    private static final String SELECT_STORED =
+        "SELECT event_id, event_time, received_time, machine_id, line_id, factory_id, duration_ms, defect_count, "
+            + "payload_hash FROM events WHERE event_id IN (";
+    
+    private static final String INSERT =
+        "INSERT INTO events (event_id, event_time, received_time, machine_id, line_id, factory_id, duration_ms, "
+            + "defect_count, payload_hash, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT DO NOTHING";
+    
+    private static final String UPDATE =
+        "UPDATE events SET event_time = ?, received_time = ?, machine_id = ?, line_id = ?, factory_id = ?, "
+            + "duration_ms = ?, defect_count = ?, payload_hash = ?, updated_at = ? "
+            + "WHERE event_id = ? AND received_time < ?";
+    
+    // Secondary indexes of events as declared in schema.sql, by name; the primary key is not among them
+    private static final Map<String, String> SECONDARY_INDEXES = new LinkedHashMap<>();
+    
+    static {
+        SECONDARY_INDEXES.put("idx_machine_event_time", "events(machine_id, event_time)");
+        SECONDARY_INDEXES.put("idx_factory_line_time", "events(factory_id, line_id, event_time)");
+        SECONDARY_INDEXES.put("idx_event_time", "events(event_time)");
+        SECONDARY_INDEXES.put("idx_received_time", "events(received_time)");
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    
+    public EventWriteRepository(DataSource dataSource,
+                                @Value("${events.write.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Stored version of each given event, keyed by id, including its payload hash; ids without
+     * a row are absent. Ids are queried {@code batch-size} at a time.
+     */
+    public Map<String, Event> findStored(Collection<String> eventIds) {
+        Map<String, Event> stored = new HashMap<>();
+        List<String> ids = new ArrayList<>(eventIds);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            String sql = SELECT_STORED + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbcTemplate.query(sql, rs -> {
+                Event event = Event.builder()
+                    .eventId(rs.getString(1))
+                    .eventTime(toInstant(rs, 2))
+                    .receivedTime(toInstant(rs, 3))
+                    .machineId(rs.getString(4))
+                    .lineId(rs.getString(5))
+                    .factoryId(rs.getString(6))
+                    .durationMs(rs.getLong(7))
+                    .defectCount(rs.getInt(8))
+                    .payloadHash(rs.getString(9))
+                    .build();
+                stored.put(event.getEventId(), event);
+            }, chunk.toArray());
+        }
+        return stored;
+    }
+    
+    /**
+     * Insert the events with created_at and updated_at set to {@code now}.
+     *
+     * @return the events not inserted because their id already exists, in input order
+     */
+    public List<Event> insert(List<Event> events, Instant now) {
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT, events, batchSize, (ps, event) -> {
+            bindPayload(ps, 2, event);
+            ps.setString(1, event.getEventId());
+            ps.setObject(10, toTimestamp(now));
+            ps.setObject(11, toTimestamp(now));
+        });
+        return unwritten(events, counts);
+    }
+    
+    /**
+     * Overwrite stored events with updated_at set to {@code now}. A row is only overwritten
+     * while its received_time is older than the new one, so a concurrent later update wins.
+     *
+     * @return the events not written because the stored version is as new or newer, in input order
+     */
+    public List<Event> update(List<Event> events, Instant now) {
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE, events, batchSize, (ps, event) -> {
+            bindPayload(ps, 1, event);
+            ps.setObject(9, toTimestamp(now));
+            ps.setString(10, event.getEventId());
+            ps.setObject(11, toTimestamp(event.getReceivedTime()));
+        });
+        return unwritten(events, counts);
+    }
+    
+    /**
+     * Drop the secondary indexes so bulk loads only maintain the primary key, which dedupe needs.
+     * Queries filtering by machine, factory or time scan the table until they are recreated.
+     */
+    public void dropSecondaryIndexes() {
+        SECONDARY_INDEXES.keySet().forEach(this::dropSecondaryIndex);
+    }
+    
+    /**
+     * Names of the secondary indexes, in schema.sql order.
+     */
+    public List<String> secondaryIndexNames() {
+        return List.copyOf(SECONDARY_INDEXES.keySet());
+    }
+    
+    public void dropSecondaryIndex(String name) {
+        if (!SECONDARY_INDEXES.containsKey(name)) {
+            throw new IllegalArgumentException("Not a secondary index of events: " + name);
+        }
+        jdbcTemplate.execute("DROP INDEX IF EXISTS " + name);
+    }
+    
+    /**
+     * Create any secondary index that is missing; a no-op when they all exist.
+     */
+    public void createSecondaryIndexes() {
+        SECONDARY_INDEXES.forEach((name, columns) ->
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + " ON " + columns));
+    }
+    
+    /**
+     * Bind event_time through payload_hash, in column order, starting at {@code index}.
+     */
+    private static void bindPayload(PreparedStatement ps, int index, Event event) throws SQLException {
+        ps.setObject(index, toTimestamp(event.getEventTime()));
+        ps.setObject(index + 1, toTimestamp(event.getReceivedTime()));
+        ps.setString(index + 2, event.getMachineId());
+        ps.setString(index + 3, event.getLineId());
+        ps.setString(index + 4, event.getFactoryId());
+        ps.setLong(index + 5, event.getDurationMs());
+        ps.setInt(index + 6, event.getDefectCount());
+        ps.setString(index + 7, event.getPayloadHash());
+    }
+    
+    private static List<Event> unwritten(List<Event> events, int[][] counts) {
+        List<Event> unwritten = new ArrayList<>();
+        int row = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    unwritten.add(events.get(row));
+                }
+                row++;
+            }
+        }
+        return unwritten;
+    }
+}
@@ -0,0 +1,48 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    
+    /**
+     * Take over a FAILED or abandoned PENDING reservation, if it is still as it was read
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.state = 'PENDING', r.createdAt = :claimedAt " +
+           "WHERE r.idempotencyKey = :key AND r.state = :state AND r.createdAt = :createdAt")
+    int claim(@Param("key") String key,
+              @Param("state") IdempotencyRecord.State state,
+              @Param("createdAt") Instant createdAt,
+              @Param("claimedAt") Instant claimedAt);
+    
+    /**
+     * Store the response of the reservation made at claimedAt, if it still holds the key
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.state = 'DONE', r.response = :response " +
+           "WHERE r.idempotencyKey = :key AND r.state = 'PENDING' AND r.createdAt = :claimedAt")
+    int complete(@Param("key") String key, @Param("claimedAt") Instant claimedAt, @Param("response") String response);
+    
+    /**
+     * Mark the reservation made at claimedAt as failed, if it still holds the key
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.state = 'FAILED' " +
+           "WHERE r.idempotencyKey = :key AND r.state = 'PENDING' AND r.createdAt = :claimedAt")
+    int fail(@Param("key") String key, @Param("claimedAt") Instant claimedAt);
+    
+    /**
+     * Delete every record created before the cutoff in one statement
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,20 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.entity.MachineShard;
+import com.buyogo.factoryevents.entity.MachineShardId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MachineShardRepository extends JpaRepository<MachineShard, MachineShardId> {
+    
+    /**
+     * Names of the shards holding events of a machine
+     */
+    @Query("SELECT m.id.shard FROM MachineShard m WHERE m.id.machineId = :machineId ORDER BY m.id.shard")
+    List<String> findShards(@Param("machineId") String machineId);
+}
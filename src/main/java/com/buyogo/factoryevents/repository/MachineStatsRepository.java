@@ -0,0 +1,58 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.dto.StatsWindow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event and defect totals of one machine over several windows, computed in a single scan.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MachineStatsRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Scans the machine's rows once over the widest range spanned by the windows and sums each
+     * window with conditional aggregation; defectCount = -1 is excluded from defect sums.
+     *
+     * @return {events, defects} per window, in the order given
+     */
+    public List<long[]> totals(String machineId, List<StatsWindow> windows) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < windows.size(); i++) {
+            StatsWindow window = windows.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("COUNT(CASE WHEN event_time >= ? AND event_time < ? THEN 1 END), ")
+                .append("COALESCE(SUM(CASE WHEN event_time >= ? AND event_time < ? AND defect_count >= 0 ")
+                .append("THEN defect_count END), 0)");
+            for (int bound = 0; bound < 2; bound++) {
+                args.add(EventExportRepository.toTimestamp(window.getStart()));
+                args.add(EventExportRepository.toTimestamp(window.getEnd()));
+            }
+        }
+        Instant from = windows.stream().map(StatsWindow::getStart).min(Instant::compareTo).orElseThrow();
+        Instant to = windows.stream().map(StatsWindow::getEnd).max(Instant::compareTo).orElseThrow();
+        sql.append(" FROM events WHERE machine_id = ? AND event_time >= ? AND event_time < ?");
+        args.add(machineId);
+        args.add(EventExportRepository.toTimestamp(from));
+        args.add(EventExportRepository.toTimestamp(to));
+        
+        return jdbcTemplate.queryForObject(sql.toString(), (rs, rowNum) -> {
+            List<long[]> totals = new ArrayList<>(windows.size());
+            for (int i = 0; i < windows.size(); i++) {
+                totals.add(new long[] {rs.getLong(2 * i + 1), rs.getLong(2 * i + 2)});
+            }
+            return totals;
+        }, args.toArray());
+    }
+}
@@ -0,0 +1,61 @@
+package com.buyogo.factoryevents.repository;
+
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grouped per-bucket aggregates over the events table, computed in a single scan.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TimeSeriesRepository {
+    
+    /**
+     * One non-empty bucket: start of the bucket, event count and defect sum (defectCount = -1 excluded).
+     */
+    @Value
+    public static class BucketRow {
+        Instant bucketStart;
+        long eventsCount;
+        long defectsCount;
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * @param truncUnit a {@code date_trunc} field name; callers must pass a fixed constant, it is
+     *                  inlined into the statement because neither PostgreSQL nor H2 accept it as a bind parameter
+     */
+    public List<BucketRow> aggregate(EventExportFilter filter, String truncUnit) {
+        String bucket = "DATE_TRUNC('" + truncUnit + "', event_time)";
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ").append(bucket).append(" AS bucket_start, COUNT(*), ")
+            .append("COALESCE(SUM(CASE WHEN defect_count >= 0 THEN defect_count ELSE 0 END), 0) ")
+            .append("FROM events WHERE event_time >= ? AND event_time < ?");
+        args.add(EventExportRepository.toTimestamp(filter.getFrom()));
+        args.add(EventExportRepository.toTimestamp(filter.getTo()));
+        if (filter.getMachineId() != null) {
+            sql.append(" AND machine_id = ?");
+            args.add(filter.getMachineId());
+        }
+        if (filter.getFactoryId() != null) {
+            sql.append(" AND factory_id = ?");
+            args.add(filter.getFactoryId());
+        }
+        if (filter.getLineId() != null) {
+            sql.append(" AND line_id = ?");
+            args.add(filter.getLineId());
+        }
+        sql.append(" GROUP BY ").append(bucket).append(" ORDER BY bucket_start");
+        
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new BucketRow(
+            EventExportRepository.toInstant(rs, 1), rs.getLong(2), rs.getLong(3)), args.toArray());
+    }
+}
@@ -0,0 +1,19 @@
+package com.buyogo.factoryevents.service;
+
+/**
+ * Raised when a batch is shed by {@link IngestionAdmission}; the client should retry after
+ * {@link #getRetryAfterSeconds()}.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
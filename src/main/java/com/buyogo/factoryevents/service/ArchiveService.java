@@ -0,0 +1,194 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.archive.ArchiveStore;
+import com.buyogo.factoryevents.entity.Event;
+import com.buyogo.factoryevents.repository.EventArchiveRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Moves events older than {@code events.archive.older-than} out of the database into
+ * {@link ArchiveStore} segments, one shard, UTC day and factory at a time, in chunks of at most
+ * {@code events.archive.chunk-rows} events so heap use, locks held and the time ingestion of
+ * that day waits stay bounded however busy the factory was. Each chunk is one transaction: its
+ * rows are read and locked, written as a pending segment, deleted, and the segment recorded in
+ * {@code archive_segments}. The segment is published only after the commit, and discarded on
+ * rollback, so queries never see the same rows in both tiers; an {@link EventsArchivedEvent}
+ * lets caches drop the ids once committed. Only whole days before the cutoff are archived.
+ *
+ * <p>A crash between the commit and the publish, or before the commit, leaves a pending
+ * segment. Each run first settles those older than {@code events.archive.orphan-after}: a
+ * segment recorded on some shard is published, any other is discarded.
+ *
+ * <p>Archived events are gone from the events table: stats federate them back in, but a re-sent
+ * archived event is no longer deduplicated, so keep the cutoff well beyond any client's retry
+ * horizon.
+ */
+@Service
+@Slf4j
+public class ArchiveService {
+    
+    private final ArchiveStore archiveStore;
+    private final EventArchiveRepository eventArchiveRepository;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final Duration olderThan;
+    private final Duration orphanAfter;
+    private final int chunkRows;
+    
+    public ArchiveService(ArchiveStore archiveStore,
+                          EventArchiveRepository eventArchiveRepository,
+                          ShardRouter shardRouter,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${events.archive.enabled:false}") boolean enabled,
+                          @Value("${events.archive.older-than:P90D}") Duration olderThan,
+                          @Value("${events.archive.orphan-after:PT1H}") Duration orphanAfter,
+                          @Value("${events.archive.chunk-rows:50000}") int chunkRows) {
+        if (olderThan.toDays() < 1) {
+            throw new IllegalArgumentException("events.archive.older-than must be at least one day");
+        }
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("events.archive.chunk-rows must be positive");
+        }
+        this.archiveStore = archiveStore;
+        this.eventArchiveRepository = eventArchiveRepository;
+        this.shardRouter = shardRouter;
+        this.eventPublisher = eventPublisher;
+        this.chunkRows = chunkRows;
+        this.enabled = enabled;
+        this.olderThan = olderThan;
+        this.orphanAfter = orphanAfter;
+    }
+    
+    @Scheduled(fixedDelayString = "${events.archive.interval-ms:3600000}")
+    public void archiveExpired() {
+        if (enabled) {
+            archiveBefore(Instant.now().minus(olderThan));
+        }
+    }
+    
+    /**
+     * Archive every event of the UTC days ending at or before {@code cutoff}, on every shard,
+     * after settling segments left pending by earlier runs.
+     *
+     * @return the number of events moved
+     */
+    public long archiveBefore(Instant cutoff) {
+        settlePending();
+        LocalDate endDay = LocalDate.ofInstant(cutoff, ZoneOffset.UTC);
+        Instant end = endDay.atStartOfDay(ZoneOffset.UTC).toInstant();
+        String run = Long.toString(Instant.now().toEpochMilli(), 36);
+        long moved = 0;
+        for (String shard : shardRouter.allShards()) {
+            Optional<Instant> oldest = shardRouter.read(shard, () -> eventArchiveRepository.findOldestEventTime(end));
+            if (oldest.isEmpty()) {
+                continue;
+            }
+            for (LocalDate day = LocalDate.ofInstant(oldest.get(), ZoneOffset.UTC); day.isBefore(endDay); day = day.plusDays(1)) {
+                Instant from = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+                List<String> factories = shardRouter.read(shard,
+                    () -> eventArchiveRepository.findFactories(from, from.plus(1, ChronoUnit.DAYS)));
+                for (String factoryId : factories) {
+                    LocalDate archivedDay = day;
+                    long chunk;
+                    for (int index = 0; ; index++) {
+                        String name = shard + "-" + run + "-" + index;
+                        chunk = shardRouter.write(shard, () -> archiveSegment(shard, archivedDay, factoryId, name));
+                        moved += chunk;
+                        if (chunk < chunkRows) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (moved > 0) {
+            log.info("Archived {} events with event time before {}", moved, end);
+        }
+        return moved;
+    }
+    
+    /**
+     * Publish the pending segments, last touched more than {@code orphan-after} ago, whose
+     * transaction committed on some shard, and discard the others.
+     *
+     * @return the number of segments published
+     */
+    public int settlePending() {
+        int published = 0;
+        for (ArchiveStore.Staged segment : archiveStore.orphans(Instant.now().minus(orphanAfter))) {
+            boolean committed = shardRouter.allShards().stream()
+                .anyMatch(shard -> shardRouter.read(shard, () -> eventArchiveRepository.isSegmentRecorded(segment.name())));
+            if (!committed) {
+                log.warn("Discarding archive segment {} of a run that did not commit", segment.name());
+                segment.discard();
+                continue;
+            }
+            try {
+                segment.publish();
+                published++;
+                log.info("Published archive segment {} left pending by an earlier run", segment.name());
+            } catch (IOException e) {
+                log.error("Could not publish archive segment {}", segment.name(), e);
+            }
+        }
+        return published;
+    }
+    
+    private long archiveSegment(String shard, LocalDate day, String factoryId, String name) {
+        Instant from = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+        List<Event> events = eventArchiveRepository.findForArchive(factoryId, from, from.plus(1, ChronoUnit.DAYS), chunkRows);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        ArchiveStore.Staged staged;
+        try {
+            staged = archiveStore.stage(factoryId, day, name, events);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive events of " + day + " on shard " + shard, e);
+        }
+        try {
+            eventArchiveRepository.delete(events);
+            eventArchiveRepository.recordSegment(staged.name(), Instant.now());
+            eventPublisher.publishEvent(new EventsArchivedEvent(events.stream().map(Event::getEventId).toList()));
+        } catch (RuntimeException e) {
+            staged.discard();
+            throw e;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    staged.publish();
+                } catch (IOException e) {
+                    log.error("Could not publish archive segment {}; the next run publishes it", staged.name(), e);
+                }
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    staged.discard();
+                }
+            }
+        });
+        log.debug("Archived {} events of {} on shard {} into {}", events.size(), day, shard, staged.name());
+        return events.size();
+    }
+}
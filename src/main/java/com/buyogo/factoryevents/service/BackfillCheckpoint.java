@@ -0,0 +1,79 @@
+package com.buyogo.factoryevents.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Ranges of a backfill file that are fully loaded, kept in a small text file so a rerun skips
+ * them. The first line pins the file size and range size it was written for; a checkpoint from
+ * a different file layout is refused rather than misapplied. The second line pins the time the
+ * file's received times count back from, so every run of the same file stamps a line alike.
+ * Each later line is the index of a range whose every batch has committed.
+ */
+class BackfillCheckpoint {
+    
+    private static final String RECEIVED_BEFORE = "received-before=";
+    
+    private final Path path;
+    private final BitSet done = new BitSet();
+    private Instant receivedBefore;
+    
+    private BackfillCheckpoint(Path path) {
+        this.path = path;
+    }
+    
+    static BackfillCheckpoint open(Path path, long fileSize, long rangeBytes) throws IOException {
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(path);
+        String header = "size=" + fileSize + " range-bytes=" + rangeBytes;
+        if (!Files.exists(path)) {
+            checkpoint.receivedBefore = Instant.now().truncatedTo(ChronoUnit.MICROS);
+            Files.writeString(path, header + "\n" + RECEIVED_BEFORE + checkpoint.receivedBefore + "\n", StandardCharsets.UTF_8);
+            return checkpoint;
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(header)) {
+            throw new IllegalStateException("Checkpoint " + path + " was written for a different file or range size; "
+                + "delete it to start over");
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.startsWith(RECEIVED_BEFORE)) {
+                checkpoint.receivedBefore = Instant.parse(line.substring(RECEIVED_BEFORE.length()).strip());
+            } else if (!line.isBlank()) {
+                checkpoint.done.set(Integer.parseInt(line.strip()));
+            }
+        }
+        if (checkpoint.receivedBefore == null) {
+            throw new IllegalStateException("Checkpoint " + path + " lacks " + RECEIVED_BEFORE + "; delete it to start over");
+        }
+        return checkpoint;
+    }
+    
+    /**
+     * Received time of the line at byte {@code offset} of a file of {@code fileSize} bytes: one
+     * microsecond per byte before the pinned time, so later lines are received later.
+     */
+    Instant receivedTime(long offset, long fileSize) {
+        return receivedBefore.minus(fileSize - offset, ChronoUnit.MICROS);
+    }
+    
+    synchronized boolean isDone(int range) {
+        return done.get(range);
+    }
+    
+    synchronized int doneCount() {
+        return done.cardinality();
+    }
+    
+    synchronized void markDone(int range) throws IOException {
+        Files.writeString(path, range + "\n", StandardCharsets.UTF_8,
+            StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        done.set(range);
+    }
+}
@@ -0,0 +1,408 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.BackfillResult;
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventWriteRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline load of historical NDJSON or CSV event files. The file is cut into byte ranges that
+ * are parsed and loaded in parallel, each through {@link EventService#processBatch} in batches,
+ * so validation, dedupe and update rules are exactly those of {@code POST /events/batch}.
+ *
+ * <p>Ranges load in any order, so an event's received time comes from its line's position in
+ * the file rather than from when its batch is written: one microsecond per byte, counting back
+ * from the time pinned in the checkpoint by the first run. When a file holds several versions
+ * of an event id, the one latest in the file therefore wins, across ranges and reruns alike.
+ * Backfilled rows are received before the first run started, so change feed consumers already
+ * past that point do not see them, and any version ingested live since wins over the file's.
+ *
+ * <p>A range is recorded in the checkpoint once all its batches have committed; a rerun skips
+ * recorded ranges and reloads any other from its start, which the dedupe rules make harmless.
+ * Lines are split on {@code \n}, so CSV fields must not contain line breaks.
+ */
+@Service
+@Slf4j
+public class BackfillService {
+    
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final List<String> REQUIRED_CSV_COLUMNS =
+        List.of("eventId", "eventTime", "machineId", "durationMs", "defectCount");
+    
+    private final EventService eventService;
+    private final EventWriteRepository eventWriteRepository;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final long rangeBytes;
+    private final int batchSize;
+    private final int threads;
+    private final Duration progressInterval;
+    
+    public BackfillService(EventService eventService,
+                           EventWriteRepository eventWriteRepository,
+                           ShardRouter shardRouter,
+                           ObjectMapper objectMapper,
+                           @Value("${events.backfill.range-bytes:67108864}") long rangeBytes,
+                           @Value("${events.backfill.batch-size:5000}") int batchSize,
+                           @Value("${events.backfill.threads:4}") int threads,
+                           @Value("${events.backfill.progress-interval:PT10S}") Duration progressInterval) {
+        if (rangeBytes < 1 || batchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("events.backfill range-bytes, batch-size and threads must be positive");
+        }
+        this.eventService = eventService;
+        this.eventWriteRepository = eventWriteRepository;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.rangeBytes = rangeBytes;
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.progressInterval = progressInterval;
+    }
+    
+    /**
+     * Load the file, skipping ranges the checkpoint already records. With {@code deferIndexes},
+     * the secondary indexes of every shard are dropped for the load and recreated afterwards,
+     * also when the load fails.
+     */
+    public BackfillResult run(Path file, EventExportService.Format format, Path checkpointFile, boolean deferIndexes)
+            throws IOException {
+        long size = Files.size(file);
+        int ranges = (int) Math.max(1, (size + rangeBytes - 1) / rangeBytes);
+        BackfillCheckpoint checkpoint = BackfillCheckpoint.open(checkpointFile, size, rangeBytes);
+        Map<String, Integer> columns = format == EventExportService.Format.CSV ? csvColumns(file) : null;
+        int skipped = checkpoint.doneCount();
+        long pendingBytes = 0;
+        for (int range = 0; range < ranges; range++) {
+            if (!checkpoint.isDone(range)) {
+                pendingBytes += Math.min(size, (range + 1) * rangeBytes) - range * rangeBytes;
+            }
+        }
+        log.info("Backfilling {} ({} bytes, {} ranges, {} already loaded) with {} threads",
+            file, size, ranges, skipped, threads);
+        
+        Progress progress = new Progress(pendingBytes);
+        if (deferIndexes) {
+            forEachShard(eventWriteRepository::dropSecondaryIndexes);
+            log.info("Dropped secondary indexes for the load");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "backfill-" + progress.threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Void>> loads = new ArrayList<>();
+            for (int range = 0; range < ranges; range++) {
+                if (checkpoint.isDone(range)) {
+                    continue;
+                }
+                int index = range;
+                loads.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        loadRange(file, format, columns, index, size, checkpoint, progress);
+                        checkpoint.markDone(index);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    log.info("Range {}/{} loaded; {}", index + 1, ranges, progress.describe());
+                }, executor));
+            }
+            CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+            if (deferIndexes) {
+                log.info("Recreating secondary indexes");
+                forEachShard(eventWriteRepository::createSecondaryIndexes);
+            }
+        }
+        
+        log.info("Backfill of {} finished: {}", file, progress.describe());
+        return BackfillResult.builder()
+            .ranges(ranges)
+            .skippedRanges(skipped)
+            .lines(progress.lines.sum())
+            .accepted(progress.accepted.sum())
+            .deduped(progress.deduped.sum())
+            .updated(progress.updated.sum())
+            .rejected(progress.rejected.sum())
+            .elapsed(Duration.between(progress.started, Instant.now()))
+            .build();
+    }
+    
+    private void loadRange(Path file, EventExportService.Format format, Map<String, Integer> columns,
+                           int range, long size, BackfillCheckpoint checkpoint, Progress progress) throws IOException {
+        long start = range * rangeBytes;
+        long end = Math.min(size, start + rangeBytes);
+        List<EventRequest> batch = new ArrayList<>(batchSize);
+        List<Instant> receivedTimes = new ArrayList<>(batchSize);
+        try (RangeReader reader = new RangeReader(file, start, end)) {
+            boolean header = format == EventExportService.Format.CSV && start == 0;
+            for (String line = reader.nextLine(); line != null; line = reader.nextLine()) {
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.lines.increment();
+                try {
+                    batch.add(format == EventExportService.Format.CSV ? parseCsv(line, columns) : parseNdjson(line));
+                    receivedTimes.add(checkpoint.receivedTime(reader.lineStart(), size));
+                } catch (RuntimeException | IOException e) {
+                    progress.rejected.increment();
+                    log.warn("Rejected malformed line at byte {}: {}", reader.lineStart(), e.getMessage());
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    load(batch, receivedTimes, progress);
+                    batch.clear();
+                    receivedTimes.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                load(batch, receivedTimes, progress);
+            }
+            progress.bytes.addAndGet(end - start);
+        }
+    }
+    
+    private void load(List<EventRequest> batch, List<Instant> receivedTimes, Progress progress) {
+        BatchIngestionResponse response = eventService.processBatch(batch, receivedTimes);
+        progress.accepted.add(response.getAccepted());
+        progress.deduped.add(response.getDeduped());
+        progress.updated.add(response.getUpdated());
+        progress.rejected.add(response.getRejected());
+        response.getRejections().forEach(rejection ->
+            log.debug("Rejected event {}: {}", rejection.getEventId(), rejection.getReason()));
+        
+        long now = System.nanoTime();
+        long last = progress.lastReport.get();
+        if (now - last >= progressInterval.toNanos() && progress.lastReport.compareAndSet(last, now)) {
+            log.info("Backfill progress: {}", progress.describe());
+        }
+    }
+    
+    private void forEachShard(Runnable work) {
+        shardRouter.fanOut(shardRouter.allShards(), shard -> shardRouter.write(shard, () -> {
+            work.run();
+            return null;
+        }));
+    }
+    
+    private EventRequest parseNdjson(String line) throws IOException {
+        return objectMapper.readValue(line, EventRequest.class);
+    }
+    
+    private Map<String, Integer> csvColumns(Path file) throws IOException {
+        String header;
+        try (RangeReader reader = new RangeReader(file, 0, Math.max(1, Files.size(file)))) {
+            header = reader.nextLine();
+        }
+        if (header == null) {
+            throw new IllegalArgumentException("CSV file " + file + " has no header row");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).strip(), i);
+        }
+        for (String required : REQUIRED_CSV_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header of " + file + " lacks column " + required);
+            }
+        }
+        return columns;
+    }
+    
+    /**
+     * One CSV row as an event, columns located by header name; receivedTime and unknown columns
+     * are ignored, and an empty field is a missing value.
+     */
+    static EventRequest parseCsv(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsv(line);
+        String eventTime = field(fields, columns, "eventTime");
+        String durationMs = field(fields, columns, "durationMs");
+        String defectCount = field(fields, columns, "defectCount");
+        return EventRequest.builder()
+            .eventId(field(fields, columns, "eventId"))
+            .eventTime(eventTime != null ? Instant.parse(eventTime) : null)
+            .machineId(field(fields, columns, "machineId"))
+            .lineId(field(fields, columns, "lineId"))
+            .factoryId(field(fields, columns, "factoryId"))
+            .durationMs(durationMs != null ? Long.valueOf(durationMs) : null)
+            .defectCount(defectCount != null ? Integer.valueOf(defectCount) : null)
+            .build();
+    }
+    
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+    
+    /**
+     * Split a CSV line on commas outside double quotes, unescaping doubled quotes.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    /**
+     * Counters shared by the range loaders of one run.
+     */
+    private static class Progress {
+        final Instant started = Instant.now();
+        final long totalBytes;
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+        final AtomicInteger threadIds = new AtomicInteger();
+        final LongAdder lines = new LongAdder();
+        final LongAdder accepted = new LongAdder();
+        final LongAdder deduped = new LongAdder();
+        final LongAdder updated = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        
+        Progress(long totalBytes) {
+            this.totalBytes = Math.max(1, totalBytes);
+        }
+        
+        String describe() {
+            double seconds = Math.max(0.001, Duration.between(started, Instant.now()).toMillis() / 1000.0);
+            return String.format("%.1f%% of pending bytes, %d lines (%.0f/s), accepted=%d deduped=%d updated=%d rejected=%d",
+                Math.min(100.0, 100.0 * bytes.get() / totalBytes), lines.sum(), lines.sum() / seconds,
+                accepted.sum(), deduped.sum(), updated.sum(), rejected.sum());
+        }
+    }
+    
+    /**
+     * Reads the lines starting inside [start, end) of a file. A line belongs to the range holding
+     * its first byte, so adjacent ranges together read every line exactly once.
+     */
+    static class RangeReader implements Closeable {
+        
+        private final FileChannel channel;
+        private final InputStream in;
+        private final long end;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private long position;
+        private long lineStart;
+        
+        RangeReader(Path file, long start, long end) throws IOException {
+            this.channel = FileChannel.open(file);
+            this.end = end;
+            // Start one byte early: the partial line skipped is empty exactly when a line starts at start
+            this.position = Math.max(0, start - 1);
+            this.in = new BufferedInputStream(Channels.newInputStream(channel.position(position)), READ_BUFFER_SIZE);
+            if (start > 0) {
+                readLine();
+            }
+        }
+        
+        /**
+         * The next line without its terminator, or null once the next line starts past the range.
+         */
+        String nextLine() throws IOException {
+            if (position >= end) {
+                return null;
+            }
+            lineStart = position;
+            if (!readLine()) {
+                return null;
+            }
+            int length = line.size();
+            byte[] bytes = line.toByteArray();
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        
+        long lineStart() {
+            return lineStart;
+        }
+        
+        private boolean readLine() throws IOException {
+            line.reset();
+            int b;
+            boolean read = false;
+            while ((b = in.read()) != -1) {
+                position++;
+                read = true;
+                if (b == '\n') {
+                    return true;
+                }
+                line.write(b);
+            }
+            return read;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.buyogo.factoryevents.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many request threads one workload may occupy at once. Callers beyond the cap wait
+ * in a bounded queue for up to {@code maxWait}, then fail fast with {@link BulkheadFullException}
+ * instead of tying up more server threads, so a spike in one workload leaves threads for the other.
+ *
+ * <p>Work runs on the caller's thread: handing it to a separate executor would make every
+ * endpoint asynchronous without bounding anything more than this does.
+ */
+@Slf4j
+public class Bulkhead {
+    
+    private final String name;
+    private final Semaphore slots;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter queueFull;
+    private final Counter timedOut;
+    private final Timer wait;
+    
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, Duration maxWait, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+        
+        Gauge.builder("bulkhead.active", this, Bulkhead::active)
+            .tag("name", name).description("Calls running in the bulkhead").register(meterRegistry);
+        Gauge.builder("bulkhead.queued", queued, AtomicInteger::get)
+            .tag("name", name).description("Calls waiting for a bulkhead slot").register(meterRegistry);
+        this.queueFull = Counter.builder("bulkhead.rejected")
+            .tag("name", name).tag("reason", "queue_full").register(meterRegistry);
+        this.timedOut = Counter.builder("bulkhead.rejected")
+            .tag("name", name).tag("reason", "timeout").register(meterRegistry);
+        this.wait = Timer.builder("bulkhead.wait")
+            .tag("name", name).description("Time spent waiting for a bulkhead slot").register(meterRegistry);
+    }
+    
+    public <T> T execute(Supplier<T> work) {
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            slots.release();
+        }
+    }
+    
+    /**
+     * Take a slot now and hold it until the returned permit is closed, for work that outlives
+     * the calling method, such as a streamed response body. Closing twice releases once.
+     */
+    public Permit enter() {
+        acquire();
+        return new Permit();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    int active() {
+        return maxConcurrent - slots.availablePermits();
+    }
+    
+    private void acquire() {
+        if (slots.tryAcquire()) {
+            wait.record(0, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            queueFull.increment();
+            throw full("queue is full");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                timedOut.increment();
+                throw full("timed out waiting for a slot");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut.increment();
+            throw full("interrupted waiting for a slot");
+        } finally {
+            queued.decrementAndGet();
+        }
+        wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    public final class Permit implements AutoCloseable {
+        
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        private Permit() {
+        }
+        
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                slots.release();
+            }
+        }
+    }
+    
+    private BulkheadFullException full(String reason) {
+        log.info("Bulkhead {} rejected a call: {} ({} running, {} queued)", name, reason, active(), queued.get());
+        return new BulkheadFullException("Bulkhead " + name + " " + reason);
+    }
+}
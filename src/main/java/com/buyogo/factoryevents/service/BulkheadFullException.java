@@ -0,0 +1,11 @@
+package com.buyogo.factoryevents.service;
+
+/**
+ * Raised when a {@link Bulkhead} has no free slot and its wait queue is full or timed out.
+ */
+public class BulkheadFullException extends RuntimeException {
+    
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,326 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.DurationPercentilesResponse;
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.entity.DurationSketch;
+import com.buyogo.factoryevents.entity.DurationSketchId;
+import com.buyogo.factoryevents.repository.DurationSketchRepository;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * Per machine, per factory line, per hour duration histograms. Committed events are recorded into
+ * in-memory deltas which a scheduled flush merges into the persisted sketches; queries merge
+ * the persisted sketches covering the window with any deltas not yet flushed.
+ *
+ * <p>Deltas are only in memory until the next flush (and the one on shutdown), so a crash or
+ * kill loses up to one flush interval of them. {@link #rebuild} recomputes the sketches of a
+ * window from the events table to repair that.
+ *
+ * <p>Histograms keep {@value #SIGNIFICANT_DIGITS} significant digits, so every reported
+ * percentile is within 1% of the exact value, whatever the number of merged buckets.
+ */
+@Service
+@Slf4j
+public class DurationSketchService {
+    
+    static final int SIGNIFICANT_DIGITS = 2;
+    static final double RELATIVE_ERROR = 0.01;
+    private static final Duration BUCKET = Duration.ofHours(1);
+    
+    private final DurationSketchRepository sketchRepository;
+    private final EventExportRepository exportRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final Map<DurationSketchId, Delta> pending = new ConcurrentHashMap<>();
+    
+    public DurationSketchService(DurationSketchRepository sketchRepository,
+                                 EventExportRepository exportRepository,
+                                 ShardRouter shardRouter,
+                                 PlatformTransactionManager transactionManager) {
+        this.sketchRepository = sketchRepository;
+        this.exportRepository = exportRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsCommitted(EventsCommittedEvent committed) {
+        for (EventsCommittedEvent.Change change : committed.getChanges()) {
+            if (change.getPrevious() != null) {
+                record(change.getPrevious(), true);
+            }
+            record(change.getCurrent(), false);
+        }
+    }
+    
+    /**
+     * Percentiles of one machine, or of one line of a factory (line ids are only unique within
+     * their factory, so a line scope needs both).
+     */
+    @Transactional(readOnly = true)
+    public DurationPercentilesResponse getPercentiles(String machineId, String factoryId, String lineId,
+                                                      Instant from, Instant to) {
+        if ((machineId == null) == (lineId == null)) {
+            throw new IllegalArgumentException("Exactly one of machineId or lineId is required");
+        }
+        if ((lineId == null) != (factoryId == null)) {
+            throw new IllegalArgumentException("factoryId is required with lineId, and only with lineId");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        Instant coveredFrom = bucketStart(from);
+        Instant coveredTo = bucketStart(to.minusNanos(1)).plus(BUCKET);
+        
+        List<DurationSketch> sketches = machineId != null
+            ? sketchRepository.findByMachineIdAndBucketStartBetween(machineId, coveredFrom, coveredTo)
+            : sketchRepository.findByFactoryIdAndLineIdAndBucketStartBetween(factoryId, lineId, coveredFrom, coveredTo);
+        
+        Histogram merged = newHistogram();
+        for (DurationSketch sketch : sketches) {
+            merged.add(decode(sketch.getHistogram()));
+        }
+        // A delta being flushed right now is in neither place for a moment; percentiles are approximate anyway
+        pending.forEach((id, delta) -> {
+            boolean inScope = machineId != null
+                ? machineId.equals(id.getMachineId())
+                : factoryId.equals(id.getFactoryId()) && lineId.equals(id.getLineId());
+            if (inScope && !id.getBucketStart().isBefore(coveredFrom) && id.getBucketStart().isBefore(coveredTo)) {
+                delta.mergeInto(merged);
+            }
+        });
+        
+        return DurationPercentilesResponse.builder()
+            .machineId(machineId)
+            .factoryId(factoryId)
+            .lineId(lineId)
+            .from(coveredFrom)
+            .to(coveredTo)
+            .samples(merged.getTotalCount())
+            .p50Ms(merged.getValueAtPercentile(50.0))
+            .p95Ms(merged.getValueAtPercentile(95.0))
+            .p99Ms(merged.getValueAtPercentile(99.0))
+            .maxMs(merged.getMaxValue())
+            .relativeError(RELATIVE_ERROR)
+            .build();
+    }
+    
+    /**
+     * Merge pending deltas into the persisted sketches. Keys are flushed in a stable order so
+     * concurrent flushes from several nodes lock rows in the same sequence.
+     */
+    @Scheduled(fixedDelayString = "${stats.durations.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<DurationSketchId> keys = new ArrayList<>(pending.keySet());
+        keys.sort(Comparator.comparing(DurationSketchId::getMachineId)
+            .thenComparing(DurationSketchId::getFactoryId)
+            .thenComparing(DurationSketchId::getLineId)
+            .thenComparing(DurationSketchId::getBucketStart));
+        for (DurationSketchId key : keys) {
+            Delta delta = pending.remove(key);
+            if (delta == null) {
+                continue;
+            }
+            delta.close();
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(key, delta));
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush duration sketch {}; will retry: {}", key, e.getMessage());
+                pending.merge(key, delta.reopen(), Delta::combine);
+            }
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+    
+    /**
+     * Recompute the sketches of every hour overlapping [from, to) from the events of all shards,
+     * replacing the persisted ones and dropping unflushed deltas of those hours. Use it after a
+     * crash over the hours that were being ingested. Deltas recorded while the events are being
+     * read may end up counted twice, so run it once those hours are quiet; events already moved
+     * to the archive are not in the table and drop out of the rebuilt hours.
+     *
+     * @return the number of sketches written
+     */
+    public int rebuild(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        Instant coveredFrom = bucketStart(from);
+        Instant coveredTo = bucketStart(to.minusNanos(1)).plus(BUCKET);
+        pending.keySet().removeIf(id ->
+            !id.getBucketStart().isBefore(coveredFrom) && id.getBucketStart().isBefore(coveredTo));
+        
+        EventExportFilter filter = EventExportFilter.builder().from(coveredFrom).to(coveredTo).build();
+        Map<DurationSketchId, Histogram> rebuilt = new HashMap<>();
+        for (Map<DurationSketchId, Histogram> shardSketches : shardRouter.readEach(shardRouter.allShards(), () -> {
+            Map<DurationSketchId, Histogram> sketches = new HashMap<>();
+            exportRepository.streamEvents(filter, null, null, row -> sketches
+                .computeIfAbsent(keyOf(row.getMachineId(), row.getFactoryId(), row.getLineId(), row.getEventTime()),
+                    id -> newHistogram())
+                .recordValue(row.getDurationMs()));
+            return sketches;
+        })) {
+            shardSketches.forEach((id, histogram) -> rebuilt.merge(id, histogram, (a, b) -> {
+                a.add(b);
+                return a;
+            }));
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            sketchRepository.deleteByBucketStartBetween(coveredFrom, coveredTo);
+            sketchRepository.flush();
+            List<DurationSketch> sketches = new ArrayList<>();
+            rebuilt.forEach((id, histogram) -> sketches.add(DurationSketch.builder()
+                .id(id)
+                .sampleCount(histogram.getTotalCount())
+                .histogram(encode(histogram))
+                .build()));
+            sketchRepository.saveAll(sketches);
+        });
+        log.info("Rebuilt {} duration sketches for [{}, {})", rebuilt.size(), coveredFrom, coveredTo);
+        return rebuilt.size();
+    }
+    
+    private void persist(DurationSketchId key, Delta delta) {
+        DurationSketch sketch = sketchRepository.findForUpdate(key).orElse(null);
+        Histogram histogram = sketch != null ? decode(sketch.getHistogram()) : newHistogram();
+        delta.mergeInto(histogram);
+        if (sketch == null) {
+            sketch = DurationSketch.builder().id(key).build();
+        }
+        sketch.setSampleCount(histogram.getTotalCount());
+        sketch.setHistogram(encode(histogram));
+        sketchRepository.save(sketch);
+    }
+    
+    private void record(EventSnapshot event, boolean retraction) {
+        DurationSketchId key = keyOf(event.getMachineId(), event.getFactoryId(), event.getLineId(),
+            event.getEventTime());
+        // A delta picked up by a concurrent flush is closed; retry against its replacement
+        while (!pending.computeIfAbsent(key, id -> new Delta()).record(event.getDurationMs(), retraction)) {
+            Thread.onSpinWait();
+        }
+    }
+    
+    private static DurationSketchId keyOf(String machineId, String factoryId, String lineId, Instant eventTime) {
+        return new DurationSketchId(machineId, factoryId != null ? factoryId : "",
+            lineId != null ? lineId : "", bucketStart(eventTime));
+    }
+    
+    private static Instant bucketStart(Instant time) {
+        long width = BUCKET.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(time.toEpochMilli(), width) * width);
+    }
+    
+    static Histogram newHistogram() {
+        return new Histogram(1, EventService.MAX_DURATION_MS, SIGNIFICANT_DIGITS);
+    }
+    
+    static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        byte[] bytes = new byte[length];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    static Histogram decode(byte[] bytes) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 1);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt duration sketch", e);
+        }
+    }
+    
+    /**
+     * Unflushed changes for one sketch. Retractions (the replaced version of an updated event)
+     * are tracked separately because a histogram cannot hold negative counts.
+     */
+    private static class Delta {
+        private final Histogram added = newHistogram();
+        private final Histogram retracted = newHistogram();
+        
+        private boolean closed;
+        
+        synchronized boolean record(long durationMs, boolean retraction) {
+            if (closed) {
+                return false;
+            }
+            (retraction ? retracted : added).recordValue(durationMs);
+            return true;
+        }
+        
+        synchronized void close() {
+            closed = true;
+        }
+        
+        synchronized Delta reopen() {
+            closed = false;
+            return this;
+        }
+        
+        synchronized void mergeInto(Histogram target) {
+            target.add(added);
+            subtract(target, retracted);
+        }
+        
+        synchronized Delta combine(Delta other) {
+            synchronized (other) {
+                added.add(other.added);
+                retracted.add(other.retracted);
+            }
+            return this;
+        }
+        
+        /**
+         * Remove values from the target, clipped to what it holds: a replaced value recorded
+         * before sketches existed has nothing to retract.
+         */
+        private static void subtract(Histogram target, Histogram values) {
+            if (values.getTotalCount() == 0) {
+                return;
+            }
+            Histogram clipped = newHistogram();
+            for (HistogramIterationValue value : values.recordedValues()) {
+                long count = Math.min(value.getCountAtValueIteratedTo(),
+                    target.getCountAtValue(value.getValueIteratedTo()));
+                if (count > 0) {
+                    clipped.recordValueWithCount(value.getValueIteratedTo(), count);
+                }
+            }
+            target.subtract(clipped);
+        }
+    }
+}
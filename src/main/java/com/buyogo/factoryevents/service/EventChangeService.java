@@ -0,0 +1,113 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.EventExportRow;
+import com.buyogo.factoryevents.dto.KeysetCursor;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Change feed over every shard: events inserted or updated since a cursor, ordered by
+ * (received_time, event_id). An update gives the event a new received time, so it reappears
+ * later in the feed with its new values.
+ *
+ * <p>Received times are taken on each shard just before its rows are written, after the batch
+ * has its event id locks and write connection, but still before the commit, so a slow write
+ * can commit rows behind a position a consumer has already passed. Rows received less than
+ * {@code events.changes.settle-lag} ago are therefore held back; the lag must exceed the
+ * longest shard write plus the clock skew between nodes.
+ */
+@Service
+@Slf4j
+public class EventChangeService {
+    
+    private static final Comparator<KeysetCursor> FEED_ORDER =
+        Comparator.comparing(KeysetCursor::getTime).thenComparing(KeysetCursor::getEventId);
+    
+    private final EventExportRepository exportRepository;
+    private final EventExportService exportService;
+    private final ShardRouter shardRouter;
+    private final Duration settleLag;
+    private final int maxLimit;
+    
+    public EventChangeService(EventExportRepository exportRepository,
+                              EventExportService exportService,
+                              ShardRouter shardRouter,
+                              @Value("${events.changes.settle-lag:PT10S}") Duration settleLag,
+                              @Value("${events.changes.max-limit:10000}") int maxLimit) {
+        this.exportRepository = exportRepository;
+        this.exportService = exportService;
+        this.shardRouter = shardRouter;
+        this.settleLag = settleLag;
+        this.maxLimit = maxLimit;
+    }
+    
+    public void validate(int limit) {
+        if (limit <= 0 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+    }
+    
+    /**
+     * Last change of the page after {@code after}: the {@code limit}-th settled change over all
+     * shards, or the last one if there are fewer. Empty when nothing settled changed since.
+     */
+    public Optional<KeysetCursor> pageEnd(KeysetCursor after, int limit) {
+        Instant horizon = Instant.now().minus(settleLag);
+        List<KeysetCursor> keys = new ArrayList<>();
+        shardRouter.readEach(shardRouter.allShards(), () -> exportRepository.findChangeKeys(after, horizon, limit))
+            .forEach(keys::addAll);
+        keys.sort(FEED_ORDER);
+        return keys.isEmpty() ? Optional.empty() : Optional.of(keys.get(Math.min(limit, keys.size()) - 1));
+    }
+    
+    /**
+     * Write the changes in (after, through]; {@code through} is null for an empty page. One
+     * shard is streamed straight from its cursor; with several, the page (at most {@code limit}
+     * rows, as {@code through} came from {@link #pageEnd}) is read from each shard and merged.
+     */
+    public long write(KeysetCursor after, KeysetCursor through, EventExportService.Format format,
+                      OutputStream out) throws IOException {
+        if (through == null) {
+            return exportService.writeRows(format, out, sink -> { });
+        }
+        List<String> shards = shardRouter.allShards();
+        long rows;
+        try {
+            if (shards.size() == 1) {
+                rows = shardRouter.read(shards.get(0), () -> {
+                    try {
+                        return exportService.writeRows(format, out,
+                            sink -> exportRepository.streamChanges(after, through, sink));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } else {
+                List<EventExportRow> page = new ArrayList<>();
+                shardRouter.readEach(shards, () -> {
+                    List<EventExportRow> shardRows = new ArrayList<>();
+                    exportRepository.streamChanges(after, through, shardRows::add);
+                    return shardRows;
+                }).forEach(page::addAll);
+                page.sort(Comparator.comparing(EventExportRow::getReceivedTime).thenComparing(EventExportRow::getEventId));
+                rows = exportService.writeRows(format, out, sink -> page.forEach(sink));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.debug("Wrote {} changes up to {}", rows, through.getTime());
+        return rows;
+    }
+}
@@ -0,0 +1,210 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventExportRow;
+import com.buyogo.factoryevents.dto.KeysetCursor;
+import com.buyogo.factoryevents.json.IsoInstants;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventExportService {
+    
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+        
+        private final String contentType;
+        
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+    
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER =
+        "eventId,eventTime,receivedTime,machineId,lineId,factoryId,durationMs,defectCount\n";
+    
+    private final EventExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+    private final ShardRouter shardRouter;
+    
+    /**
+     * Pages are keyset-ordered within one database, so a sharded export must stay on one shard:
+     * give a factoryId, or a machineId whose events all live on one shard.
+     */
+    public void validate(EventExportFilter filter, Integer limit) {
+        if (filter.getMachineId() == null && filter.getFactoryId() == null && filter.getLineId() == null) {
+            throw new IllegalArgumentException("One of machineId, factoryId or lineId is required");
+        }
+        if (!filter.getFrom().isBefore(filter.getTo())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (shardRouter.shardsOf(filter).size() > 1) {
+            throw new IllegalArgumentException("Export spans several shards; filter by factoryId");
+        }
+    }
+    
+    /**
+     * Last row of this page, which is also the continuation token for the next one, or empty
+     * when this page is the last.
+     */
+    public Optional<KeysetCursor> pageEnd(EventExportFilter filter, KeysetCursor after, Integer limit) {
+        if (limit == null) {
+            return Optional.empty();
+        }
+        return shardRouter.read(shardOf(filter), () -> exportRepository.findPageEnd(filter, after, limit));
+    }
+    
+    /**
+     * Stream the page in (after, through]. Without {@code through} (no limit, or the last page)
+     * the rest of the window is streamed, including rows written since the page end was computed.
+     */
+    public long export(EventExportFilter filter, KeysetCursor after, KeysetCursor through,
+                       Format format, OutputStream out) throws IOException {
+        try {
+            return shardRouter.read(shardOf(filter), () -> {
+                try {
+                    long rows = writeRows(format, out, sink -> exportRepository.streamEvents(filter, after, through, sink));
+                    log.debug("Exported {} events as {}", rows, format);
+                    return rows;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private String shardOf(EventExportFilter filter) {
+        List<String> shards = shardRouter.shardsOf(filter);
+        // A machine no shard knows has no events anywhere
+        return shards.isEmpty() ? ShardingProperties.DEFAULT_SHARD : shards.get(0);
+    }
+    
+    /**
+     * Write every row {@code source} passes to its sink in the given format, as the export does.
+     * Also used by the change feed.
+     *
+     * @return the number of rows written
+     */
+    public long writeRows(Format format, OutputStream out, Consumer<Consumer<EventExportRow>> source)
+            throws IOException {
+        long[] rows = {0};
+        if (format == Format.NDJSON) {
+            SequenceWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+            source.accept(row -> {
+                try {
+                    writer.write(row);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            if (rows[0] > 0) {
+                out.write('\n');
+            }
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+            writer.write(CSV_HEADER);
+            char[] timeBuffer = new char[IsoInstants.MAX_LENGTH];
+            source.accept(row -> {
+                try {
+                    writeCsvRow(writer, row, timeBuffer);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        }
+        return rows[0];
+    }
+    
+    private void writeCsvRow(Writer writer, EventExportRow row, char[] timeBuffer) throws IOException {
+        writeCsvField(writer, row.getEventId());
+        writer.write(',');
+        writeTime(writer, row.getEventTime(), timeBuffer);
+        writer.write(',');
+        writeTime(writer, row.getReceivedTime(), timeBuffer);
+        writer.write(',');
+        writeCsvField(writer, row.getMachineId());
+        writer.write(',');
+        writeCsvField(writer, row.getLineId());
+        writer.write(',');
+        writeCsvField(writer, row.getFactoryId());
+        writer.write(',');
+        writer.write(Long.toString(row.getDurationMs()));
+        writer.write(',');
+        writer.write(Integer.toString(row.getDefectCount()));
+        writer.write('\n');
+    }
+    
+    private void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuoting = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needsQuoting = true;
+                break;
+            }
+        }
+        if (!needsQuoting) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+    
+    private void writeTime(Writer writer, Instant instant, char[] buffer) throws IOException {
+        if (instant != null) {
+            writer.write(buffer, 0, IsoInstants.format(instant, buffer, 0));
+        }
+    }
+}
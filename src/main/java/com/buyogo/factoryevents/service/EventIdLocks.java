@@ -0,0 +1,125 @@
+package com.buyogo.factoryevents.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * In-process locks on event ids, so batches on this node that share ids write one after another
+ * instead of racing on the same new rows. A batch that loses such a race waits in the database
+ * for the other transaction's uncommitted row and then re-reads it as a conflict; with rows
+ * taken in different orders the two transactions can also deadlock, failing a whole batch that
+ * the client then retries.
+ *
+ * <p>Only batches that really share an id wait for each other. Ids are held individually, with
+ * the bookkeeping spread over {@code events.write.id-locks.stripes} monitors by id hash; a mutex
+ * per stripe would serialise almost every pair of large batches on hash collisions alone. A
+ * batch takes its ids in sorted order, so no two batches can wait on each other in a cycle.
+ *
+ * <p>Ids are held until the rows are committed. Work that runs inside a caller's transaction
+ * (an unsharded write joining the Idempotency-Key transaction, say) does not commit when it
+ * returns, so its ids are released when that transaction completes instead.
+ */
+@Component
+public class EventIdLocks {
+    
+    private final Stripe[] stripes;
+    private final Counter waits;
+    
+    public EventIdLocks(@Value("${events.write.id-locks.stripes:256}") int stripes, MeterRegistry meterRegistry) {
+        if (stripes < 0) {
+            throw new IllegalArgumentException("events.write.id-locks.stripes must be >= 0");
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.waits = Counter.builder("events.write.id-lock-waits")
+            .description("Shard writes that waited for a batch holding one of their event ids")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Run the work while holding every given id. Ids are released when it returns or throws, or,
+     * inside a transaction with synchronization, once that transaction commits or rolls back.
+     * With 0 stripes locking is off and the work runs straight away.
+     */
+    public <T> T withLocks(Collection<String> eventIds, Supplier<T> work) {
+        if (stripes.length == 0) {
+            return work.get();
+        }
+        List<String> ids = eventIds.stream().distinct().sorted().toList();
+        int held = 0;
+        boolean deferred = false;
+        boolean waited = false;
+        try {
+            for (String id : ids) {
+                waited |= stripeOf(id).acquire(id);
+                held++;
+            }
+            if (waited) {
+                waits.increment();
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        release(ids, ids.size());
+                    }
+                });
+                deferred = true;
+            }
+            return work.get();
+        } finally {
+            if (!deferred) {
+                release(ids, held);
+            }
+        }
+    }
+    
+    private void release(List<String> ids, int held) {
+        for (int i = held - 1; i >= 0; i--) {
+            stripeOf(ids.get(i)).release(ids.get(i));
+        }
+    }
+    
+    private Stripe stripeOf(String id) {
+        int hash = id.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+    
+    private static class Stripe {
+        private final Set<String> held = new HashSet<>();
+        
+        /**
+         * @return whether the id was held by another batch and had to be waited for
+         */
+        synchronized boolean acquire(String id) {
+            boolean waited = false;
+            while (!held.add(id)) {
+                waited = true;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for event id " + id, e);
+                }
+            }
+            return waited;
+        }
+        
+        synchronized void release(String id) {
+            held.remove(id);
+            notifyAll();
+        }
+    }
+}
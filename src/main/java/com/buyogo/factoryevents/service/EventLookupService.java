@@ -0,0 +1,156 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Looks up events by id through a bounded in-memory LRU in front of the events table. Misses
+ * are read in one query for only the columns of {@link EventSnapshot}; committed batches
+ * replace cached entries they overwrite, and archived events are dropped, so a hit is never
+ * older than the last commit seen.
+ *
+ * <p>A miss and a concurrent write can race: the miss may read the old row just before the
+ * write commits, then cache it after the write's listener has already run. Every committed
+ * change therefore bumps a write counter for its id's stripe, and a miss only caches what it
+ * read if that counter did not move while it was reading.
+ */
+@Service
+public class EventLookupService {
+    
+    private static final int STRIPES = 1024;
+    
+    private final EventExportRepository exportRepository;
+    private final ShardRouter shardRouter;
+    private final int maxIds;
+    
+    private final Map<String, EventSnapshot> cache;
+    private final AtomicLongArray writeCounts = new AtomicLongArray(STRIPES);
+    private final Counter hits;
+    private final Counter misses;
+    
+    public EventLookupService(EventExportRepository exportRepository,
+                              ShardRouter shardRouter,
+                              MeterRegistry meterRegistry,
+                              @Value("${events.lookup.cache.max-entries:100000}") int maxEntries,
+                              @Value("${events.lookup.max-ids:100}") int maxIds) {
+        this.exportRepository = exportRepository;
+        this.shardRouter = shardRouter;
+        this.maxIds = maxIds;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EventSnapshot> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = Counter.builder("events.lookup.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("events.lookup.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("events.lookup.cache.size", this, EventLookupService::cacheSize).register(meterRegistry);
+    }
+    
+    public Optional<EventSnapshot> find(String eventId) {
+        return Optional.ofNullable(findAll(List.of(eventId)).get(eventId));
+    }
+    
+    /**
+     * Events found for the given ids, keyed by id in request order; unknown ids are absent.
+     * More than {@code events.lookup.max-ids} ids, or none, is an IllegalArgumentException.
+     */
+    public Map<String, EventSnapshot> findAll(Collection<String> eventIds) {
+        Set<String> ids = new LinkedHashSet<>(eventIds);
+        ids.removeIf(String::isBlank);
+        if (ids.isEmpty() || ids.size() > maxIds) {
+            throw new IllegalArgumentException("Between 1 and " + maxIds + " event ids are required");
+        }
+        
+        Map<String, EventSnapshot> found = new HashMap<>();
+        Map<String, Long> missing = new LinkedHashMap<>();
+        synchronized (cache) {
+            for (String id : ids) {
+                EventSnapshot cached = cache.get(id);
+                if (cached != null) {
+                    found.put(id, cached);
+                } else {
+                    missing.put(id, writeCounts.get(stripe(id)));
+                }
+            }
+        }
+        hits.increment(found.size());
+        misses.increment(missing.size());
+        
+        if (!missing.isEmpty()) {
+            // An id does not say which shard holds it, so misses are looked up on all of them
+            List<List<EventSnapshot>> loaded = shardRouter.readEach(shardRouter.allShards(),
+                () -> exportRepository.findSnapshots(missing.keySet()));
+            synchronized (cache) {
+                for (EventSnapshot event : loaded.stream().flatMap(List::stream).toList()) {
+                    found.put(event.getEventId(), event);
+                    if (writeCounts.get(stripe(event.getEventId())) == missing.get(event.getEventId())) {
+                        cache.put(event.getEventId(), event);
+                    }
+                }
+            }
+        }
+        
+        Map<String, EventSnapshot> ordered = new LinkedHashMap<>();
+        for (String id : ids) {
+            EventSnapshot event = found.get(id);
+            if (event != null) {
+                ordered.put(id, event);
+            }
+        }
+        return ordered;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsCommitted(EventsCommittedEvent committed) {
+        List<EventSnapshot> written = new ArrayList<>(committed.getChanges().size());
+        for (EventsCommittedEvent.Change change : committed.getChanges()) {
+            writeCounts.incrementAndGet(stripe(change.getCurrent().getEventId()));
+            written.add(change.getCurrent());
+        }
+        synchronized (cache) {
+            for (EventSnapshot event : written) {
+                // Only refresh ids someone looked up; ingesting must not flush the hot set
+                cache.replace(event.getEventId(), event);
+            }
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsArchived(EventsArchivedEvent archived) {
+        for (String eventId : archived.getEventIds()) {
+            writeCounts.incrementAndGet(stripe(eventId));
+        }
+        synchronized (cache) {
+            archived.getEventIds().forEach(cache::remove);
+        }
+    }
+    
+    int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+    
+    private static int stripe(String eventId) {
+        return (eventId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
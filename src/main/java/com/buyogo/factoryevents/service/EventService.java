@@ -2,148 +2,400 @@ package com.buyogo.factoryevents.service;
 
 import com.buyogo.factoryevents.dto.*;
 import com.buyogo.factoryevents.entity.Event;
-import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.jfr.IngestBatchEvent;
+import com.buyogo.factoryevents.jfr.ShardWriteEvent;
+import com.buyogo.factoryevents.repository.EventWriteRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EventService {
     
-    private static final long MAX_DURATION_MS = 21_600_000L; // 6 hours
-    private static final long FUTURE_TIME_THRESHOLD_MINUTES = 15;
+    static final long MAX_DURATION_MS = 21_600_000L; // 6 hours
+    static final long FUTURE_TIME_THRESHOLD_MINUTES = 15;
+    private static final Comparator<Event> BY_EVENT_ID = Comparator.comparing(Event::getEventId);
     
-    private final EventRepository eventRepository;
+    private final EventWriteRepository eventWriteRepository;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EventIdLocks eventIdLocks;
     
-    @Transactional
+    /**
+     * Validate the batch, then write each shard's valid events in one transaction on that shard.
+     * Unsharded, that is a single transaction, joining the caller's if there is one; sharded,
+     * shards are written in parallel and each commits on its own. Each shard write holds its
+     * event ids in {@link EventIdLocks} until its rows commit: until the shard transaction
+     * commits, or, when the write joined the caller's transaction, until that one completes.
+     */
     public BatchIngestionResponse processBatch(List<EventRequest> events) {
-        int accepted = 0;
-        int deduped = 0;
-        int updated = 0;
-        int rejected = 0;
-        List<RejectionDetail> rejections = new ArrayList<>();
+        return processBatch(events, null);
+    }
+    
+    /**
+     * {@link #processBatch(List)} with the given received time for each event, in list order,
+     * instead of the write time; a backfill uses it so that the version of an event later in
+     * its file wins whatever order the file is loaded in.
+     */
+    public BatchIngestionResponse processBatch(List<EventRequest> events, List<Instant> receivedTimes) {
+        try {
+            return process(List.of(events), receivedTimes).get(0);
+        } catch (PartialCommitException e) {
+            throw e.getCause();
+        }
+    }
 
+    /**
+     * Process several callers' batches in one pass: one stored-version lookup, one bulk write
+     * and one commit per shard for the whole group. Each batch gets its own response, the same
+     * as if the batches had run one after another in list order: batch i is received one
+     * microsecond after batch i - 1, so a later batch's differing payload updates an earlier one's.
+     * The received time is taken on each shard once its event id locks and write connection are
+     * held, just before the rows are written, so it trails the commit by the write alone.
+     * Each call is recorded as an {@link IngestBatchEvent} when Flight Recorder is running.
+     *
+     * <p>If every shard fails, the first failure is rethrown and nothing was written. If only
+     * some fail, the others have already committed; a {@link PartialCommitException} then
+     * reports, per batch, what committed and which events were not written.
+     */
+    public List<BatchIngestionResponse> processGroup(List<List<EventRequest>> batches) {
+        return process(batches, null);
+    }
+    
+    /**
+     * The group pass; {@code receivedTimes}, given for a single batch only, overrides the write time.
+     */
+    private List<BatchIngestionResponse> process(List<List<EventRequest>> batches, List<Instant> receivedTimes) {
+        IngestBatchEvent jfr = new IngestBatchEvent();
+        jfr.begin();
+        long started = System.nanoTime();
         Instant now = Instant.now();
+        List<Tally> tallies = new ArrayList<>(batches.size());
 
-        // First pass: validate and collect valid event IDs
-        List<EventRequest> validEvents = new ArrayList<>();
-        List<String> eventIds = new ArrayList<>();
+        // First pass: validate and group valid events by owning shard
+        Map<String, List<Item>> validByShard = new LinkedHashMap<>();
 
-        for (EventRequest request : events) {
-            String validationError = validateEvent(request, now);
-            if (validationError != null) {
-                rejected++;
-                rejections.add(RejectionDetail.builder()
-                    .eventId(request.getEventId())
-                    .reason(validationError)
-                    .build());
-            } else {
-                validEvents.add(request);
-                eventIds.add(request.getEventId());
+        for (int index = 0; index < batches.size(); index++) {
+            Tally tally = new Tally();
+            tallies.add(tally);
+            List<EventRequest> batch = batches.get(index);
+            for (int position = 0; position < batch.size(); position++) {
+                EventRequest request = batch.get(position);
+                String validationError = validateEvent(request, now);
+                if (validationError != null) {
+                    tally.reject(request.getEventId(), validationError);
+                } else {
+                    validByShard.computeIfAbsent(shardRouter.shardOf(request.getFactoryId()), shard -> new ArrayList<>())
+                        .add(new Item(request, index, receivedTimes != null ? receivedTimes.get(position) : null, tally));
+                }
             }
         }
 
-        // Bulk fetch all existing events in a single query
-        List<Event> existingEvents = eventRepository.findAllById(eventIds);
-        java.util.Map<String, Event> existingEventMap = new java.util.HashMap<>();
-        for (Event event : existingEvents) {
-            existingEventMap.put(event.getEventId(), event);
+        long validated = System.nanoTime();
+
+        Map<String, RuntimeException> failedShards = new ConcurrentHashMap<>();
+        shardRouter.fanOut(validByShard.keySet(), shard -> {
+            List<Item> items = validByShard.get(shard);
+            try {
+                shardRouter.registerMachines(shard, items.stream().map(item -> item.request.getMachineId()).toList());
+                return eventIdLocks.withLocks(items.stream().map(item -> item.request.getEventId()).toList(),
+                    () -> shardRouter.write(shard, () -> writeShard(shard, items)));
+            } catch (RuntimeException e) {
+                failedShards.put(shard, e);
+                return null;
+            }
+        });
+        if (!failedShards.isEmpty()) {
+            throw groupFailure(batches, tallies, validByShard, failedShards);
+        }
+        for (List<Item> items : validByShard.values()) {
+            items.forEach(Item::count);
         }
+        
+        List<BatchIngestionResponse> responses = tallies.stream().map(Tally::toResponse).toList();
+        if (jfr.shouldCommit()) {
+            jfr.batches = batches.size();
+            jfr.shards = validByShard.size();
+            for (int index = 0; index < batches.size(); index++) {
+                BatchIngestionResponse response = responses.get(index);
+                jfr.events += batches.get(index).size();
+                jfr.accepted += response.getAccepted();
+                jfr.deduped += response.getDeduped();
+                jfr.updated += response.getUpdated();
+                jfr.rejected += response.getRejected();
+            }
+            jfr.validateTime = validated - started;
+            jfr.writeTime = System.nanoTime() - validated;
+            jfr.commit();
+        }
+        return responses;
+    }
+    
+    /**
+     * The exception for a group in which the given shards failed: the first failure in shard
+     * order when no shard committed, otherwise a {@link PartialCommitException}.
+     */
+    private static RuntimeException groupFailure(List<List<EventRequest>> batches, List<Tally> tallies,
+                                                 Map<String, List<Item>> validByShard,
+                                                 Map<String, RuntimeException> failedShards) {
+        RuntimeException first = validByShard.keySet().stream()
+            .filter(failedShards::containsKey)
+            .map(failedShards::get)
+            .findFirst()
+            .orElseThrow();
+        if (failedShards.size() == validByShard.size()) {
+            return first;
+        }
+        Map<Tally, List<EventRequest>> uncommitted = new IdentityHashMap<>();
+        validByShard.forEach((shard, items) -> {
+            for (Item item : items) {
+                if (failedShards.containsKey(shard)) {
+                    uncommitted.computeIfAbsent(item.tally, tally -> new ArrayList<>()).add(item.request);
+                } else {
+                    item.count();
+                }
+            }
+        });
+        List<List<EventRequest>> retry = new ArrayList<>(batches.size());
+        for (int index = 0; index < batches.size(); index++) {
+            // Keep the batch's own order, so repeats of an id are retried in the order sent
+            Set<EventRequest> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            failed.addAll(uncommitted.getOrDefault(tallies.get(index), List.of()));
+            retry.add(batches.get(index).stream().filter(failed::contains).toList());
+        }
+        log.warn("{} of {} shards failed after the others committed: {}",
+            failedShards.size(), validByShard.size(), first.getMessage());
+        return new PartialCommitException(first,
+            tallies.stream().map(Tally::toResponse).toList(), retry);
+    }
+    
+    /**
+     * Classify and write the valid events of one shard, inside that shard's transaction,
+     * recording each item's outcome on it. Recorded as a {@link ShardWriteEvent}.
+     */
+    private Void writeShard(String shard, List<Item> items) {
+        ShardWriteEvent jfr = new ShardWriteEvent();
+        jfr.begin();
+        Instant now = Instant.now();
+        List<String> eventIds = items.stream().map(item -> item.request.getEventId()).toList();
 
-        // Prepare lists for batch operations
-        List<Event> eventsToSave = new ArrayList<>();
+        // Bulk fetch the stored version of every event in the batch
+        long phase = System.nanoTime();
+        Map<String, Event> stored = eventWriteRepository.findStored(eventIds);
+        long lookupTime = System.nanoTime() - phase;
+
+        List<Event> eventsToInsert = new ArrayList<>();
         List<Event> eventsToUpdate = new ArrayList<>();
-        List<String> newEventIds = new ArrayList<>();
+        Map<String, EventSnapshot> previousVersions = new HashMap<>();
+        Map<Event, Item> itemOf = new IdentityHashMap<>();
 
         // Process valid events
-        for (EventRequest request : validEvents) {
+        for (Item item : items) {
+            EventRequest request = item.request;
             try {
-                String payloadHash = calculatePayloadHash(request);
-                Event existing = existingEventMap.get(request.getEventId());
+                Instant receivedTime = item.receivedTime != null ? item.receivedTime : now.plus(item.batchIndex, ChronoUnit.MICROS);
+                Event incoming = createEvent(request, receivedTime, calculatePayloadHash(request));
+                itemOf.put(incoming, item);
+                Event existing = stored.get(request.getEventId());
 
-                if (existing != null) {
-                    // Check if payload is identical (dedupe case)
-                    if (existing.getPayloadHash().equals(payloadHash)) {
-                        deduped++;
-                        log.debug("Deduped event: {}", request.getEventId());
-                    } else {
-                        // Different payload - check receivedTime for update logic
-                        if (now.isAfter(existing.getReceivedTime())) {
-                            // Update with new data
-                            updateEvent(existing, request, now, payloadHash);
-                            eventsToUpdate.add(existing);
-                            updated++;
-                            log.debug("Updated event: {}", request.getEventId());
-                        } else {
-                            // Older receivedTime - ignore
-                            deduped++;
-                            log.debug("Ignored older update for event: {}", request.getEventId());
-                        }
-                    }
+                if (existing == null) {
+                    eventsToInsert.add(incoming);
+                } else if (isUpdate(existing, incoming)) {
+                    eventsToUpdate.add(incoming);
+                    previousVersions.putIfAbsent(incoming.getEventId(), EventSnapshot.of(existing));
                 } else {
-                    // New event
-                    Event newEvent = createEvent(request, now, payloadHash);
-                    eventsToSave.add(newEvent);
-                    newEventIds.add(request.getEventId());
-                    accepted++;
-                    log.debug("Accepted new event: {}", request.getEventId());
+                    item.outcome = Outcome.DEDUPED;
+                    log.debug("Deduped event: {}", request.getEventId());
                 }
             } catch (Exception e) {
-                rejected++;
-                rejections.add(RejectionDetail.builder()
-                    .eventId(request.getEventId())
-                    .reason("PROCESSING_ERROR: " + e.getMessage())
-                    .build());
+                item.error = "PROCESSING_ERROR: " + e.getMessage();
                 log.error("Error processing event {}: {}", request.getEventId(), e.getMessage());
             }
         }
         
-        // Batch save new events
-        if (!eventsToSave.isEmpty()) {
-            try {
-                eventRepository.saveAll(eventsToSave);
-            } catch (DataIntegrityViolationException ex) {
-                // Concurrent insert race: another transaction inserted the same event_id(s).
-                // Treat these as deduped and proceed.
-                log.debug("Concurrent insert conflict during batch save; treating as deduped", ex);
-
-                // Re-fetch by IDs to confirm what exists now.
-                List<Event> nowExisting = eventRepository.findAllById(newEventIds);
-                int actuallyInserted = nowExisting.size();
-
-                // We already counted all new events as accepted. Adjust counters:
-                // accepted = number actually inserted by this transaction (best effort)
-                // deduped += acceptedPreviously - actuallyInserted
-                int conflicted = Math.max(0, accepted - actuallyInserted);
-                deduped += conflicted;
-                accepted = actuallyInserted;
+        // Rows are written in event id order, so transactions writing overlapping ids lock them
+        // in the same order and cannot deadlock; the sorts are stable, keeping repeats of an id
+        // in batch order
+        eventsToInsert.sort(BY_EVENT_ID);
+        
+        // Batch insert new events; ids inserted meanwhile (by a concurrent batch, or earlier in
+        // this one) are re-read and classified against what is stored now
+        List<Event> inserted = new ArrayList<>(eventsToInsert);
+        int conflictCount = 0;
+        phase = System.nanoTime();
+        if (!eventsToInsert.isEmpty()) {
+            List<Event> conflicts = eventWriteRepository.insert(eventsToInsert, now);
+            conflictCount = conflicts.size();
+            if (!conflicts.isEmpty()) {
+                inserted.removeAll(identitySet(conflicts));
+                Map<String, Event> nowStored = eventWriteRepository.findStored(
+                    conflicts.stream().map(Event::getEventId).distinct().toList());
+                for (Event conflict : conflicts) {
+                    Event existing = nowStored.get(conflict.getEventId());
+                    if (existing != null && isUpdate(existing, conflict)) {
+                        eventsToUpdate.add(conflict);
+                        previousVersions.putIfAbsent(conflict.getEventId(), EventSnapshot.of(existing));
+                    } else {
+                        itemOf.get(conflict).outcome = Outcome.DEDUPED;
+                        log.debug("Deduped concurrently inserted event: {}", conflict.getEventId());
+                    }
+                }
             }
         }
+        inserted.forEach(event -> itemOf.get(event).outcome = Outcome.ACCEPTED);
+        long insertTime = System.nanoTime() - phase;
 
-        // Batch save updated events
+        // Batch update changed events; a row already overwritten by a newer version is left alone.
+        // Updates apply in list order, so each one replaces the version written just before it.
+        List<EventsCommittedEvent.Change> updateChanges = new ArrayList<>();
+        phase = System.nanoTime();
         if (!eventsToUpdate.isEmpty()) {
-            eventRepository.saveAll(eventsToUpdate);
+            eventsToUpdate.sort(BY_EVENT_ID);
+            Set<Event> stale = identitySet(eventWriteRepository.update(eventsToUpdate, now));
+            Map<String, EventSnapshot> latest = new HashMap<>(previousVersions);
+            for (Event event : eventsToUpdate) {
+                if (stale.contains(event)) {
+                    itemOf.get(event).outcome = Outcome.DEDUPED;
+                } else {
+                    itemOf.get(event).outcome = Outcome.UPDATED;
+                    EventSnapshot current = EventSnapshot.of(event);
+                    updateChanges.add(new EventsCommittedEvent.Change(latest.put(event.getEventId(), current), current));
+                }
+            }
         }
 
-        return BatchIngestionResponse.builder()
-                .accepted(accepted)
-                .deduped(deduped)
-                .updated(updated)
-                .rejected(rejected)
-                .rejections(rejections)
-                .build();
+        long updateTime = System.nanoTime() - phase;
+
+        publishChanges(inserted, updateChanges);
+        if (jfr.shouldCommit()) {
+            jfr.shard = shard;
+            jfr.events = items.size();
+            jfr.inserts = eventsToInsert.size();
+            jfr.updates = eventsToUpdate.size();
+            jfr.conflicts = conflictCount;
+            jfr.lookupTime = lookupTime;
+            jfr.insertTime = insertTime;
+            jfr.updateTime = updateTime;
+            jfr.commit();
+        }
+        return null;
+    }
+        
+    private enum Outcome {
+        ACCEPTED, DEDUPED, UPDATED
+    }
+    
+    /**
+     * A valid event on its way to a shard, with the batch it came from and what became of it.
+     */
+    private static class Item {
+        final EventRequest request;
+        final int batchIndex;
+        final Instant receivedTime;
+        final Tally tally;
+        Outcome outcome;
+        String error;
+        
+        Item(EventRequest request, int batchIndex, Instant receivedTime, Tally tally) {
+            this.request = request;
+            this.batchIndex = batchIndex;
+            this.receivedTime = receivedTime;
+            this.tally = tally;
+        }
+        
+        void count() {
+            if (error != null) {
+                tally.reject(request.getEventId(), error);
+            } else if (outcome == Outcome.ACCEPTED) {
+                tally.accepted++;
+            } else if (outcome == Outcome.UPDATED) {
+                tally.updated++;
+            } else {
+                tally.deduped++;
+            }
+        }
+    }
+    
+    /**
+     * Counts of one batch in a group.
+     */
+    private static class Tally {
+        int accepted;
+        int deduped;
+        int updated;
+        int rejected;
+        final List<RejectionDetail> rejections = new ArrayList<>();
+        
+        void reject(String eventId, String reason) {
+            rejected++;
+            rejections.add(RejectionDetail.builder()
+                .eventId(eventId)
+                .reason(reason)
+                .build());
+        }
+        
+        BatchIngestionResponse toResponse() {
+            return BatchIngestionResponse.builder()
+                    .accepted(accepted)
+                    .deduped(deduped)
+                    .updated(updated)
+                    .rejected(rejected)
+                    .rejections(rejections)
+                    .build();
+        }
+    }
+    
+    /**
+     * A stored event is replaced when the payload differs and it was received earlier;
+     * an identical payload, or a stored version at least as recent, is a duplicate.
+     */
+    private static boolean isUpdate(Event existing, Event incoming) {
+        return !existing.getPayloadHash().equals(incoming.getPayloadHash())
+            && incoming.getReceivedTime().isAfter(existing.getReceivedTime());
+    }
+    
+    /**
+     * Events are values with field equality, and a batch may repeat one; track them by identity.
+     */
+    private static Set<Event> identitySet(List<Event> events) {
+        Set<Event> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(events);
+        return set;
+    }
+    
+    /**
+     * Announce written rows to after-commit listeners.
+     */
+    private void publishChanges(List<Event> inserted, List<EventsCommittedEvent.Change> updates) {
+        if (inserted.isEmpty() && updates.isEmpty()) {
+            return;
+        }
+        List<EventsCommittedEvent.Change> changes = new ArrayList<>(inserted.size() + updates.size());
+        for (Event event : inserted) {
+            changes.add(new EventsCommittedEvent.Change(null, EventSnapshot.of(event)));
+        }
+        changes.addAll(updates);
+        eventPublisher.publishEvent(new EventsCommittedEvent(changes));
     }
     
     private String validateEvent(EventRequest request, Instant now) {
@@ -215,15 +467,4 @@ public class EventService {
             .payloadHash(payloadHash)
             .build();
     }
-    
-    private void updateEvent(Event event, EventRequest request, Instant receivedTime, String payloadHash) {
-        event.setEventTime(request.getEventTime());
-        event.setReceivedTime(receivedTime);
-        event.setMachineId(request.getMachineId());
-        event.setLineId(request.getLineId());
-        event.setFactoryId(request.getFactoryId());
-        event.setDurationMs(request.getDurationMs());
-        event.setDefectCount(request.getDefectCount());
-        event.setPayloadHash(payloadHash);
-    }
 }
@@ -0,0 +1,15 @@
+package com.buyogo.factoryevents.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published by {@link ArchiveService} for every chunk of events moved out of the events table.
+ * Listeners should use {@code @TransactionalEventListener} so they only observe committed moves.
+ */
+@Value
+public class EventsArchivedEvent {
+    
+    List<String> eventIds;
+}
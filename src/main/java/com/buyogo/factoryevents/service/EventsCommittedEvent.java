@@ -0,0 +1,26 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published by {@link EventService#processBatch} for every batch that wrote rows. Listeners
+ * should use {@code @TransactionalEventListener} so they only observe committed data.
+ */
+@Value
+public class EventsCommittedEvent {
+    
+    /**
+     * A single written row. {@code previous} is null for inserts and holds the replaced
+     * version for updates, so incremental consumers can retract it.
+     */
+    @Value
+    public static class Change {
+        EventSnapshot previous;
+        EventSnapshot current;
+    }
+    
+    List<Change> changes;
+}
@@ -0,0 +1,212 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.dto.RejectionDetail;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent small ingestion batches into one {@link EventService#processGroup} call,
+ * so many gateways sending 10-50 events each share one stored-version lookup, one bulk write and
+ * one commit. Writer threads take the first waiting batch, gather whatever else arrives within
+ * {@code events.group-commit.window-ms} up to {@code max-group-events}, and commit them
+ * together; each caller blocks until its own response is ready.
+ *
+ * <p>Batches of {@code max-group-events} or more gain nothing from grouping and run directly on
+ * the caller's thread, as does everything when grouping is disabled. If a group fails, its
+ * batches are retried one by one so a bad batch only fails its own caller. When sharded, a
+ * group can fail after some shards committed; only the events of the failed shards are then
+ * retried, and each caller's response adds the retry's counts to what already committed, so
+ * committed rows are still reported as accepted or updated rather than deduped.
+ */
+@Service
+@Slf4j
+public class GroupCommitService {
+    
+    private static final long IDLE_POLL_MS = 100;
+    
+    private final EventService eventService;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxGroupEvents;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private final DistributionSummary groupBatches;
+    private final DistributionSummary groupEvents;
+    private volatile boolean running = true;
+    
+    public GroupCommitService(EventService eventService,
+                              MeterRegistry meterRegistry,
+                              @Value("${events.group-commit.enabled:true}") boolean enabled,
+                              @Value("${events.group-commit.window-ms:2}") long windowMs,
+                              @Value("${events.group-commit.max-group-events:2000}") int maxGroupEvents,
+                              @Value("${events.group-commit.writers:2}") int writerCount) {
+        if (windowMs < 0 || maxGroupEvents < 1 || writerCount < 1) {
+            throw new IllegalArgumentException("events.group-commit window-ms must be >= 0, max-group-events and writers >= 1");
+        }
+        this.eventService = eventService;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxGroupEvents = maxGroupEvents;
+        Gauge.builder("events.group-commit.queued", queue, BlockingQueue::size)
+            .description("Batches waiting for a group-commit writer")
+            .register(meterRegistry);
+        this.groupBatches = DistributionSummary.builder("events.group-commit.batches")
+            .description("Ingestion batches committed together in one group")
+            .register(meterRegistry);
+        this.groupEvents = DistributionSummary.builder("events.group-commit.events")
+            .description("Events committed together in one group")
+            .register(meterRegistry);
+        if (enabled) {
+            for (int i = 1; i <= writerCount; i++) {
+                Thread writer = new Thread(this::runWriter, "group-commit-" + i);
+                writer.setDaemon(true);
+                writer.start();
+                writers.add(writer);
+            }
+        }
+    }
+    
+    /**
+     * Process the batch, grouped with whatever other batches are waiting, and return its own
+     * response. Exceptions from processing are rethrown to the caller.
+     */
+    public BatchIngestionResponse submit(List<EventRequest> events) {
+        if (!enabled || events.size() >= maxGroupEvents) {
+            return eventService.processBatch(events);
+        }
+        Pending pending = new Pending(events);
+        queue.add(pending);
+        if (!running) {
+            failQueued();
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writers.forEach(Thread::interrupt);
+        failQueued();
+    }
+    
+    private void runWriter() {
+        List<Pending> group = new ArrayList<>();
+        while (running) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                int events = first.events.size();
+                long deadline = System.nanoTime() + windowNanos;
+                while (events < maxGroupEvents) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    events += next.events.size();
+                }
+                commit(group, events);
+            } catch (InterruptedException e) {
+                group.forEach(pending -> pending.result.completeExceptionally(
+                    new IllegalStateException("Ingestion is shutting down")));
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+    
+    private void commit(List<Pending> group, int events) {
+        groupBatches.record(group.size());
+        groupEvents.record(events);
+        List<BatchIngestionResponse> responses;
+        try {
+            responses = eventService.processGroup(group.stream().map(pending -> pending.events).toList());
+        } catch (PartialCommitException e) {
+            log.warn("Group of {} batches partly failed ({}); retrying the uncommitted events", group.size(), e.getMessage());
+            for (int i = 0; i < group.size(); i++) {
+                Pending pending = group.get(i);
+                List<EventRequest> uncommitted = e.getUncommitted().get(i);
+                try {
+                    pending.result.complete(uncommitted.isEmpty()
+                        ? e.getCommitted().get(i)
+                        : merge(e.getCommitted().get(i), eventService.processBatch(uncommitted)));
+                } catch (RuntimeException retryFailure) {
+                    pending.result.completeExceptionally(retryFailure);
+                }
+            }
+            return;
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.get(0).result.completeExceptionally(e);
+                return;
+            }
+            log.warn("Group of {} batches failed ({}); retrying them one by one", group.size(), e.getMessage());
+            for (Pending pending : group) {
+                try {
+                    pending.result.complete(eventService.processBatch(pending.events));
+                } catch (RuntimeException retryFailure) {
+                    pending.result.completeExceptionally(retryFailure);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result.complete(responses.get(i));
+        }
+    }
+    
+    private static BatchIngestionResponse merge(BatchIngestionResponse committed, BatchIngestionResponse retried) {
+        List<RejectionDetail> rejections = new ArrayList<>(committed.getRejections());
+        rejections.addAll(retried.getRejections());
+        return BatchIngestionResponse.builder()
+            .accepted(committed.getAccepted() + retried.getAccepted())
+            .deduped(committed.getDeduped() + retried.getDeduped())
+            .updated(committed.getUpdated() + retried.getUpdated())
+            .rejected(committed.getRejected() + retried.getRejected())
+            .rejections(rejections)
+            .build();
+    }
+    
+    private void failQueued() {
+        for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+            pending.result.completeExceptionally(new IllegalStateException("Ingestion is shutting down"));
+        }
+    }
+    
+    private static class Pending {
+        final List<EventRequest> events;
+        final CompletableFuture<BatchIngestionResponse> result = new CompletableFuture<>();
+        
+        Pending(List<EventRequest> events) {
+            this.events = events;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.entity.IdempotencyRecord;
+import com.buyogo.factoryevents.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Replays the stored response of a batch retried with the same Idempotency-Key. Recent keys
+ * are answered from a bounded in-memory LRU, older ones from the idempotency_keys table; a
+ * duplicate arriving while the original is still running waits for it instead of reprocessing.
+ *
+ * <p>Unsharded, the record is written in the same transaction as the batch, so a key is stored
+ * if and only if its batch committed. Sharded, shards commit one by one in their own
+ * transactions, so the key is first reserved (PENDING) in a transaction of its own, the batch
+ * runs, and the response is stored afterwards. If the batch throws, the reservation is marked
+ * FAILED: some shards may have kept their rows. A retry with the same key and body takes the
+ * reservation over and runs the batch again, and is answered as resumed, because rows the
+ * failed attempt wrote now count as deduped. A PENDING reservation older than the wait timeout
+ * is taken to belong to a node that died and can be taken over the same way.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+    
+    static final int MAX_KEY_LENGTH = 255;
+    
+    private final IdempotencyRecordRepository recordRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final long waitTimeoutMs;
+    
+    private final Map<String, StoredResponse> recent;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              ShardRouter shardRouter,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${events.idempotency.max-entries:10000}") int maxEntries,
+                              @Value("${events.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${events.idempotency.wait-timeout-ms:30000}") long waitTimeoutMs) {
+        this.recordRepository = recordRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Run the batch once per key. Reusing a key with a different body is rejected with
+     * IllegalArgumentException; a duplicate that outwaits the original gets IllegalStateException.
+     */
+    public Outcome execute(String key, String bodyDigest, Supplier<BatchIngestionResponse> batch) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+        while (true) {
+            StoredResponse stored = lookup(key);
+            if (stored != null) {
+                return replay(key, stored, bodyDigest);
+            }
+            
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+            if (running != null) {
+                try {
+                    return replay(key, running.get(waitTimeoutMs, TimeUnit.MILLISECONDS), bodyDigest);
+                } catch (ExecutionException e) {
+                    // The original failed and stored nothing; this request may run it instead
+                    continue;
+                } catch (TimeoutException e) {
+                    throw new IllegalStateException("Batch with Idempotency-Key " + key + " is still in progress");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for Idempotency-Key " + key);
+                }
+            }
+            
+            try {
+                return shardRouter.isSharded()
+                    ? runReserved(key, bodyDigest, batch, mine)
+                    : runOnce(key, bodyDigest, batch, mine);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+    }
+    
+    /**
+     * Drop keys older than the TTL, in memory and in the table. Keys are honoured until purged,
+     * so a key lives between one TTL and one TTL plus the purge interval.
+     */
+    @Scheduled(fixedDelayString = "${events.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        synchronized (recent) {
+            recent.values().removeIf(stored -> stored.createdAt.isBefore(cutoff));
+        }
+        Integer deleted = transactionTemplate.execute(status -> recordRepository.deleteCreatedBefore(cutoff));
+        log.info("Purged {} idempotency keys created before {}", deleted, cutoff);
+    }
+    
+    private Outcome runOnce(String key, String bodyDigest, Supplier<BatchIngestionResponse> batch,
+                            CompletableFuture<StoredResponse> mine) {
+        try {
+            // The previous holder may have finished between our lookup and claiming the key
+            StoredResponse stored = lookup(key);
+            if (stored == null) {
+                stored = transactionTemplate.execute(status -> {
+                    BatchIngestionResponse response = batch.get();
+                    StoredResponse written = new StoredResponse(bodyDigest, response, Instant.now());
+                    recordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .idempotencyKey(key)
+                        .bodyDigest(bodyDigest)
+                        .response(toJson(response))
+                        .state(IdempotencyRecord.State.DONE)
+                        .createdAt(written.createdAt)
+                        .build());
+                    return written;
+                });
+                remember(key, stored);
+                mine.complete(stored);
+                return new Outcome(stored.response, false, false);
+            }
+            mine.complete(stored);
+            return replay(key, stored, bodyDigest);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance committed the same key first; our batch was rolled back with the insert
+            StoredResponse winner = lookup(key);
+            if (winner == null) {
+                mine.completeExceptionally(e);
+                throw e;
+            }
+            mine.complete(winner);
+            return replay(key, winner, bodyDigest);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Sharded: reserve the key, run the batch with its shards committing on their own, then store
+     * the response. The reservation's createdAt identifies it, so a run whose reservation was
+     * taken over in the meantime cannot complete or fail the new owner's.
+     */
+    private Outcome runReserved(String key, String bodyDigest, Supplier<BatchIngestionResponse> batch,
+                                CompletableFuture<StoredResponse> mine) {
+        try {
+            StoredResponse stored = lookup(key);
+            if (stored != null) {
+                mine.complete(stored);
+                return replay(key, stored, bodyDigest);
+            }
+            Instant claimedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            boolean resumed;
+            try {
+                transactionTemplate.executeWithoutResult(status -> recordRepository.saveAndFlush(IdempotencyRecord.builder()
+                    .idempotencyKey(key)
+                    .bodyDigest(bodyDigest)
+                    .state(IdempotencyRecord.State.PENDING)
+                    .createdAt(claimedAt)
+                    .build()));
+                resumed = false;
+            } catch (DataIntegrityViolationException e) {
+                IdempotencyRecord existing = recordRepository.findById(key).orElseThrow(() -> e);
+                if (!existing.getBodyDigest().equals(bodyDigest)) {
+                    throw new IllegalArgumentException("Idempotency-Key " + key + " was already used with a different body");
+                }
+                if (existing.getState() == IdempotencyRecord.State.DONE) {
+                    StoredResponse winner = new StoredResponse(existing.getBodyDigest(),
+                        fromJson(existing.getResponse()), existing.getCreatedAt());
+                    remember(key, winner);
+                    mine.complete(winner);
+                    return replay(key, winner, bodyDigest);
+                }
+                boolean abandoned = existing.getState() == IdempotencyRecord.State.FAILED
+                    || existing.getCreatedAt().isBefore(claimedAt.minusMillis(waitTimeoutMs));
+                Integer claimed = abandoned ? transactionTemplate.execute(status -> recordRepository.claim(
+                    key, existing.getState(), existing.getCreatedAt(), claimedAt)) : Integer.valueOf(0);
+                if (claimed == null || claimed == 0) {
+                    throw new IllegalStateException("Batch with Idempotency-Key " + key + " is still in progress");
+                }
+                log.info("Resuming batch with Idempotency-Key {} after a failed attempt", key);
+                resumed = true;
+            }
+            
+            BatchIngestionResponse response;
+            try {
+                response = batch.get();
+            } catch (RuntimeException e) {
+                transactionTemplate.executeWithoutResult(status -> recordRepository.fail(key, claimedAt));
+                throw e;
+            }
+            Integer completed = transactionTemplate.execute(status ->
+                recordRepository.complete(key, claimedAt, toJson(response)));
+            if (completed == null || completed == 0) {
+                log.warn("Reservation of Idempotency-Key {} was taken over while its batch ran", key);
+            }
+            StoredResponse written = new StoredResponse(bodyDigest, response, claimedAt);
+            remember(key, written);
+            mine.complete(written);
+            return new Outcome(response, false, resumed);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    private Outcome replay(String key, StoredResponse stored, String bodyDigest) {
+        if (!stored.bodyDigest.equals(bodyDigest)) {
+            throw new IllegalArgumentException("Idempotency-Key " + key + " was already used with a different body");
+        }
+        log.info("Replaying stored response for Idempotency-Key {}", key);
+        return new Outcome(stored.response, true, false);
+    }
+    
+    private StoredResponse lookup(String key) {
+        synchronized (recent) {
+            StoredResponse stored = recent.get(key);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        StoredResponse stored = recordRepository.findById(key)
+            .filter(record -> record.getState() == IdempotencyRecord.State.DONE)
+            .map(record -> new StoredResponse(record.getBodyDigest(), fromJson(record.getResponse()), record.getCreatedAt()))
+            .orElse(null);
+        if (stored != null) {
+            remember(key, stored);
+        }
+        return stored;
+    }
+    
+    private void remember(String key, StoredResponse stored) {
+        synchronized (recent) {
+            recent.put(key, stored);
+        }
+    }
+    
+    private String toJson(BatchIngestionResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize batch response", e);
+        }
+    }
+    
+    private BatchIngestionResponse fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, BatchIngestionResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt stored batch response", e);
+        }
+    }
+    
+    /**
+     * Response to send, whether it was replayed rather than produced by this request, and
+     * whether this request resumed a sharded batch whose earlier attempt failed.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Outcome {
+        private final BatchIngestionResponse response;
+        private final boolean replayed;
+        private final boolean resumed;
+    }
+    
+    @RequiredArgsConstructor
+    private static class StoredResponse {
+        final String bodyDigest;
+        final BatchIngestionResponse response;
+        final Instant createdAt;
+    }
+}
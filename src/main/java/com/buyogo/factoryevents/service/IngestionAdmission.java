@@ -0,0 +1,216 @@
+package com.buyogo.factoryevents.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of events being ingested at once, so bursts are shed with 429 instead of
+ * piling up behind the connection pool until they time out.
+ *
+ * <p>The limit is counted in events, not requests, and adapts AIMD-style: every batch that
+ * commits within the target latency while the limit is in use grows it additively (by
+ * {@code additive-increase} events per limit's worth of completed events); a slow or failed
+ * batch, or threads queueing for a connection, shrinks it by {@code backoff-ratio}, at most once
+ * per target latency so one burst of slow commits counts as a single congestion signal. Batches
+ * over the limit wait briefly in a bounded queue before being rejected; a batch larger than the
+ * whole queue may still wait when the queue is empty, so its size alone never sheds it.
+ */
+@Service
+@Slf4j
+public class IngestionAdmission {
+    
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+    
+    private final HikariDataSource pool;
+    private final long targetLatencyNanos;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int additiveIncrease;
+    private final double backoffRatio;
+    private final long maxQueuedEvents;
+    private final long maxQueueWaitNanos;
+    
+    private final Counter admittedEvents;
+    private final Counter queueFullEvents;
+    private final Counter timedOutEvents;
+    private final Timer queueWait;
+    
+    private double limit;
+    private long inFlight;
+    private long queued;
+    private long smoothedLatencyNanos;
+    private long lastDecreaseNanos;
+    
+    public IngestionAdmission(MeterRegistry meterRegistry,
+                              @Qualifier("writeDataSource") DataSource dataSource,
+                              @Value("${events.admission.initial-limit:5000}") int initialLimit,
+                              @Value("${events.admission.min-limit:1000}") int minLimit,
+                              @Value("${events.admission.max-limit:50000}") int maxLimit,
+                              @Value("${events.admission.additive-increase:500}") int additiveIncrease,
+                              @Value("${events.admission.backoff-ratio:0.9}") double backoffRatio,
+                              @Value("${events.admission.target-latency-ms:1000}") long targetLatencyMs,
+                              @Value("${events.admission.max-queued-events:5000}") long maxQueuedEvents,
+                              @Value("${events.admission.max-queue-wait-ms:500}") long maxQueueWaitMs) {
+        this.pool = hikari(dataSource);
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.additiveIncrease = additiveIncrease;
+        this.backoffRatio = backoffRatio;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+        this.lastDecreaseNanos = System.nanoTime() - targetLatencyNanos;
+        
+        Gauge.builder("events.admission.limit", this, IngestionAdmission::currentLimit)
+            .description("Events allowed in flight").baseUnit("events").register(meterRegistry);
+        Gauge.builder("events.admission.inflight", this, IngestionAdmission::inFlight)
+            .description("Events currently being ingested").baseUnit("events").register(meterRegistry);
+        Gauge.builder("events.admission.queued", this, IngestionAdmission::queued)
+            .description("Events waiting for admission").baseUnit("events").register(meterRegistry);
+        this.admittedEvents = Counter.builder("events.admission.admitted")
+            .baseUnit("events").register(meterRegistry);
+        this.queueFullEvents = Counter.builder("events.admission.rejected")
+            .tag("reason", "queue_full").baseUnit("events").register(meterRegistry);
+        this.timedOutEvents = Counter.builder("events.admission.rejected")
+            .tag("reason", "timeout").baseUnit("events").register(meterRegistry);
+        this.queueWait = Timer.builder("events.admission.queue.wait")
+            .description("Time admitted batches spent queued").register(meterRegistry);
+    }
+    
+    /**
+     * Run {@code work} once {@code events} fit under the limit, or throw
+     * {@link AdmissionRejectedException} if they do not within the queue wait.
+     */
+    public <T> T admit(int events, Supplier<T> work) {
+        acquire(events);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = work.get();
+            failed = false;
+            return result;
+        } catch (DataAccessException | TransactionException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Not a sign of database pressure (e.g. a client error); don't back off for it
+            failed = false;
+            throw e;
+        } finally {
+            release(events, System.nanoTime() - start, failed);
+        }
+    }
+    
+    synchronized void acquire(int events) {
+        if (!fits(events)) {
+            if (queued > 0 && queued + events > maxQueuedEvents) {
+                queueFullEvents.increment(events);
+                throw reject(events, "admission queue is full");
+            }
+            long start = System.nanoTime();
+            queued += events;
+            try {
+                while (!fits(events)) {
+                    long remaining = start + maxQueueWaitNanos - System.nanoTime();
+                    if (remaining <= 0) {
+                        timedOutEvents.increment(events);
+                        throw reject(events, "timed out waiting for admission");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                timedOutEvents.increment(events);
+                throw reject(events, "interrupted waiting for admission");
+            } finally {
+                queued -= events;
+            }
+            queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        inFlight += events;
+        admittedEvents.increment(events);
+    }
+    
+    synchronized void release(int events, long latencyNanos, boolean failed) {
+        boolean limited = inFlight >= limit / 2;
+        inFlight -= events;
+        smoothedLatencyNanos = smoothedLatencyNanos == 0
+            ? latencyNanos
+            : smoothedLatencyNanos + (latencyNanos - smoothedLatencyNanos) / 8;
+        
+        long now = System.nanoTime();
+        if (failed || latencyNanos > targetLatencyNanos || connectionWaiters() > 0) {
+            if (now - lastDecreaseNanos >= targetLatencyNanos) {
+                lastDecreaseNanos = now;
+                limit = Math.max(minLimit, limit * backoffRatio);
+                log.info("Ingestion limit lowered to {} events (latency {} ms, failed={})",
+                    (long) limit, TimeUnit.NANOSECONDS.toMillis(latencyNanos), failed);
+            }
+        } else if (limited) {
+            limit = Math.min(maxLimit, limit + (double) additiveIncrease * events / limit);
+        }
+        notifyAll();
+    }
+    
+    synchronized long currentLimit() {
+        return (long) limit;
+    }
+    
+    synchronized long inFlight() {
+        return inFlight;
+    }
+    
+    synchronized long queued() {
+        return queued;
+    }
+    
+    /**
+     * A batch larger than the whole limit is still let through on its own, rather than never.
+     */
+    private boolean fits(int events) {
+        return inFlight == 0 || inFlight + events <= limit;
+    }
+    
+    /**
+     * Retry-After estimate: everything ahead of the batch drains at about one limit's worth of
+     * events per (smoothed) batch latency.
+     */
+    private AdmissionRejectedException reject(int events, String reason) {
+        long latency = smoothedLatencyNanos > 0 ? smoothedLatencyNanos : targetLatencyNanos;
+        double windows = (inFlight + queued + events) / Math.max(limit, 1);
+        long seconds = (long) Math.ceil(windows * latency / 1e9);
+        long retryAfter = Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+        log.info("Shed batch of {} events: {} (in flight {}, limit {})", events, reason, inFlight, (long) limit);
+        return new AdmissionRejectedException("Batch of " + events + " events shed: " + reason, retryAfter);
+    }
+    
+    private int connectionWaiters() {
+        HikariPoolMXBean mxBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        return mxBean != null ? mxBean.getThreadsAwaitingConnection() : 0;
+    }
+    
+    private static HikariDataSource hikari(DataSource dataSource) {
+        try {
+            return dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)
+                ? dataSource.unwrap(HikariDataSource.class)
+                : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
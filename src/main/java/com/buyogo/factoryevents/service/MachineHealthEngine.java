@@ -0,0 +1,330 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.dto.MachineHealthResponse;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-machine health from exponentially weighted defect rates. Each machine keeps two decayed
+ * defect sums (a short half-life that drives the status and a long one used as the baseline
+ * for the trend); a committed event updates them in O(1) and listing the machines in Warning
+ * never touches the database. State is rebuilt from recent events in the background once the
+ * application is ready; {@link #isRebuilding()} is true until that replay has finished.
+ *
+ * <p>Machine ids are interned to dense int slots once, through an open-addressing table of
+ * slots keyed by the ids in {@code machineIds}, and all per-machine state lives in primitive
+ * arrays indexed by slot, so updates neither box nor allocate.
+ */
+@Service
+@Slf4j
+public class MachineHealthEngine {
+    
+    static final String RISING = "Rising";
+    static final String FALLING = "Falling";
+    static final String STEADY = "Steady";
+    
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+    
+    private final EventExportRepository exportRepository;
+    private final ShardRouter shardRouter;
+    private final double fastTauMs;
+    private final double slowTauMs;
+    private final double trendBand;
+    private final Duration rebuildWindow;
+    private final Instant startedAt;
+    private final long windowFromMillis;
+    private final long windowToMillis;
+    
+    // Versions received before startedAt that the live listener counted or retracted, and during
+    // the replay also the versions it counted; keyed by eventId@receivedTime
+    private final Map<String, Version> earlyVersions = new HashMap<>();
+    private volatile boolean rebuilding = true;
+    private boolean replayed;
+    
+    // Linear-probing index: slot + 1 per entry, 0 when empty; kept at most half full
+    private int[] slotTable = new int[128];
+    private String[] machineIds = new String[64];
+    // Decayed defect sums, valued as of referenceMillis of the same slot
+    private double[] fastSums = new double[64];
+    private double[] slowSums = new double[64];
+    private long[] referenceMillis = new long[64];
+    private long[] lastEventMillis = new long[64];
+    private int size;
+    
+    public MachineHealthEngine(EventExportRepository exportRepository,
+                               ShardRouter shardRouter,
+                               @Value("${health.ewma.fast-half-life:PT15M}") Duration fastHalfLife,
+                               @Value("${health.ewma.slow-half-life:PT2H}") Duration slowHalfLife,
+                               @Value("${health.ewma.trend-band:0.5}") double trendBand,
+                               @Value("${health.ewma.rebuild-window:PT12H}") Duration rebuildWindow) {
+        if (fastHalfLife.isNegative() || fastHalfLife.isZero() || slowHalfLife.compareTo(fastHalfLife) <= 0) {
+            throw new IllegalArgumentException("health.ewma half-lives must be positive with slow > fast");
+        }
+        this.exportRepository = exportRepository;
+        this.shardRouter = shardRouter;
+        this.fastTauMs = fastHalfLife.toMillis() / Math.log(2);
+        this.slowTauMs = slowHalfLife.toMillis() / Math.log(2);
+        this.trendBand = trendBand;
+        this.rebuildWindow = rebuildWindow;
+        this.startedAt = Instant.now();
+        this.windowFromMillis = startedAt.minus(rebuildWindow).toEpochMilli();
+        this.windowToMillis = startedAt.plus(Duration.ofMinutes(EventService.FUTURE_TIME_THRESHOLD_MINUTES + 1))
+            .toEpochMilli();
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsCommitted(EventsCommittedEvent committed) {
+        synchronized (this) {
+            for (EventsCommittedEvent.Change change : committed.getChanges()) {
+                if (change.getPrevious() != null) {
+                    retract(change.getPrevious());
+                }
+                count(change.getCurrent(), Version.LIVE);
+            }
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRebuild() {
+        Thread replay = new Thread(this::rebuild, "machine-health-rebuild");
+        replay.setDaemon(true);
+        replay.start();
+    }
+    
+    /**
+     * Replay the events received before this engine was created whose event time falls in the
+     * rebuild window; later rows are the live listener's. Either side may see a version first
+     * (a batch received before the start can commit during the scan, and the scan may read a
+     * version an update has already replaced), so versions received before the start are counted
+     * once whichever side sees them, and only counted versions are retracted.
+     */
+    public void rebuild() {
+        EventExportFilter filter = EventExportFilter.builder()
+            .from(Instant.ofEpochMilli(windowFromMillis))
+            .to(Instant.ofEpochMilli(windowToMillis))
+            .build();
+        try {
+            List<Long> scanned = shardRouter.readEach(shardRouter.allShards(), () -> {
+                long[] count = new long[1];
+                exportRepository.streamEvents(filter, null, null, row -> {
+                    if (row.getReceivedTime().isBefore(startedAt)) {
+                        synchronized (this) {
+                            countEarly(versionOf(row.getEventId(), row.getReceivedTime()), Version.REPLAYED,
+                                row.getMachineId(), row.getEventTime().toEpochMilli(), row.getDefectCount());
+                        }
+                        count[0]++;
+                    }
+                });
+                return count[0];
+            });
+            synchronized (this) {
+                replayed = true;
+            }
+            log.info("Machine health rebuilt from {} events over the last {} ({} machines)",
+                scanned.stream().mapToLong(Long::longValue).sum(), rebuildWindow, machineCount());
+        } catch (RuntimeException e) {
+            log.error("Machine health rebuild failed; only events committed since startup are counted", e);
+        } finally {
+            synchronized (this) {
+                // Only versions the listener counted still need tracking; the rest are never seen again
+                earlyVersions.values().removeIf(version -> version != Version.LIVE);
+                rebuilding = false;
+            }
+        }
+    }
+    
+    /**
+     * True until the startup replay has finished; until then rates only include part of the window.
+     */
+    public boolean isRebuilding() {
+        return rebuilding;
+    }
+    
+    /**
+     * Machines whose short-term defect rate is at or above the Warning threshold, worst first.
+     */
+    public List<MachineHealthResponse> getWarningMachines() {
+        return getWarningMachines(Instant.now());
+    }
+    
+    synchronized List<MachineHealthResponse> getWarningMachines(Instant now) {
+        long nowMillis = now.toEpochMilli();
+        List<MachineHealthResponse> warnings = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            double fastRate = rate(fastSums[slot], fastTauMs, slot, nowMillis);
+            if (!"Warning".equals(StatsService.healthStatus(fastRate))) {
+                continue;
+            }
+            double slowRate = rate(slowSums[slot], slowTauMs, slot, nowMillis);
+            warnings.add(MachineHealthResponse.builder()
+                .machineId(machineIds[slot])
+                .status("Warning")
+                .defectRate(Math.round(fastRate * 10.0) / 10.0) // Round to 1 decimal
+                .baselineDefectRate(Math.round(slowRate * 10.0) / 10.0)
+                .trend(trend(fastRate, slowRate))
+                .lastEventTime(Instant.ofEpochMilli(lastEventMillis[slot]))
+                .build());
+        }
+        warnings.sort(Comparator.comparingDouble(MachineHealthResponse::getDefectRate).reversed());
+        return warnings;
+    }
+    
+    synchronized int machineCount() {
+        return size;
+    }
+    
+    private void count(EventSnapshot event, Version by) {
+        long eventMillis = event.getEventTime().toEpochMilli();
+        if (!event.getReceivedTime().isBefore(startedAt)) {
+            record(event.getMachineId(), eventMillis, event.getDefectCount(), 1);
+            return;
+        }
+        countEarly(versionOf(event.getEventId(), event.getReceivedTime()), by,
+            event.getMachineId(), eventMillis, event.getDefectCount());
+    }
+    
+    private void countEarly(String version, Version by, String machineId, long eventMillis, int defectCount) {
+        if (earlyVersions.putIfAbsent(version, by) == null) {
+            record(machineId, eventMillis, defectCount, 1);
+        }
+    }
+    
+    private void retract(EventSnapshot event) {
+        long eventMillis = event.getEventTime().toEpochMilli();
+        if (!event.getReceivedTime().isBefore(startedAt)) {
+            record(event.getMachineId(), eventMillis, event.getDefectCount(), -1);
+            return;
+        }
+        String version = versionOf(event.getEventId(), event.getReceivedTime());
+        Version state = earlyVersions.get(version);
+        boolean counted;
+        if (state != null) {
+            counted = state != Version.RETRACTED;
+        } else {
+            // Untracked after the replay: counted iff the replay covered its event time
+            counted = !rebuilding && replayed && eventMillis >= windowFromMillis && eventMillis < windowToMillis;
+        }
+        if (rebuilding) {
+            // Keeps the scan from counting a version that is already gone
+            earlyVersions.put(version, Version.RETRACTED);
+        } else {
+            earlyVersions.remove(version);
+        }
+        if (counted) {
+            record(event.getMachineId(), eventMillis, event.getDefectCount(), -1);
+        }
+    }
+    
+    private static String versionOf(String eventId, Instant receivedTime) {
+        return eventId + "@" + receivedTime;
+    }
+    
+    /**
+     * Fold one event into its machine's sums. Both sums are kept as of the latest event time
+     * seen: a newer event decays them forward, an older one is added pre-decayed. Decay is
+     * linear, so a retraction (sign -1) removes exactly what the original insert added, and the
+     * sums never go below zero beyond rounding.
+     */
+    private void record(String machineId, long eventMillis, int defectCount, int sign) {
+        int slot = slotOf(machineId);
+        if (sign > 0 && eventMillis > lastEventMillis[slot]) {
+            lastEventMillis[slot] = eventMillis;
+        }
+        if (defectCount <= 0) {
+            // Unknown (-1) or zero defects only mark the machine as seen
+            return;
+        }
+        long reference = referenceMillis[slot];
+        if (eventMillis > reference) {
+            fastSums[slot] *= Math.exp((reference - eventMillis) / fastTauMs);
+            slowSums[slot] *= Math.exp((reference - eventMillis) / slowTauMs);
+            referenceMillis[slot] = eventMillis;
+            reference = eventMillis;
+        }
+        double defects = (double) sign * defectCount;
+        fastSums[slot] += defects * Math.exp((eventMillis - reference) / fastTauMs);
+        slowSums[slot] += defects * Math.exp((eventMillis - reference) / slowTauMs);
+    }
+    
+    /**
+     * Defects per hour: a decayed sum with time constant tau converges to rate * tau.
+     */
+    private double rate(double sum, double tauMs, int slot, long nowMillis) {
+        // Events stamped slightly ahead of now are treated as current
+        long age = Math.max(0L, nowMillis - referenceMillis[slot]);
+        return sum * Math.exp(-age / tauMs) / (tauMs / MILLIS_PER_HOUR);
+    }
+    
+    private String trend(double fastRate, double slowRate) {
+        if (fastRate - slowRate > trendBand) {
+            return RISING;
+        }
+        if (slowRate - fastRate > trendBand) {
+            return FALLING;
+        }
+        return STEADY;
+    }
+    
+    /**
+     * Who counted a version received before the engine started.
+     */
+    private enum Version { LIVE, REPLAYED, RETRACTED }
+    
+    private int slotOf(String machineId) {
+        int mask = slotTable.length - 1;
+        int index = spread(machineId.hashCode()) & mask;
+        for (int entry; (entry = slotTable[index]) != 0; index = (index + 1) & mask) {
+            if (machineIds[entry - 1].equals(machineId)) {
+                return entry - 1;
+            }
+        }
+        if (size == machineIds.length) {
+            int capacity = size * 2;
+            machineIds = Arrays.copyOf(machineIds, capacity);
+            fastSums = Arrays.copyOf(fastSums, capacity);
+            slowSums = Arrays.copyOf(slowSums, capacity);
+            referenceMillis = Arrays.copyOf(referenceMillis, capacity);
+            lastEventMillis = Arrays.copyOf(lastEventMillis, capacity);
+        }
+        machineIds[size] = machineId;
+        slotTable[index] = size + 1;
+        if (2 * (size + 1) > slotTable.length) {
+            rehash(slotTable.length * 2);
+        }
+        return size++;
+    }
+    
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int slot = 0; slot <= size; slot++) {
+            int index = spread(machineIds[slot].hashCode()) & mask;
+            while (table[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            table[index] = slot + 1;
+        }
+        slotTable = table;
+    }
+    
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
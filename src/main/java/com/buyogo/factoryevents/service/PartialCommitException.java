@@ -0,0 +1,39 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+
+import java.util.List;
+
+/**
+ * Raised by {@link EventService#processGroup} when some shards committed and others failed.
+ * For each batch of the group it carries the counts of what did commit (and the batch's
+ * validation rejections), and the events routed to the failed shards, in batch order, which
+ * were not written and can be retried on their own.
+ */
+public class PartialCommitException extends RuntimeException {
+    
+    private final transient List<BatchIngestionResponse> committed;
+    private final transient List<List<EventRequest>> uncommitted;
+    
+    public PartialCommitException(RuntimeException cause,
+                                  List<BatchIngestionResponse> committed,
+                                  List<List<EventRequest>> uncommitted) {
+        super(cause.getMessage(), cause);
+        this.committed = committed;
+        this.uncommitted = uncommitted;
+    }
+    
+    public List<BatchIngestionResponse> getCommitted() {
+        return committed;
+    }
+    
+    public List<List<EventRequest>> getUncommitted() {
+        return uncommitted;
+    }
+    
+    @Override
+    public synchronized RuntimeException getCause() {
+        return (RuntimeException) super.getCause();
+    }
+}
@@ -0,0 +1,219 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardContext;
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.entity.MachineShard;
+import com.buyogo.factoryevents.entity.MachineShardId;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decides which shard databases hold which events and runs work against them. Events live on
+ * the shard owning their factory ({@code events.sharding.factories}); machine-scoped queries
+ * find their shards in the machine directory, which every write registers before it commits
+ * data on a shard.
+ *
+ * <p>Unsharded (no extra shards configured), everything runs on the calling thread and joins
+ * the caller's transaction, exactly as without this class. Sharded, every {@link #read} and
+ * {@link #write} runs in a new transaction on its shard, and {@link #fanOut} spreads shards
+ * over a fixed pool. There is no distributed commit: a batch spanning shards commits shard by
+ * shard.
+ */
+@Service
+@Slf4j
+public class ShardRouter {
+    
+    private final ShardingProperties properties;
+    private final MachineShardRepository machineShardRepository;
+    private final boolean sharded;
+    private final List<String> allShards;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final ExecutorService executor;
+    
+    // Directory entries known to be committed; they are never removed
+    private final Set<MachineShardId> registered = ConcurrentHashMap.newKeySet();
+    
+    public ShardRouter(ShardingProperties properties,
+                       MachineShardRepository machineShardRepository,
+                       PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.machineShardRepository = machineShardRepository;
+        this.sharded = !properties.getShards().isEmpty();
+        this.allShards = new ArrayList<>();
+        this.allShards.add(ShardingProperties.DEFAULT_SHARD);
+        this.allShards.addAll(properties.getShards().keySet());
+        properties.getFactories().forEach((factoryId, shard) -> {
+            if (!allShards.contains(shard)) {
+                throw new IllegalStateException("events.sharding.factories." + factoryId + " names unknown shard " + shard);
+            }
+        });
+        
+        int propagation = sharded ? TransactionDefinition.PROPAGATION_REQUIRES_NEW : TransactionDefinition.PROPAGATION_REQUIRED;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setPropagationBehavior(propagation);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(propagation);
+        
+        if (sharded) {
+            AtomicInteger threads = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(properties.getFanOutThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "shard-fan-out-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Sharding events over {} with factories {}", allShards, properties.getFactories());
+        } else {
+            this.executor = null;
+        }
+    }
+    
+    public boolean isSharded() {
+        return sharded;
+    }
+    
+    public List<String> allShards() {
+        return allShards;
+    }
+    
+    public String shardOf(String factoryId) {
+        if (factoryId == null) {
+            return ShardingProperties.DEFAULT_SHARD;
+        }
+        return properties.getFactories().getOrDefault(factoryId, ShardingProperties.DEFAULT_SHARD);
+    }
+    
+    /**
+     * Shards holding events of the machine, from the directory; none for an unknown machine.
+     */
+    public List<String> shardsOfMachine(String machineId) {
+        if (!sharded) {
+            return allShards;
+        }
+        return read(ShardingProperties.DEFAULT_SHARD, () -> machineShardRepository.findShards(machineId));
+    }
+    
+    /**
+     * Shards a filtered query must read: the factory's shard, else the machine's, else all.
+     */
+    public List<String> shardsOf(EventExportFilter filter) {
+        if (filter.getFactoryId() != null) {
+            return List.of(shardOf(filter.getFactoryId()));
+        }
+        if (filter.getMachineId() != null) {
+            return shardsOfMachine(filter.getMachineId());
+        }
+        return allShards;
+    }
+    
+    /**
+     * Record in the directory that the shard holds events of these machines. Call it before
+     * writing them: an entry for a shard whose write then fails only costs an empty query.
+     */
+    public void registerMachines(String shard, Collection<String> machineIds) {
+        if (!sharded) {
+            return;
+        }
+        List<MachineShardId> missing = machineIds.stream()
+            .distinct()
+            .map(machineId -> new MachineShardId(machineId, shard))
+            .filter(id -> !registered.contains(id))
+            .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            saveDirectoryEntries(missing);
+        } catch (DataIntegrityViolationException e) {
+            // Another writer registered some of them first; the retry merges onto their rows
+            saveDirectoryEntries(missing);
+        }
+        registered.addAll(missing);
+    }
+    
+    private void saveDirectoryEntries(List<MachineShardId> ids) {
+        Instant now = Instant.now();
+        write(ShardingProperties.DEFAULT_SHARD, () -> {
+            List<MachineShardId> stored = machineShardRepository.findAllById(ids).stream()
+                .map(MachineShard::getId)
+                .toList();
+            List<MachineShard> added = ids.stream()
+                .filter(id -> !stored.contains(id))
+                .map(id -> MachineShard.builder().id(id).createdAt(now).build())
+                .toList();
+            return machineShardRepository.saveAll(added);
+        });
+    }
+    
+    /**
+     * Run the query in a read-only transaction on the shard.
+     */
+    public <T> T read(String shard, Supplier<T> query) {
+        return ShardContext.callIn(shard, () -> readTransaction.execute(status -> query.get()));
+    }
+    
+    /**
+     * Run the work in a read-write transaction on the shard.
+     */
+    public <T> T write(String shard, Supplier<T> work) {
+        return ShardContext.callIn(shard, () -> writeTransaction.execute(status -> work.get()));
+    }
+    
+    /**
+     * Run the query on each shard, in parallel when there are several; results in shard order.
+     */
+    public <T> List<T> readEach(Collection<String> shards, Supplier<T> query) {
+        return fanOut(shards, shard -> read(shard, query));
+    }
+    
+    /**
+     * Apply the work to each shard, in parallel when sharded and there are several; results in
+     * shard order. The first failure is rethrown once every shard has finished.
+     */
+    public <T> List<T> fanOut(Collection<String> shards, Function<String, T> work) {
+        if (executor == null || shards.size() <= 1) {
+            return shards.stream().map(work).toList();
+        }
+        List<CompletableFuture<T>> futures = shards.stream()
+            .map(shard -> CompletableFuture.supplyAsync(() -> work.apply(shard), executor))
+            .toList();
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.buyogo.factoryevents.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of time buckets holding event and defect totals. Adding an event and
+ * reading the totals of a window are both bounded by the ring size, independent of how
+ * many events fell into the window.
+ */
+class SlidingWindowCounter {
+    
+    private final long bucketMillis;
+    private final long[] bucketIds;
+    private final long[] events;
+    private final long[] defects;
+    
+    /**
+     * @param span  oldest-to-newest time range the ring must be able to hold at once
+     * @param bucket width of a single bucket
+     */
+    SlidingWindowCounter(Duration span, Duration bucket) {
+        this.bucketMillis = bucket.toMillis();
+        int size = (int) (span.toMillis() / bucketMillis) + 1;
+        this.bucketIds = new long[size];
+        this.events = new long[size];
+        this.defects = new long[size];
+        Arrays.fill(bucketIds, Long.MIN_VALUE);
+    }
+    
+    long bucketOf(Instant time) {
+        return Math.floorDiv(time.toEpochMilli(), bucketMillis);
+    }
+    
+    Instant bucketStart(long bucketId) {
+        return Instant.ofEpochMilli(bucketId * bucketMillis);
+    }
+    
+    /**
+     * Apply a signed delta. A negative {@code eventDelta} retracts a previously added event.
+     * Unknown defect counts (-1) count as events but not as defects, as in the SQL aggregates.
+     */
+    synchronized void add(Instant eventTime, int eventDelta, int defectCount) {
+        long bucketId = bucketOf(eventTime);
+        int slot = (int) Math.floorMod(bucketId, (long) bucketIds.length);
+        if (bucketIds[slot] != bucketId) {
+            if (bucketIds[slot] > bucketId) {
+                // Slot already recycled for a newer bucket - this event is older than the ring
+                return;
+            }
+            bucketIds[slot] = bucketId;
+            events[slot] = 0;
+            defects[slot] = 0;
+        }
+        events[slot] += eventDelta;
+        if (defectCount >= 0) {
+            defects[slot] += (long) eventDelta * defectCount;
+        }
+    }
+    
+    /**
+     * Event and defect totals for buckets in [fromBucket, toBucket).
+     */
+    synchronized long[] totals(long fromBucket, long toBucket) {
+        long eventTotal = 0;
+        long defectTotal = 0;
+        for (int i = 0; i < bucketIds.length; i++) {
+            if (bucketIds[i] >= fromBucket && bucketIds[i] < toBucket) {
+                eventTotal += events[i];
+                defectTotal += defects[i];
+            }
+        }
+        return new long[] {eventTotal, defectTotal};
+    }
+}
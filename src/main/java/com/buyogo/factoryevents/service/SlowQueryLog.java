@@ -0,0 +1,199 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardContext;
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.config.StatementCapturingDataSource.Captured;
+import com.buyogo.factoryevents.dto.SlowQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Latency of every profiled repository query ({@code events.query.duration}, a percentile
+ * histogram tagged by query), and a bounded ring of the most recent calls slower than
+ * {@code events.query-profiling.slow-threshold-ms} with their SQL and bind parameters.
+ *
+ * <p>A fraction ({@code explain-sample-rate}, off by default) of slow SELECTs are run again as
+ * {@code EXPLAIN (ANALYZE, BUFFERS)} (plain {@code EXPLAIN ANALYZE} on H2) on the same shard in a
+ * read-only transaction. That runs the query a second time, so it happens on a background
+ * thread, one at a time; slow queries arriving while a plan is being taken are not explained.
+ */
+@Service
+@Slf4j
+public class SlowQueryLog {
+    
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate explainTransaction;
+    private final long thresholdNanos;
+    private final int capacity;
+    private final double explainSampleRate;
+    private final Deque<SlowQuery> recent = new ArrayDeque<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Counter slowQueries;
+    private final AtomicBoolean explaining = new AtomicBoolean();
+    private final ExecutorService explainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slow-query-explain");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public SlowQueryLog(MeterRegistry meterRegistry,
+                        JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${events.query-profiling.slow-threshold-ms:250}") long thresholdMs,
+                        @Value("${events.query-profiling.capacity:100}") int capacity,
+                        @Value("${events.query-profiling.explain-sample-rate:0}") double explainSampleRate) {
+        if (thresholdMs < 0 || capacity < 1 || explainSampleRate < 0 || explainSampleRate > 1) {
+            throw new IllegalArgumentException(
+                "events.query-profiling slow-threshold-ms must be >= 0, capacity >= 1 and explain-sample-rate in [0, 1]");
+        }
+        this.meterRegistry = meterRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.explainTransaction = new TransactionTemplate(transactionManager);
+        this.explainTransaction.setReadOnly(true);
+        this.explainTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.capacity = capacity;
+        this.explainSampleRate = explainSampleRate;
+        this.slowQueries = Counter.builder("events.query.slow")
+            .description("Profiled repository queries slower than the slow-query threshold")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Record one profiled call; if it was slow, keep it with its statements and maybe explain it.
+     */
+    public void record(String query, long nanos, List<Captured> statements) {
+        timers.computeIfAbsent(query, name -> Timer.builder("events.query.duration")
+                .description("Latency of profiled repository queries")
+                .tag("query", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos < thresholdNanos) {
+            return;
+        }
+        slowQueries.increment();
+        String shard = ShardContext.current() != null ? ShardContext.current() : ShardingProperties.DEFAULT_SHARD;
+        SlowQuery slow = SlowQuery.builder()
+            .time(Instant.now())
+            .query(query)
+            .shard(shard)
+            .durationMs(nanos / 1e6)
+            .statements(statements.stream()
+                .map(statement -> SlowQuery.Statement.builder()
+                    .sql(statement.sql())
+                    .binds(statement.bindValues())
+                    .build())
+                .toList())
+            .build();
+        synchronized (recent) {
+            if (recent.size() == capacity) {
+                recent.removeLast();
+            }
+            recent.addFirst(slow);
+        }
+        log.warn("Slow query {} took {} ms on shard {}", query, String.format("%.1f", slow.getDurationMs()), shard);
+        
+        if (explainSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < explainSampleRate) {
+            statements.stream()
+                .filter(statement -> statement.sql().strip().toLowerCase(Locale.ROOT).startsWith("select"))
+                .findFirst()
+                .ifPresent(statement -> explain(slow, statement, shard));
+        }
+    }
+    
+    /**
+     * @return the retained slow queries, newest first
+     */
+    public List<SlowQuery> recent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+    
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+    
+    public long thresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+    
+    public double explainSampleRate() {
+        return explainSampleRate;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+    
+    private void explain(SlowQuery slow, Captured statement, String shard) {
+        if (!explaining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            explainExecutor.execute(() -> {
+                try {
+                    slow.setPlan(ShardContext.callIn(shard, () -> explainTransaction.execute(status ->
+                        jdbcTemplate.execute((ConnectionCallback<String>) connection -> plan(connection, statement)))));
+                } catch (RuntimeException e) {
+                    log.debug("EXPLAIN of slow query {} failed", slow.getQuery(), e);
+                    slow.setPlan("EXPLAIN failed: " + e.getMessage());
+                } finally {
+                    explaining.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            explaining.set(false);
+        }
+    }
+    
+    private static String plan(Connection connection, Captured statement) throws SQLException {
+        boolean postgres = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        String explain = (postgres ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ANALYZE ") + statement.sql();
+        try (PreparedStatement prepared = connection.prepareStatement(explain)) {
+            statement.bindTo(prepared);
+            StringJoiner plan = new StringJoiner("\n");
+            try (ResultSet rows = prepared.executeQuery()) {
+                while (rows.next()) {
+                    plan.add(rows.getString(1));
+                }
+            }
+            return plan.toString();
+        }
+    }
+}
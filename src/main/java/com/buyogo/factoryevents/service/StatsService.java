@@ -1,15 +1,25 @@
 package com.buyogo.factoryevents.service;
 
+import com.buyogo.factoryevents.archive.ArchiveStore;
 import com.buyogo.factoryevents.dto.StatsResponse;
+import com.buyogo.factoryevents.dto.StatsWindow;
 import com.buyogo.factoryevents.dto.TopDefectLineResponse;
+import com.buyogo.factoryevents.jfr.StatsQueryEvent;
 import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.repository.MachineStatsRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,16 +27,111 @@ import java.util.stream.Collectors;
 @Slf4j
 public class StatsService {
     
-    private static final double HEALTHY_THRESHOLD = 2.0;
+    static final double HEALTHY_THRESHOLD = 2.0;
+    static final int MAX_WINDOWS = 16;
     
     private final EventRepository eventRepository;
+    private final MachineStatsRepository machineStatsRepository;
+    private final ShardRouter shardRouter;
+    private final ArchiveStore archiveStore;
     
+    /**
+     * Totals over every shard the machine directory lists for the machine, plus archived events
+     * when the window reaches back into the archive. Each query in this class is recorded as a
+     * {@link StatsQueryEvent} when Flight Recorder is running.
+     */
     public StatsResponse getMachineStats(String machineId, Instant start, Instant end) {
         log.debug("Getting stats for machine {} from {} to {}", machineId, start, end);
+        StatsQueryEvent jfr = new StatsQueryEvent();
+        jfr.begin();
         
-        long eventsCount = eventRepository.countByMachineIdAndEventTimeBetween(machineId, start, end);
-        long defectsCount = eventRepository.sumDefectsByMachineIdAndEventTimeBetween(machineId, start, end);
+        long eventsCount = 0;
+        long defectsCount = 0;
+        List<String> shards = shardRouter.shardsOfMachine(machineId);
+        for (long[] totals : shardRouter.readEach(shards, () -> new long[] {
+                eventRepository.countByMachineIdAndEventTimeBetween(machineId, start, end),
+                eventRepository.sumDefectsByMachineIdAndEventTimeBetween(machineId, start, end)})) {
+            eventsCount += totals[0];
+            defectsCount += totals[1];
+        }
+        List<long[]> archived = archivedTotals(machineId, List.of(new StatsWindow(start, end)));
+        if (archived != null) {
+            eventsCount += archived.get(0)[0];
+            defectsCount += archived.get(0)[1];
+        }
         
+        commit(jfr, StatsQueryEvent.MACHINE_STATS, machineId, Duration.between(start, end), 1, shards.size(), eventsCount);
+        return buildMachineStats(machineId, start, end, eventsCount, defectsCount);
+    }
+    
+    /**
+     * Stats for each window, computed by one scan per shard over the widest range the windows
+     * span instead of two aggregate queries per window. Responses are in window order.
+     */
+    public List<StatsResponse> getMachineStats(String machineId, List<StatsWindow> windows) {
+        if (windows.isEmpty() || windows.size() > MAX_WINDOWS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_WINDOWS + " windows are required");
+        }
+        for (StatsWindow window : windows) {
+            if (window.getEnd().isBefore(window.getStart())) {
+                throw new IllegalArgumentException("Window start must not be after its end: " + window);
+            }
+        }
+        log.debug("Getting stats for machine {} over {} windows", machineId, windows.size());
+        StatsQueryEvent jfr = new StatsQueryEvent();
+        jfr.begin();
+        
+        long[][] totals = new long[windows.size()][2];
+        List<String> shards = shardRouter.shardsOfMachine(machineId);
+        for (List<long[]> shardTotals : shardRouter.readEach(shards,
+                () -> machineStatsRepository.totals(machineId, windows))) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i][0] += shardTotals.get(i)[0];
+                totals[i][1] += shardTotals.get(i)[1];
+            }
+        }
+        List<long[]> archived = archivedTotals(machineId, windows);
+        if (archived != null) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i][0] += archived.get(i)[0];
+                totals[i][1] += archived.get(i)[1];
+            }
+        }
+        
+        List<StatsResponse> responses = new ArrayList<>(windows.size());
+        for (int i = 0; i < totals.length; i++) {
+            StatsWindow window = windows.get(i);
+            responses.add(buildMachineStats(machineId, window.getStart(), window.getEnd(), totals[i][0], totals[i][1]));
+        }
+        if (jfr.shouldCommit()) {
+            Instant from = windows.stream().map(StatsWindow::getStart).min(Instant::compareTo).orElseThrow();
+            Instant to = windows.stream().map(StatsWindow::getEnd).max(Instant::compareTo).orElseThrow();
+            // The widest window's count is the closest to the rows the single scan read
+            long rows = Arrays.stream(totals).mapToLong(window -> window[0]).max().orElse(0);
+            commit(jfr, StatsQueryEvent.MACHINE_WINDOWS, machineId, Duration.between(from, to), windows.size(), shards.size(), rows);
+        }
+        return responses;
+    }
+    
+    /**
+     * Archived {events, defects} per window, or null when no window starts before the end of
+     * the archive and the segment files need not be consulted at all.
+     */
+    private List<long[]> archivedTotals(String machineId, List<StatsWindow> windows) {
+        Optional<Instant> archivedUntil = archiveStore.archivedUntil();
+        if (archivedUntil.isEmpty()
+                || windows.stream().noneMatch(window -> window.getStart().isBefore(archivedUntil.get()))) {
+            return null;
+        }
+        return archiveStore.machineTotals(machineId, windows);
+    }
+    
+    /**
+     * Derive rate and Healthy/Warning status from raw window totals. Shared with the
+     * incremental stats stream so both paths classify machines identically.
+     */
+    static StatsResponse buildMachineStats(String machineId, Instant start, Instant end,
+                                           long eventsCount, long defectsCount) {
         // Calculate window duration in hours
         double windowHours = Duration.between(start, end).getSeconds() / 3600.0;
         
@@ -34,7 +139,7 @@ public class StatsService {
         double avgDefectRate = windowHours > 0 ? defectsCount / windowHours : 0.0;
         
         // Determine status
-        String status = avgDefectRate < HEALTHY_THRESHOLD ? "Healthy" : "Warning";
+        String status = healthStatus(avgDefectRate);
         
         return StatsResponse.builder()
             .machineId(machineId)
@@ -47,10 +152,25 @@ public class StatsService {
             .build();
     }
     
+    static String healthStatus(double avgDefectRate) {
+        return avgDefectRate < HEALTHY_THRESHOLD ? "Healthy" : "Warning";
+    }
+    
     public List<TopDefectLineResponse> getTopDefectLines(String factoryId, Instant from, Instant to, int limit) {
         log.debug("Getting top {} defect lines for factory {} from {} to {}", limit, factoryId, from, to);
+        StatsQueryEvent jfr = new StatsQueryEvent();
+        jfr.begin();
         
-        List<Object[]> results = eventRepository.findTopDefectLines(factoryId, from, to);
+        List<Object[]> results = shardRouter.read(shardRouter.shardOf(factoryId),
+            () -> eventRepository.findTopDefectLines(factoryId, from, to));
+        Optional<Instant> archivedUntil = archiveStore.archivedUntil();
+        if (archivedUntil.isPresent() && from.isBefore(archivedUntil.get())) {
+            results = mergeArchivedLines(results, archiveStore.lineTotals(factoryId, from, to));
+        }
+        if (jfr.shouldCommit()) {
+            long rows = results.stream().mapToLong(row -> (Long) row[2]).sum();
+            commit(jfr, StatsQueryEvent.TOP_DEFECT_LINES, factoryId, Duration.between(from, to), 1, 1, rows);
+        }
         
         return results.stream()
             .limit(limit)
@@ -69,4 +189,38 @@ public class StatsService {
             })
             .collect(Collectors.toList());
     }
+    
+    /**
+     * Add archived {defects, events} per line to the hot rows and restore the query's
+     * order of total defects descending.
+     */
+    private static List<Object[]> mergeArchivedLines(List<Object[]> hot, Map<String, long[]> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Map<String, long[]> lines = new HashMap<>(archived);
+        for (Object[] row : hot) {
+            long[] line = lines.computeIfAbsent((String) row[0], id -> new long[2]);
+            line[0] += (Long) row[1];
+            line[1] += (Long) row[2];
+        }
+        return lines.entrySet().stream()
+            .map(line -> new Object[] {line.getKey(), line.getValue()[0], line.getValue()[1]})
+            .sorted(Comparator.comparing((Object[] row) -> (Long) row[1]).reversed()
+                .thenComparing(row -> (String) row[0]))
+            .collect(Collectors.toList());
+    }
+    
+    private static void commit(StatsQueryEvent jfr, String kind, String key, Duration window, int windows, int shards,
+                               long rowsScanned) {
+        if (jfr.shouldCommit()) {
+            jfr.kind = kind;
+            jfr.key = key;
+            jfr.window = window.toMillis();
+            jfr.windows = windows;
+            jfr.shards = shards;
+            jfr.rowsScanned = rowsScanned;
+            jfr.commit();
+        }
+    }
 }
@@ -0,0 +1,400 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.dto.HealthTransition;
+import com.buyogo.factoryevents.dto.StatsResponse;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes live machine stats over Server-Sent Events. Each watched machine keeps a ring of
+ * one-minute buckets covering the sliding window; committed batches adjust the buckets
+ * incrementally, so a push costs O(window buckets) and never touches the database. Only the
+ * initial snapshot for a newly watched machine or factory is loaded from the events table.
+ *
+ * <p>Snapshots are loaded outside {@code windows}, so ingestion's after-commit listener never
+ * waits on a seed query. Changes committed while a snapshot loads are buffered and replayed
+ * when it is installed, skipping the versions the snapshot already read.
+ */
+@Service
+@Slf4j
+public class StatsStreamService {
+    
+    private static final Duration BUCKET = Duration.ofMinutes(1);
+    // Events may be stamped up to 15 minutes ahead (see EventService); keep room for them in the ring
+    private static final Duration FUTURE_SLACK = Duration.ofMinutes(16);
+    
+    private final EventExportRepository exportRepository;
+    private final ShardRouter shardRouter;
+    private final Duration window;
+    private final int bufferSize;
+    private final long emitterTimeoutMs;
+    private final ExecutorService dispatcher;
+    
+    private final Map<String, MachineWindow> windows = new ConcurrentHashMap<>();
+    private final Set<StatsStreamSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<PendingSeed> seeds = ConcurrentHashMap.newKeySet();
+    
+    public StatsStreamService(EventExportRepository exportRepository,
+                              ShardRouter shardRouter,
+                              @Value("${stats.stream.window:PT1H}") Duration window,
+                              @Value("${stats.stream.buffer-size:256}") int bufferSize,
+                              @Value("${stats.stream.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                              @Value("${stats.stream.dispatch-threads:2}") int dispatchThreads) {
+        this.exportRepository = exportRepository;
+        this.shardRouter = shardRouter;
+        this.window = window;
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "stats-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Open a stream for one machine ({@code machineId}) or for every machine of a factory
+     * ({@code factoryId}). The current stats are sent immediately, then on every change.
+     */
+    public SseEmitter subscribe(String machineId, String factoryId) {
+        return subscribe(machineId, factoryId, Instant.now());
+    }
+    
+    SseEmitter subscribe(String machineId, String factoryId, Instant now) {
+        SseEmitter emitter = newEmitter();
+        StatsStreamSubscriber subscriber = new StatsStreamSubscriber(emitter, machineId, factoryId, bufferSize, dispatcher);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        
+        if (machineId == null || !windows.containsKey(machineId)) {
+            seed(new PendingSeed(machineId, factoryId));
+        }
+        subscribers.add(subscriber);
+        log.info("Stats stream opened for machine={}, factory={} ({} subscribers)",
+            machineId, factoryId, subscribers.size());
+        
+        windows.forEach((machine, machineWindow) -> {
+            if (subscriber.isInterestedIn(machine, machineWindow.factoryId)) {
+                subscriber.offerStats(machineWindow.firstSnapshot(machine, now));
+            }
+        });
+        return emitter;
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsCommitted(EventsCommittedEvent committed) {
+        if (subscribers.isEmpty() && seeds.isEmpty()) {
+            return;
+        }
+        Set<String> touched = new HashSet<>();
+        for (EventsCommittedEvent.Change change : committed.getChanges()) {
+            if (change.getPrevious() != null) {
+                apply(change.getPrevious(), -1, touched);
+            }
+            apply(change.getCurrent(), 1, touched);
+        }
+        Instant now = Instant.now();
+        for (String machineId : touched) {
+            publish(machineId, now);
+        }
+    }
+    
+    /**
+     * Old events slide out of the window even when nothing new arrives.
+     */
+    @Scheduled(fixedDelayString = "${stats.stream.tick-interval-ms:15000}")
+    public void tick() {
+        tick(Instant.now());
+    }
+    
+    void tick(Instant now) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (String machineId : windows.keySet()) {
+            publish(machineId, now);
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(StatsStreamSubscriber::close);
+        dispatcher.shutdownNow();
+    }
+    
+    SseEmitter newEmitter() {
+        return new SseEmitter(emitterTimeoutMs);
+    }
+    
+    private void apply(EventSnapshot event, int sign, Set<String> touched) {
+        MachineWindow machineWindow = windows.get(event.getMachineId());
+        if (machineWindow == null) {
+            if (buffer(event, sign)) {
+                return;
+            }
+            // A seed may have installed the window since the first lookup
+            machineWindow = windows.get(event.getMachineId());
+        }
+        if (machineWindow == null) {
+            if (!isFactoryWatched(event.getFactoryId())) {
+                return;
+            }
+            machineWindow = windows.computeIfAbsent(event.getMachineId(), id -> new MachineWindow(event.getFactoryId()));
+        }
+        if (sign > 0 && event.getFactoryId() != null) {
+            machineWindow.factoryId = event.getFactoryId();
+        }
+        machineWindow.counter.add(event.getEventTime(), sign, event.getDefectCount());
+        touched.add(event.getMachineId());
+    }
+    
+    private void publish(String machineId, Instant now) {
+        MachineWindow machineWindow = windows.get(machineId);
+        if (machineWindow == null) {
+            return;
+        }
+        StatsResponse previous;
+        StatsResponse current;
+        synchronized (machineWindow) {
+            previous = machineWindow.stats;
+            current = machineWindow.snapshot(machineId, now);
+            machineWindow.stats = current;
+        }
+        if (current.equals(previous)) {
+            return;
+        }
+        HealthTransition transition = null;
+        if (previous != null && !previous.getStatus().equals(current.getStatus())) {
+            transition = HealthTransition.builder()
+                .machineId(machineId)
+                .previousStatus(previous.getStatus())
+                .status(current.getStatus())
+                .avgDefectRate(current.getAvgDefectRate())
+                .at(now)
+                .build();
+            log.info("Machine {} changed from {} to {}", machineId, previous.getStatus(), current.getStatus());
+        }
+        for (StatsStreamSubscriber subscriber : subscribers) {
+            if (subscriber.isInterestedIn(machineId, machineWindow.factoryId)) {
+                subscriber.offerStats(current);
+                if (transition != null) {
+                    subscriber.offerTransition(transition);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Hand the change to every snapshot still loading for its machine or factory.
+     *
+     * @return whether any seed took it
+     */
+    private boolean buffer(EventSnapshot event, int sign) {
+        boolean buffered = false;
+        for (PendingSeed seed : seeds) {
+            if (seed.covers(event)) {
+                synchronized (seed) {
+                    if (!seed.installed) {
+                        seed.deltas.add(new Delta(event, sign));
+                        buffered = true;
+                    }
+                }
+            }
+        }
+        return buffered;
+    }
+    
+    private boolean isFactoryWatched(String factoryId) {
+        if (factoryId == null) {
+            return false;
+        }
+        for (StatsStreamSubscriber subscriber : subscribers) {
+            if (factoryId.equals(subscriber.getFactoryId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void unsubscribe(StatsStreamSubscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        subscriber.close();
+        windows.entrySet().removeIf(entry -> subscribers.stream()
+            .noneMatch(s -> s.isInterestedIn(entry.getKey(), entry.getValue().factoryId)));
+        log.info("Stats stream closed for machine={}, factory={} ({} subscribers)",
+            subscriber.getMachineId(), subscriber.getFactoryId(), subscribers.size());
+    }
+    
+    /**
+     * Load the window snapshot for the seed's machine or factory from the events table, then
+     * install it with the changes committed meanwhile. Machines already watched keep their window.
+     */
+    private void seed(PendingSeed seed) {
+        seeds.add(seed);
+        try {
+            Instant now = Instant.now();
+            EventExportFilter seedFilter = EventExportFilter.builder()
+                .machineId(seed.machineId)
+                .factoryId(seed.machineId == null ? seed.factoryId : null)
+                .from(now.minus(window).minus(BUCKET))
+                .to(now.plus(FUTURE_SLACK))
+                .build();
+            Map<String, MachineWindow> seeded = new HashMap<>();
+            if (seed.machineId != null) {
+                seeded.put(seed.machineId, new MachineWindow(null));
+            }
+            // One shard at a time: versions and the seeded map are not thread-safe
+            for (String shard : shardRouter.shardsOf(seedFilter)) {
+                shardRouter.read(shard, () -> {
+                    exportRepository.streamEvents(seedFilter, null, null, row -> {
+                        MachineWindow machineWindow = seeded.computeIfAbsent(row.getMachineId(), id -> new MachineWindow(null));
+                        machineWindow.factoryId = row.getFactoryId();
+                        machineWindow.counter.add(row.getEventTime(), 1, row.getDefectCount());
+                        seed.versions.add(version(row.getEventId(), row.getReceivedTime()));
+                    });
+                    return null;
+                });
+            }
+            install(seed, seeded);
+        } finally {
+            seeds.remove(seed);
+        }
+    }
+    
+    private void install(PendingSeed seed, Map<String, MachineWindow> seeded) {
+        synchronized (seed) {
+            Set<String> installed = new HashSet<>();
+            seeded.forEach((machine, machineWindow) -> {
+                if (windows.putIfAbsent(machine, machineWindow) == null) {
+                    installed.add(machine);
+                }
+            });
+            for (Delta delta : seed.deltas) {
+                String machine = delta.event.getMachineId();
+                if (!installed.contains(machine)) {
+                    // A machine of the factory the snapshot did not see
+                    if (seed.machineId != null || delta.sign < 0
+                            || windows.putIfAbsent(machine, new MachineWindow(delta.event.getFactoryId())) != null) {
+                        continue;
+                    }
+                    installed.add(machine);
+                }
+                if (seed.counts(delta)) {
+                    MachineWindow machineWindow = windows.get(machine);
+                    if (delta.sign > 0 && delta.event.getFactoryId() != null) {
+                        machineWindow.factoryId = delta.event.getFactoryId();
+                    }
+                    machineWindow.counter.add(delta.event.getEventTime(), delta.sign, delta.event.getDefectCount());
+                }
+            }
+            seed.installed = true;
+        }
+    }
+    
+    private static String version(String eventId, Instant receivedTime) {
+        return eventId + "@" + receivedTime;
+    }
+    
+    /**
+     * Stats of a watched machine as of {@code now}, or null when it is not watched.
+     */
+    StatsResponse currentStats(String machineId, Instant now) {
+        MachineWindow machineWindow = windows.get(machineId);
+        return machineWindow != null ? machineWindow.snapshot(machineId, now) : null;
+    }
+    
+    /**
+     * A snapshot being loaded for one machine, or for a factory when {@code machineId} is null.
+     */
+    private static final class PendingSeed {
+        final String machineId;
+        final String factoryId;
+        // Event versions (id@receivedTime) the snapshot or a replayed change has counted
+        final Set<String> versions = new HashSet<>();
+        final List<Delta> deltas = new ArrayList<>();
+        boolean installed;
+        
+        PendingSeed(String machineId, String factoryId) {
+            this.machineId = machineId;
+            this.factoryId = factoryId;
+        }
+        
+        boolean covers(EventSnapshot event) {
+            return machineId != null ? machineId.equals(event.getMachineId()) : factoryId.equals(event.getFactoryId());
+        }
+        
+        /**
+         * Whether a buffered change still needs applying: an insert the snapshot did not read,
+         * or a retraction of a version that was counted.
+         */
+        boolean counts(Delta delta) {
+            String version = version(delta.event.getEventId(), delta.event.getReceivedTime());
+            return delta.sign > 0 ? versions.add(version) : versions.remove(version);
+        }
+    }
+    
+    private record Delta(EventSnapshot event, int sign) {
+    }
+    
+    private class MachineWindow {
+        final SlidingWindowCounter counter = new SlidingWindowCounter(window.plus(FUTURE_SLACK).plus(BUCKET), BUCKET);
+        volatile String factoryId;
+        // Last stats pushed to subscribers; only publish moves it, so every change is pushed
+        StatsResponse stats;
+        
+        /**
+         * Snapshot for a new subscriber. It becomes the baseline only for a window nothing was
+         * published for yet, so a transition can be detected from it; an existing baseline is
+         * left for {@link #publish} to compare against, so a pending update still reaches the
+         * other subscribers.
+         */
+        synchronized StatsResponse firstSnapshot(String machineId, Instant now) {
+            StatsResponse snapshot = snapshot(machineId, now);
+            if (stats == null) {
+                stats = snapshot;
+            }
+            return snapshot;
+        }
+        
+        MachineWindow(String factoryId) {
+            this.factoryId = factoryId;
+        }
+        
+        /**
+         * Stats for the bucket-aligned window ending with the current minute.
+         */
+        synchronized StatsResponse snapshot(String machineId, Instant now) {
+            long endBucket = counter.bucketOf(now) + 1;
+            long startBucket = endBucket - window.toMillis() / BUCKET.toMillis();
+            long[] totals = counter.totals(startBucket, endBucket);
+            return StatsService.buildMachineStats(machineId, counter.bucketStart(startBucket),
+                counter.bucketStart(endBucket), totals[0], totals[1]);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.HealthTransition;
+import com.buyogo.factoryevents.dto.StatsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * One SSE client. Outgoing messages are held in a bounded buffer drained by the shared
+ * dispatcher pool, so a slow client never blocks the committing thread. Stats updates for
+ * the same machine are conflated (latest wins); transitions are never dropped. A client
+ * that still overflows the buffer is disconnected and can reconnect for a fresh snapshot.
+ */
+@Slf4j
+class StatsStreamSubscriber {
+    
+    private final SseEmitter emitter;
+    private final String machineId;
+    private final String factoryId;
+    private final int capacity;
+    private final Executor dispatcher;
+    
+    private final LinkedHashMap<String, Object> pending = new LinkedHashMap<>();
+    private long transitionSequence;
+    private boolean scheduled;
+    private volatile boolean closed;
+    
+    StatsStreamSubscriber(SseEmitter emitter, String machineId, String factoryId, int capacity, Executor dispatcher) {
+        this.emitter = emitter;
+        this.machineId = machineId;
+        this.factoryId = factoryId;
+        this.capacity = capacity;
+        this.dispatcher = dispatcher;
+    }
+    
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+    
+    String getMachineId() {
+        return machineId;
+    }
+    
+    String getFactoryId() {
+        return factoryId;
+    }
+    
+    boolean isClosed() {
+        return closed;
+    }
+    
+    boolean isInterestedIn(String machine, String factory) {
+        if (machineId != null) {
+            return machineId.equals(machine);
+        }
+        return factory != null && factory.equals(factoryId);
+    }
+    
+    void offerStats(StatsResponse stats) {
+        enqueue("stats:" + stats.getMachineId(), stats);
+    }
+    
+    void offerTransition(HealthTransition transition) {
+        String key;
+        synchronized (this) {
+            key = "transition:" + (++transitionSequence);
+        }
+        enqueue(key, transition);
+    }
+    
+    private void enqueue(String key, Object payload) {
+        if (closed) {
+            return;
+        }
+        boolean schedule;
+        synchronized (this) {
+            pending.put(key, payload);
+            if (pending.size() > capacity) {
+                log.warn("Stats stream subscriber (machine={}, factory={}) exceeded buffer of {}; disconnecting",
+                    machineId, factoryId, capacity);
+                pending.clear();
+                close();
+                return;
+            }
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            dispatcher.execute(this::drain);
+        }
+    }
+    
+    private void drain() {
+        while (!closed) {
+            Map.Entry<String, Object> next;
+            synchronized (this) {
+                Iterator<Map.Entry<String, Object>> it = pending.entrySet().iterator();
+                if (!it.hasNext()) {
+                    scheduled = false;
+                    return;
+                }
+                next = it.next();
+                it.remove();
+            }
+            String eventName = next.getKey().substring(0, next.getKey().indexOf(':'));
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(next.getValue(), MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Stats stream subscriber gone: {}", e.getMessage());
+                close();
+            }
+        }
+    }
+    
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        emitter.complete();
+    }
+}
@@ -0,0 +1,141 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.TimeSeriesPoint;
+import com.buyogo.factoryevents.dto.TimeSeriesResponse;
+import com.buyogo.factoryevents.repository.TimeSeriesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@Service
+@Slf4j
+public class TimeSeriesService {
+    
+    public enum Bucket {
+        MINUTE("minute", Duration.ofMinutes(1)),
+        HOUR("hour", Duration.ofHours(1)),
+        DAY("day", Duration.ofDays(1));
+        
+        private final String truncUnit;
+        private final Duration width;
+        
+        Bucket(String truncUnit, Duration width) {
+            this.truncUnit = truncUnit;
+            this.width = width;
+        }
+        
+        public Duration getWidth() {
+            return width;
+        }
+        
+        public static Bucket parse(String value) {
+            try {
+                return Bucket.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported bucket: " + value);
+            }
+        }
+    }
+    
+    private final TimeSeriesRepository timeSeriesRepository;
+    private final ShardRouter shardRouter;
+    private final int maxBuckets;
+    
+    public TimeSeriesService(TimeSeriesRepository timeSeriesRepository,
+                             ShardRouter shardRouter,
+                             @Value("${stats.timeseries.max-buckets:1440}") int maxBuckets) {
+        this.timeSeriesRepository = timeSeriesRepository;
+        this.shardRouter = shardRouter;
+        this.maxBuckets = maxBuckets;
+    }
+    
+    /**
+     * Per-bucket counts for the filter's window, including empty buckets. {@code requested} may be
+     * null; either way the finest bucket that keeps the series within {@code max-buckets} is used.
+     * Buckets are summed over every shard the filter may touch.
+     */
+    public TimeSeriesResponse getTimeSeries(EventExportFilter filter, Bucket requested) {
+        if (filter.getMachineId() == null && filter.getFactoryId() == null && filter.getLineId() == null) {
+            throw new IllegalArgumentException("One of machineId, factoryId or lineId is required");
+        }
+        if (!filter.getFrom().isBefore(filter.getTo())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        
+        Bucket bucket = chooseBucket(filter.getFrom(), filter.getTo(), requested);
+        log.debug("Time series for {} with {} buckets", filter, bucket);
+        
+        // Events and defects per bucket start
+        Map<Instant, long[]> rows = new HashMap<>();
+        for (List<TimeSeriesRepository.BucketRow> shardRows : shardRouter.readEach(shardRouter.shardsOf(filter),
+                () -> timeSeriesRepository.aggregate(filter, bucket.truncUnit))) {
+            for (TimeSeriesRepository.BucketRow row : shardRows) {
+                long[] totals = rows.computeIfAbsent(row.getBucketStart(), start -> new long[2]);
+                totals[0] += row.getEventsCount();
+                totals[1] += row.getDefectsCount();
+            }
+        }
+        
+        List<TimeSeriesPoint> points = new ArrayList<>();
+        for (Instant start = truncate(filter.getFrom(), bucket); start.isBefore(filter.getTo());
+             start = start.plus(bucket.width)) {
+            long[] row = rows.get(start);
+            long eventsCount = row != null ? row[0] : 0;
+            long defectsCount = row != null ? row[1] : 0;
+            
+            // Edge buckets only cover the part of the window the caller asked for
+            Instant coveredFrom = start.isBefore(filter.getFrom()) ? filter.getFrom() : start;
+            Instant end = start.plus(bucket.width);
+            Instant coveredTo = end.isAfter(filter.getTo()) ? filter.getTo() : end;
+            double hours = Duration.between(coveredFrom, coveredTo).toMillis() / 3_600_000.0;
+            double avgDefectRate = hours > 0 ? defectsCount / hours : 0.0;
+            
+            points.add(TimeSeriesPoint.builder()
+                .bucketStart(start)
+                .eventsCount(eventsCount)
+                .defectsCount(defectsCount)
+                .avgDefectRate(Math.round(avgDefectRate * 10.0) / 10.0) // Round to 1 decimal, as in /stats
+                .build());
+        }
+        
+        return TimeSeriesResponse.builder()
+            .machineId(filter.getMachineId())
+            .lineId(filter.getLineId())
+            .factoryId(filter.getFactoryId())
+            .from(filter.getFrom())
+            .to(filter.getTo())
+            .bucket(bucket.name().toLowerCase(Locale.ROOT))
+            .points(points)
+            .build();
+    }
+    
+    Bucket chooseBucket(Instant from, Instant to, Bucket requested) {
+        Bucket[] buckets = Bucket.values();
+        int index = requested != null ? requested.ordinal() : 0;
+        while (index < buckets.length - 1 && bucketCount(from, to, buckets[index]) > maxBuckets) {
+            index++;
+        }
+        return buckets[index];
+    }
+    
+    private long bucketCount(Instant from, Instant to, Bucket bucket) {
+        long width = bucket.width.toMillis();
+        long first = Math.floorDiv(from.toEpochMilli(), width);
+        long last = Math.floorDiv(to.toEpochMilli() - 1, width);
+        return last - first + 1;
+    }
+    
+    private Instant truncate(Instant instant, Bucket bucket) {
+        long width = bucket.width.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(instant.toEpochMilli(), width) * width);
+    }
+}
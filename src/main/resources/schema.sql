@@ -32,3 +32,73 @@ COMMENT ON COLUMN events.defect_count IS 'Number of defects (-1 means unknown)';
 COMMENT ON COLUMN events.payload_hash IS 'Hash of payload for duplicate detection';
 COMMENT ON COLUMN events.created_at IS 'Record creation timestamp';
 COMMENT ON COLUMN events.updated_at IS 'Record last update timestamp';
+
+-- Hourly duration histograms per machine, factory and line (HdrHistogram compressed encoding)
+CREATE TABLE IF NOT EXISTS duration_sketches (
+    machine_id VARCHAR(255) NOT NULL,
+    factory_id VARCHAR(255) NOT NULL,
+    line_id VARCHAR(255) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    sample_count BIGINT NOT NULL,
+    histogram BYTEA NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT duration_sketches_pkey PRIMARY KEY (machine_id, factory_id, line_id, bucket_start)
+);
+
+-- Tables created before line sketches were scoped by factory; rows keep '' until rebuilt from events
+ALTER TABLE duration_sketches ADD COLUMN IF NOT EXISTS factory_id VARCHAR(255) NOT NULL DEFAULT '';
+ALTER TABLE duration_sketches DROP CONSTRAINT IF EXISTS duration_sketches_pkey;
+ALTER TABLE duration_sketches ADD CONSTRAINT duration_sketches_pkey PRIMARY KEY (machine_id, factory_id, line_id, bucket_start);
+DROP INDEX IF EXISTS idx_duration_sketches_line;
+
+CREATE INDEX IF NOT EXISTS idx_duration_sketches_factory_line ON duration_sketches(factory_id, line_id, bucket_start);
+
+COMMENT ON TABLE duration_sketches IS 'Mergeable hourly duration histograms for percentile queries';
+COMMENT ON COLUMN duration_sketches.factory_id IS 'Factory identifier (empty string when unknown)';
+COMMENT ON COLUMN duration_sketches.line_id IS 'Production line identifier (empty string when unknown)';
+COMMENT ON COLUMN duration_sketches.histogram IS 'HdrHistogram compressed encoding, 2 significant digits';
+
+-- Responses of batches sent with an Idempotency-Key, replayed on retry
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    body_digest VARCHAR(64) NOT NULL,
+    response TEXT,
+    state VARCHAR(16) NOT NULL DEFAULT 'DONE',
+    created_at TIMESTAMP NOT NULL
+);
+
+-- Sharded batches reserve their key first and store the response once every shard committed
+ALTER TABLE idempotency_keys ADD COLUMN IF NOT EXISTS state VARCHAR(16) NOT NULL DEFAULT 'DONE';
+ALTER TABLE idempotency_keys ALTER COLUMN response DROP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys(created_at);
+
+COMMENT ON TABLE idempotency_keys IS 'Stored batch responses keyed by Idempotency-Key, purged after the TTL';
+COMMENT ON COLUMN idempotency_keys.state IS 'PENDING while a sharded batch runs, FAILED if it threw, DONE with the response';
+COMMENT ON COLUMN idempotency_keys.body_digest IS 'SHA-256 of the raw request body; a reused key must match it';
+
+-- Which shards hold events of each machine (default shard only; see events.sharding.*)
+CREATE TABLE IF NOT EXISTS machine_shards (
+    machine_id VARCHAR(255) NOT NULL,
+    shard VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (machine_id, shard)
+);
+
+COMMENT ON TABLE machine_shards IS 'Machine to shard directory used to route machine-scoped queries';
+
+-- Archive segments whose events were deleted from this shard (see events.archive.*)
+CREATE TABLE IF NOT EXISTS archive_segments (
+    segment VARCHAR(512) PRIMARY KEY,
+    archived_at TIMESTAMP NOT NULL
+);
+
+COMMENT ON TABLE archive_segments IS 'Segments committed by the archiver; a pending segment file is published only if listed here';
+
+-- Checksums of applied schema scripts; boot skips initialization while they are unchanged
+CREATE TABLE IF NOT EXISTS schema_version (
+    checksum VARCHAR(64) PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL
+);
+
+COMMENT ON TABLE schema_version IS 'SHA-256 of each schema script set applied at startup (events.schema.skip-unchanged)';
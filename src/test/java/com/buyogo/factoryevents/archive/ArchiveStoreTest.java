@@ -0,0 +1,197 @@
+package com.buyogo.factoryevents.archive;
+
+import com.buyogo.factoryevents.archive.EventSegment.Column;
+import com.buyogo.factoryevents.dto.StatsWindow;
+import com.buyogo.factoryevents.entity.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ArchiveStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 14);
+    private static final Instant DAY_START = DAY.atStartOfDay(ZoneOffset.UTC).toInstant();
+
+    @TempDir
+    private Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ArchiveStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new ArchiveStore(true, dir, meterRegistry);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A segment round-trips every column and its footer describes the partition")
+    void testSegmentRoundTrip() throws IOException {
+        // Arrange
+        List<Event> events = events("factory-1", 500);
+        Path file = dir.resolve("day.seg");
+
+        // Act
+        SegmentFooter written = EventSegment.write(file, "factory-1", DAY, events);
+        SegmentFooter footer = EventSegment.readFooter(file);
+        EventSegment.Rows rows = EventSegment.readColumns(file, footer, EnumSet.allOf(Column.class));
+
+        // Assert
+        assertThat(footer.rows()).isEqualTo(500);
+        assertThat(footer.factoryId()).isEqualTo("factory-1");
+        assertThat(footer.day()).isEqualTo(DAY);
+        assertThat(footer.minEventTime()).isEqualTo(written.minEventTime()).isEqualTo(DAY_START);
+        assertThat(footer.maxEventTime()).isEqualTo(DAY_START.plusSeconds(499 * 60).plusNanos(499_000));
+        assertThat(footer.machines()).containsExactlyInAnyOrder("machine-0", "machine-1", "machine-2");
+        List<Event> read = new ArrayList<>();
+        for (int row = 0; row < rows.size(); row++) {
+            read.add(rows.event(row));
+        }
+        assertThat(read).containsExactlyInAnyOrderElementsOf(events);
+        assertThat(Files.size(file)).isLessThan(500L * 40);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Machine and line totals match the rows; footers skip other factories, machines and days")
+    void testTotalsAndFooterSkipping() throws IOException {
+        // Arrange
+        store.stage("factory-1", DAY, "a", events("factory-1", 500)).publish();
+        store.stage("factory-2", DAY, "a", events("factory-2", 100)).publish();
+        store.stage("factory-1", DAY.minusDays(1), "a", shift(events("factory-1", 100), Duration.ofDays(-1))).publish();
+        List<StatsWindow> windows = List.of(
+            new StatsWindow(DAY_START, DAY_START.plus(Duration.ofHours(1))),
+            new StatsWindow(DAY_START, DAY_START.plus(Duration.ofDays(1))));
+
+        // Act
+        List<long[]> machine = store.machineTotals("machine-1", windows);
+        Map<String, long[]> lines = store.lineTotals("factory-1", DAY_START, DAY_START.plus(Duration.ofDays(1)));
+        List<long[]> unknown = store.machineTotals("machine-9", windows);
+
+        // Assert
+        // factory-1 and factory-2 segments both hold machine-1 on DAY: 500/3 + 100/3 rows, minutes 1, 4, 7, ...
+        assertThat(machine.get(0)).containsExactly(20 + 20, expectedDefects(20) * 2);
+        assertThat(machine.get(1)).containsExactly(167 + 33, expectedDefects(167) + expectedDefects(33));
+        assertThat(lines).containsOnlyKeys("line-0", "line-1");
+        assertThat(lines.get("line-0")[1] + lines.get("line-1")[1]).isEqualTo(500 - 50 - 100 + 50);
+        assertThat(unknown.get(1)).containsExactly(0, 0);
+        assertThat(meterRegistry.counter("events.archive.segments", "result", "skipped").count()).isEqualTo(6);
+        assertThat(meterRegistry.counter("events.archive.segments", "result", "read").count()).isEqualTo(3);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Staged segments stay invisible until published; other nodes see them on rescan")
+    void testStagePublishDiscardRescan() throws IOException {
+        // Arrange
+        ArchiveStore.Staged kept = store.stage("factory-1", DAY, "kept", events("factory-1", 10));
+        ArchiveStore.Staged dropped = store.stage(null, DAY, "dropped", events(null, 10));
+        assertThat(store.archivedUntil()).isEmpty();
+
+        // Act
+        kept.publish();
+        dropped.publish();
+        dropped.discard();
+        ArchiveStore other = new ArchiveStore(true, dir, new SimpleMeterRegistry());
+
+        // Assert
+        assertThat(store.archivedUntil()).contains(DAY_START.plusSeconds(9 * 60).plusNanos(9_000 + 1_000));
+        assertThat(other.archivedUntil()).isEqualTo(store.archivedUntil());
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertThat(files.filter(Files::isRegularFile).map(file -> file.getFileName().toString()))
+                .containsExactly("kept.seg");
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Pending segments are skipped by rescan and listed as orphans once old; old half-written files are removed")
+    void testOrphans() throws IOException {
+        // Arrange
+        ArchiveStore.Staged pending = store.stage("factory-1", DAY, "pending", events("factory-1", 10));
+        Path partition = dir.resolve("factory-1").resolve(DAY.toString());
+        Path unfinished = Files.writeString(partition.resolve("unfinished.seg.tmp"), "partial");
+        store.stage("factory-1", DAY, "recent", events("factory-1", 10));
+        Instant cutoff = Instant.now().minus(Duration.ofHours(1));
+        for (Path file : List.of(partition.resolve("pending.seg.pending"), unfinished)) {
+            Files.setLastModifiedTime(file, FileTime.from(cutoff.minus(Duration.ofMinutes(1))));
+        }
+
+        // Act
+        store.rescan();
+        List<ArchiveStore.Staged> orphans = store.orphans(cutoff);
+
+        // Assert
+        assertThat(store.archivedUntil()).isEmpty();
+        assertThat(orphans).extracting(ArchiveStore.Staged::name).containsExactly("factory-1/" + DAY + "/pending.seg");
+        assertThat(pending.name()).isEqualTo(orphans.get(0).name());
+        assertThat(orphans.get(0).footer().rows()).isEqualTo(10);
+        assertThat(unfinished).doesNotExist();
+        orphans.get(0).publish();
+        assertThat(store.archivedUntil()).isPresent();
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertThat(files.filter(Files::isRegularFile).map(file -> file.getFileName().toString()))
+                .containsExactlyInAnyOrder("pending.seg", "recent.seg.pending");
+        }
+    }
+
+    /**
+     * One event a minute from the start of DAY; every tenth has no line and every fifth an
+     * unknown (-1) defect count.
+     */
+    private static List<Event> events(String factoryId, int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Instant eventTime = DAY_START.plusSeconds(i * 60L).plusNanos(i * 1000L);
+            events.add(Event.builder()
+                .eventId(factoryId + "-event-" + i)
+                .eventTime(eventTime)
+                .receivedTime(eventTime.plusMillis(250 + i))
+                .machineId("machine-" + (i % 3))
+                .lineId(i % 10 == 9 ? null : "line-" + (i % 2))
+                .factoryId(factoryId)
+                .durationMs(1000L + i)
+                .defectCount(i % 5 == 4 ? -1 : i % 4)
+                .payloadHash("hash-" + i)
+                .build());
+        }
+        return events;
+    }
+
+    private static List<Event> shift(List<Event> events, Duration by) {
+        events.forEach(event -> {
+            event.setEventTime(event.getEventTime().plus(by));
+            event.setReceivedTime(event.getReceivedTime().plus(by));
+        });
+        return events;
+    }
+
+    /**
+     * Defects of the first {@code rows} machine-1 events (i = 1, 4, 7, ...).
+     */
+    private static long expectedDefects(int rows) {
+        long defects = 0;
+        for (int n = 0, i = 1; n < rows; n++, i += 3) {
+            defects += i % 5 == 4 ? 0 : i % 4;
+        }
+        return defects;
+    }
+}
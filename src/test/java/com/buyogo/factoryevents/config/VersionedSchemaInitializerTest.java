@@ -0,0 +1,91 @@
+package com.buyogo.factoryevents.config;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class VersionedSchemaInitializerTest {
+
+    private static final String VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version "
+        + "(checksum VARCHAR(64) PRIMARY KEY, applied_at TIMESTAMP NOT NULL);\n";
+
+    @TempDir
+    private Path dir;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:schema_" + System.nanoTime() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Unchanged scripts are skipped on the next boot; changed scripts run again")
+    void testUnchangedScriptsSkipped() throws IOException {
+        // Arrange
+        Path script = dir.resolve("schema.sql");
+        Files.writeString(script, VERSION_TABLE + "CREATE TABLE IF NOT EXISTS probe (id INT);\n");
+        initialize(script, true);
+        jdbcTemplate.execute("DROP TABLE probe");
+
+        // Act
+        initialize(script, true);
+        boolean recreatedWhileUnchanged = tableExists("PROBE");
+        Files.writeString(script, VERSION_TABLE + "CREATE TABLE IF NOT EXISTS probe (id INT, name VARCHAR(10));\n");
+        initialize(script, true);
+
+        // Assert
+        assertThat(recreatedWhileUnchanged).isFalse();
+        assertThat(tableExists("PROBE")).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: With skip-unchanged off the scripts run on every boot")
+    void testAlwaysRunWhenDisabled() throws IOException {
+        // Arrange
+        Path script = dir.resolve("schema.sql");
+        Files.writeString(script, VERSION_TABLE + "CREATE TABLE IF NOT EXISTS probe (id INT);\n");
+        initialize(script, true);
+        jdbcTemplate.execute("DROP TABLE probe");
+
+        // Act
+        initialize(script, false);
+
+        // Assert
+        assertThat(tableExists("PROBE")).isTrue();
+    }
+
+    private void initialize(Path script, boolean skipUnchanged) {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of(script.toUri().toString()));
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        new VersionedSchemaInitializer(dataSource, settings, skipUnchanged).initializeDatabase();
+    }
+
+    private boolean tableExists(String name) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?", Integer.class, name) > 0;
+    }
+}
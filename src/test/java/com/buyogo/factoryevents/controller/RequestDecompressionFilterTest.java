@@ -0,0 +1,129 @@
+package com.buyogo.factoryevents.controller;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.*;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class RequestDecompressionFilterTest {
+
+    private final RequestDecompressionFilter filter = new RequestDecompressionFilter(100, 1 << 20);
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Blocking reads see the decoded body")
+    void testBlockingRead() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = gzipRequest("[{\"eventId\":\"e1\"}]");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String[] body = new String[1];
+
+        // Act
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                body[0] = new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }));
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(body[0]).isEqualTo("[{\"eventId\":\"e1\"}]");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Registering a ReadListener on a compressed body is a 415, not a 500")
+    void testNonBlockingReadRejected() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = gzipRequest("[]");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ReadListener listener = new ReadListener() {
+            @Override
+            public void onDataAvailable() {
+            }
+
+            @Override
+            public void onAllDataRead() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+
+        // Act
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                req.getInputStream().setReadListener(listener);
+            }
+        }));
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(415);
+        assertThat(response.getHeader("Accept-Encoding")).isEqualTo("identity");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Inside Spring MVC the rejection resolves to 415 as well")
+    void testNonBlockingReadRejectedByMvc() throws Exception {
+        // Arrange
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new NonBlockingController()).addFilters(filter).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write("[]".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Act & Assert
+        mockMvc.perform(post("/non-blocking")
+                .header("Content-Encoding", "gzip")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(out.toByteArray()))
+                .andExpect(status().isUnsupportedMediaType())
+                .andExpect(header().string("Accept-Encoding", "identity"));
+    }
+
+    @RestController
+    static class NonBlockingController {
+
+        @PostMapping("/non-blocking")
+        void read(HttpServletRequest request) throws IOException {
+            request.getInputStream().setReadListener(null);
+        }
+    }
+
+    // Helper method
+    private static MockHttpServletRequest gzipRequest(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/events/batch");
+        request.addHeader("Content-Encoding", "gzip");
+        request.setContentType("application/json");
+        request.setContent(out.toByteArray());
+        return request;
+    }
+}
@@ -0,0 +1,257 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.archive.ArchiveStore;
+import com.buyogo.factoryevents.entity.Event;
+import com.buyogo.factoryevents.repository.EventArchiveRepository;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.service.ArchiveService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"events.archive.enabled=true", "events.archive.chunk-rows=24"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ArchiveIntegrationTest {
+
+    @TempDir
+    private static Path archiveDir;
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("events.archive.directory", () -> archiveDir.toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private EventArchiveRepository eventArchiveRepository;
+
+    private Instant today;
+
+    @BeforeEach
+    void setUp() {
+        today = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        eventRepository.deleteAll();
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path file : files.toList()) {
+                FileSystemUtils.deleteRecursively(file);
+            }
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Archived days leave the database but machine stats and top defect lines are unchanged")
+    void testArchivedEventsStillCounted() throws Exception {
+        // Arrange: 5 old days and today, two factories, one event per 30 minutes
+        eventRepository.saveAll(events(today.minus(Duration.ofDays(5)), 6 * 48));
+        String from = today.minus(Duration.ofDays(10)).toString();
+        String to = today.plus(Duration.ofDays(1)).toString();
+        String statsBefore = stats("machine-1", from, to);
+        String recentBefore = stats("machine-1", today.toString(), to);
+        String linesBefore = topDefectLines("factory-1", from, to);
+
+        // Act
+        long moved = archiveService.archiveBefore(today);
+
+        // Assert
+        assertThat(moved).isEqualTo(5 * 48);
+        assertThat(eventRepository.count()).isEqualTo(48);
+        assertThat(eventRepository.findAll()).allMatch(event -> !event.getEventTime().isBefore(today));
+        assertThat(stats("machine-1", from, to)).isEqualTo(statsBefore);
+        assertThat(stats("machine-1", today.toString(), to)).isEqualTo(recentBefore);
+        assertThat(topDefectLines("factory-1", from, to)).isEqualTo(linesBefore);
+        try (Stream<Path> segments = Files.walk(archiveDir)) {
+            assertThat(segments.filter(file -> file.toString().endsWith(".seg"))).hasSize(5 * 2);
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: A second run moves only events that arrived late for an archived day")
+    void testLateEventsArchivedByNextRun() throws Exception {
+        // Arrange
+        eventRepository.saveAll(events(today.minus(Duration.ofDays(2)), 2 * 48));
+        archiveService.archiveBefore(today);
+        String statsBefore = stats("machine-1", today.minus(Duration.ofDays(3)).toString(), today.toString());
+        eventRepository.save(event("late-1", today.minus(Duration.ofDays(1)), "machine-1", "factory-1", 3));
+
+        // Act
+        long nothing = archiveService.archiveBefore(today.minus(Duration.ofDays(1)));
+        long late = archiveService.archiveBefore(today);
+
+        // Assert
+        assertThat(nothing).isZero();
+        assertThat(late).isEqualTo(1);
+        assertThat(eventRepository.count()).isZero();
+        assertThat(stats("machine-1", today.minus(Duration.ofDays(3)).toString(), today.toString()))
+            .isNotEqualTo(statsBefore)
+            .contains("\"defectsCount\":" + (defects(statsBefore) + 3));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Segments left pending by a crash are published if their run committed and discarded if not")
+    void testPendingSegmentsSettled() throws Exception {
+        // Arrange: one segment whose rows were deleted and recorded, one whose run never committed
+        LocalDate day = LocalDate.ofInstant(today.minus(Duration.ofDays(2)), ZoneOffset.UTC);
+        List<Event> committed = events(today.minus(Duration.ofDays(2)), 4);
+        ArchiveStore.Staged published = archiveStore.stage("factory-1", day, "default-committed", committed);
+        eventArchiveRepository.recordSegment(published.name(), Instant.now());
+        archiveStore.stage("factory-1", day, "default-crashed", events(today.minus(Duration.ofDays(2)), 4));
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+        try (Stream<Path> files = Files.walk(archiveDir)) {
+            for (Path file : files.filter(file -> file.toString().endsWith(".pending")).toList()) {
+                Files.setLastModifiedTime(file, old);
+            }
+        }
+        String before = stats("machine-1", today.minus(Duration.ofDays(3)).toString(), today.toString());
+
+        // Act
+        long moved = archiveService.archiveBefore(today);
+
+        // Assert
+        assertThat(moved).isZero();
+        assertThat(stats("machine-1", today.minus(Duration.ofDays(3)).toString(), today.toString()))
+            .isNotEqualTo(before)
+            .contains("\"eventsCount\":" + committed.stream().filter(event -> event.getMachineId().equals("machine-1")).count());
+        try (Stream<Path> files = Files.walk(archiveDir)) {
+            assertThat(files.filter(Files::isRegularFile).map(file -> archiveDir.relativize(file).toString().replace('\\', '/')))
+                .containsExactly(published.name());
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: A factory-day larger than chunk-rows is archived in several segments with the same totals")
+    void testArchivedInChunks() throws Exception {
+        // Arrange: 50 events of one factory on one day, archived 24 at a time
+        Instant day = today.minus(Duration.ofDays(2));
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(event("chunk-" + i, day.plus(Duration.ofMinutes(i)), "machine-1", "factory-1", i % 3));
+        }
+        eventRepository.saveAll(events);
+        String before = stats("machine-1", day.toString(), today.toString());
+
+        // Act
+        long moved = archiveService.archiveBefore(today);
+
+        // Assert
+        assertThat(moved).isEqualTo(50);
+        assertThat(eventRepository.count()).isZero();
+        assertThat(stats("machine-1", day.toString(), today.toString())).isEqualTo(before);
+        try (Stream<Path> segments = Files.walk(archiveDir)) {
+            assertThat(segments.filter(file -> file.toString().endsWith(".seg"))).hasSize(3);
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: An archived event is no longer served from the lookup cache")
+    void testArchivedEventEvictedFromLookupCache() throws Exception {
+        // Arrange: the lookup caches the event
+        eventRepository.save(event("cached-1", today.minus(Duration.ofDays(2)), "machine-1", "factory-1", 1));
+        mockMvc.perform(get("/events/cached-1")).andExpect(status().isOk());
+
+        // Act
+        archiveService.archiveBefore(today);
+
+        // Assert
+        mockMvc.perform(get("/events/cached-1")).andExpect(status().isNotFound());
+    }
+
+    private String stats(String machineId, String start, String end) throws Exception {
+        return mockMvc.perform(get("/stats")
+                .param("machineId", machineId)
+                .param("start", start)
+                .param("end", end))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    }
+
+    private String topDefectLines(String factoryId, String from, String to) throws Exception {
+        return mockMvc.perform(get("/stats/top-defect-lines")
+                .param("factoryId", factoryId)
+                .param("from", from)
+                .param("to", to))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    }
+
+    private static long defects(String stats) {
+        String field = "\"defectsCount\":";
+        int start = stats.indexOf(field) + field.length();
+        int end = start;
+        while (Character.isDigit(stats.charAt(end))) {
+            end++;
+        }
+        return Long.parseLong(stats.substring(start, end));
+    }
+
+    private static List<Event> events(Instant from, int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(event("archive-" + i, from.plus(Duration.ofMinutes(30L * i)),
+                "machine-" + (i % 3), "factory-" + (i % 2), i % 7 == 6 ? -1 : i % 4));
+        }
+        return events;
+    }
+
+    private static Event event(String eventId, Instant eventTime, String machineId, String factoryId, int defects) {
+        return Event.builder()
+            .eventId(eventId)
+            .eventTime(eventTime)
+            .receivedTime(eventTime.plusSeconds(1))
+            .machineId(machineId)
+            .lineId("line-" + (eventId.hashCode() & 3))
+            .factoryId(factoryId)
+            .durationMs(1000L)
+            .defectCount(defects)
+            .payloadHash("hash-" + eventId)
+            .build();
+    }
+}
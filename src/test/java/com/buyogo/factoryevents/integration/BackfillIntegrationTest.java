@@ -0,0 +1,82 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.BackfillResult;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.service.BackfillService;
+import com.buyogo.factoryevents.service.EventExportService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+    "events.backfill.range-bytes=4096",
+    "events.backfill.batch-size=250"
+})
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BackfillIntegrationTest {
+
+    @Autowired
+    private BackfillService backfillService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @TempDir
+    private Path dir;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.SECONDS).minus(Duration.ofDays(30));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A multi-range CSV file loads with deferred indexes and dedupes when loaded again")
+    void testBackfillLoadsAndDedupes() throws Exception {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        lines.add("eventId,eventTime,machineId,lineId,factoryId,durationMs,defectCount");
+        for (int i = 0; i < 1000; i++) {
+            lines.add("backfill-" + i + "," + baseTime.plusSeconds(i) + ",machine-" + (i % 7) + ",line-1,factory-1,1000," + (i % 3));
+        }
+        lines.add("backfill-bad,not-a-time,machine-1,line-1,factory-1,1000,1");
+        lines.add("backfill-long," + baseTime + ",machine-1,line-1,factory-1,99999999,1");
+        Path file = Files.write(dir.resolve("history.csv"), lines);
+
+        // Act
+        BackfillResult first = backfillService.run(file, EventExportService.Format.CSV, dir.resolve("first.checkpoint"), true);
+        BackfillResult second = backfillService.run(file, EventExportService.Format.CSV, dir.resolve("second.checkpoint"), false);
+
+        // Assert
+        assertThat(first.getRanges()).isGreaterThan(1);
+        assertThat(first.getLines()).isEqualTo(1002);
+        assertThat(first.getAccepted()).isEqualTo(1000);
+        assertThat(first.getRejected()).isEqualTo(2);
+        assertThat(eventRepository.count()).isEqualTo(1000);
+        assertThat(second.getAccepted()).isZero();
+        assertThat(second.getDeduped()).isEqualTo(1000);
+    }
+}
@@ -0,0 +1,180 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end ingestion throughput over a real socket from a client whose uplink is throttled,
+ * comparing identity, gzip and deflate bodies. Excluded from the default build; run with
+ * {@code mvn test -Pbenchmark}. Tune with {@code -Dbenchmark.uplink-kbps} (kilobits per
+ * second, default 2000) and {@code -Dbenchmark.batches} (default 3 batches of 1000 events).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Tag("benchmark")
+@Slf4j
+class CompressedIngestionBenchmarkTest {
+
+    private static final int EVENTS_PER_BATCH = 1000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Benchmark: batch ingestion throughput on a bandwidth-limited uplink")
+    void benchmarkCompressedIngestion() throws Exception {
+        long uplinkBytesPerSecond = Long.getLong("benchmark.uplink-kbps", 2000) * 1000 / 8;
+        int batches = Integer.getInteger("benchmark.batches", 3);
+        HttpClient client = HttpClient.newHttpClient();
+
+        // Warm up the server path once so the first measured mode is not penalised
+        send(client, "identity", encode("identity", batch("warmup", 0)), Long.MAX_VALUE);
+
+        Map<String, Double> eventsPerSecond = new LinkedHashMap<>();
+        for (String encoding : List.of("identity", "gzip", "deflate")) {
+            long wireBytes = 0;
+            long rawBytes = 0;
+            long started = System.nanoTime();
+            for (int i = 0; i < batches; i++) {
+                byte[] raw = batch(encoding, i);
+                byte[] body = encode(encoding, raw);
+                rawBytes += raw.length;
+                wireBytes += body.length;
+                BatchIngestionResponse response = send(client, encoding, body, uplinkBytesPerSecond);
+                assertThat(response.getAccepted()).isEqualTo(EVENTS_PER_BATCH);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            eventsPerSecond.put(encoding, batches * EVENTS_PER_BATCH / seconds);
+            log.info("{}: {} batches, {} KB raw, {} KB on the wire ({}x), {} s, {} events/s",
+                encoding, batches, rawBytes / 1024, wireBytes / 1024,
+                String.format("%.1f", (double) rawBytes / wireBytes), String.format("%.2f", seconds),
+                String.format("%.0f", eventsPerSecond.get(encoding)));
+        }
+
+        assertThat(eventsPerSecond.get("gzip")).isGreaterThan(eventsPerSecond.get("identity"));
+        assertThat(eventsPerSecond.get("deflate")).isGreaterThan(eventsPerSecond.get("identity"));
+    }
+
+    private BatchIngestionResponse send(HttpClient client, String encoding, byte[] body, long bytesPerSecond)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/events/batch"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ThrottledInputStream(body, bytesPerSecond)));
+        if (!encoding.equals("identity")) {
+            request.header("Content-Encoding", encoding);
+        }
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return objectMapper.readValue(response.body(), BatchIngestionResponse.class);
+    }
+
+    private byte[] batch(String prefix, int batch) throws IOException {
+        Instant now = Instant.now();
+        List<EventRequest> events = new ArrayList<>(EVENTS_PER_BATCH);
+        for (int i = 0; i < EVENTS_PER_BATCH; i++) {
+            events.add(EventRequest.builder()
+                    .eventId(String.format("bench-%s-%d-%04d", prefix, batch, i))
+                    .eventTime(now.minusSeconds(i))
+                    .machineId("machine-" + (i % 20))
+                    .lineId("line-" + (i % 4))
+                    .factoryId("factory-1")
+                    .durationMs(1000L + i)
+                    .defectCount(i % 5)
+                    .build());
+        }
+        return objectMapper.writeValueAsBytes(events);
+    }
+
+    private static byte[] encode(String encoding, byte[] raw) throws IOException {
+        if (encoding.equals("identity")) {
+            return raw;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream compressor = encoding.equals("gzip")
+                ? new GZIPOutputStream(out) : new DeflaterOutputStream(out)) {
+            compressor.write(raw);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Hands out the body no faster than the simulated uplink allows.
+     */
+    private static class ThrottledInputStream extends InputStream {
+
+        private static final int CHUNK = 4096;
+
+        private final byte[] body;
+        private final long bytesPerSecond;
+        private final long started = System.nanoTime();
+        private int position;
+
+        ThrottledInputStream(byte[] body, long bytesPerSecond) {
+            this.body = body;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= body.length) {
+                return -1;
+            }
+            long dueNanos = started + position * 1_000_000_000L / bytesPerSecond;
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while throttling", e);
+                }
+            }
+            int count = Math.min(Math.min(length, CHUNK), body.length - position);
+            System.arraycopy(body, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+}
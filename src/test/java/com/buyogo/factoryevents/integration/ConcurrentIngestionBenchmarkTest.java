@@ -0,0 +1,177 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventWriteRepository;
+import com.buyogo.factoryevents.service.EventIdLocks;
+import com.buyogo.factoryevents.service.EventService;
+import com.buyogo.factoryevents.service.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrent batches that share new event ids, written with and without {@link EventIdLocks}.
+ * Each round releases all threads at once behind a barrier; every thread sends the round's
+ * overlapping ids in its own shuffled order, as retrying or duplicating edge clients do. A
+ * batch that fails (deadlock, lock timeout) is retried by the client, as it would be over HTTP.
+ * Excluded from the default build; run with
+ * {@code mvn test -Pbenchmark -Dtest=ConcurrentIngestionBenchmarkTest}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Tag("benchmark")
+@Slf4j
+class ConcurrentIngestionBenchmarkTest {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    @Autowired
+    private EventWriteRepository eventWriteRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final int threads = Integer.getInteger("benchmark.concurrent.threads", 8);
+    private final int rounds = Integer.getInteger("benchmark.concurrent.rounds", 50);
+    private final int batchSize = Integer.getInteger("benchmark.concurrent.batch-size", 200);
+    private final double overlap = Double.parseDouble(System.getProperty("benchmark.concurrent.overlap", "0.5"));
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE TABLE events");
+    }
+
+    @Test
+    @DisplayName("Benchmark: overlapping concurrent batches with and without event id locks")
+    void concurrentOverlappingBatches() throws Exception {
+        Map<String, Integer> variants = new LinkedHashMap<>();
+        variants.put("no id locks", 0);
+        variants.put("id locks (256 stripes)", 256);
+
+        StringBuilder report = new StringBuilder(String.format(
+            "%n%d threads x %d rounds, %d events per batch, %.0f%% of each batch shared by all threads%n%n",
+            threads, rounds, batchSize, overlap * 100))
+            .append(String.format("%-24s %9s %8s %10s %9s %9s %9s%n",
+                "variant", "failures", "retries", "lock waits", "p50 ms", "p99 ms", "max ms"));
+        // One discarded run so the first variant does not pay for JIT compilation
+        run(0, "warmup");
+        jdbcTemplate.execute("TRUNCATE TABLE events");
+        for (Map.Entry<String, Integer> variant : variants.entrySet()) {
+            Result result = run(variant.getValue(), "v" + variant.getValue());
+            jdbcTemplate.execute("TRUNCATE TABLE events");
+            Histogram latency = result.latency;
+            report.append(String.format("%-24s %9d %8d %10.0f %9.1f %9.1f %9.1f%n", variant.getKey(),
+                result.failures, result.retries, result.lockWaits,
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getMaxValue() / 1000.0));
+        }
+        log.info("{}", report);
+    }
+
+    private Result run(int stripes, String prefix) throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        EventService service = new EventService(eventWriteRepository, shardRouter, eventPublisher,
+            new EventIdLocks(stripes, registry));
+        Histogram latency = new Histogram(3);
+        AtomicLong failures = new AtomicLong();
+        AtomicLong retries = new AtomicLong();
+        int shared = (int) (batchSize * overlap);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                workers.add(pool.submit(() -> {
+                    Random random = new Random(thread);
+                    for (int round = 0; round < rounds; round++) {
+                        List<EventRequest> batch = new ArrayList<>(batchSize);
+                        Instant eventTime = Instant.now().minus(1, ChronoUnit.MINUTES);
+                        for (int i = 0; i < batchSize; i++) {
+                            String eventId = i < shared
+                                ? prefix + "-r" + round + "-shared-" + i
+                                : prefix + "-r" + round + "-t" + thread + "-" + i;
+                            batch.add(EventRequest.builder()
+                                .eventId(eventId)
+                                .eventTime(eventTime)
+                                .machineId("machine-" + (i % 20))
+                                .durationMs(1000L)
+                                .defectCount(1)
+                                .build());
+                        }
+                        Collections.shuffle(batch, random);
+                        barrier.await();
+                        long start = System.nanoTime();
+                        send(service, batch, failures, retries);
+                        synchronized (latency) {
+                            latency.recordValue(Math.max(1, (System.nanoTime() - start) / 1000));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long expected = (long) rounds * (shared + (long) threads * (batchSize - shared));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events WHERE event_id LIKE ?", Long.class,
+            prefix + "-%")).isEqualTo(expected);
+        return new Result(failures.get(), retries.get(),
+            registry.get("events.write.id-lock-waits").counter().count(), latency);
+    }
+
+    private static void send(EventService service, List<EventRequest> batch, AtomicLong failures, AtomicLong retries) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                BatchIngestionResponse response = service.processBatch(batch);
+                assertThat(response.getRejected()).isZero();
+                return;
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+            }
+        }
+    }
+
+    private record Result(long failures, long retries, double lockWaits, Histogram latency) {
+    }
+}
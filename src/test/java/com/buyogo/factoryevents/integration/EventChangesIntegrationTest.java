@@ -0,0 +1,160 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "events.changes.settle-lag=PT0S")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class EventChangesIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.SECONDS).minus(Duration.ofHours(1));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Pages follow received order across batches and resume from the cursor without gaps")
+    void testPagesResumeFromCursor() throws Exception {
+        // Arrange: the second batch has older event times but is received later
+        ingest(List.of(createEvent("change-c", baseTime.plusSeconds(50), 1), createEvent("change-a", baseTime.plusSeconds(40), 2),
+            createEvent("change-b", baseTime.plusSeconds(30), 3)));
+        ingest(List.of(createEvent("change-d", baseTime, 4), createEvent("change-e", baseTime.plusSeconds(10), 5)));
+
+        // Act
+        MvcResult first = changes(null, 2);
+        MvcResult second = changes(first.getResponse().getHeader("X-Next-Cursor"), 2);
+        MvcResult third = changes(second.getResponse().getHeader("X-Next-Cursor"), 2);
+        MvcResult caughtUp = changes(third.getResponse().getHeader("X-Next-Cursor"), 2);
+
+        // Assert
+        List<String> ids = new ArrayList<>();
+        ids.addAll(eventIds(first));
+        ids.addAll(eventIds(second));
+        ids.addAll(eventIds(third));
+        // Events of one batch share a received time and are ordered by event id
+        assertThat(ids).containsExactly("change-a", "change-b", "change-c", "change-d", "change-e");
+        assertThat(eventIds(caughtUp)).isEmpty();
+        assertThat(caughtUp.getResponse().getHeader("X-Next-Cursor"))
+            .isEqualTo(third.getResponse().getHeader("X-Next-Cursor"));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: An updated event reappears after the cursor with its new values; duplicates do not")
+    void testUpdatesReappear() throws Exception {
+        // Arrange
+        ingest(List.of(createEvent("change-1", baseTime, 1), createEvent("change-2", baseTime, 2)));
+        String cursor = changes(null, 100).getResponse().getHeader("X-Next-Cursor");
+        ingest(List.of(createEvent("change-2", baseTime, 2), createEvent("change-1", baseTime, 7)));
+
+        // Act
+        MvcResult result = changes(cursor, 100);
+
+        // Assert
+        String[] lines = result.getResponse().getContentAsString().strip().split("\n");
+        assertThat(lines).hasSize(1);
+        JsonNode updated = objectMapper.readTree(lines[0]);
+        assertThat(updated.get("eventId").asText()).isEqualTo("change-1");
+        assertThat(updated.get("defectCount").asInt()).isEqualTo(7);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Malformed cursors and out-of-range limits are rejected with 400")
+    void testInvalidRequests() throws Exception {
+        mockMvc.perform(get("/events/changes").param("cursor", "not a cursor"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/events/changes").param("limit", "0"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/events/changes").param("limit", "10001"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private MvcResult changes(String cursor, int limit) throws Exception {
+        var query = get("/events/changes").param("limit", String.valueOf(limit));
+        if (cursor != null) {
+            query.param("cursor", cursor);
+        }
+        MvcResult started = mockMvc.perform(query)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private List<String> eventIds(MvcResult result) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (!line.isBlank()) {
+                ids.add(objectMapper.readTree(line).get("eventId").asText());
+            }
+        }
+        return ids;
+    }
+
+    private void ingest(List<EventRequest> events) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    // Helper method
+    private EventRequest createEvent(String eventId, Instant eventTime, Integer defectCount) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .machineId("machine-1")
+                .lineId("line-1")
+                .factoryId("factory-1")
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
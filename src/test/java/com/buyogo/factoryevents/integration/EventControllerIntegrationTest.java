@@ -4,6 +4,7 @@ import com.buyogo.factoryevents.dto.BatchIngestionResponse;
 import com.buyogo.factoryevents.dto.EventRequest;
 import com.buyogo.factoryevents.entity.Event;
 import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.service.IngestionAdmission;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,15 +16,23 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -42,6 +51,9 @@ class EventControllerIntegrationTest {
     @Autowired
     private EventRepository eventRepository;
 
+    @Autowired
+    private IngestionAdmission ingestionAdmission;
+
     private Instant baseTime;
 
     @BeforeEach
@@ -464,6 +476,252 @@ class EventControllerIntegrationTest {
         assertThat(response.getRejected()).isEqualTo(0);
     }
 
+    @Test
+    @Order(9)
+    @DisplayName("Test 9: Retried batch with the same Idempotency-Key replays the stored response")
+    void testIdempotentReplay() throws Exception {
+        // Arrange
+        String requestBody = objectMapper.writeValueAsString(List.of(
+            createValidEvent("idem-1", baseTime, "machine-1", 1000L, 1),
+            createValidEvent("idem-2", baseTime, "machine-1", 1000L, 2)));
+        MvcResult first = postWithKey("batch-key-1", requestBody, 200);
+
+        // Act - a replay reports the original outcome, not "deduped"
+        MvcResult retry = postWithKey("batch-key-1", requestBody, 200);
+
+        // Assert
+        BatchIngestionResponse original = objectMapper.readValue(first.getResponse().getContentAsString(), BatchIngestionResponse.class);
+        BatchIngestionResponse replayed = objectMapper.readValue(retry.getResponse().getContentAsString(), BatchIngestionResponse.class);
+        assertThat(original.getAccepted()).isEqualTo(2);
+        assertThat(replayed).isEqualTo(original);
+        assertThat(first.getResponse().getHeader("Idempotent-Replayed")).isNull();
+        assertThat(retry.getResponse().getHeader("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(eventRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @Order(10)
+    @DisplayName("Test 10: Reusing an Idempotency-Key with a different body is rejected")
+    void testIdempotencyKeyReuseRejected() throws Exception {
+        // Arrange
+        postWithKey("batch-key-2", objectMapper.writeValueAsString(List.of(
+            createValidEvent("idem-3", baseTime, "machine-1", 1000L, 1))), 200);
+
+        // Act & Assert
+        postWithKey("batch-key-2", objectMapper.writeValueAsString(List.of(
+            createValidEvent("idem-4", baseTime, "machine-1", 1000L, 1))), 400);
+        assertThat(eventRepository.findById("idem-4")).isEmpty();
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("Test 11: Concurrent duplicates of a keyed batch are processed exactly once")
+    void testConcurrentIdempotentDuplicates() throws Exception {
+        // Arrange
+        int numberOfThreads = 8;
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            events.add(createValidEvent("idem-c" + i, baseTime, "machine-1", 1000L, 1));
+        }
+        String requestBody = objectMapper.writeValueAsString(events);
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        List<Future<MvcResult>> futures = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                return postWithKey("batch-key-3", requestBody, 200);
+            }));
+        }
+        start.countDown();
+
+        // Assert - one original, every other request got its response
+        int originals = 0;
+        for (Future<MvcResult> future : futures) {
+            MvcResult result = future.get(30, TimeUnit.SECONDS);
+            BatchIngestionResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), BatchIngestionResponse.class);
+            assertThat(response.getAccepted()).isEqualTo(200);
+            if (result.getResponse().getHeader("Idempotent-Replayed") == null) {
+                originals++;
+            }
+        }
+        executorService.shutdown();
+        assertThat(originals).isEqualTo(1);
+        assertThat(eventRepository.count()).isEqualTo(200);
+    }
+
+    @Test
+    @Order(12)
+    @DisplayName("Test 12: gzip and deflate request bodies are decoded before parsing")
+    void testCompressedBatch() throws Exception {
+        // Arrange
+        byte[] gzipBody = gzip(objectMapper.writeValueAsBytes(List.of(
+            createValidEvent("gzip-1", baseTime, "machine-1", 1000L, 1),
+            createValidEvent("gzip-2", baseTime, "machine-1", 1000L, 2))));
+        byte[] deflateBody = deflate(objectMapper.writeValueAsBytes(List.of(
+            createValidEvent("deflate-1", baseTime, "machine-1", 1000L, 1))));
+
+        // Act
+        BatchIngestionResponse gzipResponse = postCompressed("gzip", gzipBody, 200);
+        BatchIngestionResponse deflateResponse = postCompressed("deflate", deflateBody, 200);
+
+        // Assert
+        assertThat(gzipResponse.getAccepted()).isEqualTo(2);
+        assertThat(deflateResponse.getAccepted()).isEqualTo(1);
+        assertThat(eventRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("Test 13: Decompression bombs, corrupt bodies and unknown encodings are rejected")
+    void testCompressedBatchRejected() throws Exception {
+        // Arrange - 20 MB of JSON whitespace compresses about 1000:1
+        ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bomb)) {
+            gzip.write('[');
+            byte[] spaces = new byte[1 << 20];
+            Arrays.fill(spaces, (byte) ' ');
+            for (int i = 0; i < 20; i++) {
+                gzip.write(spaces);
+            }
+            gzip.write(']');
+        }
+
+        // Act & Assert
+        postCompressed("gzip", bomb.toByteArray(), 413);
+        postCompressed("gzip", "not gzip".getBytes(StandardCharsets.UTF_8), 400);
+        postCompressed("br", gzip("[]".getBytes(StandardCharsets.UTF_8)), 415);
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("Test 14: Batches beyond the admission limit are shed with 429 and Retry-After")
+    void testAdmissionShedsExcessLoad() throws Exception {
+        // Arrange - another batch holds the whole in-flight limit
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> holder = CompletableFuture.supplyAsync(() ->
+                ingestionAdmission.admit(5000, () -> awaitQuietly(release)));
+        String requestBody = objectMapper.writeValueAsString(
+                List.of(createValidEvent("shed-001", baseTime, "machine-1", 1000L, 0)));
+
+        // Act
+        MvcResult shed;
+        try {
+            shed = mockMvc.perform(post("/events/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(requestBody))
+                    .andExpect(status().isTooManyRequests())
+                    .andReturn();
+        } finally {
+            release.countDown();
+        }
+        holder.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(Long.parseLong(shed.getResponse().getHeader("Retry-After"))).isBetween(1L, 60L);
+        assertThat(eventRepository.findById("shed-001")).isEmpty();
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/events.admission.rejected"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(1.0));
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("Test 15: Events are looked up by id, singly and in bulk, and reflect later updates")
+    void testEventLookup() throws Exception {
+        // Arrange
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(
+                    createValidEvent("lookup-1", baseTime, "machine-1", 1000L, 1),
+                    createValidEvent("lookup-2", baseTime, "machine-2", 2000L, 2)))))
+                .andExpect(status().isOk());
+
+        // Act & Assert - first read fills the cache, the multi-get keeps request order
+        mockMvc.perform(get("/events/lookup-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.machineId").value("machine-1"))
+                .andExpect(jsonPath("$.defectCount").value(1));
+        mockMvc.perform(get("/events/unknown"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/events").param("ids", "lookup-2,unknown,lookup-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events[0].eventId").value("lookup-2"))
+                .andExpect(jsonPath("$.events[1].eventId").value("lookup-1"))
+                .andExpect(jsonPath("$.missing[0]").value("unknown"));
+        mockMvc.perform(get("/events"))
+                .andExpect(status().isBadRequest());
+
+        // Act - update a cached event
+        Thread.sleep(5);
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(
+                    createValidEvent("lookup-1", baseTime, "machine-1", 1000L, 7)))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1));
+
+        // Assert - served from the refreshed cache entry: lookup-1 hit in the multi-get and here
+        mockMvc.perform(get("/events/lookup-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.defectCount").value(7));
+        mockMvc.perform(get("/actuator/metrics/events.lookup.cache").param("tag", "result:hit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(2.0));
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private BatchIngestionResponse postCompressed(String encoding, byte[] body, int expectedStatus) throws Exception {
+        MvcResult result = mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Content-Encoding", encoding)
+                .content(body))
+                .andExpect(status().is(expectedStatus))
+                .andReturn();
+        return expectedStatus == 200
+            ? objectMapper.readValue(result.getResponse().getContentAsString(), BatchIngestionResponse.class)
+            : null;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private MvcResult postWithKey(String idempotencyKey, String requestBody, int expectedStatus) throws Exception {
+        return mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", idempotencyKey)
+                .content(requestBody))
+                .andExpect(status().is(expectedStatus))
+                .andReturn();
+    }
+
     // Helper method
     private EventRequest createValidEvent(String eventId, Instant eventTime, String machineId, 
                                          Long durationMs, Integer defectCount) {
@@ -0,0 +1,246 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.dto.KeysetCursor;
+import com.buyogo.factoryevents.entity.Event;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.service.EventExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class EventExportIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventExportService eventExportService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.SECONDS).minus(Duration.ofHours(1));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: NDJSON export streams only matching events in (eventTime, eventId) order")
+    void testNdjsonExport() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("export-3", baseTime.plusSeconds(20), "machine-1", 3),
+            createEvent("export-1", baseTime, "machine-1", 1),
+            createEvent("export-2", baseTime.plusSeconds(10), "machine-1", 2),
+            createEvent("export-other", baseTime.plusSeconds(10), "machine-2", 9)
+        ));
+
+        // Act
+        String body = export("machineId=machine-1&format=ndjson").getResponse().getContentAsString();
+
+        // Assert
+        String[] lines = body.strip().split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines[0]).get("eventId").asText()).isEqualTo("export-1");
+        assertThat(objectMapper.readTree(lines[1]).get("eventId").asText()).isEqualTo("export-2");
+        assertThat(objectMapper.readTree(lines[2]).get("eventId").asText()).isEqualTo("export-3");
+        assertThat(objectMapper.readTree(lines[2]).get("defectCount").asInt()).isEqualTo(3);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: CSV export writes a header row followed by one row per event")
+    void testCsvExport() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("csv-1", baseTime, "machine-1", 1),
+            createEvent("csv-2", baseTime.plusSeconds(1), "machine-1", 2)
+        ));
+
+        // Act
+        String body = export("factoryId=factory-1&format=csv").getResponse().getContentAsString();
+
+        // Assert
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("eventId,eventTime");
+        assertThat(lines[1]).startsWith("csv-1,");
+        assertThat(lines[2]).startsWith("csv-2,").endsWith(",1000,2");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Keyset continuation token walks the full result in pages")
+    void testKeysetPagination() throws Exception {
+        // Arrange - several events share the same eventTime to exercise the eventId tie-break
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            events.add(createEvent("page-" + i, baseTime.plusSeconds(i / 2), "machine-1", i));
+        }
+        ingest(events);
+
+        // Act
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MvcResult result = export("machineId=machine-1&limit=3" + (cursor != null ? "&cursor=" + cursor : ""));
+            for (String line : result.getResponse().getContentAsString().strip().split("\n")) {
+                if (!line.isBlank()) {
+                    seen.add(objectMapper.readTree(line).get("eventId").asText());
+                }
+            }
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        // Assert
+        assertThat(seen).containsExactly("page-0", "page-1", "page-2", "page-3", "page-4", "page-5", "page-6");
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Export without a machine, factory or line filter is rejected")
+    void testExportRequiresFilter() throws Exception {
+        mockMvc.perform(get("/events/export?from=" + baseTime + "&to=" + baseTime.plusSeconds(60)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/events/export?machineId=machine-1&cursor=not-a-cursor"
+                    + "&from=" + baseTime + "&to=" + baseTime.plusSeconds(60)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: A row written inside a page after its token was issued does not push the page's tail past the token")
+    void testPageBoundedByToken() throws Exception {
+        // Arrange
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            events.add(createEvent("bound-" + i, baseTime.plusSeconds(i * 10), "machine-1", i));
+        }
+        ingest(events);
+        EventExportFilter filter = EventExportFilter.builder()
+                .machineId("machine-1").from(baseTime.minusSeconds(1)).to(baseTime.plusSeconds(60)).build();
+        KeysetCursor pageEnd = eventExportService.pageEnd(filter, null, 3).orElseThrow();
+        ingest(List.of(createEvent("bound-late", baseTime.plusSeconds(5), "machine-1", 0)));
+
+        // Act
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        eventExportService.export(filter, null, pageEnd, EventExportService.Format.NDJSON, first);
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        eventExportService.export(filter, pageEnd, null, EventExportService.Format.NDJSON, rest);
+
+        // Assert
+        assertThat(pageEnd.getEventId()).isEqualTo("bound-2");
+        List<String> seen = new ArrayList<>();
+        for (String line : (first.toString(StandardCharsets.UTF_8) + rest.toString(StandardCharsets.UTF_8)).split("\n")) {
+            if (!line.isBlank()) {
+                seen.add(objectMapper.readTree(line).get("eventId").asText());
+            }
+        }
+        assertThat(seen).containsExactly("bound-0", "bound-late", "bound-1", "bound-2", "bound-3", "bound-4", "bound-5");
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Test 6: Both formats export stored times at full precision and release the read slot afterwards")
+    void testFullPrecisionTimes() throws Exception {
+        // Arrange: received times are stored with microseconds
+        ingest(List.of(createEvent("micro-1", baseTime, "machine-1", 1)));
+        ingest(List.of(createEvent("micro-2", baseTime.plusSeconds(1), "machine-1", 2)));
+        Event first = eventRepository.findById("micro-1").orElseThrow();
+        Event second = eventRepository.findById("micro-2").orElseThrow();
+
+        // Act
+        String ndjson = export("machineId=machine-1&format=ndjson").getResponse().getContentAsString();
+        String csv = export("machineId=machine-1&format=csv").getResponse().getContentAsString();
+
+        // Assert
+        String[] lines = ndjson.strip().split("\n");
+        assertThat(Instant.parse(objectMapper.readTree(lines[0]).get("eventTime").asText())).isEqualTo(first.getEventTime());
+        assertThat(Instant.parse(objectMapper.readTree(lines[0]).get("receivedTime").asText())).isEqualTo(first.getReceivedTime());
+        assertThat(Instant.parse(objectMapper.readTree(lines[1]).get("receivedTime").asText())).isEqualTo(second.getReceivedTime());
+        assertThat(first.getReceivedTime()).isBefore(second.getReceivedTime());
+        String[] rows = csv.split("\n");
+        assertThat(Instant.parse(rows[1].split(",")[2])).isEqualTo(first.getReceivedTime());
+        assertThat(Instant.parse(rows[2].split(",")[2])).isEqualTo(second.getReceivedTime());
+        assertThat(meterRegistry.get("bulkhead.active").tag("name", "read").gauge().value()).isZero();
+    }
+
+    private MvcResult export(String query) throws Exception {
+        MvcResult started = mockMvc.perform(get("/events/export?" + query
+                    + "&from=" + baseTime.minusSeconds(1) + "&to=" + baseTime.plusSeconds(60)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private void ingest(List<EventRequest> events) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    // Helper method
+    private EventRequest createEvent(String eventId, Instant eventTime, String machineId, Integer defectCount) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId("factory-1")
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
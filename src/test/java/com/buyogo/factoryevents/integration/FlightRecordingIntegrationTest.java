@@ -0,0 +1,149 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.jfr.FlightRecording;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "events.jfr.continuous.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FlightRecordingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private FlightRecording flightRecording;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofHours(3));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: The dumped recording holds ingest, shard write and stats query events")
+    void testDumpContainsServiceEvents() throws Exception {
+        // Arrange
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(
+                    createEvent("jfr-1", 2), createEvent("jfr-2", 1)))))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(createEvent("jfr-1", 5)))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/stats")
+                .param("machineId", "machine-jfr")
+                .param("start", baseTime.toString())
+                .param("end", baseTime.plus(Duration.ofHours(2)).toString()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/stats/top-defect-lines")
+                .param("factoryId", "factory-jfr")
+                .param("from", baseTime.toString())
+                .param("to", baseTime.plus(Duration.ofHours(2)).toString()))
+                .andExpect(status().isOk());
+
+        // Act
+        byte[] dump = mockMvc.perform(get("/actuator/flightrecording"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        Path file = Files.createTempFile("jfr-test-", ".jfr");
+        List<RecordedEvent> events;
+        try {
+            Files.write(file, dump);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+        Map<String, List<RecordedEvent>> byType = events.stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.buyogo.factoryevents."))
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+        // Assert
+        List<RecordedEvent> batches = byType.get("com.buyogo.factoryevents.IngestBatch");
+        assertThat(batches).hasSize(2);
+        assertThat(batches).anySatisfy(batch -> {
+            assertThat(batch.getInt("events")).isEqualTo(2);
+            assertThat(batch.getInt("accepted")).isEqualTo(2);
+        });
+        assertThat(batches).anySatisfy(batch -> assertThat(batch.getInt("updated")).isEqualTo(1));
+        List<RecordedEvent> writes = byType.get("com.buyogo.factoryevents.ShardWrite");
+        assertThat(writes).extracting(write -> write.getString("shard")).containsOnly("default");
+        assertThat(writes).extracting(write -> write.getInt("inserts")).containsExactlyInAnyOrder(2, 0);
+        assertThat(writes).extracting(write -> write.getInt("updates")).containsExactlyInAnyOrder(0, 1);
+        List<RecordedEvent> queries = byType.get("com.buyogo.factoryevents.StatsQuery");
+        assertThat(queries).extracting(query -> query.getString("kind"))
+                .containsExactlyInAnyOrder("machine-stats", "top-defect-lines");
+        assertThat(queries).allSatisfy(query -> {
+            assertThat(query.getLong("rowsScanned")).isEqualTo(2);
+            assertThat(query.getDuration("window")).isEqualTo(Duration.ofHours(2));
+        });
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Not found once no recording is running")
+    void testNoRecording() throws Exception {
+        // Arrange
+        flightRecording.close();
+
+        // Act & Assert
+        mockMvc.perform(get("/actuator/flightrecording"))
+                .andExpect(status().isNotFound());
+    }
+
+    private EventRequest createEvent(String eventId, int defectCount) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(baseTime.plus(Duration.ofMinutes(10)))
+                .machineId("machine-jfr")
+                .lineId("line-1")
+                .factoryId("factory-jfr")
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
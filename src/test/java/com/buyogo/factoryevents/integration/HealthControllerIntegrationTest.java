@@ -0,0 +1,91 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class HealthControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @BeforeEach
+    void setUp() {
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Machines in Warning are listed as soon as their batch commits")
+    void testWarningMachines() throws Exception {
+        // Arrange
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        List<EventRequest> events = List.of(
+            createEvent("health-1", now, "machine-1", 5),
+            createEvent("health-2", now, "machine-2", 0)
+        );
+
+        // Act
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+
+        // Assert
+        mockMvc.perform(get("/health/machines"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].machineId").value("machine-1"))
+                .andExpect(jsonPath("$[0].status").value("Warning"))
+                .andExpect(jsonPath("$[0].trend").value("Rising"))
+                .andExpect(header().exists("X-Health-Rebuilding"));
+    }
+
+    // Helper method
+    private EventRequest createEvent(String eventId, Instant eventTime, String machineId, Integer defectCount) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId("factory-1")
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
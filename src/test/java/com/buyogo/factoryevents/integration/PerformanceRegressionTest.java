@@ -0,0 +1,275 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.perf.MachineCalibration;
+import com.buyogo.factoryevents.perf.PerfBaseline;
+import com.buyogo.factoryevents.perf.RegressionGate;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Regression gate for ingestion and stats performance. Runs a fixed scenario matrix several
+ * times, compares per-trial throughput and p99 latency with the checked-in baseline
+ * ({@code src/test/resources/perf/baseline.json}) and fails on a significant regression; see
+ * {@link RegressionGate} for the statistics. Excluded from the default build; run with
+ * {@code mvn test -Pbenchmark -Dtest=PerformanceRegressionTest}.
+ *
+ * <p>The report is written to {@code target/perf/report.md} and this run's samples to
+ * {@code target/perf/current.json}. Tune with {@code -Dbenchmark.trials} (default 5),
+ * {@code -Dbenchmark.warmup-trials} (default 2), {@code -Dbenchmark.throughput-tolerance}
+ * (default 0.15) and {@code -Dbenchmark.latency-tolerance} (default 0.25). Record the
+ * baseline on the machine that runs the gate with {@code -Dbenchmark.update-baseline=true};
+ * elsewhere, {@code -Dbenchmark.rescale=true} rescales it by the machine calibration.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Tag("benchmark")
+@Slf4j
+class PerformanceRegressionTest {
+
+    private static final Path BASELINE = Path.of("src/test/resources/perf/baseline.json");
+    private static final Path REPORT_DIRECTORY = Path.of("target/perf");
+
+    private static final int INGEST_ITERATIONS = 5;
+    private static final int STATS_ITERATIONS = 200;
+    private static final int STATS_SEED_EVENTS = 10_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private final int warmupTrials = Integer.getInteger("benchmark.warmup-trials", 2);
+    private final int trials = Integer.getInteger("benchmark.trials", 5);
+    private final double throughputTolerance = Double.parseDouble(System.getProperty("benchmark.throughput-tolerance", "0.15"));
+    private final double latencyTolerance = Double.parseDouble(System.getProperty("benchmark.latency-tolerance", "0.25"));
+    private final boolean rescale = Boolean.getBoolean("benchmark.rescale");
+    private final boolean updateBaseline = Boolean.getBoolean("benchmark.update-baseline");
+
+    private final Instant baseTime = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    @DisplayName("Benchmark: ingestion and stats scenario matrix stays within the baseline")
+    void scenarioMatrixStaysWithinBaseline() throws Exception {
+        assertThat(trials).as("benchmark.trials").isGreaterThanOrEqualTo(2);
+
+        PerfBaseline current = new PerfBaseline();
+        current.setRecordedAt(Instant.now().truncatedTo(ChronoUnit.SECONDS).toString());
+        current.setEnvironment(String.format("Java %s, %d CPUs, %s",
+            System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(), System.getProperty("os.name")));
+
+        measure(current, "ingest/new-1000", "events/s", INGEST_ITERATIONS, true, run -> {
+            String body = batch(newEvents(run, 1000));
+            return () -> postBatch(body, 1000, 0, 0);
+        });
+        measure(current, "ingest/duplicates-1000", "events/s", INGEST_ITERATIONS, true, run -> {
+            List<EventRequest> stored = newEvents(run, 500);
+            postBatch(batch(stored), 500, 0, 0);
+            List<EventRequest> events = new ArrayList<>(stored);
+            events.addAll(newEvents(run + "-more", 500));
+            String body = batch(events);
+            return () -> postBatch(body, 500, 500, 0);
+        });
+        measure(current, "ingest/updates-500", "events/s", INGEST_ITERATIONS, true, run -> {
+            List<EventRequest> stored = newEvents(run, 500);
+            postBatch(batch(stored), 500, 0, 0);
+            stored.forEach(event -> event.setDefectCount(event.getDefectCount() + 1));
+            String body = batch(stored);
+            // Updates need a later receivedTime than the stored version
+            Thread.sleep(2);
+            return () -> postBatch(body, 0, 0, 500);
+        });
+        measure(current, "ingest/updates-10000", "events/s", INGEST_ITERATIONS, true, run -> {
+            List<EventRequest> stored = newEvents(run, 10_000);
+            postBatch(batch(stored), 10_000, 0, 0);
+            stored.forEach(event -> event.setDefectCount(event.getDefectCount() + 1));
+            String body = batch(stored);
+            Thread.sleep(2);
+            return () -> postBatch(body, 0, 0, 10_000);
+        });
+        measure(current, "ingest/mixed-1000", "events/s", INGEST_ITERATIONS, true, run -> {
+            List<EventRequest> events = newEvents(run, 850);
+            for (int i = 0; i < 150; i++) {
+                events.add(event(run + "-invalid-" + i, baseTime, "machine-1", -100L, 1));
+            }
+            String body = batch(events);
+            return () -> postBatch(body, 850, 0, 0);
+        });
+
+        eventRepository.deleteAll();
+        seedStatsData();
+        Instant from = baseTime.minus(Duration.ofHours(24));
+        measure(current, "stats/machine", "req/s", STATS_ITERATIONS, false, run -> () -> getOk(
+            "/stats?machineId=machine-3&start=" + from + "&end=" + baseTime));
+        measure(current, "stats/top-defect-lines", "req/s", STATS_ITERATIONS, false, run -> () -> getOk(
+            "/stats/top-defect-lines?factoryId=factory-1&from=" + from + "&to=" + baseTime + "&limit=10"));
+        measure(current, "stats/timeseries", "req/s", STATS_ITERATIONS, false, run -> () -> getOk(
+            "/stats/timeseries?machineId=machine-3&from=" + from + "&to=" + baseTime + "&bucket=hour"));
+        eventRepository.deleteAll();
+        // Calibrate last, once JIT compilation of the application has settled
+        current.setCalibrationOpsPerSecond(Math.round(MachineCalibration.opsPerSecond()));
+
+        current.write(REPORT_DIRECTORY.resolve("current.json"));
+        if (updateBaseline) {
+            current.write(BASELINE);
+            log.info("Recorded new baseline at {}", BASELINE.toAbsolutePath());
+            return;
+        }
+
+        PerfBaseline baseline = PerfBaseline.read(BASELINE);
+        RegressionGate gate = new RegressionGate(throughputTolerance, latencyTolerance, rescale);
+        List<RegressionGate.Comparison> comparisons = gate.compare(baseline, current);
+        String report = gate.report(baseline, current, comparisons);
+        Files.writeString(REPORT_DIRECTORY.resolve("report.md"), report);
+        log.info("\n{}", report);
+
+        assertThat(RegressionGate.regressions(comparisons))
+            .as("Significant regressions (see target/perf/report.md)")
+            .extracting(c -> c.getScenario() + " " + c.getMetric())
+            .isEmpty();
+    }
+
+    /**
+     * {@code warmupTrials} discarded trials, then {@code trials} measured ones. Each trial
+     * prepares and times {@code iterations} requests; only {@link Step#execute} is timed.
+     */
+    private void measure(PerfBaseline current, String scenario, String unit, int iterations, boolean resetBetweenTrials,
+                         StepFactory steps) throws Exception {
+        PerfBaseline.ScenarioSamples samples = new PerfBaseline.ScenarioSamples(unit, new ArrayList<>(), new ArrayList<>());
+        for (int trial = -warmupTrials; trial < trials; trial++) {
+            if (resetBetweenTrials) {
+                eventRepository.deleteAll();
+            }
+            long[] latencies = new long[iterations];
+            long items = 0;
+            long elapsed = 0;
+            for (int i = 0; i < iterations; i++) {
+                Step step = steps.prepare(scenario + "-" + (trial + warmupTrials) + "-" + i);
+                long start = System.nanoTime();
+                items += step.execute();
+                latencies[i] = System.nanoTime() - start;
+                elapsed += latencies[i];
+            }
+            if (trial < 0) {
+                continue;
+            }
+            double throughput = round(items / (elapsed / 1e9));
+            double p99 = round(percentile(latencies, 99) / 1e6);
+            samples.getThroughput().add(throughput);
+            samples.getP99Ms().add(p99);
+            log.info("{} trial {}: {} {}, p99 {} ms", scenario, trial + 1, throughput, unit, p99);
+        }
+        current.getScenarios().put(scenario, samples);
+    }
+
+    private void seedStatsData() throws Exception {
+        for (int offset = 0; offset < STATS_SEED_EVENTS; offset += 1000) {
+            List<EventRequest> events = new ArrayList<>();
+            for (int i = offset; i < offset + 1000; i++) {
+                // 20 machines over 5 lines in 2 factories, spread across the last day
+                events.add(event("stats-" + i, baseTime.minusSeconds((i * 8L) % 86_000 + 1), "machine-" + (i % 20),
+                    1000L + i % 500, i % 7));
+            }
+            postBatch(batch(events), 1000, 0, 0);
+        }
+    }
+
+    private int postBatch(String body, int accepted, int deduped, int updated) throws Exception {
+        MvcResult result = mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn();
+        BatchIngestionResponse response = objectMapper.readValue(
+            result.getResponse().getContentAsString(), BatchIngestionResponse.class);
+        assertThat(response.getAccepted()).isEqualTo(accepted);
+        assertThat(response.getDeduped()).isEqualTo(deduped);
+        assertThat(response.getUpdated()).isEqualTo(updated);
+        return accepted + deduped + updated + response.getRejected();
+    }
+
+    private int getOk(String uri) throws Exception {
+        mockMvc.perform(get(uri)).andExpect(status().isOk());
+        return 1;
+    }
+
+    private List<EventRequest> newEvents(String prefix, int count) {
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(event(prefix + "-" + i, baseTime.minusSeconds(i), "machine-" + (i % 10), 1000L + i % 100, i % 20));
+        }
+        return events;
+    }
+
+    private EventRequest event(String eventId, Instant eventTime, String machineId, Long durationMs, Integer defectCount) {
+        int machine = Integer.parseInt(machineId.substring("machine-".length()));
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .machineId(machineId)
+                .lineId("line-" + (machine % 5))
+                .factoryId("factory-" + (machine % 5 % 2))
+                .durationMs(durationMs)
+                .defectCount(defectCount)
+                .build();
+    }
+
+    private String batch(List<EventRequest> events) throws Exception {
+        return objectMapper.writeValueAsString(events);
+    }
+
+    /**
+     * Nearest-rank percentile.
+     */
+    private static long percentile(long[] values, double percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    @FunctionalInterface
+    private interface StepFactory {
+        Step prepare(String run) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        int execute() throws Exception;
+    }
+}
@@ -25,6 +25,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+/**
+ * Functional checks for large batches, logging how long each took. Timing is not asserted here:
+ * a fixed budget fails on slow machines and misses regressions on fast ones. Throughput and
+ * latency are gated against a recorded baseline by {@link PerformanceRegressionTest}.
+ */
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
@@ -57,7 +62,7 @@ class PerformanceTest {
 
     @Test
     @Order(1)
-    @DisplayName("Performance Test: Ingest 1000 events in single batch - should complete < 1 second")
+    @DisplayName("Performance Test: Ingest 1000 events in single batch")
     void testIngest1000EventsPerformance() throws Exception {
         // Arrange
         int eventCount = 1000;
@@ -98,8 +103,6 @@ class PerformanceTest {
         
         assertThat(response.getAccepted()).isEqualTo(eventCount);
         assertThat(response.getRejected()).isEqualTo(0);
-        assertThat(duration).as("Ingestion of 1000 events should complete in less than 1 second")
-                .isLessThan(1000);
 
         // Verify database
         List<Event> savedEvents = eventRepository.findAll();
@@ -186,8 +189,6 @@ class PerformanceTest {
         
         assertThat(response.getAccepted()).isEqualTo(halfCount);
         assertThat(response.getDeduped()).isEqualTo(halfCount);
-        assertThat(duration).as("Deduplication of 1000 events should complete in less than 1 second")
-                .isLessThan(1000);
 
         // Verify database has correct count
         List<Event> savedEvents = eventRepository.findAll();
@@ -240,10 +241,6 @@ class PerformanceTest {
         
         assertThat(response.getAccepted()).isEqualTo(eventCount);
         assertThat(response.getRejected()).isEqualTo(0);
-        
-        // For 2000 events, allow up to 2 seconds (still very fast)
-        assertThat(duration).as("Ingestion of 2000 events should complete in less than 2 seconds")
-                .isLessThan(2000);
 
         // Verify database
         List<Event> savedEvents = eventRepository.findAll();
@@ -315,8 +312,6 @@ class PerformanceTest {
         
         assertThat(response.getAccepted()).isEqualTo(validCount);
         assertThat(response.getRejected()).isEqualTo(invalidCount);
-        assertThat(duration).as("Ingestion of 1000 mixed events should complete in less than 1 second")
-                .isLessThan(1000);
 
         // Verify database
         List<Event> savedEvents = eventRepository.findAll();
@@ -394,8 +389,6 @@ class PerformanceTest {
         
         assertThat(response.getUpdated()).isEqualTo(eventCount);
         assertThat(response.getAccepted()).isEqualTo(0);
-        assertThat(duration).as("Updating 500 events should complete in less than 1 second")
-                .isLessThan(1000);
 
         // Verify database - count should remain the same
         List<Event> savedEvents = eventRepository.findAll();
@@ -0,0 +1,320 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import com.buyogo.factoryevents.service.EventService;
+import com.buyogo.factoryevents.service.PartialCommitException;
+import com.buyogo.factoryevents.service.ShardRouter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "events.sharding.shards.east.jdbc-url=jdbc:h2:mem:shard_east;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "events.sharding.shards.east.username=sa",
+    "events.sharding.shards.east.maximum-pool-size=3",
+    "events.sharding.shards.west.jdbc-url=jdbc:h2:mem:shard_west;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "events.sharding.shards.west.username=sa",
+    "events.sharding.shards.west.maximum-pool-size=3",
+    "events.sharding.factories.factory-east=east",
+    "events.sharding.factories.factory-west=west",
+    "events.changes.settle-lag=PT0S"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ShardedIngestionIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MachineShardRepository machineShardRepository;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.SECONDS).minus(Duration.ofHours(1));
+        clearShards();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clearShards();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A batch is split across shards by factory and the directory records each machine's shards")
+    void testBatchIsRoutedByFactory() throws Exception {
+        // Arrange
+        List<EventRequest> events = List.of(
+            createEvent("shard-e1", "machine-1", "factory-east", 1),
+            createEvent("shard-e2", "machine-1", "factory-east", 2),
+            createEvent("shard-w1", "machine-1", "factory-west", 4),
+            createEvent("shard-d1", "machine-2", "factory-1", 8)
+        );
+
+        // Act
+        JsonNode response = ingest(events);
+
+        // Assert
+        assertThat(response.get("accepted").asInt()).isEqualTo(4);
+        assertThat(eventIdsOn("east")).containsExactly("shard-e1", "shard-e2");
+        assertThat(eventIdsOn("west")).containsExactly("shard-w1");
+        assertThat(eventIdsOn("default")).containsExactly("shard-d1");
+        assertThat(shardRouter.shardsOfMachine("machine-1")).containsExactlyInAnyOrder("east", "west");
+        assertThat(shardRouter.shardsOfMachine("machine-2")).containsExactly("default");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Re-sending a batch dedupes against each shard's own rows")
+    void testDedupeIsPerShard() throws Exception {
+        // Arrange
+        List<EventRequest> events = List.of(
+            createEvent("dup-e1", "machine-1", "factory-east", 1),
+            createEvent("dup-w1", "machine-1", "factory-west", 1)
+        );
+        ingest(events);
+
+        // Act
+        JsonNode response = ingest(events);
+
+        // Assert
+        assertThat(response.get("accepted").asInt()).isZero();
+        assertThat(response.get("deduped").asInt()).isEqualTo(2);
+        assertThat(machineShardRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Machine stats sum every shard holding the machine; top defect lines read the factory's shard")
+    void testStatsAreRoutedToShards() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("stats-e1", "machine-1", "factory-east", 3),
+            createEvent("stats-w1", "machine-1", "factory-west", 5),
+            createEvent("stats-w2", "machine-9", "factory-west", 7)
+        ));
+
+        // Act
+        JsonNode stats = getJson("/stats?machineId=machine-1&start=" + baseTime.minusSeconds(1)
+                + "&end=" + baseTime.plusSeconds(60));
+        JsonNode topLines = getJson("/stats/top-defect-lines?factoryId=factory-west&from=" + baseTime.minusSeconds(1)
+                + "&to=" + baseTime.plusSeconds(60));
+
+        // Assert
+        assertThat(stats.get("eventsCount").asLong()).isEqualTo(2);
+        assertThat(stats.get("defectsCount").asLong()).isEqualTo(8);
+        assertThat(topLines).hasSize(1);
+        assertThat(topLines.get(0).get("totalDefects").asLong()).isEqualTo(12);
+        assertThat(topLines.get(0).get("eventCount").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Export of a machine spread over several shards is rejected")
+    void testExportSpanningShardsIsRejected() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("export-e1", "machine-1", "factory-east", 1),
+            createEvent("export-w1", "machine-1", "factory-west", 1)
+        ));
+
+        // Act & Assert
+        mockMvc.perform(get("/events/export?machineId=machine-1&from=" + baseTime.minusSeconds(1)
+                    + "&to=" + baseTime.plusSeconds(60)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: The change feed merges every shard in received order across pages")
+    void testChangeFeedMergesShards() throws Exception {
+        // Arrange
+        ingest(List.of(createEvent("feed-1", "machine-1", "factory-east", 1)));
+        ingest(List.of(createEvent("feed-2", "machine-2", "factory-west", 1), createEvent("feed-3", "machine-2", "factory-west", 1)));
+        ingest(List.of(createEvent("feed-4", "machine-1", "factory-east", 1)));
+        ingest(List.of(createEvent("feed-5", "machine-3", "factory-other", 1)));
+
+        // Act
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        for (int page = 0; page < 4; page++) {
+            var query = get("/events/changes").param("limit", "2");
+            if (cursor != null) {
+                query.param("cursor", cursor);
+            }
+            var started = mockMvc.perform(query).andExpect(request().asyncStarted()).andReturn();
+            var result = mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+            for (String line : result.getResponse().getContentAsString().split("\n")) {
+                if (!line.isBlank()) {
+                    ids.add(objectMapper.readTree(line).get("eventId").asText());
+                }
+            }
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+        }
+
+        // Assert
+        assertThat(ids).containsExactly("feed-1", "feed-2", "feed-3", "feed-4", "feed-5");
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Test 6: A keyed batch that fails on one shard is resumed by its retry, then replayed")
+    void testKeyedBatchResumedAfterPartialFailure() throws Exception {
+        // Arrange - west cannot take writes, so only east commits
+        List<EventRequest> events = List.of(
+            createEvent("key-e1", "machine-1", "factory-east", 1),
+            createEvent("key-w1", "machine-1", "factory-west", 1)
+        );
+        byte[] body = objectMapper.writeValueAsBytes(events);
+        shardRouter.write("west", () -> jdbcTemplate.update("ALTER TABLE events RENAME TO events_offline"));
+        try {
+            assertThatThrownBy(() -> mockMvc.perform(post("/events/batch")
+                    .header("Idempotency-Key", "sharded-key")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body)))
+                    .hasRootCauseInstanceOf(SQLException.class);
+        } finally {
+            shardRouter.write("west", () -> jdbcTemplate.update("ALTER TABLE events_offline RENAME TO events"));
+        }
+        String stateAfterFailure = jdbcTemplate.queryForObject(
+            "SELECT state FROM idempotency_keys WHERE idempotency_key = 'sharded-key'", String.class);
+
+        // Act
+        MockHttpServletResponse resumed = mockMvc.perform(post("/events/batch")
+                .header("Idempotency-Key", "sharded-key")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        MockHttpServletResponse replayed = mockMvc.perform(post("/events/batch")
+                .header("Idempotency-Key", "sharded-key")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        // Assert
+        assertThat(stateAfterFailure).isEqualTo("FAILED");
+        assertThat(resumed.getHeader("Idempotent-Resumed")).isEqualTo("true");
+        JsonNode response = objectMapper.readTree(resumed.getContentAsString());
+        assertThat(response.get("accepted").asInt()).isEqualTo(1);
+        assertThat(response.get("deduped").asInt()).isEqualTo(1);
+        assertThat(replayed.getHeader("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(objectMapper.readTree(replayed.getContentAsString())).isEqualTo(response);
+        assertThat(eventIdsOn("east")).containsExactly("key-e1");
+        assertThat(eventIdsOn("west")).containsExactly("key-w1");
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT state FROM idempotency_keys WHERE idempotency_key = 'sharded-key'", String.class)).isEqualTo("DONE");
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Test 7: A group that fails on one shard reports what committed and which events to retry")
+    void testGroupPartialFailureReportsUncommittedEvents() {
+        // Arrange - west cannot take writes, so only east commits
+        EventRequest west = createEvent("group-w1", "machine-1", "factory-west", 1);
+        List<List<EventRequest>> group = List.of(
+            List.of(createEvent("group-e1", "machine-1", "factory-east", 1), west),
+            List.of(createEvent("group-e2", "machine-2", "factory-east", 1))
+        );
+        shardRouter.write("west", () -> jdbcTemplate.update("ALTER TABLE events RENAME TO events_offline"));
+        PartialCommitException failure;
+        try {
+            // Act
+            failure = catchThrowableOfType(() -> eventService.processGroup(group), PartialCommitException.class);
+        } finally {
+            shardRouter.write("west", () -> jdbcTemplate.update("ALTER TABLE events_offline RENAME TO events"));
+        }
+
+        // Assert
+        assertThat(failure).hasRootCauseInstanceOf(SQLException.class);
+        assertThat(failure.getCommitted()).extracting("accepted").containsExactly(1, 1);
+        assertThat(failure.getUncommitted()).containsExactly(List.of(west), List.of());
+        assertThat(eventIdsOn("east")).containsExactly("group-e1", "group-e2");
+        assertThat(eventIdsOn("west")).isEmpty();
+    }
+
+    private List<String> eventIdsOn(String shard) {
+        return shardRouter.read(shard,
+            () -> jdbcTemplate.queryForList("SELECT event_id FROM events ORDER BY event_id", String.class));
+    }
+
+    private void clearShards() {
+        for (String shard : shardRouter.allShards()) {
+            shardRouter.write(shard, () -> jdbcTemplate.update("DELETE FROM events"));
+        }
+        machineShardRepository.deleteAll();
+    }
+
+    private JsonNode ingest(List<EventRequest> events) throws Exception {
+        String body = mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        String body = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    // Helper method
+    private EventRequest createEvent(String eventId, String machineId, String factoryId, Integer defectCount) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(baseTime)
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId(factoryId)
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * With a 0 ms threshold every EventRepository call counts as slow, and every slow SELECT is explained.
+ */
+@SpringBootTest(properties = {
+    "events.query-profiling.slow-threshold-ms=0",
+    "events.query-profiling.explain-sample-rate=1",
+    "events.query-profiling.capacity=5"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class SlowQueriesEndpointIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofHours(3));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A slow stats query is listed with its SQL, bind parameters and EXPLAIN plan")
+    void testSlowQueryCaptured() throws Exception {
+        // Arrange
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(createEvent("slow-1", "machine-slow")))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/actuator/slowqueries")).andExpect(status().isNoContent());
+
+        // Act
+        mockMvc.perform(get("/stats")
+                .param("machineId", "machine-slow")
+                .param("start", baseTime.toString())
+                .param("end", baseTime.plus(Duration.ofHours(2)).toString()))
+                .andExpect(status().isOk());
+        JsonNode count = awaitPlan("EventRepository.countByMachineIdAndEventTimeBetween");
+
+        // Assert
+        assertThat(count.get("shard").asText()).isEqualTo("default");
+        JsonNode statement = count.get("statements").get(0);
+        assertThat(statement.get("sql").asText()).containsIgnoringCase("select").contains("?");
+        assertThat(statement.get("binds").get(0).asText()).isEqualTo("machine-slow");
+        assertThat(statement.get("binds")).hasSize(3);
+        assertThat(count.get("plan").asText()).isNotBlank().doesNotStartWith("EXPLAIN failed");
+        assertThat(meterRegistry.get("events.query.duration")
+                .tag("query", "EventRepository.sumDefectsByMachineIdAndEventTimeBetween").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: The ring keeps only the most recent slow queries, newest first")
+    void testRingIsBounded() throws Exception {
+        // Act
+        for (int i = 0; i < 8; i++) {
+            eventRepository.findByEventId("missing-" + i);
+        }
+        JsonNode queries = slowQueries();
+
+        // Assert
+        assertThat(queries).hasSize(5);
+        assertThat(queries.get(0).get("statements").get(0).get("binds").get(0).asText()).isEqualTo("missing-7");
+        assertThat(queries.get(4).get("statements").get(0).get("binds").get(0).asText()).isEqualTo("missing-3");
+    }
+
+    private JsonNode awaitPlan(String query) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (true) {
+            for (JsonNode slow : slowQueries()) {
+                if (slow.get("query").asText().equals(query) && slow.hasNonNull("plan")) {
+                    return slow;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("No explained slow query " + query + " in " + slowQueries());
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private JsonNode slowQueries() throws Exception {
+        String body = mockMvc.perform(get("/actuator/slowqueries"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("queries");
+    }
+
+    private EventRequest createEvent(String eventId, String machineId) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(baseTime.plus(Duration.ofMinutes(10)))
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId("factory-1")
+                .durationMs(1000L)
+                .defectCount(2)
+                .build();
+    }
+}
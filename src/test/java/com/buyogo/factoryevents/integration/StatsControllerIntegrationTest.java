@@ -0,0 +1,323 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.DurationPercentilesResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.dto.TimeSeriesResponse;
+import com.buyogo.factoryevents.repository.DurationSketchRepository;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.service.DurationSketchService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Percentage.withPercentage;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class StatsControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private DurationSketchRepository durationSketchRepository;
+
+    @Autowired
+    private DurationSketchService durationSketchService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofHours(3));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Time series groups events per hour in one query and fills empty hours")
+    void testHourlyTimeSeries() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("ts-1", baseTime.plus(Duration.ofMinutes(5)), "machine-1", 2),
+            createEvent("ts-2", baseTime.plus(Duration.ofMinutes(50)), "machine-1", -1),
+            createEvent("ts-3", baseTime.plus(Duration.ofMinutes(130)), "machine-1", 4),
+            createEvent("ts-other", baseTime.plus(Duration.ofMinutes(10)), "machine-2", 7)
+        ));
+
+        // Act
+        String body = mockMvc.perform(get("/stats/timeseries?machineId=machine-1&bucket=hour"
+                    + "&from=" + baseTime + "&to=" + baseTime.plus(Duration.ofHours(3))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        TimeSeriesResponse response = objectMapper.readValue(body, TimeSeriesResponse.class);
+
+        // Assert
+        assertThat(response.getBucket()).isEqualTo("hour");
+        assertThat(response.getPoints()).hasSize(3);
+        assertThat(response.getPoints().get(0).getEventsCount()).isEqualTo(2);
+        assertThat(response.getPoints().get(0).getDefectsCount()).isEqualTo(2);
+        assertThat(response.getPoints().get(1).getEventsCount()).isEqualTo(0);
+        assertThat(response.getPoints().get(2).getDefectsCount()).isEqualTo(4);
+        assertThat(response.getPoints().get(2).getBucketStart()).isEqualTo(baseTime.plus(Duration.ofHours(2)));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Time series by factory and line, with an invalid bucket rejected")
+    void testFactoryLineTimeSeries() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("ts-10", baseTime.plus(Duration.ofMinutes(1)), "machine-1", 1),
+            createEvent("ts-11", baseTime.plus(Duration.ofMinutes(1)), "machine-2", 1)
+        ));
+
+        // Act
+        String body = mockMvc.perform(get("/stats/timeseries?factoryId=factory-1&lineId=line-1&bucket=minute"
+                    + "&from=" + baseTime + "&to=" + baseTime.plus(Duration.ofMinutes(3))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        TimeSeriesResponse response = objectMapper.readValue(body, TimeSeriesResponse.class);
+
+        // Assert
+        assertThat(response.getPoints()).hasSize(3);
+        assertThat(response.getPoints().get(1).getEventsCount()).isEqualTo(2);
+
+        mockMvc.perform(get("/stats/timeseries?machineId=machine-1&bucket=fortnight"
+                    + "&from=" + baseTime + "&to=" + baseTime.plus(Duration.ofHours(1))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Duration percentiles merge unflushed deltas and persisted hourly sketches")
+    void testDurationPercentiles() throws Exception {
+        // Arrange - durations 10..1000 ms split over two hours, plus a noisy neighbour
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            Instant eventTime = baseTime.plus(Duration.ofMinutes(i % 2 == 0 ? 10 : 70));
+            events.add(createEvent("dur-" + i, eventTime, "machine-1", 0, i * 10L));
+        }
+        events.add(createEvent("dur-other", baseTime.plus(Duration.ofMinutes(10)), "machine-2", 0, 900_000L));
+        ingest(events);
+
+        // Act
+        DurationPercentilesResponse pending = durations("machineId=machine-1");
+        durationSketchService.flush();
+        DurationPercentilesResponse persisted = durations("machineId=machine-1");
+
+        // Assert
+        assertThat(durationSketchRepository.count()).isEqualTo(3);
+        for (DurationPercentilesResponse response : List.of(pending, persisted)) {
+            assertThat(response.getSamples()).isEqualTo(100);
+            assertThat(response.getP50Ms()).isCloseTo(500L, withPercentage(1));
+            assertThat(response.getP99Ms()).isCloseTo(990L, withPercentage(1));
+            assertThat(response.getMaxMs()).isCloseTo(1000L, withPercentage(1));
+        }
+        assertThat(persisted.getFrom()).isEqualTo(baseTime);
+        assertThat(persisted.getTo()).isEqualTo(baseTime.plus(Duration.ofHours(2)));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Updated events replace their old duration; line scope and bad scope handled")
+    void testDurationPercentilesUpdateAndScope() throws Exception {
+        // Arrange
+        ingest(List.of(
+            createEvent("dur-upd-1", baseTime.plus(Duration.ofMinutes(5)), "machine-1", 0, 100L),
+            createEvent("dur-upd-2", baseTime.plus(Duration.ofMinutes(5)), "machine-2", 0, 200L)
+        ));
+        durationSketchService.flush();
+
+        // Act - a newer payload for the same event moves its duration
+        ingest(List.of(createEvent("dur-upd-1", baseTime.plus(Duration.ofMinutes(5)), "machine-1", 0, 5000L)));
+        DurationPercentilesResponse machine = durations("machineId=machine-1");
+        durationSketchService.flush();
+        DurationPercentilesResponse line = durations("factoryId=factory-1&lineId=line-1");
+
+        // Assert
+        assertThat(machine.getSamples()).isEqualTo(1);
+        assertThat(machine.getMaxMs()).isCloseTo(5000L, withPercentage(1));
+        assertThat(line.getSamples()).isEqualTo(2);
+        assertThat(line.getP50Ms()).isCloseTo(200L, withPercentage(1));
+
+        mockMvc.perform(get("/stats/durations?from=" + baseTime + "&to=" + baseTime.plus(Duration.ofHours(1))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/stats/durations?lineId=line-1&from=" + baseTime + "&to=" + baseTime.plus(Duration.ofHours(1))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: Stats reads borrow from the read pool, ingestion from the write pool")
+    void testReadAndWritePoolsSeparated() throws Exception {
+        // Arrange
+        long readsBefore = poolUsage("TestReadHikariCP");
+        long writesBefore = poolUsage("TestHikariCP");
+
+        // Act
+        ingest(List.of(createEvent("pool-1", baseTime, "machine-1", 1)));
+        long readsAfterIngest = poolUsage("TestReadHikariCP");
+        long writesAfterIngest = poolUsage("TestHikariCP");
+        mockMvc.perform(get("/stats?machineId=machine-1&start=" + baseTime + "&end=" + baseTime.plus(Duration.ofHours(1))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/stats/top-defect-lines?factoryId=factory-1&from=" + baseTime
+                    + "&to=" + baseTime.plus(Duration.ofHours(1))))
+                .andExpect(status().isOk());
+
+        // Assert
+        assertThat(writesAfterIngest).isGreaterThan(writesBefore);
+        assertThat(readsAfterIngest).isEqualTo(readsBefore);
+        assertThat(poolUsage("TestReadHikariCP")).isEqualTo(readsAfterIngest + 2);
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Test 6: Multi-window stats match the single-window endpoint for each window")
+    void testMultiWindowStats() throws Exception {
+        // Arrange
+        Instant end = baseTime.plus(Duration.ofHours(3));
+        ingest(List.of(
+            createEvent("win-1", end.minus(Duration.ofMinutes(30)), "machine-1", 2),
+            createEvent("win-2", end.minus(Duration.ofMinutes(90)), "machine-1", -1),
+            createEvent("win-3", end.minus(Duration.ofHours(20)), "machine-1", 5),
+            createEvent("win-4", end.minus(Duration.ofDays(3)), "machine-1", 7),
+            createEvent("win-late", end, "machine-1", 9),
+            createEvent("win-other", end.minus(Duration.ofMinutes(10)), "machine-2", 4)
+        ));
+
+        // Act
+        String body = mockMvc.perform(get("/stats/windows?machineId=machine-1&windows=PT1H,PT8H,P1D,P7D&end=" + end))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode windows = objectMapper.readTree(body);
+
+        // Assert
+        assertThat(windows).hasSize(4);
+        List<String> lengths = List.of("PT1H", "PT8H", "P1D", "P7D");
+        for (int i = 0; i < lengths.size(); i++) {
+            Instant start = end.minus(Duration.parse(lengths.get(i)));
+            String single = mockMvc.perform(get("/stats?machineId=machine-1&start=" + start + "&end=" + end))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertThat(windows.get(i)).isEqualTo(objectMapper.readTree(single));
+        }
+        assertThat(windows.get(0).get("eventsCount").asLong()).isEqualTo(1);
+        assertThat(windows.get(1).get("eventsCount").asLong()).isEqualTo(2);
+        assertThat(windows.get(1).get("defectsCount").asLong()).isEqualTo(2);
+        assertThat(windows.get(3).get("eventsCount").asLong()).isEqualTo(4);
+        assertThat(windows.get(3).get("defectsCount").asLong()).isEqualTo(14);
+        mockMvc.perform(get("/stats/windows?machineId=machine-1&windows=PT1H,bogus"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/stats/windows?machineId=machine-1&windows=-PT1H"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Test 7: Line percentiles are scoped by factory and sketches rebuild from events")
+    void testDurationSketchesByFactoryAndRebuild() throws Exception {
+        // Arrange - the same line id in two factories, with very different durations
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            events.add(createEvent("fac1-" + i, baseTime.plus(Duration.ofMinutes(10 + i)), "machine-1", 0, 100L));
+        }
+        EventRequest otherFactory = createEvent("fac2-1", baseTime.plus(Duration.ofMinutes(70)), "machine-3", 0, 9000L);
+        otherFactory.setFactoryId("factory-2");
+        events.add(otherFactory);
+        ingest(events);
+        durationSketchService.flush();
+        DurationPercentilesResponse before = durations("factoryId=factory-1&lineId=line-1");
+
+        // Act - lose every persisted sketch, then rebuild the window from the events table
+        durationSketchRepository.deleteAll();
+        String body = mockMvc.perform(post("/actuator/durationsketches")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"from\":\"" + baseTime + "\",\"to\":\"" + baseTime.plus(Duration.ofHours(2)) + "\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        DurationPercentilesResponse rebuilt = durations("factoryId=factory-1&lineId=line-1");
+        DurationPercentilesResponse other = durations("factoryId=factory-2&lineId=line-1");
+
+        // Assert
+        assertThat(before.getSamples()).isEqualTo(10);
+        assertThat(before.getMaxMs()).isCloseTo(100L, withPercentage(1));
+        assertThat(before.getFactoryId()).isEqualTo("factory-1");
+        assertThat(objectMapper.readTree(body).get("sketches").asInt()).isEqualTo(2);
+        assertThat(rebuilt).isEqualTo(before);
+        assertThat(other.getSamples()).isEqualTo(1);
+        assertThat(other.getMaxMs()).isCloseTo(9000L, withPercentage(1));
+    }
+
+    private long poolUsage(String pool) {
+        return meterRegistry.get("hikaricp.connections.usage").tag("pool", pool).timer().count();
+    }
+
+    private DurationPercentilesResponse durations(String scope) throws Exception {
+        String body = mockMvc.perform(get("/stats/durations?" + scope
+                    + "&from=" + baseTime.plus(Duration.ofMinutes(1)) + "&to=" + baseTime.plus(Duration.ofMinutes(119))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, DurationPercentilesResponse.class);
+    }
+
+    private void ingest(List<EventRequest> events) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    // Helper method
+    private EventRequest createEvent(String eventId, Instant eventTime, String machineId, Integer defectCount) {
+        return createEvent(eventId, eventTime, machineId, defectCount, 1000L);
+    }
+
+    private EventRequest createEvent(String eventId, Instant eventTime, String machineId, Integer defectCount,
+                                     Long durationMs) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId("factory-1")
+                .durationMs(durationMs)
+                .defectCount(defectCount)
+                .build();
+    }
+}
@@ -0,0 +1,188 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.perf.SyntheticEventDataset;
+import com.buyogo.factoryevents.repository.EventWriteRepository;
+import com.buyogo.factoryevents.service.StatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency distributions of the stats queries over a large synthetic dataset
+ * ({@link SyntheticEventDataset}), for several window lengths and with each secondary index of
+ * schema.sql removed in turn. Excluded from the default build; run with
+ * {@code mvn test -Pbenchmark -Dtest=StatsQueryBenchmarkTest}.
+ *
+ * <p>The default 200,000 events on in-memory H2 are a smoke run. For representative numbers
+ * point it at PostgreSQL and scale up, e.g. {@code -Dspring.datasource.url=jdbc:postgresql://...
+ * -Dbenchmark.stats.events=50000000}; the dataset is then loaded with {@code COPY}. The report
+ * is written to {@code target/perf/stats-benchmark.md}. See BENCHMARK.md for all properties.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Tag("benchmark")
+@Slf4j
+class StatsQueryBenchmarkTest {
+
+    private static final Path REPORT = Path.of("target/perf/stats-benchmark.md");
+    private static final int TOP_LINES_LIMIT = 10;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private EventWriteRepository eventWriteRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final long events = Long.getLong("benchmark.stats.events", 200_000);
+    private final int machines = Integer.getInteger("benchmark.stats.machines", 500);
+    private final int lines = Integer.getInteger("benchmark.stats.lines", 50);
+    private final int factories = Integer.getInteger("benchmark.stats.factories", 5);
+    private final double skew = Double.parseDouble(System.getProperty("benchmark.stats.skew", "1.0"));
+    private final Duration span = Duration.parse(System.getProperty("benchmark.stats.span", "P30D"));
+    private final long seed = Long.getLong("benchmark.stats.seed", 42);
+    private final int queries = Integer.getInteger("benchmark.stats.queries", 200);
+    private final int warmupQueries = Integer.getInteger("benchmark.stats.warmup-queries", 50);
+    private final List<Duration> windows = Arrays.stream(System.getProperty("benchmark.stats.windows", "PT1H,P1D,P7D,P30D").split(","))
+        .map(String::strip)
+        .map(Duration::parse)
+        .toList();
+    private final boolean indexVariants = Boolean.parseBoolean(System.getProperty("benchmark.stats.index-variants", "true"));
+
+    @AfterEach
+    void tearDown() {
+        eventWriteRepository.createSecondaryIndexes();
+        jdbcTemplate.execute("TRUNCATE TABLE events");
+    }
+
+    @Test
+    @DisplayName("Benchmark: stats query latency by window length and index configuration")
+    void statsQueryLatency() throws Exception {
+        SyntheticEventDataset dataset = new SyntheticEventDataset(events, machines, lines, factories, skew, span,
+            Instant.now().truncatedTo(ChronoUnit.HOURS), seed);
+        jdbcTemplate.execute("TRUNCATE TABLE events");
+        // Load without secondary indexes and build them once at the end; much faster on large sets
+        eventWriteRepository.dropSecondaryIndexes();
+        long loadStart = System.nanoTime();
+        dataset.load(dataSource);
+        eventWriteRepository.createSecondaryIndexes();
+        Duration loadTime = Duration.ofNanos(System.nanoTime() - loadStart);
+        log.info("Loaded {} synthetic events in {}", events, loadTime);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Long.class)).isEqualTo(events);
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("all", List.of());
+        if (indexVariants) {
+            for (String index : eventWriteRepository.secondaryIndexNames()) {
+                variants.put("without " + index, List.of(index));
+            }
+            variants.put("none", eventWriteRepository.secondaryIndexNames());
+        }
+
+        StringBuilder report = new StringBuilder()
+            .append("# Stats query benchmark\n\n")
+            .append(String.format("%,d events, %d machines, %d lines, %d factories, skew %.2f, span %s, loaded in %s. ",
+                events, machines, lines, factories, skew, label(span), loadTime.truncatedTo(ChronoUnit.MILLIS)))
+            .append(String.format("%d queries per row after %d warmup queries; latencies in ms.%n%n", queries, warmupQueries))
+            .append("| Indexes | Query | Window | p50 | p90 | p99 | max |\n")
+            .append("|---------|-------|--------|-----|-----|-----|-----|\n");
+        // One discarded pass so the first variant does not pay for JIT compilation
+        for (Duration window : windows) {
+            measure(dataset, window, machineStats(dataset, window));
+            measure(dataset, window, topDefectLines(dataset, window));
+        }
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            eventWriteRepository.createSecondaryIndexes();
+            variant.getValue().forEach(eventWriteRepository::dropSecondaryIndex);
+            SyntheticEventDataset.analyze(dataSource);
+            for (Duration window : windows) {
+                row(report, variant.getKey(), "machine stats", window, measure(dataset, window, machineStats(dataset, window)));
+                row(report, variant.getKey(), "top defect lines", window, measure(dataset, window, topDefectLines(dataset, window)));
+            }
+        }
+
+        Files.createDirectories(REPORT.getParent());
+        Files.writeString(REPORT, report);
+        log.info("\n{}", report);
+    }
+
+    private Query machineStats(SyntheticEventDataset dataset, Duration window) {
+        return (from, random) -> statsService.getMachineStats(
+            SyntheticEventDataset.machineId(dataset.machine(random)), from, from.plus(window));
+    }
+
+    private Query topDefectLines(SyntheticEventDataset dataset, Duration window) {
+        return (from, random) -> statsService.getTopDefectLines(
+            dataset.factoryId(dataset.machine(random)), from, from.plus(window), TOP_LINES_LIMIT);
+    }
+
+    /**
+     * Times {@code warmupQueries} discarded and then {@code queries} recorded calls, each over a
+     * window of the given length at a random position in the dataset's span and for a machine
+     * (or its factory) drawn with the dataset's skew.
+     */
+    private Histogram measure(SyntheticEventDataset dataset, Duration window, Query query) {
+        Histogram histogram = new Histogram(3);
+        SplittableRandom random = new SplittableRandom(seed);
+        long slack = Math.max(1, Duration.between(dataset.start(), dataset.end()).minus(window).toMillis());
+        for (int i = -warmupQueries; i < queries; i++) {
+            Instant from = dataset.start().plusMillis(random.nextLong(slack));
+            long start = System.nanoTime();
+            query.run(from, random);
+            long micros = (System.nanoTime() - start) / 1000;
+            if (i >= 0) {
+                histogram.recordValue(Math.max(1, micros));
+            }
+        }
+        return histogram;
+    }
+
+    private static void row(StringBuilder report, String indexes, String query, Duration window, Histogram histogram) {
+        Consumer<Double> cell = percentile -> report.append(String.format(" %.2f |", percentile / 1000.0));
+        report.append("| ").append(indexes).append(" | ").append(query).append(" | ").append(label(window)).append(" |");
+        for (double percentile : new double[] {50, 90, 99}) {
+            cell.accept((double) histogram.getValueAtPercentile(percentile));
+        }
+        cell.accept((double) histogram.getMaxValue());
+        report.append('\n');
+    }
+
+    private static String label(Duration window) {
+        if (window.toHours() % 24 == 0) {
+            return window.toDays() + "d";
+        }
+        return window.toMinutes() % 60 == 0 ? window.toHours() + "h" : window.toMinutes() + "m";
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        void run(Instant from, SplittableRandom random);
+    }
+}
@@ -0,0 +1,146 @@
+package com.buyogo.factoryevents.integration;
+
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class StatsStreamIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.now().minus(Duration.ofMinutes(5));
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Machine stream sends a snapshot, then pushes stats and a Healthy -> Warning transition")
+    void testMachineStreamPushesTransition() throws Exception {
+        // Arrange - one pre-existing event is part of the initial snapshot
+        ingest(List.of(createEvent("stream-1", baseTime, "machine-1", "factory-1", 1)));
+
+        MvcResult stream = mockMvc.perform(get("/stats/stream?machineId=machine-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String snapshot = awaitContent(stream, "\"status\":\"Healthy\"");
+        assertThat(snapshot).contains("event:stats").contains("\"eventsCount\":1");
+
+        // Act - push the hourly defect rate over the threshold
+        ingest(List.of(
+            createEvent("stream-2", baseTime.plusSeconds(30), "machine-1", "factory-1", 2),
+            createEvent("stream-3", baseTime.plusSeconds(60), "machine-1", "factory-1", 3),
+            createEvent("stream-other", baseTime.plusSeconds(60), "machine-2", "factory-1", 9)
+        ));
+
+        // Assert
+        String content = awaitContent(stream, "\"previousStatus\":\"Healthy\",\"status\":\"Warning\"");
+        assertThat(content).contains("event:transition");
+        assertThat(content).contains("\"eventsCount\":3").contains("\"defectsCount\":6");
+        assertThat(content).doesNotContain("machine-2");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Factory stream covers every machine of the factory, including new ones")
+    void testFactoryStream() throws Exception {
+        // Arrange
+        ingest(List.of(createEvent("factory-stream-1", baseTime, "machine-1", "factory-1", 0)));
+
+        MvcResult stream = mockMvc.perform(get("/stats/stream?factoryId=factory-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(stream, "\"machineId\":\"machine-1\"");
+
+        // Act
+        ingest(List.of(
+            createEvent("factory-stream-2", baseTime, "machine-7", "factory-1", 1),
+            createEvent("factory-stream-3", baseTime, "machine-9", "factory-2", 1)
+        ));
+
+        // Assert
+        String content = awaitContent(stream, "\"machineId\":\"machine-7\"");
+        assertThat(content).doesNotContain("machine-9");
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Stream needs exactly one of machineId or factoryId")
+    void testStreamRequiresSingleScope() throws Exception {
+        mockMvc.perform(get("/stats/stream"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/stats/stream?machineId=machine-1&factoryId=factory-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String awaitContent(MvcResult stream, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = stream.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = stream.getResponse().getContentAsString();
+        }
+        assertThat(content).contains(expected);
+        return content;
+    }
+
+    private void ingest(List<EventRequest> events) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk());
+    }
+
+    // Helper method
+    private EventRequest createEvent(String eventId, Instant eventTime, String machineId,
+                                     String factoryId, Integer defectCount) {
+        return EventRequest.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId(factoryId)
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+package com.buyogo.factoryevents.json;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.dto.RejectionDetail;
+import com.buyogo.factoryevents.dto.StatsResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JMH comparison of the hand-written codecs against reflective Jackson binding with
+ * {@code @JsonFormat} patterns (the binding they replaced). Excluded from the default build;
+ * run with {@code mvn test -Pbenchmark -Dtest=JsonBindingBenchmarkTest}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBindingBenchmarkTest {
+
+    private static final TypeReference<List<EventRequest>> BATCH = new TypeReference<>() {
+    };
+    private static final DateTimeFormatter MILLIS_PATTERN =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private ObjectReader fastBatchReader;
+    private ObjectReader reflectiveBatchReader;
+    private ObjectMapper fast;
+    private ObjectMapper reflective;
+    private byte[] batchJson;
+    private String timestamp;
+    private StatsResponse stats;
+    private BatchIngestionResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        fast = new ObjectMapper().registerModule(new JavaTimeModule());
+        reflective = new ObjectMapper().registerModule(new JavaTimeModule())
+            .addMixIn(EventRequest.class, JsonCodecTest.ReflectiveSerialization.class)
+            .addMixIn(StatsResponse.class, JsonCodecTest.ReflectiveSerialization.class)
+            .addMixIn(BatchIngestionResponse.class, JsonCodecTest.ReflectiveSerialization.class);
+        fastBatchReader = fast.readerFor(BATCH);
+        reflectiveBatchReader = reflective.readerFor(BATCH);
+
+        Instant now = Instant.parse("2024-01-15T10:30:00.123Z");
+        List<EventRequest> events = new ArrayList<>();
+        List<RejectionDetail> rejections = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            events.add(EventRequest.builder()
+                .eventId("evt-" + i)
+                .eventTime(now.minusMillis(i * 997L))
+                .receivedTime(now)
+                .machineId("machine-" + (i % 20))
+                .lineId("line-" + (i % 4))
+                .factoryId("factory-1")
+                .durationMs(1000L + i)
+                .defectCount(i % 5)
+                .build());
+            if (i % 10 == 0) {
+                rejections.add(new RejectionDetail("evt-" + i, "INVALID_DURATION"));
+            }
+        }
+        batchJson = reflective.writeValueAsBytes(events);
+        timestamp = MILLIS_PATTERN.format(now);
+        stats = StatsResponse.builder()
+            .machineId("machine-1")
+            .start(now.minusSeconds(21_600))
+            .end(now)
+            .eventsCount(1200)
+            .defectsCount(7)
+            .avgDefectRate(1.2)
+            .status("Healthy")
+            .build();
+        response = BatchIngestionResponse.builder()
+            .accepted(900)
+            .rejected(100)
+            .rejections(rejections)
+            .build();
+    }
+
+    @Benchmark
+    public List<EventRequest> readBatchReflective() throws Exception {
+        return reflectiveBatchReader.readValue(batchJson);
+    }
+
+    @Benchmark
+    public List<EventRequest> readBatchStreaming() throws Exception {
+        return fastBatchReader.readValue(batchJson);
+    }
+
+    @Benchmark
+    public Instant parseTimestampFormatter() {
+        return Instant.from(MILLIS_PATTERN.parse(timestamp));
+    }
+
+    @Benchmark
+    public Instant parseTimestampFast() {
+        return IsoInstants.parse(timestamp);
+    }
+
+    @Benchmark
+    public byte[] writeStatsReflective() throws Exception {
+        return reflective.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] writeStatsFast() throws Exception {
+        return fast.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] writeBatchResponseReflective() throws Exception {
+        return reflective.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] writeBatchResponseFast() throws Exception {
+        return fast.writeValueAsBytes(response);
+    }
+
+    @Test
+    @DisplayName("Benchmark: hand-written JSON codecs vs reflective binding")
+    void runBenchmarks() throws Exception {
+        Options options = new OptionsBuilder()
+            .include(JsonBindingBenchmarkTest.class.getName() + "\\.")
+            .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertThat(results).hasSize(8);
+    }
+}
@@ -0,0 +1,178 @@
+package com.buyogo.factoryevents.json;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.dto.RejectionDetail;
+import com.buyogo.factoryevents.dto.StatsResponse;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.*;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class JsonCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Fast parser agrees with java.time for every supported precision and offset")
+    void testParseMatchesJavaTime() {
+        // Arrange
+        Random random = new Random(42);
+        DateTimeFormatter millis = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+        for (int i = 0; i < 10_000; i++) {
+            Instant instant = Instant.ofEpochSecond(random.nextLong(-62_135_596_800L, 253_402_300_799L), random.nextInt(1_000_000_000));
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds(random.nextInt(-18, 19) * 1800);
+
+            // Act & Assert
+            assertThat(IsoInstants.parse(millis.format(instant))).isEqualTo(Instant.from(millis.parse(millis.format(instant))));
+            assertThat(IsoInstants.parse(instant.toString())).isEqualTo(instant);
+            String withOffset = OffsetDateTime.ofInstant(instant, offset).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            assertThat(IsoInstants.parse(withOffset)).as(withOffset).isEqualTo(instant);
+        }
+        assertThat(IsoInstants.parse("2024-02-29T23:59:59+0100")).isEqualTo(Instant.parse("2024-02-29T22:59:59Z"));
+        assertThat(IsoInstants.parse("2024-01-15t10:30:00.5z")).isEqualTo(Instant.parse("2024-01-15T10:30:00.500Z"));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Malformed and out-of-range timestamps are rejected")
+    void testParseRejectsInvalid() {
+        for (String invalid : List.of("", "2024-01-15", "2024-01-15T10:30:00", "2024-01-15 10:30:00Z",
+                "2023-02-29T10:30:00Z", "2024-13-01T10:30:00Z", "2024-01-15T24:00:00Z", "2024-01-15T10:60:00Z",
+                "2024-01-15T10:30:00.Z", "2024-01-15T10:30:00.1234567891Z", "2024-01-15T10:30:00+1:00",
+                "2024-01-15T10:30:00+19:00", "2024-01-15T10:30:00Zjunk", "+2024-01-15T10:30:00Z")) {
+            assertThat(IsoInstants.parse(invalid)).as(invalid).isNull();
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Fast formatter writes the same text as the yyyy-MM-dd'T'HH:mm:ss'Z' pattern")
+    void testFormatMatchesPattern() {
+        // Arrange
+        Random random = new Random(7);
+        DateTimeFormatter seconds = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
+        char[] buffer = new char[IsoInstants.SECONDS_LENGTH];
+
+        for (int i = 0; i < 10_000; i++) {
+            Instant instant = Instant.ofEpochSecond(random.nextLong(-62_135_596_800L, 253_402_300_799L), random.nextInt(1_000_000_000));
+
+            // Act
+            int length = IsoInstants.formatSeconds(instant, buffer, 0);
+
+            // Assert
+            assertThat(new String(buffer, 0, length)).isEqualTo(seconds.format(instant));
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: EventRequest deserializer reads known fields, skips receivedTime and unknown fields")
+    void testEventRequestDeserializer() throws Exception {
+        // Arrange
+        String json = "[{\"eventId\":\"e-1\",\"receivedTime\":\"garbage\",\"eventTime\":\"2024-01-15T10:30:00.000Z\","
+            + "\"machineId\":\"M-1\",\"lineId\":null,\"extra\":{\"nested\":[1,2,{\"a\":3}]},\"factoryId\":\"F-1\","
+            + "\"durationMs\":\"1500\",\"defectCount\":3},{\"eventId\":\"e-2\"}]";
+
+        // Act
+        EventRequest[] requests = objectMapper.readValue(json, EventRequest[].class);
+
+        // Assert
+        assertThat(requests).hasSize(2);
+        assertThat(requests[0]).isEqualTo(EventRequest.builder()
+            .eventId("e-1")
+            .eventTime(Instant.parse("2024-01-15T10:30:00Z"))
+            .machineId("M-1")
+            .factoryId("F-1")
+            .durationMs(1500L)
+            .defectCount(3)
+            .build());
+        assertThat(requests[1].getEventTime()).isNull();
+        assertThat(requests[1].getDurationMs()).isNull();
+
+        assertThatThrownBy(() -> objectMapper.readValue("{\"eventTime\":\"15/01/2024\"}", EventRequest.class))
+            .isInstanceOf(InvalidFormatException.class);
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: Fast serializers produce exactly the reflective JSON")
+    void testSerializersMatchReflectiveBinding() throws Exception {
+        // Arrange
+        ObjectMapper reflective = new ObjectMapper().registerModule(new JavaTimeModule())
+            .addMixIn(StatsResponse.class, ReflectiveSerialization.class)
+            .addMixIn(BatchIngestionResponse.class, ReflectiveSerialization.class);
+        StatsResponse stats = StatsResponse.builder()
+            .machineId("M-\"1\"")
+            .start(Instant.parse("2024-01-15T10:00:00.999Z"))
+            .end(Instant.parse("2024-01-15T16:00:00Z"))
+            .eventsCount(1200)
+            .defectsCount(7)
+            .avgDefectRate(1.2)
+            .status("Healthy")
+            .build();
+        BatchIngestionResponse response = BatchIngestionResponse.builder()
+            .accepted(2)
+            .rejected(2)
+            .rejections(List.of(new RejectionDetail("e-3", "INVALID_DURATION"), new RejectionDetail(null, "MISSING_EVENT_ID")))
+            .build();
+
+        // Act & Assert
+        assertThat(objectMapper.writeValueAsString(stats)).isEqualTo(reflective.writeValueAsString(stats));
+        assertThat(objectMapper.writeValueAsString(new StatsResponse())).isEqualTo(reflective.writeValueAsString(new StatsResponse()));
+        assertThat(objectMapper.writeValueAsString(response)).isEqualTo(reflective.writeValueAsString(response));
+        assertThat(objectMapper.writeValueAsString(new BatchIngestionResponse()))
+            .isEqualTo(reflective.writeValueAsString(new BatchIngestionResponse()));
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Test 6: Full-precision formatter keeps milliseconds as before and round-trips finer instants")
+    void testFormatKeepsPrecision() {
+        // Arrange
+        Random random = new Random(11);
+        DateTimeFormatter millis = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+        char[] buffer = new char[IsoInstants.MAX_LENGTH];
+
+        for (int i = 0; i < 10_000; i++) {
+            long epochSecond = random.nextLong(0, 253_402_300_799L);
+            Instant milli = Instant.ofEpochSecond(epochSecond, random.nextInt(1000) * 1_000_000L);
+            Instant micro = Instant.ofEpochSecond(epochSecond, random.nextInt(1000) * 1_000_000L + (random.nextInt(999) + 1) * 1_000L);
+            Instant nano = Instant.ofEpochSecond(epochSecond, random.nextInt(1_000_000_000) | 1);
+
+            // Act & Assert
+            assertThat(new String(buffer, 0, IsoInstants.format(milli, buffer, 0))).isEqualTo(millis.format(milli));
+            int microLength = IsoInstants.format(micro, buffer, 0);
+            assertThat(microLength).isEqualTo(27);
+            assertThat(IsoInstants.parse(buffer, 0, microLength)).isEqualTo(micro);
+            int nanoLength = IsoInstants.format(nano, buffer, 0);
+            assertThat(nanoLength).isEqualTo(IsoInstants.MAX_LENGTH);
+            assertThat(IsoInstants.parse(buffer, 0, nanoLength)).isEqualTo(nano);
+        }
+    }
+
+    /**
+     * Mixin restoring reflective binding, to compare against the hand-written codecs.
+     */
+    @JsonSerialize(using = JsonSerializer.None.class)
+    @JsonDeserialize(using = JsonDeserializer.None.class)
+    static class ReflectiveSerialization {
+    }
+}
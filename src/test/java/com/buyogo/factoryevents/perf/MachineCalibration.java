@@ -0,0 +1,50 @@
+package com.buyogo.factoryevents.perf;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Measures how fast this machine runs a fixed single-threaded workload (SHA-256 over 1 KiB,
+ * the same hashing every ingested event goes through). The ratio between the current and the
+ * recorded score rescales the baseline, so a run on a slower laptop is not reported as a
+ * regression against numbers recorded on a faster one.
+ */
+public final class MachineCalibration {
+
+    private static final int ROUNDS = 10;
+    private static final int DIGESTS_PER_ROUND = 20_000;
+
+    private MachineCalibration() {
+    }
+
+    /**
+     * @return digests per second in the fastest of several rounds, after one warmup round;
+     *         interference from other threads only ever slows a round down
+     */
+    public static double opsPerSecond() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] block = new byte[1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) i;
+        }
+
+        double best = 0;
+        for (int round = -1; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < DIGESTS_PER_ROUND; i++) {
+                digest.update(block);
+                block[i % block.length] ^= digest.digest()[0];
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round >= 0) {
+                best = Math.max(best, DIGESTS_PER_ROUND / (elapsed / 1e9));
+            }
+        }
+        return best;
+    }
+}
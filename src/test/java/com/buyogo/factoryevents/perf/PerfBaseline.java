@@ -0,0 +1,53 @@
+package com.buyogo.factoryevents.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-trial results of one run of the scenario matrix. The checked-in baseline and the report
+ * for the current run share this format, so promoting a run to the new baseline is a file copy.
+ */
+@Data
+@NoArgsConstructor
+public class PerfBaseline {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private String recordedAt;
+    private String environment;
+    // Speed of a fixed CPU workload on the recording machine, used to rescale the baseline
+    private double calibrationOpsPerSecond;
+    private Map<String, ScenarioSamples> scenarios = new LinkedHashMap<>();
+
+    public static PerfBaseline read(Path path) throws IOException {
+        return MAPPER.readValue(path.toFile(), PerfBaseline.class);
+    }
+
+    public void write(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        MAPPER.writeValue(path.toFile(), this);
+    }
+
+    /**
+     * One value per measured trial, in trial order.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ScenarioSamples {
+        private String unit;
+        private List<Double> throughput = new ArrayList<>();
+        private List<Double> p99Ms = new ArrayList<>();
+    }
+}
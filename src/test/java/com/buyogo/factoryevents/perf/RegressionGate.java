@@ -0,0 +1,205 @@
+package com.buyogo.factoryevents.perf;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a run of the scenario matrix with the baseline, metric by metric.
+ *
+ * <p>A metric regresses only when it is both worse than the baseline by more than the
+ * tolerance and significantly worse: a one-sided Welch t-test over the per-trial samples at
+ * alpha = 0.01. The tolerance keeps tiny but consistent slowdowns from failing the build; the
+ * test keeps a single noisy trial from doing so.
+ *
+ * <p>Baselines are meant to be recorded and checked on the same reference machine. When that is
+ * not possible, rescaling multiplies baseline samples by the machine factor (current
+ * calibration score / recorded one, clamped to 0.25-4). It is off by default because a
+ * single-threaded calibration only roughly tracks a database-bound workload.
+ */
+public class RegressionGate {
+
+    public enum Verdict { OK, IMPROVED, REGRESSED, NEW }
+
+    static final double MIN_MACHINE_FACTOR = 0.25;
+    static final double MAX_MACHINE_FACTOR = 4.0;
+
+    // One-sided t quantiles at alpha = 0.01 for 1..30 degrees of freedom; beyond that the normal 2.326
+    private static final double[] T_CRITICAL = {
+        31.821, 6.965, 4.541, 3.747, 3.365, 3.143, 2.998, 2.896, 2.821, 2.764,
+        2.718, 2.681, 2.650, 2.624, 2.602, 2.583, 2.567, 2.552, 2.539, 2.528,
+        2.518, 2.508, 2.500, 2.492, 2.485, 2.479, 2.473, 2.467, 2.462, 2.457
+    };
+
+    private final double throughputTolerance;
+    private final double latencyTolerance;
+    private final boolean rescale;
+
+    /**
+     * @param throughputTolerance relative drop in throughput tolerated before it can count as a regression
+     * @param latencyTolerance relative rise in p99 latency tolerated before it can count as a regression
+     * @param rescale whether to rescale the baseline by the machine factor
+     */
+    public RegressionGate(double throughputTolerance, double latencyTolerance, boolean rescale) {
+        this.throughputTolerance = throughputTolerance;
+        this.latencyTolerance = latencyTolerance;
+        this.rescale = rescale;
+    }
+
+    public double machineFactor(PerfBaseline baseline, PerfBaseline current) {
+        if (!rescale || baseline.getCalibrationOpsPerSecond() <= 0 || current.getCalibrationOpsPerSecond() <= 0) {
+            return 1.0;
+        }
+        double factor = current.getCalibrationOpsPerSecond() / baseline.getCalibrationOpsPerSecond();
+        return Math.max(MIN_MACHINE_FACTOR, Math.min(MAX_MACHINE_FACTOR, factor));
+    }
+
+    public List<Comparison> compare(PerfBaseline baseline, PerfBaseline current) {
+        double factor = machineFactor(baseline, current);
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, PerfBaseline.ScenarioSamples> entry : current.getScenarios().entrySet()) {
+            String scenario = entry.getKey();
+            PerfBaseline.ScenarioSamples now = entry.getValue();
+            PerfBaseline.ScenarioSamples before = baseline.getScenarios().get(scenario);
+            comparisons.add(compare(scenario, now.getUnit(), true, throughputTolerance,
+                before == null ? null : Summary.of(before.getThroughput(), factor),
+                Summary.of(now.getThroughput(), 1.0)));
+            comparisons.add(compare(scenario, "p99 ms", false, latencyTolerance,
+                before == null ? null : Summary.of(before.getP99Ms(), 1.0 / factor),
+                Summary.of(now.getP99Ms(), 1.0)));
+        }
+        return comparisons;
+    }
+
+    private Comparison compare(String scenario, String metric, boolean higherIsBetter, double tolerance,
+                               Summary expected, Summary actual) {
+        if (expected == null || expected.getCount() == 0) {
+            return new Comparison(scenario, metric, null, actual, Double.NaN, Double.NaN, Verdict.NEW);
+        }
+        double change = actual.getMean() / expected.getMean() - 1;
+        double t = welchT(actual, expected);
+        double critical = criticalT(welchDegreesOfFreedom(actual, expected));
+        // Positive when the current run is better
+        double gain = higherIsBetter ? change : -change;
+        double directedT = higherIsBetter ? t : -t;
+
+        Verdict verdict = Verdict.OK;
+        if (gain < -tolerance && directedT < -critical) {
+            verdict = Verdict.REGRESSED;
+        } else if (gain > tolerance && directedT > critical) {
+            verdict = Verdict.IMPROVED;
+        }
+        return new Comparison(scenario, metric, expected, actual, change, t, verdict);
+    }
+
+    static double welchT(Summary a, Summary b) {
+        double standardError = Math.sqrt(a.getVariance() / a.getCount() + b.getVariance() / b.getCount());
+        double difference = a.getMean() - b.getMean();
+        if (standardError == 0) {
+            return difference == 0 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, difference);
+        }
+        return difference / standardError;
+    }
+
+    static double welchDegreesOfFreedom(Summary a, Summary b) {
+        double va = a.getVariance() / a.getCount();
+        double vb = b.getVariance() / b.getCount();
+        double denominator = (a.getCount() > 1 ? va * va / (a.getCount() - 1) : 0)
+            + (b.getCount() > 1 ? vb * vb / (b.getCount() - 1) : 0);
+        if (denominator == 0) {
+            return Math.max(1, a.getCount() + b.getCount() - 2);
+        }
+        return (va + vb) * (va + vb) / denominator;
+    }
+
+    static double criticalT(double degreesOfFreedom) {
+        int df = (int) Math.max(1, Math.floor(degreesOfFreedom));
+        return df <= T_CRITICAL.length ? T_CRITICAL[df - 1] : 2.326;
+    }
+
+    /**
+     * Markdown table of every comparison followed by the list of regressions, if any.
+     */
+    public String report(PerfBaseline baseline, PerfBaseline current, List<Comparison> comparisons) {
+        StringBuilder out = new StringBuilder();
+        out.append("# Performance regression report\n\n");
+        out.append(String.format(Locale.ROOT, "- Baseline: recorded %s on %s, calibration %,.0f ops/s%n",
+            baseline.getRecordedAt(), baseline.getEnvironment(), baseline.getCalibrationOpsPerSecond()));
+        out.append(String.format(Locale.ROOT, "- Current:  recorded %s on %s, calibration %,.0f ops/s%n",
+            current.getRecordedAt(), current.getEnvironment(), current.getCalibrationOpsPerSecond()));
+        out.append(rescale
+            ? String.format(Locale.ROOT, "- Machine factor %.2f applied to the baseline%n", machineFactor(baseline, current))
+            : "- Baseline not rescaled to this machine\n");
+        out.append(String.format(Locale.ROOT,
+            "- Regression = worse than baseline by more than %.0f%% (throughput) / %.0f%% (p99) "
+                + "and significant (one-sided Welch t-test, alpha 0.01)%n%n",
+            throughputTolerance * 100, latencyTolerance * 100));
+
+        out.append("| Scenario | Metric | Baseline | Current | Change | t | Verdict |\n");
+        out.append("|---|---|---:|---:|---:|---:|---|\n");
+        for (Comparison c : comparisons) {
+            out.append(String.format(Locale.ROOT, "| %s | %s | %s | %s | %s | %s | %s |%n",
+                c.getScenario(), c.getMetric(),
+                c.getBaseline() == null ? "-" : c.getBaseline().format(),
+                c.getCurrent().format(),
+                Double.isNaN(c.getChange()) ? "-" : String.format(Locale.ROOT, "%+.1f%%", c.getChange() * 100),
+                Double.isNaN(c.getT()) ? "-" : String.format(Locale.ROOT, "%.1f", c.getT()),
+                c.getVerdict() == Verdict.REGRESSED ? "**REGRESSED**" : c.getVerdict().name().toLowerCase(Locale.ROOT)));
+        }
+
+        List<Comparison> regressions = regressions(comparisons);
+        out.append('\n');
+        if (regressions.isEmpty()) {
+            out.append("No significant regressions.\n");
+        } else {
+            out.append(regressions.size()).append(" significant regression(s):\n");
+            for (Comparison c : regressions) {
+                out.append(String.format(Locale.ROOT, "- %s %s: %+.1f%% (t = %.1f)%n",
+                    c.getScenario(), c.getMetric(), c.getChange() * 100, c.getT()));
+            }
+        }
+        return out.toString();
+    }
+
+    public static List<Comparison> regressions(List<Comparison> comparisons) {
+        return comparisons.stream().filter(c -> c.getVerdict() == Verdict.REGRESSED).toList();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Comparison {
+        private final String scenario;
+        private final String metric;
+        private final Summary baseline;
+        private final Summary current;
+        private final double change;
+        private final double t;
+        private final Verdict verdict;
+    }
+
+    /**
+     * Mean and sample variance of per-trial values, optionally rescaled.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Summary {
+        private final int count;
+        private final double mean;
+        private final double variance;
+
+        static Summary of(List<Double> samples, double scale) {
+            int n = samples.size();
+            double mean = samples.stream().mapToDouble(v -> v * scale).average().orElse(0);
+            double squares = samples.stream().mapToDouble(v -> (v * scale - mean) * (v * scale - mean)).sum();
+            return new Summary(n, mean, n > 1 ? squares / (n - 1) : 0);
+        }
+
+        String format() {
+            return String.format(Locale.ROOT, "%,.1f ± %,.1f (n=%d)", mean, Math.sqrt(variance), count);
+        }
+    }
+}
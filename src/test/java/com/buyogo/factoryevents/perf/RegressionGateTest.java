@@ -0,0 +1,100 @@
+package com.buyogo.factoryevents.perf;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class RegressionGateTest {
+
+    private RegressionGate gate;
+
+    @BeforeEach
+    void setUp() {
+        gate = new RegressionGate(0.15, 0.25, false);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A consistent throughput drop beyond the tolerance is a regression")
+    void testConsistentDropRegresses() {
+        // Arrange
+        PerfBaseline baseline = run(1000, List.of(2000.0, 2050.0, 1980.0, 2020.0, 1990.0), List.of(500.0, 510.0, 495.0, 505.0, 500.0));
+        PerfBaseline current = run(1000, List.of(1500.0, 1520.0, 1490.0, 1510.0, 1500.0), List.of(500.0, 505.0, 498.0, 502.0, 507.0));
+
+        // Act
+        List<RegressionGate.Comparison> comparisons = gate.compare(baseline, current);
+
+        // Assert
+        assertThat(comparisons).extracting(RegressionGate.Comparison::getVerdict)
+            .containsExactly(RegressionGate.Verdict.REGRESSED, RegressionGate.Verdict.OK);
+        assertThat(comparisons.get(0).getChange()).isCloseTo(-0.25, within(0.01));
+        assertThat(gate.report(baseline, current, comparisons))
+            .contains("**REGRESSED**")
+            .contains("1 significant regression(s)");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Drops within the tolerance or within the noise pass")
+    void testSmallOrNoisyDropsPass() {
+        // Arrange - 5% slower but very stable, and 30% slower on average but all over the place
+        PerfBaseline baseline = run(1000, List.of(2000.0, 2010.0, 1990.0, 2000.0, 2000.0), List.of(500.0, 500.0, 500.0, 500.0, 500.0));
+        PerfBaseline slightlySlower = run(1000, List.of(1900.0, 1905.0, 1895.0, 1900.0, 1900.0), List.of(520.0, 520.0, 520.0, 520.0, 520.0));
+        PerfBaseline noisy = run(1000, List.of(400.0, 2200.0, 2100.0, 500.0, 1800.0), List.of(500.0, 500.0, 500.0, 500.0, 500.0));
+
+        // Act & Assert
+        assertThat(RegressionGate.regressions(gate.compare(baseline, slightlySlower))).isEmpty();
+        assertThat(RegressionGate.regressions(gate.compare(baseline, noisy))).isEmpty();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: With rescaling on, the baseline is scaled to the speed of the current machine")
+    void testMachineFactorRescalesBaseline() {
+        // Arrange - half as fast a machine, proportionally slower results
+        PerfBaseline baseline = run(1000, List.of(2000.0, 2050.0, 1980.0), List.of(100.0, 104.0, 98.0));
+        PerfBaseline current = run(500, List.of(1000.0, 1020.0, 990.0), List.of(200.0, 206.0, 197.0));
+        RegressionGate rescaling = new RegressionGate(0.15, 0.25, true);
+
+        // Act
+        List<RegressionGate.Comparison> comparisons = rescaling.compare(baseline, current);
+
+        // Assert
+        assertThat(rescaling.machineFactor(baseline, current)).isEqualTo(0.5);
+        assertThat(comparisons).extracting(RegressionGate.Comparison::getVerdict)
+            .containsOnly(RegressionGate.Verdict.OK);
+        assertThat(RegressionGate.regressions(gate.compare(baseline, current))).hasSize(2);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Improvements and scenarios missing from the baseline are reported, not failed")
+    void testImprovementsAndNewScenarios() {
+        // Arrange
+        PerfBaseline baseline = run(1000, List.of(1000.0, 1010.0, 990.0), List.of(300.0, 305.0, 295.0));
+        PerfBaseline current = run(1000, List.of(2000.0, 2010.0, 1990.0), List.of(150.0, 152.0, 149.0));
+        current.getScenarios().put("stats/new", new PerfBaseline.ScenarioSamples("req/s", List.of(50.0, 51.0), List.of(20.0, 21.0)));
+
+        // Act
+        List<RegressionGate.Comparison> comparisons = gate.compare(baseline, current);
+
+        // Assert
+        assertThat(comparisons).extracting(RegressionGate.Comparison::getVerdict)
+            .containsExactly(RegressionGate.Verdict.IMPROVED, RegressionGate.Verdict.IMPROVED,
+                RegressionGate.Verdict.NEW, RegressionGate.Verdict.NEW);
+        assertThat(RegressionGate.regressions(comparisons)).isEmpty();
+    }
+
+    private PerfBaseline run(double calibration, List<Double> throughput, List<Double> p99Ms) {
+        PerfBaseline run = new PerfBaseline();
+        run.setRecordedAt("2026-01-01T00:00:00Z");
+        run.setEnvironment("test");
+        run.setCalibrationOpsPerSecond(calibration);
+        run.getScenarios().put("ingest/new-1000", new PerfBaseline.ScenarioSamples("events/s", throughput, p99Ms));
+        return run;
+    }
+}
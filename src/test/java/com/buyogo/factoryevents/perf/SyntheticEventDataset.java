@@ -0,0 +1,217 @@
+package com.buyogo.factoryevents.perf;
+
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic events for stats benchmarks, written straight into the events table.
+ * Machines are spread evenly over lines and lines over factories; which machine emits each event
+ * follows a Zipf distribution, so with {@code skew > 0} a few hot machines (and their lines and
+ * factories) hold most of the rows, as on a real shop floor. Event times are uniform over
+ * {@code span} ending at {@code end}; each line gets its own mean defect count so top-defect-line
+ * rankings are stable.
+ *
+ * <p>On PostgreSQL rows are streamed with {@code COPY} in chunks, which loads tens of millions
+ * of rows in minutes; elsewhere (H2 in tests) they go through batched JDBC inserts. The same
+ * seed always produces the same rows, and {@link #machine(SplittableRandom)} samples machines
+ * with the same skew so benchmark queries hit hot and cold machines in realistic proportion.
+ */
+public final class SyntheticEventDataset {
+
+    private static final int CHUNK_ROWS = 50_000;
+    private static final DateTimeFormatter COPY_TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+
+    private final long events;
+    private final int machines;
+    private final int lines;
+    private final int factories;
+    private final double skew;
+    private final Duration span;
+    private final Instant end;
+    private final long seed;
+    private final double[] machineCdf;
+
+    /**
+     * @param skew Zipf exponent of machine popularity; 0 is uniform, around 1 is typical
+     */
+    public SyntheticEventDataset(long events, int machines, int lines, int factories, double skew,
+                                 Duration span, Instant end, long seed) {
+        if (events < 1 || machines < 1 || lines < 1 || factories < 1 || lines > machines || factories > lines
+                || skew < 0 || span.isNegative() || span.isZero()) {
+            throw new IllegalArgumentException("Need events, machines >= lines >= factories >= 1, skew >= 0 and a positive span");
+        }
+        this.events = events;
+        this.machines = machines;
+        this.lines = lines;
+        this.factories = factories;
+        this.skew = skew;
+        this.span = span;
+        this.end = end;
+        this.seed = seed;
+        this.machineCdf = new double[machines];
+        double total = 0;
+        for (int m = 0; m < machines; m++) {
+            total += 1.0 / Math.pow(m + 1, skew);
+            machineCdf[m] = total;
+        }
+        for (int m = 0; m < machines; m++) {
+            machineCdf[m] /= total;
+        }
+    }
+
+    public long events() {
+        return events;
+    }
+
+    public Instant start() {
+        return end.minus(span);
+    }
+
+    public Instant end() {
+        return end;
+    }
+
+    public int factories() {
+        return factories;
+    }
+
+    public double skew() {
+        return skew;
+    }
+
+    public static String machineId(int machine) {
+        return "syn-machine-" + machine;
+    }
+
+    public String lineId(int machine) {
+        return "syn-line-" + (machine % lines);
+    }
+
+    public String factoryId(int machine) {
+        return "syn-factory-" + (machine % lines % factories);
+    }
+
+    /**
+     * @return a machine index drawn with the dataset's skew; index 0 is the hottest machine
+     */
+    public int machine(SplittableRandom random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = machines - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (machineCdf[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Insert every row into the events table of {@code dataSource}, which is expected to be empty.
+     */
+    public void load(DataSource dataSource) throws SQLException, IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                copy(connection.unwrap(PGConnection.class));
+            } else {
+                insert(connection);
+            }
+        }
+    }
+
+    /**
+     * Refresh planner statistics after a load or an index change.
+     */
+    public static void analyze(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            boolean postgres = connection.isWrapperFor(PGConnection.class);
+            statement.execute(postgres ? "ANALYZE events" : "ANALYZE TABLE events");
+        }
+    }
+
+    private void copy(PGConnection connection) throws SQLException, IOException {
+        String sql = "COPY events (event_id, event_time, received_time, machine_id, line_id, factory_id, "
+            + "duration_ms, defect_count, payload_hash) FROM STDIN";
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder chunk = new StringBuilder(CHUNK_ROWS * 160);
+        for (long i = 0; i < events; i++) {
+            Row row = row(i, random);
+            chunk.append(row.eventId).append('\t')
+                .append(COPY_TIMESTAMP.format(row.eventTime)).append('\t')
+                .append(COPY_TIMESTAMP.format(row.receivedTime)).append('\t')
+                .append(machineId(row.machine)).append('\t')
+                .append(lineId(row.machine)).append('\t')
+                .append(factoryId(row.machine)).append('\t')
+                .append(row.durationMs).append('\t')
+                .append(row.defectCount).append('\t')
+                .append(row.payloadHash).append('\n');
+            if ((i + 1) % CHUNK_ROWS == 0 || i + 1 == events) {
+                connection.getCopyAPI().copyIn(sql, new StringReader(chunk.toString()));
+                chunk.setLength(0);
+            }
+        }
+    }
+
+    private void insert(Connection connection) throws SQLException {
+        String sql = "INSERT INTO events (event_id, event_time, received_time, machine_id, line_id, factory_id, "
+            + "duration_ms, defect_count, payload_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            SplittableRandom random = new SplittableRandom(seed);
+            for (long i = 0; i < events; i++) {
+                Row row = row(i, random);
+                statement.setString(1, row.eventId);
+                statement.setTimestamp(2, Timestamp.from(row.eventTime));
+                statement.setTimestamp(3, Timestamp.from(row.receivedTime));
+                statement.setString(4, machineId(row.machine));
+                statement.setString(5, lineId(row.machine));
+                statement.setString(6, factoryId(row.machine));
+                statement.setLong(7, row.durationMs);
+                statement.setInt(8, row.defectCount);
+                statement.setString(9, row.payloadHash);
+                statement.addBatch();
+                if ((i + 1) % CHUNK_ROWS == 0 || i + 1 == events) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Row row(long index, SplittableRandom random) {
+        int machine = machine(random);
+        Instant eventTime = end.minusMillis(1 + random.nextLong(span.toMillis()));
+        Instant receivedTime = eventTime.plusMillis(random.nextLong(5_000));
+        // Per-line mean of 0.5 to 4.5 defects, exponentially distributed around it
+        double mean = 0.5 + (machine % lines) % 9 * 0.5;
+        int defectCount = (int) (-Math.log(1 - random.nextDouble()) * mean);
+        long durationMs = 500 + random.nextLong(5_000);
+        // Unique placeholder; these rows are never compared against a re-sent payload
+        String payloadHash = String.format("%064x", seed ^ index);
+        return new Row("syn-" + index, machine, eventTime, receivedTime, durationMs, defectCount, payloadHash);
+    }
+
+    private record Row(String eventId, int machine, Instant eventTime, Instant receivedTime,
+                       long durationMs, int defectCount, String payloadHash) {
+    }
+}
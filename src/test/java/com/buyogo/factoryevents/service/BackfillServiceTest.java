@@ -0,0 +1,268 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.BackfillResult;
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import com.buyogo.factoryevents.repository.EventWriteRepository;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class BackfillServiceTest {
+
+    @Mock
+    private EventService eventService;
+
+    @Mock
+    private EventWriteRepository eventWriteRepository;
+
+    @Mock
+    private MachineShardRepository machineShardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path dir;
+
+    private List<String> loaded;
+
+    @BeforeEach
+    void setUp() {
+        loaded = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Small ranges cut mid-line still load every NDJSON line exactly once")
+    void testRangesLoadEveryLineOnce() throws IOException {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add(ndjson("event-" + i));
+        }
+        Path file = write("events.ndjson", String.join("\n", lines) + "\n");
+        acceptAll();
+
+        // Act
+        BackfillResult result = service(37, 4).run(file, EventExportService.Format.NDJSON, checkpoint(file), false);
+
+        // Assert
+        assertThat(result.getRanges()).isGreaterThan(10);
+        assertThat(result.getLines()).isEqualTo(50);
+        assertThat(result.getAccepted()).isEqualTo(50);
+        assertThat(loaded).hasSize(50).doesNotHaveDuplicates();
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: CSV columns are located by header name, with quoting and CRLF line ends")
+    void testCsvByHeader() throws IOException {
+        // Arrange
+        Path file = write("events.csv",
+            "machineId,eventId,receivedTime,eventTime,lineId,factoryId,durationMs,defectCount\r\n"
+                + "machine-1,csv-1,2024-01-01T00:00:00.000Z,2024-01-15T10:00:00.000Z,\"line,1\",factory-1,1000,2\r\n"
+                + "machine-2,csv-2,,2024-01-15T10:00:01.000Z,,,500,-1\r\n");
+        List<EventRequest> requests = Collections.synchronizedList(new ArrayList<>());
+        when(eventService.processBatch(anyList(), anyList())).thenAnswer(invocation -> {
+            List<EventRequest> batch = invocation.getArgument(0);
+            requests.addAll(batch);
+            return accepted(batch.size());
+        });
+
+        // Act
+        BackfillResult result = service(1024, 1).run(file, EventExportService.Format.CSV, checkpoint(file), false);
+
+        // Assert
+        assertThat(result.getAccepted()).isEqualTo(2);
+        assertThat(requests).hasSize(2);
+        EventRequest first = requests.get(0);
+        assertThat(first.getEventId()).isEqualTo("csv-1");
+        assertThat(first.getEventTime()).isEqualTo(Instant.parse("2024-01-15T10:00:00Z"));
+        assertThat(first.getReceivedTime()).isNull();
+        assertThat(first.getLineId()).isEqualTo("line,1");
+        assertThat(first.getDefectCount()).isEqualTo(2);
+        assertThat(requests.get(1).getLineId()).isNull();
+        assertThat(requests.get(1).getFactoryId()).isNull();
+        assertThat(requests.get(1).getDefectCount()).isEqualTo(-1);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Malformed lines are counted as rejected and the rest of the range still loads")
+    void testMalformedLinesRejected() throws IOException {
+        // Arrange
+        Path file = write("events.ndjson", ndjson("good-1") + "\n{not json\n" + ndjson("good-2") + "\n");
+        acceptAll();
+
+        // Act
+        BackfillResult result = service(1024, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), false);
+
+        // Assert
+        assertThat(result.getLines()).isEqualTo(3);
+        assertThat(result.getRejected()).isEqualTo(1);
+        assertThat(loaded).containsExactly("good-1", "good-2");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: A rerun resumes after the checkpointed ranges and refuses a checkpoint of another file")
+    void testResumeFromCheckpoint() throws IOException {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lines.add(ndjson("resume-" + i));
+        }
+        Path file = write("events.ndjson", String.join("\n", lines) + "\n");
+        long rangeBytes = Files.size(file) / 2 + 1;
+        // First run fails on the second range after the first is loaded
+        when(eventService.processBatch(anyList(), anyList())).thenAnswer(invocation -> {
+            List<EventRequest> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(request -> request.getEventId().equals("resume-9"))) {
+                throw new IllegalStateException("database unavailable");
+            }
+            batch.forEach(request -> loaded.add(request.getEventId()));
+            return accepted(batch.size());
+        });
+        assertThatThrownBy(() -> service(rangeBytes, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), false))
+            .isInstanceOf(IllegalStateException.class);
+        int firstRun = loaded.size();
+        loaded.clear();
+        acceptAll();
+
+        // Act
+        BackfillResult result = service(rangeBytes, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), false);
+
+        // Assert
+        assertThat(firstRun).isBetween(1, 9);
+        assertThat(result.getSkippedRanges()).isEqualTo(1);
+        // The failed range is reloaded from its start; the loaded one is not touched again
+        assertThat(loaded).contains("resume-9").doesNotContain("resume-0");
+        assertThat(result.getLines()).isEqualTo(loaded.size());
+        assertThatThrownBy(() -> service(rangeBytes + 1, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), false))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("different file");
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: Deferred secondary indexes are recreated even when the load fails")
+    void testDeferredIndexesRecreatedOnFailure() throws IOException {
+        // Arrange
+        Path file = write("events.ndjson", ndjson("index-1") + "\n");
+        when(eventService.processBatch(anyList(), anyList())).thenThrow(new IllegalStateException("database unavailable"));
+
+        // Act
+        assertThatThrownBy(() -> service(1024, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), true))
+            .isInstanceOf(IllegalStateException.class);
+
+        // Assert
+        verify(eventWriteRepository).dropSecondaryIndexes();
+        verify(eventWriteRepository).createSecondaryIndexes();
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Test 6: Of two versions of an id in different ranges the later line wins, also when a rerun reloads the earlier range")
+    void testLaterVersionInFileWins() throws IOException {
+        // Arrange - the first range holds version 1 and fails once, the second holds version 2
+        String first = ndjson("versioned");
+        String second = ndjson("versioned").replace("\"defectCount\":1", "\"defectCount\":2");
+        Path file = write("events.ndjson", first + "\n" + ndjson("filler") + "\n" + second + "\n");
+        long rangeBytes = first.length() + 1;
+        Map<String, Instant> storedTime = new HashMap<>();
+        Map<String, Integer> storedDefects = new HashMap<>();
+        boolean[] failed = {false};
+        when(eventService.processBatch(anyList(), anyList())).thenAnswer(invocation -> {
+            List<EventRequest> batch = invocation.getArgument(0);
+            List<Instant> receivedTimes = invocation.getArgument(1);
+            if (!failed[0] && batch.get(0).getDefectCount() == 1 && batch.get(0).getEventId().equals("versioned")) {
+                failed[0] = true;
+                throw new IllegalStateException("database unavailable");
+            }
+            synchronized (storedTime) {
+                for (int i = 0; i < batch.size(); i++) {
+                    EventRequest request = batch.get(i);
+                    Instant stored = storedTime.get(request.getEventId());
+                    // The update rule of EventService: only a later received time replaces a row
+                    if (stored == null || receivedTimes.get(i).isAfter(stored)) {
+                        storedTime.put(request.getEventId(), receivedTimes.get(i));
+                        storedDefects.put(request.getEventId(), request.getDefectCount());
+                    }
+                }
+            }
+            return accepted(batch.size());
+        });
+        assertThatThrownBy(() -> service(rangeBytes, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), false))
+            .isInstanceOf(IllegalStateException.class);
+        int afterFailure = storedDefects.get("versioned");
+
+        // Act
+        BackfillResult result = service(rangeBytes, 1).run(file, EventExportService.Format.NDJSON, checkpoint(file), false);
+
+        // Assert
+        assertThat(afterFailure).isEqualTo(2);
+        assertThat(result.getSkippedRanges()).isPositive();
+        assertThat(storedDefects.get("versioned")).isEqualTo(2);
+        assertThat(storedTime.get("versioned")).isAfter(storedTime.get("filler"));
+    }
+
+    private BackfillService service(long rangeBytes, int threads) {
+        ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), machineShardRepository, transactionManager);
+        return new BackfillService(eventService, eventWriteRepository, shardRouter, new ObjectMapper(),
+            rangeBytes, 3, threads, Duration.ofSeconds(10));
+    }
+
+    private void acceptAll() {
+        when(eventService.processBatch(anyList(), anyList())).thenAnswer(invocation -> {
+            List<EventRequest> batch = invocation.getArgument(0);
+            batch.forEach(request -> loaded.add(request.getEventId()));
+            return accepted(batch.size());
+        });
+    }
+
+    private static BatchIngestionResponse accepted(int count) {
+        return BatchIngestionResponse.builder()
+            .accepted(count)
+            .rejections(List.of())
+            .build();
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    private Path checkpoint(Path file) {
+        return dir.resolve(file.getFileName() + ".checkpoint");
+    }
+
+    // Helper method
+    private static String ndjson(String eventId) {
+        return "{\"eventId\":\"" + eventId + "\",\"eventTime\":\"2024-01-15T10:00:00.000Z\",\"machineId\":\"machine-1\","
+            + "\"durationMs\":1000,\"defectCount\":1}";
+    }
+}
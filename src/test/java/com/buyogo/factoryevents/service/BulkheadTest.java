@@ -0,0 +1,111 @@
+package com.buyogo.factoryevents.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class BulkheadTest {
+
+    private MeterRegistry meterRegistry;
+
+    private Bulkhead bulkhead;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new Bulkhead("read", 1, 1, Duration.ofMillis(200), meterRegistry);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A queued call runs once the slot frees up")
+    void testQueuedCallRuns() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> holder = CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> await(release)));
+        awaitGauge("bulkhead.active", 1);
+
+        // Act
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> "done"));
+        awaitGauge("bulkhead.queued", 1);
+        release.countDown();
+
+        // Assert
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(holder.get(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(bulkhead.active()).isZero();
+        assertThat(meterRegistry.get("bulkhead.wait").tag("name", "read").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Calls beyond the queue are rejected at once, queued calls after the wait")
+    void testRejections() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> await(release)));
+        awaitGauge("bulkhead.active", 1);
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> "late"));
+        awaitGauge("bulkhead.queued", 1);
+
+        // Act & Assert
+        assertThatThrownBy(() -> bulkhead.execute(() -> "rejected"))
+                .isInstanceOf(BulkheadFullException.class)
+                .hasMessageContaining("queue is full");
+        assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(BulkheadFullException.class);
+        release.countDown();
+        assertThat(meterRegistry.get("bulkhead.rejected").tag("reason", "queue_full").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bulkhead.rejected").tag("reason", "timeout").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: A permit holds its slot until closed, and closing it twice releases it once")
+    void testPermitHeldUntilClosed() throws Exception {
+        // Arrange
+        Bulkhead.Permit permit = bulkhead.enter();
+
+        // Act
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> "done"));
+        awaitGauge("bulkhead.queued", 1);
+        permit.close();
+        String result = queued.get(1, TimeUnit.SECONDS);
+        permit.close();
+
+        // Assert
+        assertThat(result).isEqualTo("done");
+        assertThat(bulkhead.active()).isZero();
+        try (Bulkhead.Permit again = bulkhead.enter()) {
+            assertThat(bulkhead.active()).isEqualTo(1);
+            assertThatThrownBy(() -> CompletableFuture.supplyAsync(() -> bulkhead.execute(() -> "late")).get(1, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(BulkheadFullException.class);
+        }
+    }
+
+    private void awaitGauge(String name, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (meterRegistry.get(name).gauge().value() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(meterRegistry.get(name).gauge().value()).isEqualTo(expected);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.buyogo.factoryevents.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class EventIdLocksTest {
+
+    private MeterRegistry meterRegistry;
+
+    private EventIdLocks locks;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Few stripes, so unrelated ids share stripes
+        locks = new EventIdLocks(2, meterRegistry);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: A batch sharing an id waits; a batch with other ids on the same stripe does not")
+    void testOnlySharedIdsWait() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch holding = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> locks.withLocks(List.of("event-1", "event-2"), () -> {
+            holding.countDown();
+            return await(release);
+        }));
+        assertThat(holding.await(1, TimeUnit.SECONDS)).isTrue();
+
+        // Act
+        CompletableFuture<String> sharing = CompletableFuture.supplyAsync(() -> locks.withLocks(List.of("event-2", "event-3"), () -> "shared"));
+        String disjoint = CompletableFuture.supplyAsync(() -> locks.withLocks(List.of("event-4", "event-5", "event-6"), () -> "disjoint"))
+            .get(1, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        boolean sharingDoneEarly = sharing.isDone();
+        release.countDown();
+
+        // Assert
+        assertThat(disjoint).isEqualTo("disjoint");
+        assertThat(sharingDoneEarly).isFalse();
+        assertThat(sharing.get(1, TimeUnit.SECONDS)).isEqualTo("shared");
+        holder.get(1, TimeUnit.SECONDS);
+        assertThat(meterRegistry.get("events.write.id-lock-waits").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Overlapping batches in opposite orders all finish, and ids are released after a failure")
+    void testNoDeadlockAndReleaseOnFailure() throws Exception {
+        // Arrange
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add("event-" + i);
+        }
+        List<String> reversed = new ArrayList<>(ids);
+        Collections.reverse(reversed);
+        assertThatThrownBy(() -> locks.withLocks(ids, () -> {
+            throw new IllegalStateException("write failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // Act
+        List<CompletableFuture<Integer>> batches = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            List<String> order = i % 2 == 0 ? ids : reversed;
+            batches.add(CompletableFuture.supplyAsync(() -> locks.withLocks(order, order::size)));
+        }
+
+        // Assert
+        for (CompletableFuture<Integer> batch : batches) {
+            assertThat(batch.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: With 0 stripes the work runs without locking")
+    void testDisabled() throws Exception {
+        // Arrange
+        EventIdLocks disabled = new EventIdLocks(0, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> holder = CompletableFuture.supplyAsync(() -> disabled.withLocks(List.of("event-1"), () -> await(release)));
+
+        // Act
+        String second = CompletableFuture.supplyAsync(() -> disabled.withLocks(List.of("event-1"), () -> "ran"))
+            .get(1, TimeUnit.SECONDS);
+        release.countDown();
+
+        // Assert
+        assertThat(second).isEqualTo("ran");
+        assertThat(holder.get(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Inside a caller's transaction, ids are held until it completes")
+    void testReleasedAfterCallerTransaction() throws Exception {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<String> sharing;
+        boolean sharingDoneBeforeCommit;
+        try {
+            locks.withLocks(List.of("event-1"), () -> "written");
+
+            // Act
+            sharing = CompletableFuture.supplyAsync(() -> locks.withLocks(List.of("event-1"), () -> "shared"));
+            Thread.sleep(100);
+            sharingDoneBeforeCommit = sharing.isDone();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        assertThat(sharingDoneBeforeCommit).isFalse();
+        assertThat(sharing.get(1, TimeUnit.SECONDS)).isEqualTo("shared");
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class EventLookupServiceTest {
+
+    @Mock
+    private EventExportRepository exportRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private MachineShardRepository machineShardRepository;
+
+    private EventLookupService lookupService;
+
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), machineShardRepository, transactionManager);
+        lookupService = new EventLookupService(exportRepository, shardRouter, new SimpleMeterRegistry(), 2, 3);
+        now = Instant.parse("2024-01-15T12:00:00Z");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Misses are read once, in request order, and later served from the bounded cache")
+    void testMissesAreCached() {
+        // Arrange
+        when(exportRepository.findSnapshots(anyCollection())).thenReturn(List.of(event("e2", 1), event("e1", 1)));
+
+        // Act
+        List<String> first = List.copyOf(lookupService.findAll(List.of("e1", "unknown", "e2")).keySet());
+        lookupService.find("e1");
+        lookupService.find("e2");
+
+        // Assert
+        assertThat(first).containsExactly("e1", "e2");
+        verify(exportRepository, times(1)).findSnapshots(anyCollection());
+        assertThat(lookupService.cacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Committed writes refresh cached events without caching everything ingested")
+    void testCommittedWritesRefreshCache() {
+        // Arrange
+        when(exportRepository.findSnapshots(anyCollection())).thenReturn(List.of(event("e1", 1)));
+        lookupService.find("e1");
+
+        // Act
+        commit(event("e1", 4), event("e9", 1));
+
+        // Assert
+        assertThat(lookupService.find("e1")).map(EventSnapshot::getDefectCount).contains(4);
+        assertThat(lookupService.cacheSize()).isEqualTo(1);
+        verify(exportRepository, times(1)).findSnapshots(anyCollection());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: A read racing a committed write is not cached")
+    void testRacingReadNotCached() {
+        // Arrange - the write commits while the miss is reading the old row
+        when(exportRepository.findSnapshots(anyCollection()))
+            .thenAnswer(invocation -> {
+                commit(event("e1", 4));
+                return List.of(event("e1", 1));
+            })
+            .thenReturn(List.of(event("e1", 4)));
+
+        // Act
+        lookupService.find("e1");
+        EventSnapshot second = lookupService.find("e1").orElseThrow();
+
+        // Assert
+        assertThat(second.getDefectCount()).isEqualTo(4);
+        verify(exportRepository, times(2)).findSnapshots(anyCollection());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Empty or oversized id lists are rejected")
+    void testIdCountValidated() {
+        // Arrange
+        List<String> tooMany = IntStream.range(0, 4).mapToObj(i -> "e" + i).collect(Collectors.toList());
+
+        // Act & Assert
+        assertThatThrownBy(() -> lookupService.findAll(tooMany)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> lookupService.findAll(Collections.singletonList(" "))).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(exportRepository);
+    }
+
+    private void commit(EventSnapshot... written) {
+        lookupService.onEventsCommitted(new EventsCommittedEvent(
+            Arrays.stream(written).map(event -> new EventsCommittedEvent.Change(null, event)).toList()));
+    }
+
+    private EventSnapshot event(String eventId, int defectCount) {
+        return new EventSnapshot(eventId, now, now, "machine-1", "line-1", "factory-1", 1000L, defectCount);
+    }
+}
@@ -1,25 +1,38 @@
 package com.buyogo.factoryevents.service;
 
+import com.buyogo.factoryevents.config.ShardingProperties;
 import com.buyogo.factoryevents.dto.BatchIngestionResponse;
 import com.buyogo.factoryevents.dto.EventRequest;
 import com.buyogo.factoryevents.dto.RejectionDetail;
 import com.buyogo.factoryevents.entity.Event;
-import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.repository.EventWriteRepository;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
@@ -29,7 +42,17 @@ import static org.mockito.Mockito.*;
 class EventServiceTest {
 
     @Mock
-    private EventRepository eventRepository;
+    private EventWriteRepository eventWriteRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(new ShardingProperties(),
+            mock(MachineShardRepository.class), mock(PlatformTransactionManager.class));
+
+    @Spy
+    private EventIdLocks eventIdLocks = new EventIdLocks(16, new SimpleMeterRegistry());
 
     @InjectMocks
     private EventService eventService;
@@ -45,7 +68,7 @@ class EventServiceTest {
 
     @AfterEach
     void tearDown() {
-        reset(eventRepository);
+        reset(eventWriteRepository);
     }
 
     @Test
@@ -58,7 +81,7 @@ class EventServiceTest {
         // Create existing event with same payload
         Event existingEvent = createEventFromRequest(request, baseTime);
         
-        when(eventRepository.findAllById(List.of("event-001"))).thenReturn(List.of(existingEvent));
+        when(eventWriteRepository.findStored(List.of("event-001"))).thenReturn(Map.of("event-001", existingEvent));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -69,8 +92,9 @@ class EventServiceTest {
         assertThat(response.getUpdated()).isEqualTo(0);
         assertThat(response.getRejected()).isEqualTo(0);
         
-        verify(eventRepository, times(1)).findAllById(List.of("event-001"));
-        verify(eventRepository, never()).saveAll(anyList());
+        verify(eventWriteRepository, times(1)).findStored(List.of("event-001"));
+        verify(eventWriteRepository, never()).insert(anyList(), any());
+        verify(eventWriteRepository, never()).update(anyList(), any());
     }
 
     @Test
@@ -92,8 +116,7 @@ class EventServiceTest {
                 .payloadHash("different-hash")
                 .build();
         
-        when(eventRepository.findAllById(List.of("event-002"))).thenReturn(List.of(existingEvent));
-        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(eventWriteRepository.findStored(List.of("event-002"))).thenReturn(Map.of("event-002", existingEvent));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(newRequest));
@@ -104,13 +127,13 @@ class EventServiceTest {
         assertThat(response.getUpdated()).isEqualTo(1);
         assertThat(response.getRejected()).isEqualTo(0);
         
-        verify(eventRepository, times(1)).findAllById(List.of("event-002"));
-        verify(eventRepository, times(1)).saveAll(argThat(events -> {
+        verify(eventWriteRepository, times(1)).findStored(List.of("event-002"));
+        verify(eventWriteRepository, times(1)).update(argThat(events -> {
             List<Event> eventList = (List<Event>) events;
             return eventList.size() == 1 &&
                    eventList.get(0).getDurationMs().equals(2000L) &&
                    eventList.get(0).getDefectCount().equals(10);
-        }));
+        }), any());
     }
 
     @Test
@@ -132,7 +155,7 @@ class EventServiceTest {
                 .payloadHash("different-hash")
                 .build();
         
-        when(eventRepository.findAllById(List.of("event-003"))).thenReturn(List.of(existingEvent));
+        when(eventWriteRepository.findStored(List.of("event-003"))).thenReturn(Map.of("event-003", existingEvent));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(oldRequest));
@@ -143,8 +166,9 @@ class EventServiceTest {
         assertThat(response.getUpdated()).isEqualTo(0);
         assertThat(response.getRejected()).isEqualTo(0);
         
-        verify(eventRepository, times(1)).findAllById(List.of("event-003"));
-        verify(eventRepository, never()).saveAll(anyList());
+        verify(eventWriteRepository, times(1)).findStored(List.of("event-003"));
+        verify(eventWriteRepository, never()).insert(anyList(), any());
+        verify(eventWriteRepository, never()).update(anyList(), any());
     }
 
     @Test
@@ -154,7 +178,6 @@ class EventServiceTest {
         // Arrange
         EventRequest request = createValidEventRequest("event-004", baseTime, "machine-1", -100L, 5);
         
-        when(eventRepository.findAllById(anyList())).thenReturn(List.of());
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -170,7 +193,8 @@ class EventServiceTest {
         assertThat(rejection.getEventId()).isEqualTo("event-004");
         assertThat(rejection.getReason()).isEqualTo("INVALID_DURATION");
         
-        verify(eventRepository, never()).saveAll(anyList());
+        verify(eventWriteRepository, never()).insert(anyList(), any());
+        verify(eventWriteRepository, never()).update(anyList(), any());
     }
 
     @Test
@@ -181,7 +205,6 @@ class EventServiceTest {
         long invalidDuration = MAX_DURATION_MS + 1; // Just over 6 hours
         EventRequest request = createValidEventRequest("event-005", baseTime, "machine-1", invalidDuration, 5);
         
-        when(eventRepository.findAllById(anyList())).thenReturn(List.of());
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -195,7 +218,8 @@ class EventServiceTest {
         assertThat(rejection.getEventId()).isEqualTo("event-005");
         assertThat(rejection.getReason()).isEqualTo("INVALID_DURATION");
         
-        verify(eventRepository, never()).saveAll(anyList());
+        verify(eventWriteRepository, never()).insert(anyList(), any());
+        verify(eventWriteRepository, never()).update(anyList(), any());
     }
 
     @Test
@@ -206,7 +230,6 @@ class EventServiceTest {
         Instant futureTime = baseTime.plus(Duration.ofMinutes(20));
         EventRequest request = createValidEventRequest("event-006", futureTime, "machine-1", 1000L, 5);
         
-        when(eventRepository.findAllById(anyList())).thenReturn(List.of());
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -220,7 +243,8 @@ class EventServiceTest {
         assertThat(rejection.getEventId()).isEqualTo("event-006");
         assertThat(rejection.getReason()).isEqualTo("FUTURE_EVENT_TIME");
         
-        verify(eventRepository, never()).saveAll(anyList());
+        verify(eventWriteRepository, never()).insert(anyList(), any());
+        verify(eventWriteRepository, never()).update(anyList(), any());
     }
 
     @Test
@@ -230,8 +254,6 @@ class EventServiceTest {
         // Arrange
         EventRequest request = createValidEventRequest("event-007", baseTime, "machine-1", 1000L, -1);
         
-        when(eventRepository.findAllById(List.of("event-007"))).thenReturn(List.of());
-        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -242,12 +264,12 @@ class EventServiceTest {
         assertThat(response.getUpdated()).isEqualTo(0);
         assertThat(response.getRejected()).isEqualTo(0);
         
-        verify(eventRepository, times(1)).saveAll(argThat(events -> {
+        verify(eventWriteRepository, times(1)).insert(argThat(events -> {
             List<Event> eventList = (List<Event>) events;
             return eventList.size() == 1 &&
                    eventList.get(0).getEventId().equals("event-007") &&
                    eventList.get(0).getDefectCount().equals(-1);
-        }));
+        }), any());
     }
 
     @Test
@@ -257,8 +279,6 @@ class EventServiceTest {
         // Arrange
         EventRequest request = createValidEventRequest("event-008", baseTime, "machine-1", 1000L, 5);
         
-        when(eventRepository.findAllById(List.of("event-008"))).thenReturn(List.of());
-        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -270,7 +290,7 @@ class EventServiceTest {
         assertThat(response.getRejected()).isEqualTo(0);
         assertThat(response.getRejections()).isEmpty();
         
-        verify(eventRepository, times(1)).saveAll(anyList());
+        verify(eventWriteRepository, times(1)).insert(anyList(), any());
     }
 
     @Test
@@ -285,8 +305,6 @@ class EventServiceTest {
             createValidEventRequest("event-104", baseTime, "machine-1", 2000L, 10)           // New - should accept
         );
         
-        when(eventRepository.findAllById(anyList())).thenReturn(List.of());
-        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(requests);
@@ -296,10 +314,10 @@ class EventServiceTest {
         assertThat(response.getRejected()).isEqualTo(2);
         assertThat(response.getRejections()).hasSize(2);
         
-        verify(eventRepository, times(1)).saveAll(argThat(events -> {
+        verify(eventWriteRepository, times(1)).insert(argThat(events -> {
             List<Event> eventList = (List<Event>) events;
             return eventList.size() == 2;
-        }));
+        }), any());
     }
 
     @Test
@@ -348,7 +366,8 @@ class EventServiceTest {
         assertThat(response.getRejected()).isEqualTo(5);
         assertThat(response.getRejections()).hasSize(5);
         
-        verify(eventRepository, never()).saveAll(anyList());
+        verify(eventWriteRepository, never()).insert(anyList(), any());
+        verify(eventWriteRepository, never()).update(anyList(), any());
     }
 
     @Test
@@ -359,8 +378,6 @@ class EventServiceTest {
         EventRequest zeroDuration = createValidEventRequest("event-301", baseTime, "machine-1", 0L, 5);
         EventRequest maxValidDuration = createValidEventRequest("event-302", baseTime, "machine-1", MAX_DURATION_MS, 5);
         
-        when(eventRepository.findAllById(Arrays.asList("event-301", "event-302"))).thenReturn(List.of());
-        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(Arrays.asList(zeroDuration, maxValidDuration));
@@ -369,10 +386,10 @@ class EventServiceTest {
         assertThat(response.getAccepted()).isEqualTo(2);
         assertThat(response.getRejected()).isEqualTo(0);
         
-        verify(eventRepository, times(1)).saveAll(argThat(events -> {
+        verify(eventWriteRepository, times(1)).insert(argThat(events -> {
             List<Event> eventList = (List<Event>) events;
             return eventList.size() == 2;
-        }));
+        }), any());
     }
 
     @Test
@@ -383,8 +400,6 @@ class EventServiceTest {
         Instant exactly15Min = baseTime.plus(Duration.ofMinutes(15));
         EventRequest request = createValidEventRequest("event-401", exactly15Min, "machine-1", 1000L, 5);
         
-        when(eventRepository.findAllById(List.of("event-401"))).thenReturn(List.of());
-        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         BatchIngestionResponse response = eventService.processBatch(List.of(request));
@@ -393,7 +408,169 @@ class EventServiceTest {
         assertThat(response.getAccepted()).isEqualTo(1);
         assertThat(response.getRejected()).isEqualTo(0);
         
-        verify(eventRepository, times(1)).saveAll(anyList());
+        verify(eventWriteRepository, times(1)).insert(anyList(), any());
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("Test 13: An insert that loses a race to an identical concurrent insert is deduped")
+    void testConcurrentIdenticalInsertIsDeduped() {
+        // Arrange - not stored when the batch starts, inserted by another batch before ours
+        EventRequest request = createValidEventRequest("event-501", baseTime, "machine-1", 1000L, 5);
+        Event concurrentlyStored = createEventFromRequest(request, baseTime);
+
+        when(eventWriteRepository.findStored(List.of("event-501")))
+            .thenReturn(Map.of())
+            .thenReturn(Map.of("event-501", concurrentlyStored));
+        when(eventWriteRepository.insert(anyList(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        BatchIngestionResponse response = eventService.processBatch(List.of(request));
+
+        // Assert
+        assertThat(response.getAccepted()).isEqualTo(0);
+        assertThat(response.getDeduped()).isEqualTo(1);
+        assertThat(response.getUpdated()).isEqualTo(0);
+
+        verify(eventWriteRepository, times(2)).findStored(List.of("event-501"));
+        verify(eventWriteRepository, never()).update(anyList(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("Test 14: An update overtaken by a newer concurrent update is deduped")
+    void testStaleUpdateIsDeduped() {
+        // Arrange
+        EventRequest request = createValidEventRequest("event-502", baseTime, "machine-1", 2000L, 10);
+        Event existingEvent = Event.builder()
+                .eventId("event-502")
+                .eventTime(baseTime)
+                .receivedTime(baseTime.minus(Duration.ofMinutes(5)))
+                .machineId("machine-1")
+                .durationMs(1000L)
+                .defectCount(5)
+                .payloadHash("different-hash")
+                .build();
+
+        when(eventWriteRepository.findStored(List.of("event-502"))).thenReturn(Map.of("event-502", existingEvent));
+        when(eventWriteRepository.update(anyList(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        BatchIngestionResponse response = eventService.processBatch(List.of(request));
+
+        // Assert
+        assertThat(response.getDeduped()).isEqualTo(1);
+        assertThat(response.getUpdated()).isEqualTo(0);
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("Test 15: A group of batches gets one response per batch, later batches updating earlier ones")
+    void testGroupRespondsPerBatch() {
+        // Arrange
+        EventRequest first = createValidEventRequest("event-600", baseTime, "machine-1", 1000L, 1);
+        EventRequest invalid = createValidEventRequest("event-601", baseTime, null, 1000L, 1);
+        EventRequest second = createValidEventRequest("event-600", baseTime, "machine-1", 1000L, 7);
+        EventRequest other = createValidEventRequest("event-602", baseTime, "machine-2", 1000L, 0);
+
+        when(eventWriteRepository.findStored(List.of("event-600", "event-600", "event-602"))).thenReturn(Map.of());
+        List<Event> inserts = new ArrayList<>();
+        when(eventWriteRepository.insert(anyList(), any())).thenAnswer(invocation -> {
+            List<Event> batch = invocation.getArgument(0);
+            inserts.addAll(batch);
+            // The second event-600 conflicts with the first, inserted just before it in the same statement
+            return List.of(batch.get(1));
+        });
+        when(eventWriteRepository.findStored(List.of("event-600")))
+            .thenAnswer(invocation -> Map.of("event-600", inserts.get(0)));
+        when(eventWriteRepository.update(anyList(), any())).thenReturn(List.of());
+
+        // Act
+        List<BatchIngestionResponse> responses = eventService.processGroup(List.of(
+            List.of(first, invalid), List.of(second, other)));
+
+        // Assert
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(0).getAccepted()).isEqualTo(1);
+        assertThat(responses.get(0).getRejected()).isEqualTo(1);
+        assertThat(responses.get(0).getRejections().get(0).getReason()).isEqualTo("MISSING_MACHINE_ID");
+        assertThat(responses.get(1).getAccepted()).isEqualTo(1);
+        assertThat(responses.get(1).getUpdated()).isEqualTo(1);
+        assertThat(responses.get(1).getRejected()).isZero();
+        assertThat(inserts.get(1).getReceivedTime()).isAfter(inserts.get(0).getReceivedTime());
+
+        verify(eventWriteRepository).update(argThat(events -> events.size() == 1 && events.get(0).getDefectCount() == 7), any());
+        verify(eventPublisher, times(1)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @Order(16)
+    @DisplayName("Test 16: New events are inserted in event id order, repeats of an id kept in batch order")
+    void testInsertsSortedByEventId() {
+        // Arrange
+        List<EventRequest> requests = List.of(
+            createValidEventRequest("event-c", baseTime, "machine-1", 1000L, 1),
+            createValidEventRequest("event-a", baseTime, "machine-1", 1000L, 1),
+            createValidEventRequest("event-b", baseTime, "machine-1", 1000L, 1),
+            createValidEventRequest("event-a", baseTime, "machine-1", 1000L, 2));
+        when(eventWriteRepository.findStored(anyList())).thenReturn(Map.of());
+        List<Event> inserts = new ArrayList<>();
+        when(eventWriteRepository.insert(anyList(), any())).thenAnswer(invocation -> {
+            List<Event> batch = invocation.getArgument(0);
+            inserts.addAll(batch);
+            return List.of(batch.get(1));
+        });
+
+        // Act
+        BatchIngestionResponse response = eventService.processBatch(requests);
+
+        // Assert
+        assertThat(inserts).extracting(Event::getEventId).containsExactly("event-a", "event-a", "event-b", "event-c");
+        assertThat(inserts.get(0).getDefectCount()).isEqualTo(1);
+        assertThat(response.getAccepted()).isEqualTo(3);
+        assertThat(response.getDeduped()).isEqualTo(1);
+    }
+
+    @Test
+    @Order(17)
+    @DisplayName("Test 17: The received time is taken after the batch waited for its event id locks")
+    void testReceivedTimeStampedAfterLockWait() throws Exception {
+        // Arrange - another batch holds event-700 for a while
+        EventRequest request = createValidEventRequest("event-700", baseTime, "machine-1", 1000L, 1);
+        when(eventWriteRepository.findStored(anyList())).thenReturn(Map.of());
+        List<Event> inserts = new ArrayList<>();
+        when(eventWriteRepository.insert(anyList(), any())).thenAnswer(invocation -> {
+            inserts.addAll(invocation.getArgument(0));
+            return List.of();
+        });
+        CountDownLatch holding = new CountDownLatch(1);
+        AtomicReference<Instant> released = new AtomicReference<>();
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> eventIdLocks.withLocks(List.of("event-700"), () -> {
+            holding.countDown();
+            sleep(200);
+            released.set(Instant.now());
+            return null;
+        }));
+        assertThat(holding.await(1, TimeUnit.SECONDS)).isTrue();
+
+        // Act
+        eventService.processBatch(List.of(request));
+        holder.get(1, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(inserts).hasSize(1);
+        assertThat(inserts.get(0).getReceivedTime()).isAfterOrEqualTo(released.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     // Helper methods
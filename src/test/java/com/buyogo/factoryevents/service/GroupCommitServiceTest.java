@@ -0,0 +1,209 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.dto.BatchIngestionResponse;
+import com.buyogo.factoryevents.dto.EventRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class GroupCommitServiceTest {
+
+    private MeterRegistry meterRegistry;
+
+    private EventService eventService;
+
+    private GroupCommitService groupCommit;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        eventService = mock(EventService.class);
+        groupCommit = new GroupCommitService(eventService, meterRegistry, true, 0, 100, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommit.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Batches queued behind a running group are committed together, each caller getting its own response")
+    void testQueuedBatchesShareOneGroup() throws Exception {
+        // Arrange - the first group holds the writer until released
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> groupSizes = new ArrayList<>();
+        when(eventService.processGroup(anyList())).thenAnswer(invocation -> {
+            List<List<EventRequest>> batches = invocation.getArgument(0);
+            groupSizes.add(batches.size());
+            if (groupSizes.size() == 1) {
+                release.await(1, TimeUnit.SECONDS);
+            }
+            return batches.stream().map(batch -> accepted(batch.size())).toList();
+        });
+        CompletableFuture<BatchIngestionResponse> holder = submitAsync(1);
+        awaitWriterBusy(groupSizes);
+
+        // Act
+        List<CompletableFuture<BatchIngestionResponse>> queued = List.of(submitAsync(2), submitAsync(3), submitAsync(4));
+        awaitGauge("events.group-commit.queued", 3);
+        release.countDown();
+
+        // Assert
+        assertThat(holder.get(1, TimeUnit.SECONDS).getAccepted()).isEqualTo(1);
+        for (int i = 0; i < queued.size(); i++) {
+            assertThat(queued.get(i).get(1, TimeUnit.SECONDS).getAccepted()).isEqualTo(i + 2);
+        }
+        assertThat(groupSizes).containsExactly(1, 3);
+        assertThat(meterRegistry.get("events.group-commit.events").summary().totalAmount()).isEqualTo(10);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: A failed group is retried batch by batch so only the bad batch fails")
+    void testFailedGroupRetriedPerBatch() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> groupSizes = new ArrayList<>();
+        when(eventService.processGroup(anyList())).thenAnswer(invocation -> {
+            List<List<EventRequest>> batches = invocation.getArgument(0);
+            groupSizes.add(batches.size());
+            if (groupSizes.size() == 1) {
+                release.await(1, TimeUnit.SECONDS);
+                return List.of(accepted(batches.get(0).size()));
+            }
+            throw new IllegalStateException("value too long");
+        });
+        when(eventService.processBatch(anyList())).thenAnswer(invocation -> {
+            List<EventRequest> batch = invocation.getArgument(0);
+            if (batch.size() == 3) {
+                throw new IllegalStateException("value too long");
+            }
+            return accepted(batch.size());
+        });
+        submitAsync(1);
+        awaitWriterBusy(groupSizes);
+
+        // Act
+        CompletableFuture<BatchIngestionResponse> good = submitAsync(2);
+        CompletableFuture<BatchIngestionResponse> bad = submitAsync(3);
+        awaitGauge("events.group-commit.queued", 2);
+        release.countDown();
+
+        // Assert
+        assertThat(good.get(1, TimeUnit.SECONDS).getAccepted()).isEqualTo(2);
+        assertThatThrownBy(() -> bad.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        verify(eventService, times(2)).processBatch(anyList());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: After a partial shard failure only uncommitted events are retried and committed rows stay accepted")
+    void testPartialFailureRetriesOnlyUncommittedEvents() throws Exception {
+        // Arrange - the second group commits batch 2 and half of batch 4, then fails the rest
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> groupSizes = new ArrayList<>();
+        List<List<EventRequest>> retried = new ArrayList<>();
+        when(eventService.processGroup(anyList())).thenAnswer(invocation -> {
+            List<List<EventRequest>> batches = invocation.getArgument(0);
+            groupSizes.add(batches.size());
+            if (groupSizes.size() == 1) {
+                release.await(1, TimeUnit.SECONDS);
+                return List.of(accepted(batches.get(0).size()));
+            }
+            throw new PartialCommitException(new IllegalStateException("shard west unavailable"),
+                List.of(accepted(2), accepted(2)),
+                List.of(List.of(), batches.get(1).subList(2, 4)));
+        });
+        when(eventService.processBatch(anyList())).thenAnswer(invocation -> {
+            List<EventRequest> batch = invocation.getArgument(0);
+            retried.add(batch);
+            return accepted(batch.size());
+        });
+        submitAsync(1);
+        awaitWriterBusy(groupSizes);
+
+        // Act
+        CompletableFuture<BatchIngestionResponse> committed = submitAsync(2);
+        awaitGauge("events.group-commit.queued", 1);
+        CompletableFuture<BatchIngestionResponse> split = submitAsync(4);
+        awaitGauge("events.group-commit.queued", 2);
+        release.countDown();
+
+        // Assert
+        assertThat(committed.get(1, TimeUnit.SECONDS).getAccepted()).isEqualTo(2);
+        BatchIngestionResponse merged = split.get(1, TimeUnit.SECONDS);
+        assertThat(merged.getAccepted()).isEqualTo(4);
+        assertThat(merged.getDeduped()).isZero();
+        assertThat(retried).hasSize(1);
+        assertThat(retried.get(0)).extracting(EventRequest::getEventId).containsExactly("event-4-2", "event-4-3");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Large batches and a disabled stage run directly on the caller's thread")
+    void testBypass() {
+        // Arrange
+        when(eventService.processBatch(anyList())).thenAnswer(invocation ->
+            accepted(invocation.<List<EventRequest>>getArgument(0).size()));
+        GroupCommitService disabled = new GroupCommitService(eventService, new SimpleMeterRegistry(), false, 0, 100, 1);
+
+        // Act
+        BatchIngestionResponse large = groupCommit.submit(batch(100));
+        BatchIngestionResponse small = disabled.submit(batch(5));
+
+        // Assert
+        assertThat(large.getAccepted()).isEqualTo(100);
+        assertThat(small.getAccepted()).isEqualTo(5);
+        verify(eventService, never()).processGroup(anyList());
+    }
+
+    private CompletableFuture<BatchIngestionResponse> submitAsync(int size) {
+        List<EventRequest> events = batch(size);
+        return CompletableFuture.supplyAsync(() -> groupCommit.submit(events));
+    }
+
+    private void awaitWriterBusy(List<Integer> groupSizes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (groupSizes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(groupSizes).hasSize(1);
+    }
+
+    private void awaitGauge(String name, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (meterRegistry.get(name).gauge().value() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(meterRegistry.get(name).gauge().value()).isEqualTo(expected);
+    }
+
+    private static List<EventRequest> batch(int size) {
+        List<EventRequest> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            events.add(EventRequest.builder().eventId("event-" + size + "-" + i).build());
+        }
+        return events;
+    }
+
+    private static BatchIngestionResponse accepted(int count) {
+        return BatchIngestionResponse.builder()
+                .accepted(count)
+                .rejections(List.of())
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package com.buyogo.factoryevents.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class IngestionAdmissionTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(5000);
+
+    private MeterRegistry meterRegistry;
+
+    private IngestionAdmission admission;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // limit 1000 (min 500, max 2000), +100 per window, x0.5 backoff, 1s target, 1000 queued, 200ms wait
+        admission = new IngestionAdmission(meterRegistry, null, 1000, 500, 2000, 100, 0.5, 1000, 1000, 200);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Fast commits under load raise the limit additively, up to the maximum")
+    void testAdditiveIncrease() {
+        // Act - ten completed windows of 1000 events
+        for (int i = 0; i < 10; i++) {
+            admission.acquire(1000);
+            admission.release(1000, FAST, false);
+        }
+        long raised = admission.currentLimit();
+        for (int i = 0; i < 100; i++) {
+            admission.acquire(1000);
+            admission.release(1000, FAST, false);
+        }
+
+        // Assert
+        assertThat(raised).isBetween(1500L, 1999L);
+        assertThat(admission.currentLimit()).isEqualTo(2000);
+        assertThat(meterRegistry.get("events.admission.limit").gauge().value()).isEqualTo(2000);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: A slow or failed commit halves the limit once per target latency, down to the minimum")
+    void testMultiplicativeDecrease() {
+        // Act
+        admission.acquire(100);
+        admission.release(100, SLOW, false);
+        long afterFirst = admission.currentLimit();
+        admission.acquire(100);
+        admission.release(100, SLOW, false);
+
+        // Assert - the second slow commit falls in the same congestion window
+        assertThat(afterFirst).isEqualTo(500);
+        assertThat(admission.currentLimit()).isEqualTo(500);
+        assertThatThrownBy(() -> admission.admit(100, () -> {
+            throw new DataAccessResourceFailureException("pool exhausted");
+        })).isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(admission.inFlight()).isZero();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Batches over the limit queue, then are shed with a Retry-After")
+    void testQueueAndShed() throws Exception {
+        // Arrange - an oversized batch is admitted on its own
+        admission.acquire(1500);
+
+        // Act
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> admission.acquire(400));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (admission.queued() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        long queued = admission.queued();
+
+        // Assert
+        assertThat(queued).isEqualTo(400);
+        assertThatThrownBy(() -> admission.acquire(700))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .satisfies(e -> assertThat(((AdmissionRejectedException) e).getRetryAfterSeconds()).isBetween(1L, 60L));
+        admission.release(1500, FAST, false);
+        waiting.get(1, TimeUnit.SECONDS);
+        assertThat(admission.inFlight()).isEqualTo(400);
+        assertThatThrownBy(() -> admission.acquire(900))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .hasMessageContaining("timed out");
+        assertThat(meterRegistry.get("events.admission.rejected").tag("reason", "queue_full").counter().count())
+                .isEqualTo(700);
+        assertThat(meterRegistry.get("events.admission.rejected").tag("reason", "timeout").counter().count())
+                .isEqualTo(900);
+        assertThat(meterRegistry.get("events.admission.queue.wait").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: A batch larger than the whole queue waits when nothing else is queued")
+    void testOversizedBatchWaitsInEmptyQueue() throws Exception {
+        // Arrange
+        admission.acquire(100);
+
+        // Act
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> admission.acquire(1500));
+        long deadline = System.currentTimeMillis() + 1000;
+        while (admission.queued() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        long queued = admission.queued();
+
+        // Assert - others queueing behind it are still bounded
+        assertThat(queued).isEqualTo(1500);
+        assertThatThrownBy(() -> admission.acquire(950))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .hasMessageContaining("queue is full");
+        admission.release(100, FAST, false);
+        waiting.get(1, TimeUnit.SECONDS);
+        assertThat(admission.inFlight()).isEqualTo(1500);
+        assertThat(meterRegistry.get("events.admission.rejected").tag("reason", "queue_full").counter().count())
+                .isEqualTo(950);
+    }
+}
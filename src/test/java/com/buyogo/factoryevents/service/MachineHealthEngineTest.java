@@ -0,0 +1,233 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.EventExportRow;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.dto.MachineHealthResponse;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class MachineHealthEngineTest {
+
+    @Mock
+    private EventExportRepository exportRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private MachineShardRepository machineShardRepository;
+
+    private MachineHealthEngine engine;
+
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), machineShardRepository, transactionManager);
+        engine = new MachineHealthEngine(exportRepository, shardRouter,
+                Duration.ofMinutes(15), Duration.ofHours(2), 0.5, Duration.ofHours(12));
+        now = Instant.parse("2024-01-15T12:00:00Z");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Only machines over the threshold are listed, worst first")
+    void testWarningMachinesListed() {
+        // Arrange
+        commit(insert("e1", "machine-1", now, 3), insert("e2", "machine-2", now, 6),
+                insert("e3", "machine-3", now, 0), insert("e4", "machine-4", now, -1));
+
+        // Act
+        List<MachineHealthResponse> warnings = engine.getWarningMachines(now);
+
+        // Assert - 3 defects against a 15 minute half-life is about 8.3 defects per hour
+        assertThat(warnings).extracting(MachineHealthResponse::getMachineId).containsExactly("machine-2", "machine-1");
+        assertThat(warnings.get(1).getDefectRate()).isEqualTo(8.3);
+        assertThat(warnings.get(1).getStatus()).isEqualTo("Warning");
+        assertThat(warnings.get(1).getLastEventTime()).isEqualTo(now);
+        assertThat(engine.machineCount()).isEqualTo(4);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Rates decay with time, including for events arriving out of order")
+    void testRatesDecay() {
+        // Arrange - the older event is added pre-decayed by one half-life
+        commit(insert("e1", "machine-1", now, 2));
+        commit(insert("e0", "machine-1", now.minus(Duration.ofMinutes(15)), 2));
+
+        // Act
+        List<MachineHealthResponse> current = engine.getWarningMachines(now);
+        List<MachineHealthResponse> later = engine.getWarningMachines(now.plus(Duration.ofHours(2)));
+
+        // Assert
+        assertThat(current).hasSize(1);
+        assertThat(current.get(0).getDefectRate()).isEqualTo(8.3);
+        assertThat(current.get(0).getLastEventTime()).isEqualTo(now);
+        assertThat(later).isEmpty();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: An update retracts the defects of the replaced version")
+    void testUpdateRetracts() {
+        // Arrange
+        EventSnapshot original = snapshot("e1", "machine-1", now, 5, now);
+        commit(new EventsCommittedEvent.Change(null, original));
+
+        // Act
+        commit(new EventsCommittedEvent.Change(original, snapshot("e1", "machine-1", now, 0, now.plusSeconds(1))));
+
+        // Assert
+        assertThat(engine.getWarningMachines(now)).isEmpty();
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Trend compares the short-term rate against the long-term baseline")
+    void testTrend() {
+        // Arrange
+        commit(insert("e1", "machine-1", now, 3));
+        commit(insert("e2", "machine-2", now.minus(Duration.ofHours(1)), 60));
+
+        // Act
+        List<MachineHealthResponse> warnings = engine.getWarningMachines(now);
+
+        // Assert
+        MachineHealthResponse rising = warnings.stream().filter(w -> w.getMachineId().equals("machine-1")).findFirst().orElseThrow();
+        MachineHealthResponse falling = warnings.stream().filter(w -> w.getMachineId().equals("machine-2")).findFirst().orElseThrow();
+        assertThat(rising.getTrend()).isEqualTo(MachineHealthEngine.RISING);
+        assertThat(falling.getTrend()).isEqualTo(MachineHealthEngine.FALLING);
+        assertThat(falling.getBaselineDefectRate()).isGreaterThan(falling.getDefectRate());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: Rebuild replays recent events, leaving rows received since to the live listener")
+    void testRebuild() {
+        // Arrange
+        Instant recent = Instant.now().minus(Duration.ofMinutes(1));
+        doAnswer(invocation -> {
+            Consumer<EventExportRow> sink = invocation.getArgument(3);
+            sink.accept(row("r1", "machine-1", recent, 4, recent));
+            sink.accept(row("r2", "machine-2", recent, 4, Instant.now().plus(Duration.ofMinutes(1))));
+            return null;
+        }).when(exportRepository).streamEvents(any(), isNull(), isNull(), any());
+
+        // Act
+        boolean rebuildingBefore = engine.isRebuilding();
+        engine.rebuild();
+
+        // Assert
+        assertThat(engine.getWarningMachines()).extracting(MachineHealthResponse::getMachineId).containsExactly("machine-1");
+        verify(exportRepository).streamEvents(any(), isNull(), isNull(), any());
+        assertThat(rebuildingBefore).isTrue();
+        assertThat(engine.isRebuilding()).isFalse();
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Test 6: Updates racing the rebuild retract only versions that were counted")
+    void testRebuildRacingUpdates() {
+        // Arrange - both events were received before the start and are updated while the scan runs
+        Instant received = Instant.now().minus(Duration.ofMinutes(2));
+        Instant eventTime = Instant.now().minus(Duration.ofMinutes(1));
+        Instant updated = Instant.now().plus(Duration.ofMinutes(1));
+        EventSnapshot first = snapshot("u1", "machine-1", eventTime, 10, received);
+        EventSnapshot second = snapshot("u2", "machine-2", eventTime, 10, received);
+        doAnswer(invocation -> {
+            Consumer<EventExportRow> sink = invocation.getArgument(3);
+            // machine-1: the scan reads the new version, which it leaves to the listener
+            commit(new EventsCommittedEvent.Change(first, snapshot("u1", "machine-1", eventTime, 3, updated)));
+            sink.accept(row("u1", "machine-1", eventTime, 3, updated));
+            // machine-2: the scan's snapshot still has the replaced version
+            commit(new EventsCommittedEvent.Change(second, snapshot("u2", "machine-2", eventTime, 3, updated)));
+            sink.accept(row("u2", "machine-2", eventTime, 10, received));
+            return null;
+        }).when(exportRepository).streamEvents(any(), isNull(), isNull(), any());
+
+        // Act
+        engine.rebuild();
+        commit(new EventsCommittedEvent.Change(snapshot("u1", "machine-1", eventTime, 3, updated),
+                snapshot("u1", "machine-1", eventTime, 3, updated.plusSeconds(1))));
+
+        // Assert - each machine holds exactly the 3 defects of its current version
+        List<MachineHealthResponse> warnings = engine.getWarningMachines(eventTime);
+        assertThat(warnings).extracting(MachineHealthResponse::getMachineId)
+                .containsExactlyInAnyOrder("machine-1", "machine-2");
+        assertThat(warnings).extracting(MachineHealthResponse::getDefectRate).containsOnly(8.3);
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Test 7: Machines keep their own slot across table growth and hash collisions")
+    void testSlotsSurviveGrowth() {
+        // Arrange - "Aa" and "BB" share a hash code
+        List<EventsCommittedEvent.Change> changes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            changes.add(insert("g" + i, "machine-" + i, now, i % 100 == 0 ? 6 : 0));
+        }
+        changes.add(insert("aa", "Aa", now, 6));
+        changes.add(insert("bb", "BB", now, 0));
+        engine.onEventsCommitted(new EventsCommittedEvent(changes));
+
+        // Act - the same machines again, one more defect each for the listed ones
+        commit(insert("g2-0", "machine-0", now, 1), insert("g2-500", "machine-500", now, 0),
+                insert("bb2", "BB", now, 6));
+        List<MachineHealthResponse> warnings = engine.getWarningMachines(now);
+
+        // Assert
+        assertThat(engine.machineCount()).isEqualTo(1002);
+        assertThat(warnings).hasSize(12);
+        assertThat(warnings.get(0).getMachineId()).isEqualTo("machine-0");
+        assertThat(warnings).extracting(MachineHealthResponse::getMachineId).contains("Aa", "BB", "machine-900");
+        assertThat(warnings).extracting(MachineHealthResponse::getDefectRate).containsOnly(19.4, 16.6);
+    }
+
+    private void commit(EventsCommittedEvent.Change... changes) {
+        engine.onEventsCommitted(new EventsCommittedEvent(List.of(changes)));
+    }
+
+    private EventsCommittedEvent.Change insert(String eventId, String machineId, Instant eventTime, int defectCount) {
+        return new EventsCommittedEvent.Change(null, snapshot(eventId, machineId, eventTime, defectCount, eventTime));
+    }
+
+    // Helper method
+    private EventSnapshot snapshot(String eventId, String machineId, Instant eventTime, int defectCount,
+                                   Instant receivedTime) {
+        return new EventSnapshot(eventId, eventTime, receivedTime, machineId, "line-1", "factory-1", 1000L, defectCount);
+    }
+
+    private EventExportRow row(String eventId, String machineId, Instant eventTime, int defectCount,
+                               Instant receivedTime) {
+        return EventExportRow.builder()
+                .eventId(eventId)
+                .eventTime(eventTime)
+                .receivedTime(receivedTime)
+                .machineId(machineId)
+                .lineId("line-1")
+                .factoryId("factory-1")
+                .durationMs(1000L)
+                .defectCount(defectCount)
+                .build();
+    }
+}
@@ -1,21 +1,31 @@
 package com.buyogo.factoryevents.service;
 
+import com.buyogo.factoryevents.archive.ArchiveStore;
+import com.buyogo.factoryevents.config.ShardingProperties;
 import com.buyogo.factoryevents.dto.StatsResponse;
+import com.buyogo.factoryevents.dto.StatsWindow;
 import com.buyogo.factoryevents.dto.TopDefectLineResponse;
 import com.buyogo.factoryevents.repository.EventRepository;
+import com.buyogo.factoryevents.repository.MachineStatsRepository;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -27,6 +37,16 @@ class StatsServiceTest {
     @Mock
     private EventRepository eventRepository;
 
+    @Mock
+    private MachineStatsRepository machineStatsRepository;
+
+    @Mock
+    private ArchiveStore archiveStore;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(new ShardingProperties(),
+            mock(MachineShardRepository.class), mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private StatsService statsService;
 
@@ -448,4 +468,104 @@ class StatsServiceTest {
         assertThat(response.getAvgDefectRate()).isEqualTo(3.0); // 12 defects / 4 hours
         assertThat(response.getStatus()).isEqualTo("Warning");
     }
+
+    @Test
+    @Order(17)
+    @DisplayName("Test multi-window stats - one scan, one response per window in order")
+    void testMultiWindowStats() {
+        // Arrange
+        String machineId = "machine-1";
+        Instant end = baseTime.plus(Duration.ofDays(7));
+        List<StatsWindow> windows = List.of(
+                new StatsWindow(end.minus(Duration.ofHours(1)), end),
+                new StatsWindow(end.minus(Duration.ofDays(1)), end),
+                new StatsWindow(end.minus(Duration.ofDays(7)), end));
+        when(machineStatsRepository.totals(machineId, windows))
+                .thenReturn(List.of(new long[] {3, 4}, new long[] {30, 24}, new long[] {200, 84}));
+
+        // Act
+        List<StatsResponse> responses = statsService.getMachineStats(machineId, windows);
+
+        // Assert
+        verify(machineStatsRepository, times(1)).totals(machineId, windows);
+        verifyNoInteractions(eventRepository);
+        assertThat(responses).extracting(StatsResponse::getEventsCount).containsExactly(3L, 30L, 200L);
+        assertThat(responses).extracting(StatsResponse::getAvgDefectRate).containsExactly(4.0, 1.0, 0.5);
+        assertThat(responses).extracting(StatsResponse::getStatus).containsExactly("Warning", "Healthy", "Healthy");
+        assertThat(responses.get(1).getStart()).isEqualTo(end.minus(Duration.ofDays(1)));
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("Test multi-window stats - empty, oversized and inverted window lists are rejected")
+    void testMultiWindowStatsValidation() {
+        // Arrange
+        List<StatsWindow> tooMany = new ArrayList<>();
+        for (int i = 0; i <= StatsService.MAX_WINDOWS; i++) {
+            tooMany.add(new StatsWindow(baseTime, baseTime.plus(Duration.ofHours(i + 1))));
+        }
+
+        // Act & Assert
+        assertThatThrownBy(() -> statsService.getMachineStats("machine-1", List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> statsService.getMachineStats("machine-1", tooMany))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> statsService.getMachineStats("machine-1",
+                List.of(new StatsWindow(baseTime.plusSeconds(1), baseTime))))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(machineStatsRepository);
+    }
+
+    @Test
+    @Order(19)
+    @DisplayName("Test multi-window stats - windows reaching into the archive add archived totals")
+    void testMultiWindowStatsFederatesArchive() {
+        // Arrange
+        String machineId = "machine-1";
+        Instant end = baseTime.plus(Duration.ofDays(7));
+        List<StatsWindow> windows = List.of(
+                new StatsWindow(end.minus(Duration.ofHours(1)), end),
+                new StatsWindow(end.minus(Duration.ofDays(7)), end));
+        when(machineStatsRepository.totals(machineId, windows))
+                .thenReturn(List.of(new long[] {3, 4}, new long[] {100, 40}));
+        when(archiveStore.archivedUntil()).thenReturn(Optional.of(end.minus(Duration.ofDays(5))));
+        when(archiveStore.machineTotals(machineId, windows))
+                .thenReturn(List.of(new long[] {0, 0}, new long[] {100, 44}));
+
+        // Act
+        List<StatsResponse> responses = statsService.getMachineStats(machineId, windows);
+
+        // Assert
+        assertThat(responses).extracting(StatsResponse::getEventsCount).containsExactly(3L, 200L);
+        assertThat(responses).extracting(StatsResponse::getDefectsCount).containsExactly(4L, 84L);
+    }
+
+    @Test
+    @Order(20)
+    @DisplayName("Test top defect lines - archived lines are merged and re-ranked; hot-only windows skip the archive")
+    void testTopDefectLinesFederatesArchive() {
+        // Arrange
+        String factoryId = "factory-1";
+        Instant from = baseTime;
+        Instant to = baseTime.plus(Duration.ofDays(30));
+        when(eventRepository.findTopDefectLines(eq(factoryId), any(Instant.class), eq(to)))
+                .thenReturn(Arrays.asList(
+                        new Object[] {"line-1", 50L, 10L},
+                        new Object[] {"line-2", 20L, 10L}));
+        when(archiveStore.archivedUntil()).thenReturn(Optional.of(baseTime.plus(Duration.ofDays(10))));
+        when(archiveStore.lineTotals(factoryId, from, to))
+                .thenReturn(Map.of("line-2", new long[] {40, 10}, "line-3", new long[] {5, 5}));
+
+        // Act
+        List<TopDefectLineResponse> federated = statsService.getTopDefectLines(factoryId, from, to, 10);
+        List<TopDefectLineResponse> hotOnly = statsService.getTopDefectLines(
+                factoryId, baseTime.plus(Duration.ofDays(10)), to, 10);
+
+        // Assert
+        assertThat(federated).extracting(TopDefectLineResponse::getLineId).containsExactly("line-2", "line-1", "line-3");
+        assertThat(federated.get(0).getTotalDefects()).isEqualTo(60L);
+        assertThat(federated.get(0).getEventCount()).isEqualTo(20L);
+        assertThat(hotOnly).extracting(TopDefectLineResponse::getLineId).containsExactly("line-1", "line-2");
+        verify(archiveStore, times(1)).lineTotals(any(), any(), any());
+    }
 }
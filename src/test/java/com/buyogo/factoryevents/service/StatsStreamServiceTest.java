@@ -0,0 +1,177 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.EventExportRow;
+import com.buyogo.factoryevents.dto.EventSnapshot;
+import com.buyogo.factoryevents.dto.StatsResponse;
+import com.buyogo.factoryevents.repository.EventExportRepository;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class StatsStreamServiceTest {
+
+    @Mock
+    private EventExportRepository exportRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private MachineShardRepository machineShardRepository;
+
+    private StatsStreamService service;
+
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), machineShardRepository, transactionManager);
+        service = new StatsStreamService(exportRepository, shardRouter, Duration.ofHours(1), 16, 60_000, 1);
+        now = Instant.now().minus(Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Changes committed during a seed are replayed once, skipping versions the snapshot read")
+    void testChangesDuringSeedReplayed() {
+        // Arrange - the snapshot reads e1 and e3; meanwhile e1 is updated, e2 inserted, and e3's insert is announced
+        EventSnapshot e1 = snapshot("e1", "machine-1", 1, now);
+        EventSnapshot e3 = snapshot("e3", "machine-1", 2, now);
+        doAnswer(invocation -> {
+            Consumer<EventExportRow> sink = invocation.getArgument(3);
+            sink.accept(EventExportRow.of(e1));
+            sink.accept(EventExportRow.of(e3));
+            service.onEventsCommitted(new EventsCommittedEvent(List.of(
+                    new EventsCommittedEvent.Change(e1, snapshot("e1", "machine-1", 4, now.plusSeconds(1))),
+                    new EventsCommittedEvent.Change(null, snapshot("e2", "machine-1", 3, now.plusSeconds(1))),
+                    new EventsCommittedEvent.Change(null, e3))));
+            return null;
+        }).when(exportRepository).streamEvents(any(), isNull(), isNull(), any());
+
+        // Act
+        service.subscribe("machine-1", null);
+
+        // Assert
+        StatsResponse stats = service.currentStats("machine-1", Instant.now());
+        assertThat(stats.getEventsCount()).isEqualTo(3);
+        assertThat(stats.getDefectsCount()).isEqualTo(4 + 3 + 2);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: A slow factory seed does not block the commit listener; new machines it buffered get windows")
+    void testSlowSeedDoesNotBlockListener() throws Exception {
+        // Arrange
+        CountDownLatch seeding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<EventExportRow> sink = invocation.getArgument(3);
+            sink.accept(EventExportRow.of(snapshot("e1", "machine-1", 1, now)));
+            seeding.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(exportRepository).streamEvents(any(), isNull(), isNull(), any());
+        CompletableFuture<Void> subscribed = CompletableFuture.runAsync(() -> service.subscribe(null, "factory-1"));
+        assertThat(seeding.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Act
+        CompletableFuture<Void> committed = CompletableFuture.runAsync(() -> service.onEventsCommitted(new EventsCommittedEvent(
+                List.of(new EventsCommittedEvent.Change(null, snapshot("e2", "machine-2", 5, now.plusSeconds(1)))))));
+        committed.get(1, TimeUnit.SECONDS);
+        release.countDown();
+        subscribed.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(service.currentStats("machine-1", Instant.now()).getEventsCount()).isEqualTo(1);
+        assertThat(service.currentStats("machine-2", Instant.now()).getDefectsCount()).isEqualTo(5);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: A subscriber connecting between a window slide and the tick does not swallow the update")
+    void testSubscribeBetweenSlideAndTick() throws Exception {
+        // Arrange - machine-1 has one event; the window later slides past it
+        List<BlockingQueue<Object>> streams = new CopyOnWriteArrayList<>();
+        StatsStreamService recording = new StatsStreamService(exportRepository,
+                new ShardRouter(new ShardingProperties(), machineShardRepository, transactionManager),
+                Duration.ofHours(1), 16, 60_000, 1) {
+            @Override
+            SseEmitter newEmitter() {
+                BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+                streams.add(received);
+                return new SseEmitter() {
+                    @Override
+                    public void send(SseEventBuilder builder) {
+                        builder.build().forEach(part -> received.add(part.getData()));
+                    }
+                };
+            }
+        };
+        doAnswer(invocation -> {
+            Consumer<EventExportRow> sink = invocation.getArgument(3);
+            sink.accept(EventExportRow.of(snapshot("e1", "machine-1", 1, now)));
+            return null;
+        }).when(exportRepository).streamEvents(any(), isNull(), isNull(), any());
+        Instant slid = Instant.now().plus(Duration.ofHours(2));
+        try {
+            recording.subscribe("machine-1", null);
+            assertThat(nextStats(streams.get(0)).getEventsCount()).isEqualTo(1);
+
+            // Act
+            recording.subscribe("machine-1", null, slid);
+            StatsResponse connected = nextStats(streams.get(1));
+            StatsResponse current = recording.currentStats("machine-1", slid);
+            recording.tick(slid);
+
+            // Assert - the first subscriber still gets the slid window
+            assertThat(connected.getEventsCount()).isZero();
+            assertThat(current.getEventsCount()).isZero();
+            StatsResponse pushed = nextStats(streams.get(0));
+            assertThat(pushed).isNotNull();
+            assertThat(pushed.getEventsCount()).isZero();
+        } finally {
+            recording.shutdown();
+        }
+    }
+
+    private static StatsResponse nextStats(BlockingQueue<Object> received) throws InterruptedException {
+        Object next = received.poll(500, TimeUnit.MILLISECONDS);
+        while (next != null && !(next instanceof StatsResponse)) {
+            next = received.poll(500, TimeUnit.MILLISECONDS);
+        }
+        return (StatsResponse) next;
+    }
+
+    // Helper method
+    private EventSnapshot snapshot(String eventId, String machineId, int defectCount, Instant receivedTime) {
+        return new EventSnapshot(eventId, now, receivedTime, machineId, "line-1", "factory-1", 1000L, defectCount);
+    }
+}
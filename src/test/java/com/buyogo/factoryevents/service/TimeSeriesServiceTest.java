@@ -0,0 +1,131 @@
+package com.buyogo.factoryevents.service;
+
+import com.buyogo.factoryevents.config.ShardingProperties;
+import com.buyogo.factoryevents.dto.EventExportFilter;
+import com.buyogo.factoryevents.dto.TimeSeriesPoint;
+import com.buyogo.factoryevents.dto.TimeSeriesResponse;
+import com.buyogo.factoryevents.repository.MachineShardRepository;
+import com.buyogo.factoryevents.repository.TimeSeriesRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class TimeSeriesServiceTest {
+
+    @Mock
+    private TimeSeriesRepository timeSeriesRepository;
+
+    private TimeSeriesService timeSeriesService;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), mock(MachineShardRepository.class),
+                mock(PlatformTransactionManager.class));
+        timeSeriesService = new TimeSeriesService(timeSeriesRepository, shardRouter, 1440);
+        baseTime = Instant.parse("2024-01-15T10:00:00Z");
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Test 1: Empty buckets are filled in between aggregated rows")
+    void testEmptyBucketsFilled() {
+        // Arrange
+        EventExportFilter filter = machineFilter(baseTime, baseTime.plus(Duration.ofHours(4)));
+        when(timeSeriesRepository.aggregate(filter, "hour")).thenReturn(List.of(
+                new TimeSeriesRepository.BucketRow(baseTime, 10, 1),
+                new TimeSeriesRepository.BucketRow(baseTime.plus(Duration.ofHours(2)), 5, 3)));
+
+        // Act
+        TimeSeriesResponse response = timeSeriesService.getTimeSeries(filter, TimeSeriesService.Bucket.HOUR);
+
+        // Assert
+        assertThat(response.getBucket()).isEqualTo("hour");
+        assertThat(response.getPoints()).extracting(TimeSeriesPoint::getEventsCount).containsExactly(10L, 0L, 5L, 0L);
+        assertThat(response.getPoints()).extracting(TimeSeriesPoint::getAvgDefectRate).containsExactly(1.0, 0.0, 3.0, 0.0);
+        assertThat(response.getPoints().get(1).getBucketStart()).isEqualTo(baseTime.plus(Duration.ofHours(1)));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Test 2: Partial edge buckets use the covered part of the window for the rate")
+    void testPartialEdgeBuckets() {
+        // Arrange - window starts half way through the first hour
+        Instant from = baseTime.plus(Duration.ofMinutes(30));
+        EventExportFilter filter = machineFilter(from, baseTime.plus(Duration.ofHours(2)));
+        when(timeSeriesRepository.aggregate(filter, "hour")).thenReturn(List.of(
+                new TimeSeriesRepository.BucketRow(baseTime, 4, 2)));
+
+        // Act
+        TimeSeriesResponse response = timeSeriesService.getTimeSeries(filter, TimeSeriesService.Bucket.HOUR);
+
+        // Assert - 2 defects over 0.5 hours
+        assertThat(response.getPoints()).hasSize(2);
+        assertThat(response.getPoints().get(0).getBucketStart()).isEqualTo(baseTime);
+        assertThat(response.getPoints().get(0).getAvgDefectRate()).isEqualTo(4.0);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Test 3: Large ranges are coarsened to stay within max buckets")
+    void testAutomaticCoarsening() {
+        // Arrange - 3 days of minutes is 4320 buckets, more than the 1440 limit
+        EventExportFilter filter = machineFilter(baseTime, baseTime.plus(Duration.ofDays(3)));
+        when(timeSeriesRepository.aggregate(eq(filter), any())).thenReturn(List.of());
+
+        // Act
+        TimeSeriesResponse response = timeSeriesService.getTimeSeries(filter, TimeSeriesService.Bucket.MINUTE);
+
+        // Assert
+        assertThat(response.getBucket()).isEqualTo("hour");
+        assertThat(response.getPoints()).hasSize(72);
+        verify(timeSeriesRepository).aggregate(filter, "hour");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test 4: Without a requested bucket the finest one that fits is used")
+    void testDefaultBucket() {
+        assertThat(timeSeriesService.chooseBucket(baseTime, baseTime.plus(Duration.ofHours(6)), null))
+                .isEqualTo(TimeSeriesService.Bucket.MINUTE);
+        assertThat(timeSeriesService.chooseBucket(baseTime, baseTime.plus(Duration.ofDays(90)), null))
+                .isEqualTo(TimeSeriesService.Bucket.DAY);
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test 5: A scope filter is required")
+    void testScopeRequired() {
+        EventExportFilter filter = EventExportFilter.builder()
+                .from(baseTime)
+                .to(baseTime.plus(Duration.ofHours(1)))
+                .build();
+
+        assertThatThrownBy(() -> timeSeriesService.getTimeSeries(filter, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(timeSeriesRepository);
+    }
+
+    private EventExportFilter machineFilter(Instant from, Instant to) {
+        return EventExportFilter.builder()
+                .machineId("machine-1")
+                .from(from)
+                .to(to)
+                .build();
+    }
+}